@@ -14,9 +14,11 @@
 
 package google.registry.backup;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.api.datastore.EntityTranslator;
+import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.storage.onestore.v3.OnestoreEntity.EntityProto;
@@ -26,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
 
 /** Utilities for working with backups. */
 public class BackupUtils {
@@ -38,8 +41,15 @@ public class BackupUtils {
     public static final String NUM_TRANSACTIONS = "num_transactions";
     public static final String LOWER_BOUND_CHECKPOINT = "lower_bound_checkpoint";
     public static final String UPPER_BOUND_CHECKPOINT = "upper_bound_checkpoint";
+    public static final String COMPRESSION = "compression";
   }
 
+  /**
+   * The {@link GcsMetadataKeys#COMPRESSION} of files whose serialized entities are compressed as a
+   * single gzip stream.
+   */
+  public static final String GZIP_COMPRESSION = "gzip";
+
   /**
    * Converts the given {@link ImmutableObject} to a raw Datastore entity and write it to an
    * {@link OutputStream} in delimited protocol buffer format.
@@ -68,6 +78,27 @@ public class BackupUtils {
       }};
   }
 
+  /**
+   * Wraps a stream read from a GCS file in a decompressing stream if the file is compressed, as
+   * indicated by its metadata.
+   *
+   * <p>Compressed files must be a single gzip member, since {@link GZIPInputStream} may stop at the
+   * end of the first member of a concatenated file when reading from a channel.
+   */
+  public static InputStream decompressIfNeeded(InputStream input, GcsFileMetadata metadata)
+      throws IOException {
+    String compression = metadata.getOptions().getUserMetadata().get(GcsMetadataKeys.COMPRESSION);
+    if (compression == null) {
+      return input;
+    }
+    checkArgument(
+        compression.equals(GZIP_COMPRESSION),
+        "Unsupported compression %s of %s",
+        compression,
+        metadata.getFilename());
+    return new GZIPInputStream(input);
+  }
+
   public static ImmutableList<ImmutableObject> deserializeEntities(byte[] bytes) {
     return ImmutableList.copyOf(createDeserializingIterator(new ByteArrayInputStream(bytes)));
   }
@@ -18,8 +18,9 @@ import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verifyNotNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Lists.partition;
+import static google.registry.backup.BackupUtils.GZIP_COMPRESSION;
+import static google.registry.backup.BackupUtils.GcsMetadataKeys.COMPRESSION;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.LOWER_BOUND_CHECKPOINT;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.NUM_TRANSACTIONS;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.UPPER_BOUND_CHECKPOINT;
@@ -48,11 +49,15 @@ import google.registry.model.ofy.CommitLogMutation;
 import google.registry.request.Action;
 import google.registry.request.Parameter;
 import google.registry.request.auth.Auth;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.zip.GZIPOutputStream;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
@@ -74,9 +79,14 @@ public final class ExportCommitLogDiffAction implements Runnable {
 
   public static final String DIFF_FILE_PREFIX = "commit_diff_until_";
 
+  /** Size of the output buffer of the gzip compressor, when compressing. */
+  private static final int COMPRESSOR_BUFFER_SIZE = 64 * 1024;
+
   @Inject GcsService gcsService;
   @Inject @Config("commitLogGcsBucket") String gcsBucket;
   @Inject @Config("commitLogDiffExportBatchSize") int batchSize;
+  @Inject @Config("commitLogDiffExportBatchesInFlight") int batchesInFlight;
+  @Inject @Config("commitLogDiffExportCompression") boolean compress;
   @Inject @Parameter(LOWER_CHECKPOINT_TIME_PARAM) DateTime lowerCheckpointTime;
   @Inject @Parameter(UPPER_CHECKPOINT_TIME_PARAM) DateTime upperCheckpointTime;
   @Inject ExportCommitLogDiffAction() {}
@@ -87,6 +97,7 @@ public final class ExportCommitLogDiffAction implements Runnable {
         "Exporting commit log diffs between %s and %s.", lowerCheckpointTime, upperCheckpointTime);
     checkArgument(isAtOrAfter(lowerCheckpointTime, START_OF_TIME));
     checkArgument(lowerCheckpointTime.isBefore(upperCheckpointTime));
+    checkArgument(batchesInFlight > 0, "At least one batch must be in flight");
     // Load the boundary checkpoints - lower is exclusive and may not exist (on the first export,
     // when lowerCheckpointTime is START_OF_TIME), whereas the upper is inclusive and must exist.
     CommitLogCheckpoint lowerCheckpoint = lowerCheckpointTime.isAfter(START_OF_TIME)
@@ -98,40 +109,37 @@ public final class ExportCommitLogDiffAction implements Runnable {
     // Load the keys of all the manifests to include in this diff.
     List<Key<CommitLogManifest>> sortedKeys = loadAllDiffKeys(lowerCheckpoint, upperCheckpoint);
     logger.atInfo().log("Found %d manifests to export", sortedKeys.size());
-    // Open an output channel to GCS, wrapped in a stream for convenience.
-    try (OutputStream gcsStream = newOutputStream(gcsService.createOrReplace(
-        new GcsFilename(gcsBucket, DIFF_FILE_PREFIX + upperCheckpointTime),
+    GcsFileOptions.Builder options =
         new GcsFileOptions.Builder()
             .addUserMetadata(LOWER_BOUND_CHECKPOINT, lowerCheckpointTime.toString())
             .addUserMetadata(UPPER_BOUND_CHECKPOINT, upperCheckpointTime.toString())
-            .addUserMetadata(NUM_TRANSACTIONS, Integer.toString(sortedKeys.size()))
-            .build()))) {
+            .addUserMetadata(NUM_TRANSACTIONS, Integer.toString(sortedKeys.size()));
+    if (compress) {
+      options.addUserMetadata(COMPRESSION, GZIP_COMPRESSION);
+    }
+    // Open an output channel to GCS, wrapped in a stream for convenience. When compressing, the
+    // whole file is a single gzip stream.
+    try (OutputStream gcsStream = openOutputStream(
+        new GcsFilename(gcsBucket, DIFF_FILE_PREFIX + upperCheckpointTime), options.build())) {
       // Export the upper checkpoint itself.
-      serializeEntity(upperCheckpoint, gcsStream);
+      writeBlock(gcsStream, ImmutableList.of(upperCheckpoint));
       // If there are no manifests to export, stop early, now that we've written out the file with
       // the checkpoint itself (which is needed for restores, even if it's empty).
       if (sortedKeys.isEmpty()) {
         return;
       }
-      // Export to GCS in chunks, one per fixed batch of commit logs.  While processing one batch,
-      // asynchronously load the entities for the next one.
+      // Export to GCS in blocks, one per fixed batch of commit logs. While writing out one batch,
+      // keep loading the entities of the next few ones.
       List<List<Key<CommitLogManifest>>> keyChunks = partition(sortedKeys, batchSize);
-      // Objectify's map return type is asynchronous. Calling .values() will block until it loads.
-      Map<?, CommitLogManifest> nextChunkToExport = ofy().load().keys(keyChunks.get(0));
-      for (int i = 0; i < keyChunks.size(); i++) {
-        // Force the async load to finish.
-        Collection<CommitLogManifest> chunkValues = nextChunkToExport.values();
-        logger.atInfo().log("Loaded %d manifests", chunkValues.size());
-        // Since there is no hard bound on how much data this might be, take care not to let the
-        // Objectify session cache fill up and potentially run out of memory. This is the only safe
-        // point to do this since at this point there is no async load in progress.
-        ofy().clearSessionCache();
-        // Kick off the next async load, which can happen in parallel to the current GCS export.
-        if (i + 1 < keyChunks.size()) {
-          nextChunkToExport = ofy().load().keys(keyChunks.get(i + 1));
+      Queue<PendingBatch> pendingBatches = new ArrayDeque<>();
+      int nextChunk = 0;
+      while (nextChunk < keyChunks.size() || !pendingBatches.isEmpty()) {
+        while (nextChunk < keyChunks.size() && pendingBatches.size() < batchesInFlight) {
+          pendingBatches.add(startLoadingBatch(keyChunks.get(nextChunk++)));
         }
-        exportChunk(gcsStream, chunkValues);
-        logger.atInfo().log("Exported %d manifests", chunkValues.size());
+        ImmutableList<ImmutableObject> entities = pendingBatches.remove().getEntities();
+        writeBlock(gcsStream, entities);
+        logger.atInfo().log("Exported %d entities", entities.size());
       }
     } catch (IOException e) {
       throw new RuntimeException(e);
@@ -151,14 +159,14 @@ public final class ExportCommitLogDiffAction implements Runnable {
     // Fetch the keys (no data) between these checkpoints, and sort by timestamp. This ordering is
     // transaction-consistent by virtue of our checkpoint strategy and our customized Ofy; see
     // CommitLogCheckpointStrategy for the proof. We break ties by sorting on bucket ID to ensure
-    // a deterministic order.
-    return upperCheckpoint
-        .getBucketTimestamps()
-        .keySet()
-        .stream()
-        .flatMap(
-            bucketNum ->
-                Streams.stream(loadDiffKeysFromBucket(lowerCheckpoint, upperCheckpoint, bucketNum)))
+    // a deterministic order. The queries of all buckets are started before reading any of them, so
+    // that they run in parallel.
+    ImmutableList<Iterator<Key<CommitLogManifest>>> keysByBucket =
+        upperCheckpoint.getBucketTimestamps().keySet().stream()
+            .map(bucketNum -> loadDiffKeysFromBucket(lowerCheckpoint, upperCheckpoint, bucketNum))
+            .collect(toImmutableList());
+    return keysByBucket.stream()
+        .flatMap(keys -> Streams.stream(keys))
         .sorted(
             comparingLong(Key<CommitLogManifest>::getId)
                 .thenComparingLong(a -> a.getParent().getId()))
@@ -172,7 +180,7 @@ public final class ExportCommitLogDiffAction implements Runnable {
    * @param upperCheckpoint inclusive upper bound on keys in this diff
    * @param bucketNum the bucket to load diff keys from
    */
-  private Iterable<Key<CommitLogManifest>> loadDiffKeysFromBucket(
+  private Iterator<Key<CommitLogManifest>> loadDiffKeysFromBucket(
       @Nullable CommitLogCheckpoint lowerCheckpoint,
       CommitLogCheckpoint upperCheckpoint,
       int bucketNum) {
@@ -189,7 +197,7 @@ public final class ExportCommitLogDiffAction implements Runnable {
     DateTime upperBound = upperCheckpoint.getBucketTimestamps().get(bucketNum).plusMillis(1);
     // If the lower and upper bounds are equal, there can't be any results, so skip the query.
     if (lowerBound.equals(upperBound)) {
-      return ImmutableSet.of();
+      return ImmutableSet.<Key<CommitLogManifest>>of().iterator();
     }
     Key<CommitLogBucket> bucketKey = getBucketKey(bucketNum);
     return ofy().load()
@@ -197,21 +205,87 @@ public final class ExportCommitLogDiffAction implements Runnable {
         .ancestor(bucketKey)
         .filterKey(">=", CommitLogManifest.createKey(bucketKey, lowerBound))
         .filterKey("<", CommitLogManifest.createKey(bucketKey, upperBound))
-        .keys();
+        .keys()
+        .iterator();
+  }
+
+  /**
+   * Starts loading the given manifests and their mutations.
+   *
+   * <p>Each batch is loaded into its own session cache, which is dropped along with the batch once
+   * it has been written out, so that there is no need to clear the session cache between batches
+   * while the loads of other batches are still in progress.
+   */
+  private static PendingBatch startLoadingBatch(List<Key<CommitLogManifest>> keys) {
+    return ofy()
+        .doWithFreshSessionCache(
+            () -> {
+              // Objectify's map return type is asynchronous, and so are query iterators, so this
+              // only kicks off the loads, which complete when they are first read.
+              Map<Key<CommitLogManifest>, CommitLogManifest> manifests = ofy().load().keys(keys);
+              ImmutableList<Iterator<CommitLogMutation>> mutations =
+                  keys.stream()
+                      .map(
+                          key ->
+                              ofy().load().type(CommitLogMutation.class).ancestor(key).iterator())
+                      .collect(toImmutableList());
+              return new PendingBatch(keys, manifests, mutations);
+            });
   }
 
-  /** Writes a chunks-worth of manifests and associated mutations to GCS. */
-  private void exportChunk(OutputStream gcsStream, Collection<CommitLogManifest> chunk)
+  /** Opens a stream to the given GCS file, which gzips what is written to it if compressing. */
+  private OutputStream openOutputStream(GcsFilename filename, GcsFileOptions options)
       throws IOException {
-    // Kickoff async loads for all the manifests in the chunk.
-    ImmutableList.Builder<Iterable<? extends ImmutableObject>> entities =
-        new ImmutableList.Builder<>();
-    for (CommitLogManifest manifest : chunk) {
-      entities.add(ImmutableList.of(manifest));
-      entities.add(ofy().load().type(CommitLogMutation.class).ancestor(manifest));
+    OutputStream gcsStream = newOutputStream(gcsService.createOrReplace(filename, options));
+    return compress ? new GZIPOutputStream(gcsStream, COMPRESSOR_BUFFER_SIZE) : gcsStream;
+  }
+
+  /**
+   * Writes the given entities to GCS as a single block.
+   *
+   * <p>The entities are serialized into memory and written out at once, rather than in many small
+   * writes to the GCS stream.
+   */
+  private static void writeBlock(
+      OutputStream gcsStream, Iterable<? extends ImmutableObject> entities) throws IOException {
+    ByteArrayOutputStream block = new ByteArrayOutputStream();
+    for (ImmutableObject entity : entities) {
+      serializeEntity(entity, block);
+    }
+    block.writeTo(gcsStream);
+  }
+
+  /** A batch of manifests whose entities, along with those of their mutations, are loading. */
+  private static final class PendingBatch {
+
+    private final List<Key<CommitLogManifest>> keys;
+    private final Map<Key<CommitLogManifest>, CommitLogManifest> manifests;
+    private final ImmutableList<Iterator<CommitLogMutation>> mutations;
+
+    PendingBatch(
+        List<Key<CommitLogManifest>> keys,
+        Map<Key<CommitLogManifest>, CommitLogManifest> manifests,
+        ImmutableList<Iterator<CommitLogMutation>> mutations) {
+      this.keys = keys;
+      this.manifests = manifests;
+      this.mutations = mutations;
     }
-    for (ImmutableObject entity : concat(entities.build())) {
-      serializeEntity(entity, gcsStream);
+
+    /**
+     * Waits for the loads to complete, and returns each manifest followed by its mutations, in the
+     * order of the manifest keys.
+     */
+    ImmutableList<ImmutableObject> getEntities() {
+      ImmutableList.Builder<ImmutableObject> entities = new ImmutableList.Builder<>();
+      for (int i = 0; i < keys.size(); i++) {
+        CommitLogManifest manifest = manifests.get(keys.get(i));
+        // Skip manifests that were deleted since their keys were loaded.
+        if (manifest != null) {
+          entities.add(manifest);
+          entities.addAll(mutations.get(i));
+        }
+      }
+      return entities.build();
     }
   }
 }
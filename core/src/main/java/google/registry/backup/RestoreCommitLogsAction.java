@@ -18,11 +18,11 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterators.peekingIterator;
 import static google.registry.backup.BackupUtils.createDeserializingIterator;
+import static google.registry.backup.BackupUtils.decompressIfNeeded;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.EntityTranslator;
 import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.common.collect.ImmutableList;
@@ -101,8 +101,11 @@ public class RestoreCommitLogsAction implements Runnable {
     CommitLogCheckpoint lastCheckpoint = null;
     for (GcsFileMetadata metadata : diffFiles) {
       logger.atInfo().log("Restoring: %s", metadata.getFilename().getObjectName());
-      try (InputStream input = Channels.newInputStream(
-          gcsService.openPrefetchingReadChannel(metadata.getFilename(), 0, BLOCK_SIZE))) {
+      try (InputStream input =
+          decompressIfNeeded(
+              Channels.newInputStream(
+                  gcsService.openPrefetchingReadChannel(metadata.getFilename(), 0, BLOCK_SIZE)),
+              metadata)) {
         PeekingIterator<ImmutableObject> commitLogs =
             peekingIterator(createDeserializingIterator(input));
         lastCheckpoint = (CommitLogCheckpoint) commitLogs.next();
@@ -150,7 +153,7 @@ public class RestoreCommitLogsAction implements Runnable {
     while (commitLogs.hasNext() && commitLogs.peek() instanceof CommitLogMutation) {
       CommitLogMutation mutation = (CommitLogMutation) commitLogs.next();
       entitiesToSave.add(ofy().save().toEntity(mutation));
-      entitiesToSave.add(EntityTranslator.createFromPbBytes(mutation.getEntityProtoBytes()));
+      entitiesToSave.add(mutation.getEntity());
     }
     saveRaw(entitiesToSave);
     try {
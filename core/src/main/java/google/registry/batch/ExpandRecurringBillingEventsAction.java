@@ -155,21 +155,29 @@ public class ExpandRecurringBillingEventsAction implements Runnable {
       }
       int numBillingEventsSaved = 0;
       try {
+        final Registry tld = Registry.get(getTldFromDomainName(recurring.getTargetId()));
+
+        // Determine the complete set of times at which this recurring event should occur
+        // (up to and including the runtime of the mapreduce).
+        Iterable<DateTime> eventTimes =
+            recurring.getRecurrenceTimeOfYear().getInstancesInRange(Range.closed(
+                recurring.getEventTime(),
+                earliestOf(recurring.getRecurrenceEndTime(), executeTime)));
+
+        // Convert these event times to billing times
+        final ImmutableSet<DateTime> billingTimes =
+            getBillingTimesInScope(eventTimes, cursorTime, executeTime, tld);
+
+        // Only recurrences that are due in the range being expanded (about one in every 365 for a
+        // daily run) need a transaction and a query for the domain's existing OneTimes, so skip
+        // both for all the others. Every recurrence is still read by the mapreduce input.
+        if (billingTimes.isEmpty()) {
+          getContext().incrementCounter("Recurring billing events not due");
+          return;
+        }
         numBillingEventsSaved = tm().transactNew(() -> {
           ImmutableSet.Builder<OneTime> syntheticOneTimesBuilder =
               new ImmutableSet.Builder<>();
-          final Registry tld = Registry.get(getTldFromDomainName(recurring.getTargetId()));
-
-          // Determine the complete set of times at which this recurring event should occur
-          // (up to and including the runtime of the mapreduce).
-          Iterable<DateTime> eventTimes =
-              recurring.getRecurrenceTimeOfYear().getInstancesInRange(Range.closed(
-                  recurring.getEventTime(),
-                  earliestOf(recurring.getRecurrenceEndTime(), executeTime)));
-
-          // Convert these event times to billing times
-          final ImmutableSet<DateTime> billingTimes =
-              getBillingTimesInScope(eventTimes, cursorTime, executeTime, tld);
 
           Key<? extends EppResource> domainKey = recurring.getParentKey().getParent();
           Iterable<OneTime> oneTimesForDomain =
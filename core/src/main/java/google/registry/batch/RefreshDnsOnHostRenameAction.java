@@ -28,6 +28,7 @@ import static google.registry.model.EppResourceUtils.isDeleted;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.DateTimeUtils.latestOf;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.SEVERE;
@@ -43,6 +44,7 @@ import com.google.appengine.tools.mapreduce.ReducerInput;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.googlecode.objectify.Key;
 import google.registry.batch.AsyncTaskMetrics.OperationResult;
@@ -71,7 +73,22 @@ import javax.inject.Named;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
 
-/** Performs batched DNS refreshes for applicable domains following a host rename. */
+/**
+ * Performs batched DNS refreshes for applicable domains following a host rename.
+ *
+ * <p>The domains referencing the renamed hosts are normally found with the Datastore index on
+ * {@code DomainBase.nsHosts}, which is maintained by every domain write, and refreshed directly.
+ * Only if the renamed hosts are referenced by too many domains to handle in a single request does
+ * this fall back to a mapreduce over all domains.
+ *
+ * <p>Index queries are eventually consistent, so a domain that started referencing a host just
+ * before the host was renamed can be missed, and that domain's own DNS refresh may already have
+ * published the host's old name. So a rename whose targeted refresh started within {@link
+ * #indexConsistencyWindow} of it is refreshed a second time once the window has passed: its task is
+ * kept in the queue with its lease set to expire at the end of the window, and is only deleted by
+ * a refresh that started after it. The mapreduce doesn't need this, since it loads the domains
+ * through ancestor queries, which are strongly consistent.
+ */
 @Action(
     service = Action.Service.BACKEND,
     path = "/_dr/task/refreshDnsOnHostRename",
@@ -81,8 +98,16 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
   private static final Duration LEASE_LENGTH = standardHours(4);
 
+  /** The most referencing domains to refresh directly, rather than by running a mapreduce. */
+  @NonFinalForTesting private static int maxDomainsForTargetedRefresh = 1000;
+
+  /** How long after a rename the index on domains' nameservers is assumed to have caught up. */
+  @NonFinalForTesting
+  private static Duration indexConsistencyWindow = Duration.standardMinutes(1);
+
   @Inject AsyncTaskMetrics asyncTaskMetrics;
   @Inject Clock clock;
+  @Inject DnsQueue dnsQueue;
   @Inject MapreduceRunner mrRunner;
   @Inject @Named(QUEUE_ASYNC_HOST_RENAME) Queue pullQueue;
   @Inject RequestStatusChecker requestStatusChecker;
@@ -152,10 +177,121 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
     } else {
       logger.atInfo().log(
           "Processing asynchronous DNS refresh for renamed hosts: %s", hostKeys.build());
-      runMapreduce(refreshRequests, lock);
+      DateTime queryTime = clock.nowUtc();
+      Optional<ImmutableSet<Key<DomainBase>>> referencingDomains =
+          findReferencingDomains(refreshRequests);
+      if (referencingDomains.isPresent()) {
+        refreshReferencingDomains(refreshRequests, referencingDomains.get(), queryTime, lock);
+      } else {
+        runMapreduce(refreshRequests, lock);
+      }
     }
   }
 
+  /**
+   * Returns the keys of all domains that reference any of the renamed hosts, or absent if there are
+   * more than {@link #maxDomainsForTargetedRefresh} of them.
+   */
+  private static Optional<ImmutableSet<Key<DomainBase>>> findReferencingDomains(
+      ImmutableList<DnsRefreshRequest> refreshRequests) {
+    ImmutableSet.Builder<Key<DomainBase>> domainKeys = new ImmutableSet.Builder<>();
+    int numFound = 0;
+    for (DnsRefreshRequest request : refreshRequests) {
+      for (Key<DomainBase> domainKey :
+          ofy()
+              .load()
+              .type(DomainBase.class)
+              .filter("nsHosts", request.hostKey())
+              .limit(maxDomainsForTargetedRefresh + 1)
+              .keys()) {
+        domainKeys.add(domainKey);
+        if (++numFound > maxDomainsForTargetedRefresh) {
+          logger.atInfo().log(
+              "Renamed hosts are referenced by more than %d domains; running a mapreduce.",
+              maxDomainsForTargetedRefresh);
+          return Optional.empty();
+        }
+      }
+    }
+    return Optional.of(domainKeys.build());
+  }
+
+  /**
+   * Refreshes the DNS of the given domains that reference the renamed hosts, in this request.
+   *
+   * <p>The tasks of renames that happened less than {@link #indexConsistencyWindow} before the
+   * domains were queried are kept for a second pass, and only the others are deleted.
+   */
+  private void refreshReferencingDomains(
+      ImmutableList<DnsRefreshRequest> refreshRequests,
+      ImmutableSet<Key<DomainBase>> domainKeys,
+      DateTime queryTime,
+      Optional<Lock> lock) {
+    int numRefreshed = 0;
+    try {
+      // Loading by key is strongly consistent, so this sees the domains' current nameservers.
+      for (DomainBase domain : ofy().load().keys(domainKeys).values()) {
+        if (refreshIfReferencesRenamedHost(domain, refreshRequests, dnsQueue, retrier)) {
+          numRefreshed++;
+        }
+      }
+    } catch (Throwable t) {
+      // The tasks aren't deleted, so they will be processed again once their leases expire.
+      logRespondAndUnlock(SEVERE, "Error refreshing DNS for renamed hosts.", lock);
+      return;
+    }
+    ImmutableList.Builder<DnsRefreshRequest> finishedRequests = new ImmutableList.Builder<>();
+    for (DnsRefreshRequest request : refreshRequests) {
+      DateTime windowEnd = request.requestedTime().plus(indexConsistencyWindow);
+      if (queryTime.isAfter(windowEnd)) {
+        finishedRequests.add(request);
+      } else {
+        // Let the lease expire at the end of the window, so that a later run refreshes again.
+        long leaseMillis = Math.max(1L, new Duration(queryTime, windowEnd).getMillis());
+        pullQueue.modifyTaskLease(request.task(), leaseMillis, MILLISECONDS);
+        logger.atInfo().log(
+            "Refreshing DNS for domains referencing host %s again after %s.",
+            request.hostKey(), windowEnd);
+      }
+    }
+    deleteTasksWithRetry(
+        finishedRequests.build(), pullQueue, asyncTaskMetrics, retrier, OperationResult.SUCCESS);
+    logRespondAndUnlock(
+        INFO,
+        String.format(
+            "Enqueued DNS refreshes for %d domains referencing renamed hosts.", numRefreshed),
+        lock);
+  }
+
+  /**
+   * Enqueues a DNS refresh for the domain if it is active and references one of the renamed hosts,
+   * and returns whether it did so.
+   */
+  private static boolean refreshIfReferencesRenamedHost(
+      DomainBase domain,
+      List<DnsRefreshRequest> refreshRequests,
+      DnsQueue dnsQueue,
+      Retrier retrier) {
+    Key<HostResource> referencingHostKey = null;
+    for (DnsRefreshRequest request : refreshRequests) {
+      if (isActive(domain, request.lastUpdateTime())
+          && domain.getNameservers().contains(request.hostKey())) {
+        referencingHostKey = request.hostKey();
+        break;
+      }
+    }
+    if (referencingHostKey == null) {
+      return false;
+    }
+    retrier.callWithRetry(
+        () -> dnsQueue.addDomainRefreshTask(domain.getFullyQualifiedDomainName()),
+        TransientFailureException.class);
+    logger.atInfo().log(
+        "Enqueued DNS refresh for domain %s referenced by host %s.",
+        domain.getFullyQualifiedDomainName(), referencingHostKey);
+    return true;
+  }
+
   private void runMapreduce(ImmutableList<DnsRefreshRequest> refreshRequests, Optional<Lock> lock) {
     try {
       mrRunner
@@ -203,21 +339,7 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
         emit(true, true);
         return;
       }
-      Key<HostResource> referencingHostKey = null;
-      for (DnsRefreshRequest request : refreshRequests) {
-        if (isActive(domain, request.lastUpdateTime())
-            && domain.getNameservers().contains(request.hostKey())) {
-          referencingHostKey = request.hostKey();
-          break;
-        }
-      }
-      if (referencingHostKey != null) {
-        retrier.callWithRetry(
-            () -> dnsQueue.addDomainRefreshTask(domain.getFullyQualifiedDomainName()),
-            TransientFailureException.class);
-        logger.atInfo().log(
-            "Enqueued DNS refresh for domain %s referenced by host %s.",
-            domain.getFullyQualifiedDomainName(), referencingHostKey);
+      if (refreshIfReferencesRenamedHost(domain, refreshRequests, dnsQueue, retrier)) {
         getContext().incrementCounter("domains refreshed");
       } else {
         getContext().incrementCounter("domains not refreshed");
@@ -35,8 +35,11 @@ import java.time.format.DateTimeFormatter;
 import java.util.stream.Collectors;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.BigEndianLongCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
 import org.apache.beam.sdk.io.gcp.bigquery.SchemaAndRecord;
 
 /**
@@ -259,6 +262,74 @@ public abstract class BillingEvent implements Serializable {
         poNumber());
   }
 
+  /**
+   * Coder that provides deterministic (de)serialization for {@code BillingEvent}.
+   *
+   * <p>This writes each field with a compact primitive encoding, rather than the Java serialization
+   * form of the whole object (class descriptors, field names and all) that {@code
+   * SerializableCoder} writes for every element. The amount is written as the bits returned by
+   * {@link Double#doubleToLongBits}, which is also how AutoValue compares it in {@code equals},
+   * rather than with {@code DoubleCoder}, which doesn't promise a deterministic encoding.
+   */
+  static class BillingEventCoder extends AtomicCoder<BillingEvent> {
+
+    private static final Coder<String> STRING_CODER = StringUtf8Coder.of();
+    private static final Coder<Long> LONG_CODER = VarLongCoder.of();
+    private static final Coder<Integer> INT_CODER = VarIntCoder.of();
+    private static final Coder<Long> DOUBLE_BITS_CODER = BigEndianLongCoder.of();
+
+    @Override
+    public void encode(BillingEvent value, OutputStream outStream) throws IOException {
+      LONG_CODER.encode(value.id(), outStream);
+      encodeDateTime(value.billingTime(), outStream);
+      encodeDateTime(value.eventTime(), outStream);
+      STRING_CODER.encode(value.registrarId(), outStream);
+      STRING_CODER.encode(value.billingId(), outStream);
+      STRING_CODER.encode(value.poNumber(), outStream);
+      STRING_CODER.encode(value.tld(), outStream);
+      STRING_CODER.encode(value.action(), outStream);
+      STRING_CODER.encode(value.domain(), outStream);
+      STRING_CODER.encode(value.repositoryId(), outStream);
+      INT_CODER.encode(value.years(), outStream);
+      STRING_CODER.encode(value.currency(), outStream);
+      DOUBLE_BITS_CODER.encode(Double.doubleToLongBits(value.amount()), outStream);
+      STRING_CODER.encode(value.flags(), outStream);
+    }
+
+    @Override
+    public BillingEvent decode(InputStream inStream) throws IOException {
+      return new AutoValue_BillingEvent(
+          LONG_CODER.decode(inStream),
+          decodeDateTime(inStream),
+          decodeDateTime(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          INT_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          Double.longBitsToDouble(DOUBLE_BITS_CODER.decode(inStream)),
+          STRING_CODER.decode(inStream));
+    }
+
+    private static void encodeDateTime(ZonedDateTime dateTime, OutputStream outStream)
+        throws IOException {
+      Instant instant = dateTime.toInstant();
+      LONG_CODER.encode(instant.getEpochSecond(), outStream);
+      INT_CODER.encode(instant.getNano(), outStream);
+      STRING_CODER.encode(dateTime.getZone().getId(), outStream);
+    }
+
+    private static ZonedDateTime decodeDateTime(InputStream inStream) throws IOException {
+      Instant instant =
+          Instant.ofEpochSecond(LONG_CODER.decode(inStream), INT_CODER.decode(inStream));
+      return instant.atZone(ZoneId.of(STRING_CODER.decode(inStream)));
+    }
+  }
+
   /** Key for each {@code BillingEvent}, when aggregating for the overall invoice. */
   @AutoValue
   abstract static class InvoiceGroupingKey implements Serializable {
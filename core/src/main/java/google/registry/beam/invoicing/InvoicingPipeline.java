@@ -15,6 +15,7 @@
 package google.registry.beam.invoicing;
 
 import com.google.auth.oauth2.GoogleCredentials;
+import google.registry.beam.invoicing.BillingEvent.BillingEventCoder;
 import google.registry.beam.invoicing.BillingEvent.InvoiceGroupingKey;
 import google.registry.beam.invoicing.BillingEvent.InvoiceGroupingKey.InvoiceGroupingKeyCoder;
 import google.registry.config.CredentialModule.LocalCredential;
@@ -27,7 +28,6 @@ import javax.inject.Inject;
 import org.apache.beam.runners.dataflow.DataflowRunner;
 import org.apache.beam.runners.dataflow.options.DataflowPipelineOptions;
 import org.apache.beam.sdk.Pipeline;
-import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.io.DefaultFilenamePolicy.Params;
 import org.apache.beam.sdk.io.FileBasedSink;
 import org.apache.beam.sdk.io.TextIO;
@@ -118,7 +118,7 @@ public class InvoicingPipeline implements Serializable {
             "Read BillingEvents from Bigquery",
             BigQueryIO.read(BillingEvent::parseFromRecord)
                 .fromQuery(InvoicingUtils.makeQueryProvider(options.getYearMonth(), projectId))
-                .withCoder(SerializableCoder.of(BillingEvent.class))
+                .withCoder(new BillingEventCoder())
                 .usingStandardSql()
                 .withoutValidation()
                 .withTemplateCompatibility());
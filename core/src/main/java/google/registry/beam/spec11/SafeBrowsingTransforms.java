@@ -15,20 +15,34 @@
 package google.registry.beam.spec11;
 
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.http.HttpStatus.SC_OK;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import google.registry.util.Retrier;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Serializable;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.transforms.DoFn;
@@ -61,6 +75,16 @@ public class SafeBrowsingTransforms {
    *
    * <p>Refer to the Lookup API documentation for the request/response format and other details.
    *
+   * <p>Subdomains are evaluated in batches, and up to {@code maxConcurrentRequests} batches are
+   * kept in flight at once on background threads, so that the worker keeps reading input while
+   * waiting on the API instead of sitting idle for every round trip. Requests (including retries)
+   * are also rate limited so that adding concurrency doesn't exhaust API quota. Results are
+   * emitted, in batch order, from the Beam-managed processing thread.
+   *
+   * <p>Beam creates an instance of this {@code DoFn} for every processing thread of a worker, so
+   * the threads that send the requests and the rate limiter are shared by all instances with the
+   * same limits in the JVM. Both limits therefore apply per worker, not per instance.
+   *
    * @see <a href=https://developers.google.com/safe-browsing/v4/lookup-api>Lookup API</a>
    */
   static class EvaluateSafeBrowsingFn extends DoFn<Subdomain, KV<Subdomain, ThreatMatch>> {
@@ -72,14 +96,28 @@ public class SafeBrowsingTransforms {
      */
     private static final int BATCH_SIZE = 490;
 
+    /** Number of batches each worker keeps in flight by default. */
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    /** Number of API requests each worker sends per second by default. */
+    private static final double DEFAULT_MAX_REQUESTS_PER_SECOND = 10;
+
     /** Provides the SafeBrowsing API key at runtime. */
     private final ValueProvider<String> apiKeyProvider;
 
+    private final int batchSize;
+    private final int maxConcurrentRequests;
+    private final double maxRequestsPerSecond;
+
     /**
      * Maps a subdomain's {@code fullyQualifiedDomainName} to its corresponding {@link Subdomain} to
      * facilitate batching SafeBrowsing API requests.
      */
-    private final Map<String, Subdomain> subdomainBuffer = new LinkedHashMap<>(BATCH_SIZE);
+    private final Map<String, Subdomain> subdomainBuffer = new LinkedHashMap<>();
+
+    /** Results of the batches that are in flight, oldest first. */
+    private final Deque<Future<ImmutableSet<KV<Subdomain, ThreatMatch>>>> pendingResults =
+        new ArrayDeque<>();
 
     /**
      * Provides the HTTP client we use to interact with the SafeBrowsing API.
@@ -92,6 +130,20 @@ public class SafeBrowsingTransforms {
     /** Retries on receiving transient failures such as {@link IOException}. */
     private final Retrier retrier;
 
+    /** Executors that run the API requests in this JVM, by number of threads. */
+    private static final ConcurrentMap<Integer, ExecutorService> executors =
+        new ConcurrentHashMap<>();
+
+    /** Rate limiters for the API requests sent from this JVM, by permits per second. */
+    private static final ConcurrentMap<Double, RateLimiter> rateLimiters =
+        new ConcurrentHashMap<>();
+
+    /** Runs the API requests. Shared per worker, and isn't serializable. */
+    private transient ExecutorService executor;
+
+    /** Limits the rate of API requests. Shared per worker, and isn't serializable. */
+    private transient RateLimiter rateLimiter;
+
     /**
      * Constructs a {@link EvaluateSafeBrowsingFn} that gets its API key from the given provider.
      *
@@ -104,9 +156,13 @@ public class SafeBrowsingTransforms {
      */
     @SuppressWarnings("unchecked")
     EvaluateSafeBrowsingFn(ValueProvider<String> apiKeyProvider, Retrier retrier) {
-      this.apiKeyProvider = apiKeyProvider;
-      this.retrier = retrier;
-      this.closeableHttpClientSupplier = (Supplier & Serializable) HttpClients::createDefault;
+      this(
+          apiKeyProvider,
+          retrier,
+          (Supplier & Serializable) HttpClients::createDefault,
+          BATCH_SIZE,
+          DEFAULT_MAX_CONCURRENT_REQUESTS,
+          DEFAULT_MAX_REQUESTS_PER_SECOND);
     }
 
     /**
@@ -120,17 +176,85 @@ public class SafeBrowsingTransforms {
         ValueProvider<String> apiKeyProvider,
         Retrier retrier,
         Supplier<CloseableHttpClient> clientSupplier) {
+      this(
+          apiKeyProvider,
+          retrier,
+          clientSupplier,
+          BATCH_SIZE,
+          DEFAULT_MAX_CONCURRENT_REQUESTS,
+          DEFAULT_MAX_REQUESTS_PER_SECOND);
+    }
+
+    /**
+     * Constructs a {@link EvaluateSafeBrowsingFn} with the given batching and concurrency limits.
+     *
+     * @param batchSize the number of subdomains to check in each API request
+     * @param maxConcurrentRequests the number of API requests each worker keeps in flight, across
+     *     all of its processing threads; 1 sends one request at a time
+     * @param maxRequestsPerSecond the number of API requests each worker sends per second, across
+     *     all of its processing threads
+     */
+    @VisibleForTesting
+    EvaluateSafeBrowsingFn(
+        ValueProvider<String> apiKeyProvider,
+        Retrier retrier,
+        Supplier<CloseableHttpClient> clientSupplier,
+        int batchSize,
+        int maxConcurrentRequests,
+        double maxRequestsPerSecond) {
+      checkArgument(batchSize > 0 && batchSize <= BATCH_SIZE, "Invalid batch size %s", batchSize);
+      checkArgument(maxConcurrentRequests > 0, "maxConcurrentRequests must be positive");
+      checkArgument(maxRequestsPerSecond > 0, "maxRequestsPerSecond must be positive");
       this.apiKeyProvider = apiKeyProvider;
       this.retrier = retrier;
       this.closeableHttpClientSupplier = clientSupplier;
+      this.batchSize = batchSize;
+      this.maxConcurrentRequests = maxConcurrentRequests;
+      this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    @Setup
+    public void setup() {
+      // These live as long as the JVM, since other instances may be using them at any time. The
+      // executor's threads are daemon threads, so they don't keep the worker from exiting.
+      executor =
+          executors.computeIfAbsent(
+              maxConcurrentRequests,
+              numThreads ->
+                  Executors.newFixedThreadPool(
+                      numThreads,
+                      new ThreadFactoryBuilder()
+                          .setDaemon(true)
+                          .setNameFormat("safe-browsing-request-%d")
+                          .build()));
+      rateLimiter = rateLimiters.computeIfAbsent(maxRequestsPerSecond, RateLimiter::create);
+    }
+
+    /** Stops waiting for the batches still in flight, which only a failed bundle leaves behind. */
+    @Teardown
+    public void teardown() {
+      pendingResults.forEach(future -> future.cancel(true));
+      pendingResults.clear();
+    }
+
+    /** Discards anything left over from a previous bundle that failed. */
+    @StartBundle
+    public void startBundle() {
+      subdomainBuffer.clear();
+      pendingResults.forEach(future -> future.cancel(true));
+      pendingResults.clear();
     }
 
     /** Evaluates any buffered {@link Subdomain} objects upon completing the bundle. */
     @FinishBundle
     public void finishBundle(FinishBundleContext context) {
       if (!subdomainBuffer.isEmpty()) {
-        ImmutableSet<KV<Subdomain, ThreatMatch>> results = evaluateAndFlush();
-        results.forEach((kv) -> context.output(kv, Instant.now(), GlobalWindow.INSTANCE));
+        submitBuffer();
+      }
+      Consumer<KV<Subdomain, ThreatMatch>> output =
+          (kv) -> context.output(kv, Instant.now(), GlobalWindow.INSTANCE);
+      while (!pendingResults.isEmpty()) {
+        outputOldestResults(output);
       }
     }
 
@@ -142,19 +266,47 @@ public class SafeBrowsingTransforms {
     public void processElement(ProcessContext context) {
       Subdomain subdomain = context.element();
       subdomainBuffer.put(subdomain.fullyQualifiedDomainName(), subdomain);
-      if (subdomainBuffer.size() >= BATCH_SIZE) {
-        ImmutableSet<KV<Subdomain, ThreatMatch>> results = evaluateAndFlush();
-        results.forEach(context::output);
+      if (subdomainBuffer.size() >= batchSize) {
+        submitBuffer();
+      }
+      // Emit results as they become available, and wait for them once at the concurrency limit.
+      while (!pendingResults.isEmpty()
+          && (pendingResults.size() >= maxConcurrentRequests
+              || pendingResults.peekFirst().isDone())) {
+        outputOldestResults(context::output);
+      }
+    }
+
+    /** Starts evaluating the buffered {@link Subdomain} objects, and flushes the buffer. */
+    private void submitBuffer() {
+      ImmutableMap<String, Subdomain> batch = ImmutableMap.copyOf(subdomainBuffer);
+      subdomainBuffer.clear();
+      pendingResults.addLast(executor.submit(() -> evaluate(batch)));
+    }
+
+    /** Waits for the oldest batch in flight to be evaluated, and outputs its results. */
+    private void outputOldestResults(Consumer<KV<Subdomain, ThreatMatch>> output) {
+      ImmutableSet<KV<Subdomain, ThreatMatch>> results;
+      try {
+        results = pendingResults.removeFirst().get();
+      } catch (ExecutionException e) {
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new RuntimeException(e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while waiting for SafeBrowsing results", e);
       }
+      results.forEach(output);
     }
 
     /**
-     * Evaluates all {@link Subdomain} objects in the buffer and returns a list of key-value pairs
+     * Evaluates all {@link Subdomain} objects in the batch and returns a list of key-value pairs
      * from {@link Subdomain} to its SafeBrowsing report.
      *
      * <p>If a {@link Subdomain} is safe according to the API, it will not emit a report.
      */
-    private ImmutableSet<KV<Subdomain, ThreatMatch>> evaluateAndFlush() {
+    private ImmutableSet<KV<Subdomain, ThreatMatch>> evaluate(
+        ImmutableMap<String, Subdomain> batch) {
       ImmutableSet.Builder<KV<Subdomain, ThreatMatch>> resultBuilder = new ImmutableSet.Builder<>();
       try {
         URIBuilder uriBuilder = new URIBuilder(SAFE_BROWSING_URL);
@@ -164,32 +316,31 @@ public class SafeBrowsingTransforms {
         HttpPost httpPost = new HttpPost(uriBuilder.build());
         httpPost.addHeader(HTTP.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
 
-        JSONObject requestBody = createRequestBody();
+        JSONObject requestBody = createRequestBody(batch);
         httpPost.setEntity(new ByteArrayEntity(requestBody.toString().getBytes(UTF_8)));
         // Retry transient exceptions such as IOException
         retrier.callWithRetry(
             () -> {
+              rateLimiter.acquire();
               try (CloseableHttpClient client = closeableHttpClientSupplier.get();
                   CloseableHttpResponse response = client.execute(httpPost)) {
-                processResponse(response, resultBuilder);
+                processResponse(response, batch, resultBuilder);
               }
             },
             IOException.class);
       } catch (URISyntaxException | JSONException  e) {
         // Fail the pipeline on a parsing exception- this indicates the API likely changed.
         throw new RuntimeException("Caught parsing exception, failing pipeline.", e);
-      } finally {
-        // Flush the buffer
-        subdomainBuffer.clear();
       }
       return resultBuilder.build();
     }
 
     /** Creates a JSON object matching the request format for the SafeBrowsing API. */
-    private JSONObject createRequestBody() throws JSONException {
+    private static JSONObject createRequestBody(ImmutableMap<String, Subdomain> batch)
+        throws JSONException {
       // Accumulate all domain names to evaluate.
       JSONArray threatArray = new JSONArray();
-      for (String fullyQualifiedDomainName : subdomainBuffer.keySet()) {
+      for (String fullyQualifiedDomainName : batch.keySet()) {
         threatArray.put(new JSONObject().put("url", fullyQualifiedDomainName));
       }
       // Construct the JSON request body
@@ -215,8 +366,9 @@ public class SafeBrowsingTransforms {
      * Iterates through all threat matches in the API response and adds them to the {@code
      * resultBuilder}.
      */
-    private void processResponse(
+    private static void processResponse(
         CloseableHttpResponse response,
+        ImmutableMap<String, Subdomain> batch,
         ImmutableSet.Builder<KV<Subdomain, ThreatMatch>> resultBuilder)
         throws JSONException, IOException {
       int statusCode = response.getStatusLine().getStatusCode();
@@ -237,7 +389,7 @@ public class SafeBrowsingTransforms {
           for (int i = 0; i < threatMatches.length(); i++) {
             JSONObject match = threatMatches.getJSONObject(i);
             String url = match.getJSONObject("threat").getString("url");
-            Subdomain subdomain = subdomainBuffer.get(url);
+            Subdomain subdomain = batch.get(url);
             resultBuilder.add(
                 KV.of(subdomain, ThreatMatch.create(match, subdomain.fullyQualifiedDomainName())));
           }
@@ -20,17 +20,25 @@ import static google.registry.beam.BeamUtils.getQueryFromFile;
 import com.google.auth.oauth2.GoogleCredentials;
 import com.google.auto.value.AutoValue;
 import google.registry.beam.spec11.SafeBrowsingTransforms.EvaluateSafeBrowsingFn;
+import google.registry.beam.spec11.Subdomain.SubdomainCoder;
+import google.registry.beam.spec11.ThreatMatch.ThreatMatchCoder;
 import google.registry.config.CredentialModule.LocalCredential;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.util.GoogleCredentialsBundle;
 import google.registry.util.Retrier;
 import google.registry.util.SqlTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import javax.inject.Inject;
 import org.apache.beam.runners.dataflow.DataflowRunner;
 import org.apache.beam.runners.dataflow.options.DataflowPipelineOptions;
 import org.apache.beam.sdk.Pipeline;
-import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.io.TextIO;
 import org.apache.beam.sdk.io.gcp.bigquery.BigQueryIO;
 import org.apache.beam.sdk.options.Description;
@@ -156,7 +164,7 @@ public class Spec11Pipeline implements Serializable {
                         .put("REGISTRAR_TABLE", "Registrar")
                         .put("DOMAIN_BASE_TABLE", "DomainBase")
                         .build())
-                .withCoder(SerializableCoder.of(Subdomain.class))
+                .withCoder(new SubdomainCoder())
                 .usingStandardSql()
                 .withoutValidation()
                 .withTemplateCompatibility());
@@ -178,7 +186,9 @@ public class Spec11Pipeline implements Serializable {
       EvaluateSafeBrowsingFn evaluateSafeBrowsingFn,
       ValueProvider<String> dateProvider) {
     PCollection<KV<Subdomain, ThreatMatch>> subdomains =
-        domains.apply("Run through SafeBrowsingAPI", ParDo.of(evaluateSafeBrowsingFn));
+        domains
+            .apply("Run through SafeBrowsingAPI", ParDo.of(evaluateSafeBrowsingFn))
+            .setCoder(KvCoder.of(new SubdomainCoder(), new ThreatMatchCoder()));
     subdomains
         .apply(
             "Map registrar client ID to email/ThreatMatch pair",
@@ -191,6 +201,7 @@ public class Spec11Pipeline implements Serializable {
                             kv.getKey().registrarClientId(),
                             EmailAndThreatMatch.create(
                                 kv.getKey().registrarEmailAddress(), kv.getValue()))))
+        .setCoder(KvCoder.of(StringUtf8Coder.of(), new EmailAndThreatMatchCoder()))
         .apply("Group by registrar client ID", GroupByKey.create())
         .apply(
             "Convert results to JSON format",
@@ -246,4 +257,23 @@ public class Spec11Pipeline implements Serializable {
       return new AutoValue_Spec11Pipeline_EmailAndThreatMatch(email, threatMatch);
     }
   }
+
+  /** Coder that provides deterministic (de)serialization for {@code EmailAndThreatMatch}. */
+  static class EmailAndThreatMatchCoder extends AtomicCoder<EmailAndThreatMatch> {
+
+    private static final Coder<String> STRING_CODER = StringUtf8Coder.of();
+    private static final Coder<ThreatMatch> THREAT_MATCH_CODER = new ThreatMatchCoder();
+
+    @Override
+    public void encode(EmailAndThreatMatch value, OutputStream outStream) throws IOException {
+      STRING_CODER.encode(value.email(), outStream);
+      THREAT_MATCH_CODER.encode(value.threatMatch(), outStream);
+    }
+
+    @Override
+    public EmailAndThreatMatch decode(InputStream inStream) throws IOException {
+      return EmailAndThreatMatch.create(
+          STRING_CODER.decode(inStream), THREAT_MATCH_CODER.decode(inStream));
+    }
+  }
 }
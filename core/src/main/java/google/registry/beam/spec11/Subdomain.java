@@ -20,8 +20,14 @@ import static google.registry.beam.BeamUtils.extractField;
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.io.gcp.bigquery.SchemaAndRecord;
 
 /**
@@ -73,5 +79,26 @@ public abstract class Subdomain implements Serializable {
     return new AutoValue_Subdomain(
         fullyQualifiedDomainName, registrarClientId, registrarEmailAddress);
   }
+
+  /** Coder that provides deterministic (de)serialization for {@code Subdomain}. */
+  static class SubdomainCoder extends AtomicCoder<Subdomain> {
+
+    private static final Coder<String> STRING_CODER = StringUtf8Coder.of();
+
+    @Override
+    public void encode(Subdomain value, OutputStream outStream) throws IOException {
+      STRING_CODER.encode(value.fullyQualifiedDomainName(), outStream);
+      STRING_CODER.encode(value.registrarClientId(), outStream);
+      STRING_CODER.encode(value.registrarEmailAddress(), outStream);
+    }
+
+    @Override
+    public Subdomain decode(InputStream inStream) throws IOException {
+      return new AutoValue_Subdomain(
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream));
+    }
+  }
 }
 
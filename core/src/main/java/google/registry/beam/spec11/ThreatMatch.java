@@ -15,7 +15,13 @@
 package google.registry.beam.spec11;
 
 import com.google.auto.value.AutoValue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import org.apache.beam.sdk.coders.AtomicCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -77,4 +83,27 @@ public abstract class ThreatMatch implements Serializable {
         threatMatch.getString(METADATA_FIELD),
         threatMatch.getString(DOMAIN_NAME_FIELD));
   }
+
+  /** Coder that provides deterministic (de)serialization for {@code ThreatMatch}. */
+  static class ThreatMatchCoder extends AtomicCoder<ThreatMatch> {
+
+    private static final Coder<String> STRING_CODER = StringUtf8Coder.of();
+
+    @Override
+    public void encode(ThreatMatch value, OutputStream outStream) throws IOException {
+      STRING_CODER.encode(value.threatType(), outStream);
+      STRING_CODER.encode(value.platformType(), outStream);
+      STRING_CODER.encode(value.metadata(), outStream);
+      STRING_CODER.encode(value.fullyQualifiedDomainName(), outStream);
+    }
+
+    @Override
+    public ThreatMatch decode(InputStream inStream) throws IOException {
+      return new AutoValue_ThreatMatch(
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream),
+          STRING_CODER.decode(inStream));
+    }
+  }
 }
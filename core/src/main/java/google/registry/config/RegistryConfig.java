@@ -262,6 +262,29 @@ public final class RegistryConfig {
       return 100;
     }
 
+    /**
+     * Number of batches of commit log data whose entities are loaded concurrently when exporting a
+     * commit log diff, including the one being written out.
+     *
+     * @see google.registry.backup.ExportCommitLogDiffAction
+     */
+    @Provides
+    @Config("commitLogDiffExportBatchesInFlight")
+    public static int provideCommitLogDiffExportBatchesInFlight() {
+      return 4;
+    }
+
+    /**
+     * Whether to gzip commit log diffs exported to GCS.
+     *
+     * @see google.registry.backup.ExportCommitLogDiffAction
+     */
+    @Provides
+    @Config("commitLogDiffExportCompression")
+    public static boolean provideCommitLogDiffExportCompression(RegistryConfigSettings config) {
+      return config.datastore.compressCommitLogDiffs;
+    }
+
     /**
      * Returns the Google Cloud Storage bucket for staging BRDA escrow deposits.
      *
@@ -1013,6 +1036,63 @@ public final class RegistryConfig {
       return 100;
     }
 
+    /**
+     * Returns whether RDAP domain searches should be answered from the in-memory search index.
+     *
+     * @see google.registry.rdap.RdapDomainSearchIndex
+     */
+    @Provides
+    @Config("rdapSearchIndexEnabled")
+    public static boolean provideRdapSearchIndexEnabled(RegistryConfigSettings config) {
+      return config.caching.rdapSearchIndexEnabled;
+    }
+
+    /**
+     * Returns the amount of time after which the RDAP domain search index is refreshed.
+     *
+     * @see google.registry.rdap.RdapDomainSearchIndex
+     */
+    @Provides
+    @Config("rdapSearchIndexRefreshInterval")
+    public static Duration provideRdapSearchIndexRefreshInterval(RegistryConfigSettings config) {
+      return Duration.standardSeconds(config.caching.rdapSearchIndexRefreshSeconds);
+    }
+
+    /**
+     * Returns the maximum number of domains that the RDAP domain search index may hold.
+     *
+     * @see google.registry.rdap.RdapDomainSearchIndex
+     */
+    @Provides
+    @Config("rdapSearchIndexMaxDomains")
+    public static int provideRdapSearchIndexMaxDomains(RegistryConfigSettings config) {
+      return config.caching.rdapSearchIndexMaxDomains;
+    }
+
+    /**
+     * Returns whether the check API should answer whether domains are registered from the
+     * in-memory domain availability index.
+     *
+     * @see google.registry.flows.DomainAvailabilityIndex
+     */
+    @Provides
+    @Config("domainAvailabilityIndexEnabled")
+    public static boolean provideDomainAvailabilityIndexEnabled(RegistryConfigSettings config) {
+      return config.caching.domainAvailabilityIndexEnabled;
+    }
+
+    /**
+     * Returns the amount of time after which the domain availability index is refreshed.
+     *
+     * @see google.registry.flows.DomainAvailabilityIndex
+     */
+    @Provides
+    @Config("domainAvailabilityIndexRefreshInterval")
+    public static Duration provideDomainAvailabilityIndexRefreshInterval(
+        RegistryConfigSettings config) {
+      return Duration.standardSeconds(config.caching.domainAvailabilityIndexRefreshSeconds);
+    }
+
     /**
      * Redaction text for email address in WHOIS
      *
@@ -1366,6 +1446,15 @@ public final class RegistryConfig {
     return CONFIG_SETTINGS.get().datastore.commitLogBucketsNum;
   }
 
+  /**
+   * Returns whether the entities saved in commit log mutations should be compressed.
+   *
+   * @see google.registry.model.ofy.CommitLogMutation
+   */
+  public static boolean shouldCompressCommitLogMutations() {
+    return CONFIG_SETTINGS.get().datastore.compressCommitLogMutations;
+  }
+
   /**
    * Returns the length of time before commit logs should be deleted from Datastore.
    *
@@ -1446,6 +1535,14 @@ public final class RegistryConfig {
     return CONFIG_SETTINGS.get().caching.staticPremiumListMaxCachedEntries;
   }
 
+  /**
+   * Returns whether premium prices are looked up in an in-memory snapshot of the whole premium list
+   * revision, rather than in per-entry caches.
+   */
+  public static boolean isPremiumListSnapshotsEnabled() {
+    return CONFIG_SETTINGS.get().caching.premiumListSnapshotsEnabled;
+  }
+
   public static boolean isEppResourceCachingEnabled() {
     return CONFIG_SETTINGS.get().caching.eppResourceCachingEnabled;
   }
@@ -1467,6 +1564,49 @@ public final class RegistryConfig {
     return CONFIG_SETTINGS.get().caching.eppResourceMaxCachedEntries;
   }
 
+  /**
+   * Returns the amount of time a rendered WHOIS domain response should be cached in memory.
+   *
+   * @see google.registry.whois.WhoisResponseCache
+   */
+  public static Duration getWhoisResponseCachingDuration() {
+    return Duration.standardSeconds(CONFIG_SETTINGS.get().caching.whoisResponseCachingSeconds);
+  }
+
+  /** Returns the maximum number of rendered WHOIS domain responses to keep in in-memory cache. */
+  public static int getWhoisResponseMaxCachedEntries() {
+    return CONFIG_SETTINGS.get().caching.whoisResponseMaxCachedEntries;
+  }
+
+  /**
+   * Returns the amount of time the poll message queue length of a registrar should be cached.
+   *
+   * @see google.registry.flows.poll.PollMessageQueueLengthCache
+   */
+  public static Duration getPollMessageQueueLengthCachingDuration() {
+    return Duration.standardSeconds(
+        CONFIG_SETTINGS.get().caching.pollMessageQueueLengthCachingSeconds);
+  }
+
+  /**
+   * Returns how often the in-process flow phase latency histograms are summarized to the logs.
+   *
+   * @see google.registry.monitoring.whitebox.FlowPhaseHistograms
+   */
+  public static Duration getFlowPhaseHistogramsFlushInterval() {
+    return Duration.standardSeconds(CONFIG_SETTINGS.get().monitoring.writeIntervalSeconds);
+  }
+
+  /**
+   * Returns how often the in-process Datastore transaction contention statistics are summarized to
+   * the logs.
+   *
+   * @see google.registry.model.ofy.TransactionContention
+   */
+  public static Duration getTransactionContentionFlushInterval() {
+    return Duration.standardSeconds(CONFIG_SETTINGS.get().monitoring.writeIntervalSeconds);
+  }
+
   /** Returns the email address that outgoing emails from the app are sent from. */
   public static InternetAddress getGSuiteOutgoingEmailAddress() {
     return parseEmailAddress(CONFIG_SETTINGS.get().gSuite.outgoingEmailAddress);
@@ -1492,11 +1632,16 @@ public final class RegistryConfig {
     return CONFIG_SETTINGS.get().datastore.eppResourceIndexBucketsNum;
   }
 
-  /** Returns the base retry duration that gets doubled after each failure within {@code Ofy}. */
+  /** Returns the shortest time that {@code Ofy} waits before retrying a failed transaction. */
   public static Duration getBaseOfyRetryDuration() {
     return Duration.millis(CONFIG_SETTINGS.get().datastore.baseOfyRetryMillis);
   }
 
+  /** Returns the total time the Datastore transactions of a request may spend waiting to retry. */
+  public static Duration getOfyRetryBudget() {
+    return Duration.standardSeconds(CONFIG_SETTINGS.get().datastore.ofyRetryBudgetSeconds);
+  }
+
   /** Returns the default database transaction isolation. */
   public static String getHibernateConnectionIsolation() {
     return CONFIG_SETTINGS.get().hibernate.connectionIsolation;
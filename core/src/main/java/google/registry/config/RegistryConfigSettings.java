@@ -103,8 +103,11 @@ public class RegistryConfigSettings {
   /** Configuration for Cloud Datastore. */
   public static class Datastore {
     public int commitLogBucketsNum;
+    public boolean compressCommitLogMutations;
+    public boolean compressCommitLogDiffs;
     public int eppResourceIndexBucketsNum;
     public int baseOfyRetryMillis;
+    public int ofyRetryBudgetSeconds;
   }
 
   /** Configuration for Hibernate. */
@@ -141,9 +144,18 @@ public class RegistryConfigSettings {
     public int domainLabelCachingSeconds;
     public int singletonCachePersistSeconds;
     public int staticPremiumListMaxCachedEntries;
+    public boolean premiumListSnapshotsEnabled;
     public boolean eppResourceCachingEnabled;
     public int eppResourceCachingSeconds;
     public int eppResourceMaxCachedEntries;
+    public boolean rdapSearchIndexEnabled;
+    public int rdapSearchIndexRefreshSeconds;
+    public int rdapSearchIndexMaxDomains;
+    public boolean domainAvailabilityIndexEnabled;
+    public int domainAvailabilityIndexRefreshSeconds;
+    public int whoisResponseCachingSeconds;
+    public int whoisResponseMaxCachedEntries;
+    public int pollMessageQueueLengthCachingSeconds;
   }
 
   /** Configuration for ICANN monthly reporting. */
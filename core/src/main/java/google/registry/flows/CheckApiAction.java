@@ -42,6 +42,7 @@ import com.google.common.net.InternetDomainName;
 import com.google.common.net.MediaType;
 import dagger.Module;
 import dagger.Provides;
+import google.registry.config.RegistryConfig.Config;
 import google.registry.flows.domain.DomainFlowUtils.BadCommandForRegistryPhaseException;
 import google.registry.flows.domain.DomainFlowUtils.InvalidIdnDomainLabelException;
 import google.registry.model.domain.DomainBase;
@@ -82,6 +83,8 @@ public class CheckApiAction implements Runnable {
   @Inject Clock clock;
   @Inject CheckApiMetric.Builder metricBuilder;
   @Inject CheckApiMetrics checkApiMetrics;
+  @Inject @Config("domainAvailabilityIndexEnabled") boolean availabilityIndexEnabled;
+  @Inject DomainAvailabilityIndex availabilityIndex;
 
   @Inject
   CheckApiAction() {}
@@ -124,7 +127,7 @@ public class CheckApiAction implements Runnable {
         return fail("Check in this TLD is not allowed in the current registry phase");
       }
 
-      boolean isRegistered = checkExists(domainString, now);
+      boolean isRegistered = checkExists(domainName, now);
       Optional<String> reservedError = Optional.empty();
       boolean isReserved = false;
       if (!isRegistered) {
@@ -155,8 +158,16 @@ public class CheckApiAction implements Runnable {
     }
   }
 
-  private boolean checkExists(String domainString, DateTime now) {
-    return !ForeignKeyIndex.loadCached(DomainBase.class, ImmutableList.of(domainString), now)
+  private boolean checkExists(InternetDomainName domainName, DateTime now) {
+    if (availabilityIndexEnabled) {
+      // Until the index has been built on this instance, check Datastore instead.
+      Optional<Boolean> registered = availabilityIndex.isRegistered(domainName, now);
+      if (registered.isPresent()) {
+        return registered.get();
+      }
+    }
+    return !ForeignKeyIndex.loadCached(
+            DomainBase.class, ImmutableList.of(domainName.toString()), now)
         .isEmpty();
   }
 
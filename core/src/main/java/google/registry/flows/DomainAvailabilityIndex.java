@@ -0,0 +1,269 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.collect.Iterables.partition;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.DateTimeUtils.END_OF_TIME;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.net.InternetDomainName;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+import google.registry.config.RegistryConfig.Config;
+import google.registry.model.index.ForeignKeyIndex;
+import google.registry.model.index.ForeignKeyIndex.ForeignKeyDomainIndex;
+import google.registry.model.ofy.CommitLogMutation;
+import google.registry.util.Clock;
+import google.registry.util.NonFinalForTesting;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * In-memory index of which domain names are registered, used to answer availability checks.
+ *
+ * <p>The index holds the labels of all active domains of each TLD, plus the deletion times of
+ * those that are pending delete, so that a domain becomes available at exactly the time it is
+ * deleted, without waiting for a refresh. It is built from the {@link ForeignKeyDomainIndex}es by
+ * the checks made on an instance, each of which loads the next chunk of at most {@link
+ * #buildChunkSize} of them, so that no request has to scan all of them. Once built, it is refreshed
+ * incrementally by reading the keys of the {@link CommitLogMutation}s written since the last
+ * refresh (or since the build started) and reloading the foreign key indexes they refer to. Writes
+ * made without backups are not seen by the refresh, nor are hard deletions; neither happens to
+ * domains in normal operation.
+ *
+ * <p>Only one request builds or refreshes the index at a time, and checks never wait for it: while
+ * the index is being built, checks get no answer from it and have to load the foreign key index of
+ * the domain instead, and while it is being refreshed, they get answers as of the previous refresh.
+ *
+ * <p>Answers are only as fresh as the last refresh, so a domain created or restored since then is
+ * reported as available. This is fine for the public check API, whose answers are advisory; EPP
+ * flows must keep checking Datastore.
+ */
+@Singleton
+public class DomainAvailabilityIndex {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /**
+   * The amount by which each incremental refresh overlaps the previous one.
+   *
+   * <p>Datastore transactions can't run for longer than sixty seconds, so re-reading the last
+   * minute of commit logs catches transactions that became visible after the previous refresh.
+   */
+  private static final Duration REFRESH_OVERLAP = Duration.standardMinutes(1);
+
+  /** The number of foreign key indexes to load from Datastore at once when applying changes. */
+  private static final int LOAD_BATCH_SIZE = 500;
+
+  /** The number of foreign key indexes that each check loads while the index is being built. */
+  @NonFinalForTesting static int buildChunkSize = 5000;
+
+  private final Clock clock;
+  private final Duration refreshInterval;
+
+  /** Held while building or refreshing the index, which checks never wait for. */
+  private final ReentrantLock refreshLock = new ReentrantLock();
+
+  /** The labels of the active domains in each TLD. */
+  private final ConcurrentMap<String, Set<String>> labelsByTld = new ConcurrentHashMap<>();
+
+  /** The deletion times of active domains that are pending delete, by fully qualified name. */
+  private final ConcurrentMap<String, DateTime> pendingDeletionTimes = new ConcurrentHashMap<>();
+
+  /** The time the current build started, while the index is being built. */
+  @GuardedBy("refreshLock")
+  @Nullable
+  private DateTime buildStartTime;
+
+  /** Where the next chunk of the current build starts, if it isn't the first. */
+  @GuardedBy("refreshLock")
+  @Nullable
+  private Cursor buildCursor;
+
+  /** The time of the last refresh, which is only set once the index has been built. */
+  @Nullable private volatile DateTime lastRefreshTime;
+
+  @Inject
+  DomainAvailabilityIndex(
+      Clock clock, @Config("domainAvailabilityIndexRefreshInterval") Duration refreshInterval) {
+    this.clock = clock;
+    this.refreshInterval = refreshInterval;
+  }
+
+  /**
+   * Returns whether a domain name was registered at the given time, as of the last refresh, or
+   * empty if the index hasn't been built yet, in which case Datastore has to be checked instead.
+   *
+   * @param domainName a valid domain name, consisting of a single label under a TLD
+   */
+  public Optional<Boolean> isRegistered(InternetDomainName domainName, DateTime now) {
+    refreshIfStale();
+    if (lastRefreshTime == null) {
+      return Optional.empty();
+    }
+    Set<String> labels = labelsByTld.get(domainName.parent().toString());
+    if (labels == null || !labels.contains(domainName.parts().get(0))) {
+      return Optional.of(false);
+    }
+    DateTime deletionTime = pendingDeletionTimes.get(domainName.toString());
+    return Optional.of(deletionTime == null || now.isBefore(deletionTime));
+  }
+
+  /**
+   * Builds the next chunk of the index, or brings it up to date if it hasn't been refreshed within
+   * the refresh interval, unless another request is already doing so.
+   */
+  private void refreshIfStale() {
+    DateTime now = clock.nowUtc();
+    if (lastRefreshTime != null && now.isBefore(lastRefreshTime.plus(refreshInterval))) {
+      return;
+    }
+    if (!refreshLock.tryLock()) {
+      return;
+    }
+    try {
+      // Recheck, in case another request refreshed the index since the check above.
+      DateTime previousRefreshTime = lastRefreshTime;
+      if (previousRefreshTime == null) {
+        buildNextChunk(now);
+      } else if (!now.isBefore(previousRefreshTime.plus(refreshInterval))) {
+        applyChangesSince(previousRefreshTime.minus(REFRESH_OVERLAP), now);
+        prunePendingDeletes(now);
+        lastRefreshTime = now;
+      }
+    } catch (RuntimeException e) {
+      // Keep the index as it is, and try again on the next check.
+      logger.atWarning().withCause(e).log("Failed to refresh the domain availability index.");
+    } finally {
+      refreshLock.unlock();
+    }
+  }
+
+  /**
+   * Loads the next chunk of active domains into the index, and once there are none left, catches
+   * up on the changes made since the build started.
+   */
+  @GuardedBy("refreshLock")
+  private void buildNextChunk(DateTime now) {
+    if (buildStartTime == null) {
+      buildStartTime = now;
+      labelsByTld.clear();
+      pendingDeletionTimes.clear();
+    }
+    Query<ForeignKeyDomainIndex> query =
+        ofy()
+            .load()
+            .type(ForeignKeyDomainIndex.class)
+            .filter("deletionTime >", buildStartTime)
+            .limit(buildChunkSize);
+    if (buildCursor != null) {
+      query = query.startAt(buildCursor);
+    }
+    QueryResultIterator<ForeignKeyDomainIndex> fkis = query.iterator();
+    int numLoaded = 0;
+    while (fkis.hasNext()) {
+      index(fkis.next(), now);
+      if (++numLoaded % LOAD_BATCH_SIZE == 0) {
+        ofy().clearSessionCache();
+      }
+    }
+    ofy().clearSessionCache();
+    if (numLoaded == buildChunkSize) {
+      buildCursor = fkis.getCursor();
+      return;
+    }
+    // Domains that changed after their chunk was loaded are picked up from the commit logs.
+    applyChangesSince(buildStartTime.minus(REFRESH_OVERLAP), now);
+    prunePendingDeletes(now);
+    buildStartTime = null;
+    buildCursor = null;
+    lastRefreshTime = now;
+    logger.atInfo().log("Built domain availability index with %d TLDs.", labelsByTld.size());
+  }
+
+  @GuardedBy("refreshLock")
+  private void applyChangesSince(DateTime lowerBound, DateTime now) {
+    ImmutableSet<Key<ForeignKeyDomainIndex>> changedKeys =
+        CommitLogMutation.loadKeysOfEntitiesSavedSince(ForeignKeyDomainIndex.class, lowerBound);
+    for (List<Key<ForeignKeyDomainIndex>> batch : partition(changedKeys, LOAD_BATCH_SIZE)) {
+      for (ForeignKeyDomainIndex fki : ofy().load().keys(batch).values()) {
+        index(fki, now);
+      }
+      ofy().clearSessionCache();
+    }
+    logger.atInfo().log(
+        "Applied %d changed domains to domain availability index.", changedKeys.size());
+  }
+
+  /** Removes all pending deletes whose deletion time has passed. */
+  @GuardedBy("refreshLock")
+  private void prunePendingDeletes(DateTime now) {
+    for (Map.Entry<String, DateTime> entry : pendingDeletionTimes.entrySet()) {
+      if (!now.isBefore(entry.getValue())) {
+        remove(entry.getKey());
+      }
+    }
+  }
+
+  /**
+   * Adds, updates or removes a single domain name, depending on whether it is still active.
+   *
+   * <p>The foreign key index of a name always points to its most recent registration, so it can be
+   * applied as is, regardless of what was indexed for that name before.
+   */
+  @GuardedBy("refreshLock")
+  private void index(ForeignKeyIndex<?> fki, DateTime now) {
+    String name = fki.getForeignKey();
+    DateTime deletionTime = fki.getDeletionTime();
+    if (!now.isBefore(deletionTime)) {
+      remove(name);
+      return;
+    }
+    if (deletionTime.isBefore(END_OF_TIME)) {
+      pendingDeletionTimes.put(name, deletionTime);
+    } else {
+      pendingDeletionTimes.remove(name);
+    }
+    int dot = name.indexOf('.');
+    labelsByTld
+        .computeIfAbsent(name.substring(dot + 1), tld -> ConcurrentHashMap.newKeySet())
+        .add(name.substring(0, dot));
+  }
+
+  @GuardedBy("refreshLock")
+  private void remove(String name) {
+    int dot = name.indexOf('.');
+    Set<String> labels = labelsByTld.get(name.substring(dot + 1));
+    if (labels != null) {
+      labels.remove(name.substring(0, dot));
+    }
+    pendingDeletionTimes.remove(name);
+  }
+}
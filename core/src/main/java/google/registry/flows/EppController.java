@@ -20,8 +20,10 @@ import static com.google.common.io.BaseEncoding.base64;
 import static google.registry.flows.FlowReporter.extractTlds;
 import static google.registry.flows.FlowUtils.unmarshalEpp;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.flogger.FluentLogger;
@@ -33,7 +35,9 @@ import google.registry.model.eppoutput.EppResponse;
 import google.registry.model.eppoutput.Result;
 import google.registry.model.eppoutput.Result.Code;
 import google.registry.monitoring.whitebox.EppMetric;
+import google.registry.monitoring.whitebox.FlowPhase;
 import java.util.Optional;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.json.simple.JSONValue;
 
@@ -53,6 +57,9 @@ public final class EppController {
   @Inject ServerTridProvider serverTridProvider;
   @Inject EppController() {}
 
+  /** The metric of the command handled, if it was recorded, for attributing later phases to. */
+  @Nullable private EppMetric metric;
+
   /** Reads EPP XML, executes the matching flow, and returns an {@link EppOutput}. */
   public EppOutput handleEppCommand(
       SessionMetadata sessionMetadata,
@@ -64,6 +71,7 @@ public final class EppController {
     eppMetricBuilder.setClientId(Optional.ofNullable(sessionMetadata.getClientId()));
     try {
       EppInput eppInput;
+      Stopwatch unmarshalStopwatch = Stopwatch.createStarted();
       try {
         eppInput = unmarshalEpp(EppInput.class, inputXmlBytes);
       } catch (EppException e) {
@@ -93,6 +101,9 @@ public final class EppController {
         eppMetricBuilder.setStatus(e.getResult().getCode());
         return getErrorResponse(
             e.getResult(), Trid.create(null, serverTridProvider.createServerTrid()));
+      } finally {
+        eppMetricBuilder.addPhaseTime(
+            FlowPhase.UNMARSHAL, unmarshalStopwatch.elapsed(NANOSECONDS));
       }
       if (!eppInput.getTargetIds().isEmpty()) {
         if (eppInput.isDomainType()) {
@@ -116,13 +127,25 @@ public final class EppController {
       return output;
     } finally {
       if (!isDryRun) {
-        EppMetric metric = eppMetricBuilder.build();
+        metric = eppMetricBuilder.build();
         eppMetrics.incrementEppRequests(metric);
         eppMetrics.recordProcessingTime(metric);
+        eppMetrics.recordPhaseTimes(metric, eppMetricBuilder.getPhaseTimes());
       }
     }
   }
 
+  /**
+   * Records the time taken to marshal the output of the command handled by this controller.
+   *
+   * <p>This is a no-op for dry runs, for which no metrics are recorded.
+   */
+  void recordMarshalTime(long nanos) {
+    if (metric != null) {
+      eppMetrics.recordPhaseTimes(metric, ImmutableMap.of(FlowPhase.MARSHAL, nanos));
+    }
+  }
+
   /** Runs an EPP flow and converts known exceptions into EPP error responses. */
   private EppOutput runFlowConvertEppErrors(FlowComponent flowComponent) {
     try {
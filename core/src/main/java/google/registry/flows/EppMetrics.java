@@ -16,12 +16,15 @@ package google.registry.flows;
 
 import static com.google.monitoring.metrics.EventMetric.DEFAULT_FITTER;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.monitoring.metrics.EventMetric;
 import com.google.monitoring.metrics.IncrementableMetric;
 import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.MetricRegistryImpl;
 import google.registry.monitoring.whitebox.EppMetric;
+import google.registry.monitoring.whitebox.FlowPhase;
+import google.registry.monitoring.whitebox.FlowPhaseHistograms;
 import javax.inject.Inject;
 
 /** EPP Instrumentation. */
@@ -104,6 +107,12 @@ public class EppMetrics {
     requestTime.record(processingTime, commandName, getTrafficType(tld).toString(), eppStatusCode);
   }
 
+  /** Records the time spent in each phase of an EPP request to the in-process histograms. */
+  public void recordPhaseTimes(EppMetric metric, ImmutableMap<FlowPhase, Long> phaseNanos) {
+    String commandName = metric.getCommandName().orElse("");
+    phaseNanos.forEach((phase, nanos) -> FlowPhaseHistograms.record(commandName, phase, nanos));
+  }
+
   private static TrafficType getTrafficType(String tld) {
     if (tld.endsWith("canary.test")) {
       return TrafficType.CANARY;
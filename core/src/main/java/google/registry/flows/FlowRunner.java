@@ -16,7 +16,9 @@ package google.registry.flows;
 
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.xml.XmlTransformer.prettyPrint;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.flogger.FluentLogger;
 import google.registry.flows.FlowModule.ClientId;
@@ -28,6 +30,7 @@ import google.registry.flows.session.LoginFlow;
 import google.registry.model.eppcommon.Trid;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.monitoring.whitebox.EppMetric;
+import google.registry.monitoring.whitebox.FlowPhase;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
@@ -71,20 +74,36 @@ public class FlowRunner {
       flowReporter.recordToLogs();
     }
     eppMetricBuilder.setCommandNameFromFlow(flowClass.getSimpleName());
+    Stopwatch runStopwatch = Stopwatch.createUnstarted();
     if (!isTransactional) {
-      EppOutput eppOutput = EppOutput.create(flowProvider.get().run());
+      runStopwatch.start();
+      EppOutput eppOutput;
+      try {
+        eppOutput = EppOutput.create(flowProvider.get().run());
+      } finally {
+        eppMetricBuilder.addPhaseTime(FlowPhase.RUN, runStopwatch.elapsed(NANOSECONDS));
+      }
       if (flowClass.equals(LoginFlow.class)) {
         // In LoginFlow, clientId isn't known until after the flow executes, so save it then.
         eppMetricBuilder.setClientId(sessionMetadata.getClientId());
       }
       return eppOutput;
     }
+    Stopwatch transactionStopwatch = Stopwatch.createStarted();
     try {
       return tm()
           .transact(
               () -> {
                 try {
-                  EppOutput output = EppOutput.create(flowProvider.get().run());
+                  // Only the last attempt counts as running the flow, with the time taken by any
+                  // retried attempts being attributed to the commit.
+                  runStopwatch.reset().start();
+                  EppOutput output;
+                  try {
+                    output = EppOutput.create(flowProvider.get().run());
+                  } finally {
+                    runStopwatch.stop();
+                  }
                   if (isDryRun) {
                     throw new DryRunException(output);
                   }
@@ -97,6 +116,11 @@ public class FlowRunner {
       return e.output;
     } catch (EppRuntimeException e) {
       throw e.getCause();
+    } finally {
+      long runNanos = runStopwatch.elapsed(NANOSECONDS);
+      eppMetricBuilder
+          .addPhaseTime(FlowPhase.RUN, runNanos)
+          .addPhaseTime(FlowPhase.COMMIT, transactionStopwatch.elapsed(NANOSECONDS) - runNanos);
     }
   }
 
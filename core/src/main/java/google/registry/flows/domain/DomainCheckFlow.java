@@ -62,6 +62,7 @@ import google.registry.model.eppoutput.CheckData.DomainCheck;
 import google.registry.model.eppoutput.CheckData.DomainCheckData;
 import google.registry.model.eppoutput.EppResponse;
 import google.registry.model.eppoutput.EppResponse.ResponseExtension;
+import google.registry.model.pricing.PremiumPricingEngine.DomainPrices;
 import google.registry.model.registry.Registry;
 import google.registry.model.registry.Registry.TldState;
 import google.registry.model.registry.label.ReservationType;
@@ -230,10 +231,22 @@ public final class DomainCheckFlow implements Flow {
       return ImmutableList.of(); // No fee checks were requested.
     }
     FeeCheckCommandExtension<?, ?> feeCheck = feeCheckOpt.get();
-    ImmutableList.Builder<FeeCheckResponseExtensionItem> responseItems =
+    // Fee check items have value equality, and a check may repeat one, so keep them in a list.
+    ImmutableList.Builder<Map.Entry<FeeCheckCommandExtensionItem, Set<String>>> namesByItem =
         new ImmutableList.Builder<>();
+    ImmutableSet.Builder<String> namesToPrice = new ImmutableSet.Builder<>();
     for (FeeCheckCommandExtensionItem feeCheckItem : feeCheck.getItems()) {
-      for (String domainName : getDomainNamesToCheckForFee(feeCheckItem, domainNames.keySet())) {
+      Set<String> names = getDomainNamesToCheckForFee(feeCheckItem, domainNames.keySet());
+      namesByItem.add(Maps.immutableEntry(feeCheckItem, names));
+      namesToPrice.addAll(names);
+    }
+    // Price all the names at once, rather than once per name and fee command.
+    ImmutableMap<String, DomainPrices> prices = pricingLogic.getPrices(namesToPrice.build(), now);
+    ImmutableList.Builder<FeeCheckResponseExtensionItem> responseItems =
+        new ImmutableList.Builder<>();
+    for (Map.Entry<FeeCheckCommandExtensionItem, Set<String>> entry : namesByItem.build()) {
+      FeeCheckCommandExtensionItem feeCheckItem = entry.getKey();
+      for (String domainName : entry.getValue()) {
         FeeCheckResponseExtensionItem.Builder<?> builder = feeCheckItem.createResponseBuilder();
         handleFeeRequest(
             feeCheckItem,
@@ -242,7 +255,8 @@ public final class DomainCheckFlow implements Flow {
             feeCheck.getCurrency(),
             now,
             pricingLogic,
-            allocationToken);
+            allocationToken,
+            Optional.ofNullable(prices.get(domainName)));
         responseItems.add(builder.setDomainNameIfSupported(domainName).build());
       }
     }
@@ -19,6 +19,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.equalTo;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.ImmutableSetMultimap.toImmutableSetMultimap;
 import static com.google.common.collect.Iterables.any;
 import static com.google.common.collect.Sets.difference;
@@ -85,6 +86,7 @@ import google.registry.model.domain.DomainCommand.CreateOrUpdate;
 import google.registry.model.domain.DomainCommand.InvalidReferencesException;
 import google.registry.model.domain.DomainCommand.Update;
 import google.registry.model.domain.ForeignKeyedDesignatedContact;
+import google.registry.model.domain.GracePeriod;
 import google.registry.model.domain.Period;
 import google.registry.model.domain.fee.BaseFee.FeeType;
 import google.registry.model.domain.fee.Credit;
@@ -110,6 +112,7 @@ import google.registry.model.eppcommon.StatusValue;
 import google.registry.model.eppoutput.EppResponse.ResponseExtension;
 import google.registry.model.host.HostResource;
 import google.registry.model.poll.PollMessage;
+import google.registry.model.pricing.PremiumPricingEngine.DomainPrices;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registrar.Registrar.State;
 import google.registry.model.registry.Registry;
@@ -512,6 +515,11 @@ public class DomainFlowUtils {
    * time earlier than its event time (i.e. if it's being ended before it was ever triggered).
    */
   public static void updateAutorenewRecurrenceEndTime(DomainBase domain, DateTime newEndTime) {
+    // Load both autorenew entities in one batch; the loads below are then served from the session.
+    ofy()
+        .load()
+        .values(
+            ImmutableList.of(domain.getAutorenewPollMessage(), domain.getAutorenewBillingEvent()));
     Optional<PollMessage.Autorenew> autorenewPollMessage =
         Optional.ofNullable(ofy().load().key(domain.getAutorenewPollMessage()).now());
 
@@ -542,9 +550,36 @@ public class DomainFlowUtils {
     ofy().save().entity(recurring.asBuilder().setRecurrenceEndTime(newEndTime).build());
   }
 
+  /**
+   * Starts loading, in a single batch, the autorenew entities and grace period billing events of a
+   * domain.
+   *
+   * <p>Flows that end a domain's autorenew or cancel its grace periods would otherwise read each of
+   * these with its own blocking round trip, at different points in the flow. The batch load is
+   * asynchronous and its pending results are kept in the Objectify session, so the later loads of
+   * these keys wait on it instead of going back to Datastore. This must be called in the same
+   * transaction as those loads.
+   */
+  static void prefetchDomainAutorenewAndGracePeriodEntities(DomainBase domain) {
+    ImmutableSet.Builder<Key<?>> keys = new ImmutableSet.Builder<>();
+    keys.add(domain.getAutorenewPollMessage(), domain.getAutorenewBillingEvent());
+    for (GracePeriod gracePeriod : domain.getGracePeriods()) {
+      if (gracePeriod.getOneTimeBillingEvent() != null) {
+        keys.add(gracePeriod.getOneTimeBillingEvent());
+      }
+      if (gracePeriod.getRecurringBillingEvent() != null) {
+        keys.add(gracePeriod.getRecurringBillingEvent());
+      }
+    }
+    ofy().load().values(keys.build());
+  }
+
   /**
    * Validates a {@link FeeQueryCommandExtensionItem} and sets the appropriate fields on a {@link
    * FeeQueryResponseExtensionItem} builder.
+   *
+   * @param pricesAtCurrentDate the domain's premium pricing details at {@code currentDate}, if
+   *     already known; they are only used if the fee request has no other effective date
    */
   static void handleFeeRequest(
       FeeQueryCommandExtensionItem feeRequest,
@@ -553,7 +588,8 @@ public class DomainFlowUtils {
       @Nullable CurrencyUnit topLevelCurrency,
       DateTime currentDate,
       DomainPricingLogic pricingLogic,
-      Optional<AllocationToken> allocationToken)
+      Optional<AllocationToken> allocationToken,
+      Optional<DomainPrices> pricesAtCurrentDate)
       throws EppException {
     DateTime now = currentDate;
     // Use the custom effective date specified in the fee check request, if there is one.
@@ -576,11 +612,15 @@ public class DomainFlowUtils {
       throw new CurrencyUnitMismatchException();
     }
 
+    DomainPrices domainPrices =
+        (pricesAtCurrentDate.isPresent() && now.equals(currentDate))
+            ? pricesAtCurrentDate.get()
+            : pricingLogic.getPrices(domainNameString, now);
     builder
         .setCommand(feeRequest.getCommandName(), feeRequest.getPhase(), feeRequest.getSubphase())
         .setCurrencyIfSupported(registry.getCurrency())
         .setPeriod(feeRequest.getPeriod())
-        .setClass(pricingLogic.getFeeClass(domainNameString, now).orElse(null));
+        .setClass(domainPrices.getFeeClass().orElse(null));
 
     ImmutableList<Fee> fees = ImmutableList.of();
     switch (feeRequest.getCommandName()) {
@@ -593,27 +633,39 @@ public class DomainFlowUtils {
           builder.setAvailIfSupported(true);
           fees =
               pricingLogic
-                  .getCreatePrice(registry, domainNameString, now, years, false, allocationToken)
+                  .getCreatePrice(
+                      registry,
+                      domainNameString,
+                      now,
+                      years,
+                      false,
+                      allocationToken,
+                      domainPrices)
                   .getFees();
         }
         break;
       case RENEW:
         builder.setAvailIfSupported(true);
-        fees = pricingLogic.getRenewPrice(registry, domainNameString, now, years).getFees();
+        fees =
+            pricingLogic
+                .getRenewPrice(registry, domainNameString, now, years, domainPrices)
+                .getFees();
         break;
       case RESTORE:
         if (years != 1) {
           throw new RestoresAreAlwaysForOneYearException();
         }
         builder.setAvailIfSupported(true);
-        fees = pricingLogic.getRestorePrice(registry, domainNameString, now).getFees();
+        fees =
+            pricingLogic.getRestorePrice(registry, domainNameString, now, domainPrices).getFees();
         break;
       case TRANSFER:
         if (years != 1) {
           throw new TransfersAreAlwaysForOneYearException();
         }
         builder.setAvailIfSupported(true);
-        fees = pricingLogic.getTransferPrice(registry, domainNameString, now).getFees();
+        fees =
+            pricingLogic.getTransferPrice(registry, domainNameString, now, domainPrices).getFees();
         break;
       case UPDATE:
         builder.setAvailIfSupported(true);
@@ -974,11 +1026,16 @@ public class DomainFlowUtils {
 
   static ImmutableSet<ForeignKeyedDesignatedContact> loadForeignKeyedDesignatedContacts(
       ImmutableSet<DesignatedContact> contacts) {
+    Map<Key<ContactResource>, ContactResource> loadedContacts =
+        ofy()
+            .load()
+            .keys(
+                contacts.stream().map(DesignatedContact::getContactKey).collect(toImmutableSet()));
     ImmutableSet.Builder<ForeignKeyedDesignatedContact> builder = new ImmutableSet.Builder<>();
     for (DesignatedContact contact : contacts) {
       builder.add(
           ForeignKeyedDesignatedContact.create(
-              contact.getType(), ofy().load().key(contact.getContactKey()).now().getContactId()));
+              contact.getType(), loadedContacts.get(contact.getContactKey()).getContactId()));
     }
     return builder.build();
   }
@@ -164,6 +164,7 @@ public final class DomainInfoFlow implements Flow {
           null,
           now,
           pricingLogic,
+          Optional.empty(),
           Optional.empty());
       extensions.add(builder.build());
     }
@@ -17,6 +17,7 @@ package google.registry.flows.domain;
 import static google.registry.pricing.PricingEngineProxy.getDomainFeeClass;
 import static google.registry.pricing.PricingEngineProxy.getDomainRenewCost;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.net.InternetDomainName;
 import google.registry.flows.EppException;
 import google.registry.flows.EppException.CommandUseErrorException;
@@ -55,6 +56,24 @@ public final class DomainPricingLogic {
   @Inject
   DomainPricingLogic() {}
 
+  /** Returns the premium pricing details for a given domain and date. */
+  public DomainPrices getPrices(String domainName, DateTime date) {
+    return PricingEngineProxy.getPricesForDomainName(domainName, date);
+  }
+
+  /**
+   * Returns the premium pricing details for all of the given domains at a given date, keyed by
+   * domain name.
+   *
+   * <p>Flows that price many names at once (i.e. domain checks with the fee extension) should use
+   * this and pass each name's prices to the pricing methods that take them, so that each TLD's
+   * premium pricing is resolved once for all of its names rather than once for every name and fee
+   * command.
+   */
+  public ImmutableMap<String, DomainPrices> getPrices(Iterable<String> domainNames, DateTime date) {
+    return PricingEngineProxy.getPricesForDomainNames(domainNames, date);
+  }
+
   /**
    * Returns a new create price for the pricer.
    *
@@ -69,12 +88,35 @@ public final class DomainPricingLogic {
       boolean isAnchorTenant,
       Optional<AllocationToken> allocationToken)
       throws EppException {
+    return getCreatePrice(
+        registry,
+        domainName,
+        date,
+        years,
+        isAnchorTenant,
+        allocationToken,
+        getPrices(domainName, date));
+  }
+
+  /**
+   * Returns a new create price for the pricer, given the domain's premium pricing details at the
+   * given date.
+   */
+  public FeesAndCredits getCreatePrice(
+      Registry registry,
+      String domainName,
+      DateTime date,
+      int years,
+      boolean isAnchorTenant,
+      Optional<AllocationToken> allocationToken,
+      DomainPrices domainPrices)
+      throws EppException {
     CurrencyUnit currency = registry.getCurrency();
     // Domain create cost is always zero for anchor tenants
     Money domainCreateCost =
         isAnchorTenant
             ? Money.of(currency, BigDecimal.ZERO)
-            : getDomainCreateCostWithDiscount(domainName, date, years, allocationToken);
+            : getDomainCreateCostWithDiscount(domainPrices, years, allocationToken);
     BaseFee createFeeOrCredit = Fee.create(domainCreateCost.getAmount(), FeeType.CREATE);
 
     // Create fees for the cost and the EAP fee, if any.
@@ -105,7 +147,17 @@ public final class DomainPricingLogic {
       DateTime date,
       int years)
       throws EppException {
-    Money renewCost = getDomainRenewCost(domainName, date, years);
+    return getRenewPrice(registry, domainName, date, years, getPrices(domainName, date));
+  }
+
+  /**
+   * Returns a new renew price for the pricer, given the domain's premium pricing details at the
+   * given date.
+   */
+  public FeesAndCredits getRenewPrice(
+      Registry registry, String domainName, DateTime date, int years, DomainPrices domainPrices)
+      throws EppException {
+    Money renewCost = getDomainRenewCost(domainPrices, years);
     return customLogic.customizeRenewPrice(
         RenewPriceParameters.newBuilder()
             .setFeesAndCredits(
@@ -123,11 +175,21 @@ public final class DomainPricingLogic {
   /** Returns a new restore price for the pricer. */
   public FeesAndCredits getRestorePrice(Registry registry, String domainName, DateTime date)
       throws EppException {
+    return getRestorePrice(registry, domainName, date, getPrices(domainName, date));
+  }
+
+  /**
+   * Returns a new restore price for the pricer, given the domain's premium pricing details at the
+   * given date.
+   */
+  public FeesAndCredits getRestorePrice(
+      Registry registry, String domainName, DateTime date, DomainPrices domainPrices)
+      throws EppException {
     FeesAndCredits feesAndCredits =
         new FeesAndCredits.Builder()
             .setCurrency(registry.getCurrency())
             .addFeeOrCredit(
-                Fee.create(getDomainRenewCost(domainName, date, 1).getAmount(), FeeType.RENEW))
+                Fee.create(getDomainRenewCost(domainPrices, 1).getAmount(), FeeType.RENEW))
             .addFeeOrCredit(
                 Fee.create(registry.getStandardRestoreCost().getAmount(), FeeType.RESTORE))
             .build();
@@ -143,7 +205,17 @@ public final class DomainPricingLogic {
   /** Returns a new transfer price for the pricer. */
   public FeesAndCredits getTransferPrice(Registry registry, String domainName, DateTime date)
       throws EppException {
-    Money renewCost = getDomainRenewCost(domainName, date, 1);
+    return getTransferPrice(registry, domainName, date, getPrices(domainName, date));
+  }
+
+  /**
+   * Returns a new transfer price for the pricer, given the domain's premium pricing details at the
+   * given date.
+   */
+  public FeesAndCredits getTransferPrice(
+      Registry registry, String domainName, DateTime date, DomainPrices domainPrices)
+      throws EppException {
+    Money renewCost = getDomainRenewCost(domainPrices, 1);
     return customLogic.customizeTransferPrice(
         TransferPriceParameters.newBuilder()
             .setFeesAndCredits(
@@ -182,9 +254,8 @@ public final class DomainPricingLogic {
   }
 
   private Money getDomainCreateCostWithDiscount(
-      String domainName, DateTime date, int years, Optional<AllocationToken> allocationToken)
+      DomainPrices domainPrices, int years, Optional<AllocationToken> allocationToken)
       throws EppException {
-    DomainPrices domainPrices = PricingEngineProxy.getPricesForDomainName(domainName, date);
     if (allocationToken.isPresent()
         && allocationToken.get().getDiscountFraction() != 0.0
         && domainPrices.isPremium()) {
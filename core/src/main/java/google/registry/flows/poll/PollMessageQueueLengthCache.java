@@ -0,0 +1,134 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.poll;
+
+import static google.registry.config.RegistryConfig.getPollMessageQueueLengthCachingDuration;
+import static google.registry.flows.poll.PollFlowUtils.getPollMessagesQuery;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import google.registry.model.poll.PollMessage;
+import google.registry.util.NonFinalForTesting;
+import javax.annotation.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * An in-memory cache of the number of pending poll messages of each registrar.
+ *
+ * <p>Counting a registrar's pending poll messages is a query over all of them, which for large
+ * registrars with many unacked messages is expensive to do on every poll request. Instead, the
+ * count is remembered along with the time it was valid for, and brought up to date on the next
+ * poll by only counting the messages whose event time falls between that time and now, i.e. those
+ * which have become visible since.
+ *
+ * <p>That can undercount: a message whose event time is at or before the cached time can still
+ * show up in the index afterwards, since its event time is usually its transaction time, which is
+ * set before the commit, and the index is only eventually consistent. Such a message isn't seen
+ * until the cached count expires. So that registrars aren't told that their queue is empty (and
+ * stop polling) while it isn't, counts of one or less are always recounted from scratch, and acks,
+ * whose count decides whether the registrar keeps polling, always count from scratch.
+ *
+ * <p>The cache is per instance, so acks handled by other instances aren't subtracted from the
+ * counts cached here, which overstate the queue length until they expire. For that reason caching
+ * is off by default, and every poll counts from scratch unless {@code
+ * pollMessageQueueLengthCachingSeconds} is set.
+ *
+ * <p>A stored counter can't be maintained transactionally instead, because a poll message becomes
+ * pending when its event time passes, not when it is written.
+ */
+final class PollMessageQueueLengthCache {
+
+  @NonFinalForTesting
+  private static Cache<String, QueueLength> cache =
+      createCache(getPollMessageQueueLengthCachingDuration());
+
+  private PollMessageQueueLengthCache() {}
+
+  private static Cache<String, QueueLength> createCache(Duration expiry) {
+    return CacheBuilder.newBuilder().expireAfterWrite(expiry.getMillis(), MILLISECONDS).build();
+  }
+
+  @VisibleForTesting
+  static void setCacheForTest(Duration expiry) {
+    cache = createCache(expiry);
+  }
+
+  /** Returns the number of poll messages pending for the registrar at the given time. */
+  static int getQueueLength(String clientId, DateTime now) {
+    QueueLength cached = getCachedIfUsable(clientId, now);
+    int count =
+        (cached == null)
+            ? getPollMessagesQuery(clientId, now).count()
+            : cached.count() + countBecameVisible(clientId, cached.asOf(), now);
+    cache.put(clientId, QueueLength.create(count, now));
+    return count;
+  }
+
+  /**
+   * Returns the number of poll messages pending for the registrar after the given message is acked.
+   *
+   * <p>This must be called from the ack transaction, before it commits, so that the acked message
+   * is still present in Datastore. The messages are always counted from scratch, and the cached
+   * count is dropped rather than adjusted, since the ack may still fail to commit.
+   *
+   * @param ackedMessageStillPending whether the acked message is an autorenew poll message whose
+   *     next event is already visible, in which case it remains in the queue
+   */
+  static int getQueueLengthAfterAck(
+      String clientId, DateTime now, boolean ackedMessageStillPending) {
+    cache.invalidate(clientId);
+    int count = getPollMessagesQuery(clientId, now).count();
+    return ackedMessageStillPending ? count : count - 1;
+  }
+
+  @Nullable
+  private static QueueLength getCachedIfUsable(String clientId, DateTime now) {
+    QueueLength cached = cache.getIfPresent(clientId);
+    // Clocks aren't guaranteed to be monotonic across requests, so recount if we went backwards.
+    // Also recount small counts, which may have missed messages that only became visible late.
+    return (cached == null || cached.count() <= 1 || now.isBefore(cached.asOf())) ? null : cached;
+  }
+
+  /** Counts the registrar's poll messages with event times in {@code (start, end]}. */
+  private static int countBecameVisible(String clientId, DateTime start, DateTime end) {
+    if (!end.isAfter(start)) {
+      return 0;
+    }
+    return ofy()
+        .load()
+        .type(PollMessage.class)
+        .filter("clientId", clientId)
+        .filter("eventTime >", start.toDate())
+        .filter("eventTime <=", end.toDate())
+        .count();
+  }
+
+  /** A cached queue length, and the time that it is valid for. */
+  @AutoValue
+  abstract static class QueueLength {
+    abstract int count();
+
+    abstract DateTime asOf();
+
+    static QueueLength create(int count, DateTime asOf) {
+      return new AutoValue_PollMessageQueueLengthCache_QueueLength(Math.max(0, count), asOf);
+    }
+  }
+}
@@ -38,10 +38,11 @@ import org.joda.time.DateTime;
  * An EPP flow for requesting {@link PollMessage}s.
  *
  * <p>This flow uses an eventually consistent Datastore query to return the oldest poll message for
- * the registrar, as well as the total number of pending messages. Note that poll messages whose
- * event time is in the future (i.e. they are speculative and could still be changed or rescinded)
- * are ignored. The externally visible id for the poll message that the registrar sees is generated
- * by {@link PollMessageExternalKeyConverter}.
+ * the registrar, as well as the total number of pending messages (as tracked by {@link
+ * PollMessageQueueLengthCache}). Note that poll messages whose event time is in the future (i.e.
+ * they are speculative and could still be changed or rescinded) are ignored. The externally visible
+ * id for the poll message that the registrar sees is generated by {@link
+ * PollMessageExternalKeyConverter}.
  *
  * @error {@link PollRequestFlow.UnexpectedMessageIdException}
  */
@@ -72,7 +73,9 @@ public class PollRequestFlow implements Flow {
         .setMessageQueueInfo(new MessageQueueInfo.Builder()
             .setQueueDate(pollMessage.getEventTime())
             .setMsg(pollMessage.getMsg())
-            .setQueueLength(getPollMessagesQuery(clientId, now).count())
+            // The returned message itself is pending, whatever the (eventually consistent) count.
+            .setQueueLength(
+                Math.max(1, PollMessageQueueLengthCache.getQueueLength(clientId, now)))
             .setMessageId(makePollMessageExternalId(pollMessage))
             .build())
         .setMultipleResData(pollMessage.getResponseData())
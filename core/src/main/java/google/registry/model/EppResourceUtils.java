@@ -22,6 +22,8 @@ import static google.registry.util.DateTimeUtils.isBeforeOrAt;
 import static google.registry.util.DateTimeUtils.latestOf;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.FluentLogger;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Result;
@@ -40,7 +42,9 @@ import google.registry.model.ofy.CommitLogMutation;
 import google.registry.model.registry.Registry;
 import google.registry.model.transfer.TransferData;
 import google.registry.model.transfer.TransferStatus;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
@@ -280,55 +284,84 @@ public final class EppResourceUtils {
    */
   public static <T extends EppResource>
       Result<T> loadAtPointInTime(final T resource, final DateTime timestamp) {
-    // If we're before the resource creation time, don't try to find a "most recent revision".
-    if (timestamp.isBefore(resource.getCreationTime())) {
-      return new ResultNow<>(null);
-    }
-    // If the resource was not modified after the requested time, then use it as-is, otherwise find
-    // the most recent revision asynchronously, and return an async result that wraps that revision
-    // and returns it projected forward to exactly the desired timestamp, or null if the resource is
-    // deleted at that timestamp.
-    final Result<T> loadResult =
-        isAtOrAfter(timestamp, resource.getUpdateAutoTimestamp().getTimestamp())
-            ? new ResultNow<>(resource)
-            : loadMostRecentRevisionAtTime(resource, timestamp);
-    return () -> {
-      T loadedResource = loadResult.now();
-      return (loadedResource == null) ? null
-          : (isActive(loadedResource, timestamp)
-              ? cloneProjectedAtTime(loadedResource, timestamp)
-              : null);
-    };
+    return loadAtPointsInTime(resource, ImmutableSet.of(timestamp)).get(timestamp);
   }
 
   /**
-   * Returns an asynchronous result holding the most recent Datastore revision of a given
-   * EppResource before or at the provided timestamp using the EppResource revisions map, falling
-   * back to using the earliest revision or the resource as-is if there are no revisions.
+   * Rewinds an {@link EppResource} object to each of several points in time.
+   *
+   * <p>This is equivalent to calling {@link #loadAtPointInTime} for each timestamp, except that the
+   * revisions needed for all of them are fetched in a single asynchronous batch, and only once for
+   * timestamps that share a revision. Nothing is fetched for timestamps that the resource hasn't
+   * been modified since.
    *
+   * @return an asynchronous operation for each timestamp, returning resource at that timestamp or
+   *     {@code null} if resource is deleted or not yet created
    * @see #loadAtPointInTime(EppResource, DateTime)
    */
-  private static <T extends EppResource> Result<T> loadMostRecentRevisionAtTime(
-      final T resource, final DateTime timestamp) {
+  public static <T extends EppResource> ImmutableMap<DateTime, Result<T>> loadAtPointsInTime(
+      final T resource, ImmutableSet<DateTime> timestamps) {
     final Key<T> resourceKey = Key.create(resource);
-    final Key<CommitLogManifest> revision = findMostRecentRevisionAtTime(resource, timestamp);
-    if (revision == null) {
-      logger.atSevere().log("No revision found for %s, falling back to resource.", resourceKey);
-      return new ResultNow<>(resource);
+    // Find the revision needed for each timestamp that is after the resource's creation, but
+    // before it was last modified. Otherwise the resource doesn't exist or can be used as-is.
+    Map<DateTime, Key<CommitLogMutation>> mutationKeys = new HashMap<>();
+    for (DateTime timestamp : timestamps) {
+      if (!timestamp.isBefore(resource.getCreationTime())
+          && timestamp.isBefore(resource.getUpdateAutoTimestamp().getTimestamp())) {
+        Key<CommitLogManifest> revision = findMostRecentRevisionAtTime(resource, timestamp);
+        if (revision == null) {
+          logger.atSevere().log("No revision found for %s, falling back to resource.", resourceKey);
+        } else {
+          mutationKeys.put(timestamp, CommitLogMutation.createKey(revision, resourceKey));
+        }
+      }
     }
-    final Result<CommitLogMutation> mutationResult =
-        ofy().load().key(CommitLogMutation.createKey(revision, resourceKey));
-    return () -> {
-      CommitLogMutation mutation = mutationResult.now();
-      if (mutation != null) {
-        return ofy().load().fromEntity(mutation.getEntity());
+    final Map<Key<CommitLogMutation>, CommitLogMutation> mutations =
+        mutationKeys.isEmpty()
+            ? ImmutableMap.of()
+            : ofy().load().keys(ImmutableSet.copyOf(mutationKeys.values()));
+    ImmutableMap.Builder<DateTime, Result<T>> results = new ImmutableMap.Builder<>();
+    for (DateTime timestamp : timestamps) {
+      if (timestamp.isBefore(resource.getCreationTime())) {
+        results.put(timestamp, new ResultNow<>(null));
+        continue;
       }
-      logger.atSevere().log(
-          "Couldn't load mutation for revision at %s for %s, falling back to resource."
-              + " Revision: %s",
-          timestamp, resourceKey, revision);
+      final Key<CommitLogMutation> mutationKey = mutationKeys.get(timestamp);
+      // Return the resource (or the revision of it) projected forward to exactly the desired
+      // timestamp, or null if the resource is deleted at that timestamp.
+      results.put(
+          timestamp,
+          () -> {
+            T loadedResource = getRevision(resource, timestamp, mutationKey, mutations);
+            return isActive(loadedResource, timestamp)
+                ? cloneProjectedAtTime(loadedResource, timestamp)
+                : null;
+          });
+    }
+    return results.build();
+  }
+
+  /**
+   * Returns the revision of a resource stored in the {@link CommitLogMutation} with the given key,
+   * or the resource as-is if there is no such revision or it couldn't be loaded.
+   */
+  private static <T extends EppResource> T getRevision(
+      T resource,
+      DateTime timestamp,
+      @Nullable Key<CommitLogMutation> mutationKey,
+      Map<Key<CommitLogMutation>, CommitLogMutation> mutations) {
+    if (mutationKey == null) {
       return resource;
-    };
+    }
+    CommitLogMutation mutation = mutations.get(mutationKey);
+    if (mutation != null) {
+      return ofy().load().fromEntity(mutation.getEntity());
+    }
+    logger.atSevere().log(
+        "Couldn't load mutation for revision at %s for %s, falling back to resource."
+            + " Revision: %s",
+        timestamp, Key.create(resource), mutationKey.getParent());
+    return resource;
   }
 
   @Nullable
@@ -14,18 +14,27 @@
 
 package google.registry.model.eppcommon;
 
+import static com.google.common.base.Preconditions.checkState;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
+import static google.registry.xml.UtcDateTimeAdapter.getFormattedString;
+import static google.registry.xml.ValidationMode.STRICT;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Bytes;
 import google.registry.model.ImmutableObject;
 import google.registry.model.eppinput.EppInput;
 import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.eppoutput.Greeting;
 import google.registry.xml.ValidationMode;
 import google.registry.xml.XmlException;
 import google.registry.xml.XmlTransformer;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.joda.time.DateTime;
 
 /** {@link XmlTransformer} for marshalling to and from the Epp model classes.  */
 public class EppXmlTransformer  {
@@ -57,6 +66,10 @@ public class EppXmlTransformer  {
   private static final XmlTransformer OUTPUT_TRANSFORMER =
       new XmlTransformer(SCHEMAS, EppOutput.class);
 
+  /** Marshalled greetings, by server ID. */
+  private static final ConcurrentMap<String, GreetingTemplate> GREETING_TEMPLATES =
+      new ConcurrentHashMap<>();
+
   public static void validateOutput(String xml) throws XmlException {
     OUTPUT_TRANSFORMER.validate(xml);
   }
@@ -79,10 +92,29 @@ public class EppXmlTransformer  {
     return byteArrayOutputStream.toByteArray();
   }
 
+  /**
+   * Marshal an {@link EppOutput} into bytes.
+   *
+   * <p>Greetings are identical other than their server date, so they are only run through JAXB and
+   * validated once per server ID, with the date being spliced into the cached result after that.
+   */
   public static byte[] marshal(EppOutput root, ValidationMode validation) throws XmlException {
+    if (root.isGreeting() && STRICT.equals(validation)) {
+      return marshalGreeting(root.getGreeting());
+    }
     return marshal(OUTPUT_TRANSFORMER, root, validation);
   }
 
+  private static byte[] marshalGreeting(Greeting greeting) throws XmlException {
+    GreetingTemplate template = GREETING_TEMPLATES.get(greeting.getSvId());
+    if (template == null) {
+      // Racing threads may both create a template, which is harmless since they'll be the same.
+      template = GreetingTemplate.create(greeting.getSvId());
+      GREETING_TEMPLATES.putIfAbsent(greeting.getSvId(), template);
+    }
+    return template.render(greeting.getSvDate());
+  }
+
   @VisibleForTesting
   public static byte[] marshalInput(EppInput root, ValidationMode validation) throws XmlException {
     return marshal(INPUT_TRANSFORMER, root, validation);
@@ -92,4 +124,36 @@ public class EppXmlTransformer  {
   public static void validateInput(String xml) throws XmlException {
     INPUT_TRANSFORMER.validate(xml);
   }
+
+  /** A marshalled greeting, split into the bytes before and after its server date. */
+  private static final class GreetingTemplate {
+
+    private final byte[] beforeDate;
+    private final byte[] afterDate;
+
+    private GreetingTemplate(byte[] beforeDate, byte[] afterDate) {
+      this.beforeDate = beforeDate;
+      this.afterDate = afterDate;
+    }
+
+    static GreetingTemplate create(String svId) throws XmlException {
+      EppOutput greeting = EppOutput.create(Greeting.create(START_OF_TIME, svId));
+      String xml = new String(marshal(OUTPUT_TRANSFORMER, greeting, STRICT), UTF_8);
+      // Search for the date along with the surrounding tag delimiters, so that it can't match a
+      // substring of the server ID.
+      String placeholder = ">" + getFormattedString(START_OF_TIME) + "<";
+      int index = xml.indexOf(placeholder);
+      checkState(
+          index >= 0 && index == xml.lastIndexOf(placeholder),
+          "Could not find a unique server date in greeting: %s",
+          xml);
+      return new GreetingTemplate(
+          xml.substring(0, index + 1).getBytes(UTF_8),
+          xml.substring(index + placeholder.length() - 1).getBytes(UTF_8));
+    }
+
+    byte[] render(DateTime svDate) {
+      return Bytes.concat(beforeDate, getFormattedString(svDate).getBytes(UTF_8), afterDate);
+    }
+  }
 }
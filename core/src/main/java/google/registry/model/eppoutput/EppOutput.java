@@ -47,6 +47,14 @@ public class EppOutput extends ImmutableObject {
     return responseOrGreeting instanceof EppResponse;
   }
 
+  public Greeting getGreeting() {
+    return (Greeting) responseOrGreeting;
+  }
+
+  public boolean isGreeting() {
+    return responseOrGreeting instanceof Greeting;
+  }
+
   /** Marker interface for types allowed inside of an {@link EppOutput}. */
   public interface ResponseOrGreeting {}
 }
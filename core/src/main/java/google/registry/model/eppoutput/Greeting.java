@@ -49,6 +49,14 @@ public class Greeting extends ImmutableObject implements ResponseOrGreeting {
     return instance;
   }
 
+  public String getSvId() {
+    return svID;
+  }
+
+  public DateTime getSvDate() {
+    return svDate;
+  }
+
   static class SvcMenu extends ImmutableObject {
     String version = ProtocolDefinition.VERSION;
     String lang = ProtocolDefinition.LANGUAGE;
@@ -17,23 +17,42 @@ package google.registry.model.ofy;
 import static com.google.appengine.api.datastore.EntityTranslator.convertToPb;
 import static com.google.appengine.api.datastore.EntityTranslator.createFromPbBytes;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static google.registry.config.RegistryConfig.shouldCompressCommitLogMutations;
+import static google.registry.model.ofy.CommitLogBucket.getBucketKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.api.datastore.KeyFactory;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.IgnoreSave;
 import com.googlecode.objectify.annotation.Parent;
+import com.googlecode.objectify.condition.IfFalse;
 import google.registry.model.ImmutableObject;
 import google.registry.model.annotations.NotBackedUp;
 import google.registry.model.annotations.NotBackedUp.Reason;
+import google.registry.util.NonFinalForTesting;
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.joda.time.DateTime;
 
 /** Representation of a saved entity in a {@link CommitLogManifest} (not deletes). */
 @Entity
 @NotBackedUp(reason = Reason.COMMIT_LOGS)
 public class CommitLogMutation extends ImmutableObject {
 
+  private static final int BUFFER_SIZE = 4096;
+
+  @NonFinalForTesting
+  private static boolean compressMutations = shouldCompressCommitLogMutations();
+
   /** The manifest this belongs to. */
   @Parent
   Key<CommitLogManifest> parent;
@@ -43,19 +62,35 @@ public class CommitLogMutation extends ImmutableObject {
   String entityKey;
 
   /**
-   * Raw entity that was saved during the transaction, serialized as a protocol buffer.
+   * Raw entity that was saved during the transaction, serialized as a protocol buffer, and
+   * compressed if {@link #compressed} is set.
    *
    * <p>This value will be written to a GCS file by an export task.
    */
   byte[] entityProtoBytes;
 
+  /**
+   * Whether {@link #entityProtoBytes} is compressed with DEFLATE.
+   *
+   * <p>This is only saved when set, so uncompressed mutations are stored exactly as they were
+   * before compression was introduced.
+   */
+  @IgnoreSave(IfFalse.class)
+  boolean compressed;
+
+  /** Returns the serialized entity, decompressing it if needed. */
   public byte[] getEntityProtoBytes() {
-    return entityProtoBytes.clone();
+    return compressed ? inflate(entityProtoBytes) : entityProtoBytes.clone();
   }
 
   /** Deserializes embedded entity bytes and returns it. */
   public com.google.appengine.api.datastore.Entity getEntity() {
-    return createFromPbBytes(entityProtoBytes);
+    return createFromPbBytes(compressed ? inflate(entityProtoBytes) : entityProtoBytes);
+  }
+
+  @VisibleForTesting
+  boolean isCompressed() {
+    return compressed;
   }
 
   /**
@@ -82,13 +117,104 @@ public class CommitLogMutation extends ImmutableObject {
     instance.parent = checkNotNull(parent);
     // Creates a web-safe key string.
     instance.entityKey = KeyFactory.keyToString(rawEntity.getKey());
-    instance.entityProtoBytes = convertToPb(rawEntity).toByteArray();
+    byte[] protoBytes = convertToPb(rawEntity).toByteArray();
+    if (compressMutations) {
+      byte[] compressedBytes = deflate(protoBytes);
+      // Very small entities can come out larger, in which case there's no point in compressing.
+      if (compressedBytes.length < protoBytes.length) {
+        instance.entityProtoBytes = compressedBytes;
+        instance.compressed = true;
+        return instance;
+      }
+    }
+    instance.entityProtoBytes = protoBytes;
     return instance;
   }
 
+  private static byte[] deflate(byte[] bytes) {
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return output.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] bytes) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes);
+      ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length * 4);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      while (!inflater.finished()) {
+        int length = inflater.inflate(buffer);
+        if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalStateException("Truncated compressed commit log mutation");
+        }
+        output.write(buffer, 0, length);
+      }
+      return output.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IllegalStateException("Corrupt compressed commit log mutation", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
   /** Returns the key of a mutation based on the {@code entityKey} of the entity it stores. */
   public static
       Key<CommitLogMutation> createKey(Key<CommitLogManifest> parent, Key<?> entityKey) {
     return Key.create(parent, CommitLogMutation.class, entityKey.getString());
   }
+
+  /**
+   * Returns the keys of all entities of the given type saved by transactions whose timestamps are
+   * at or after the given time, across all commit log buckets.
+   *
+   * <p>Only the keys of the mutations are read, since they embed the keys of the saved entities.
+   * The queries of all buckets are started before any of their results are read, so that they run
+   * concurrently rather than one bucket after another.
+   *
+   * <p>Transactions can become visible after others with later timestamps, so callers tailing the
+   * commit logs should overlap successive reads by the maximum transaction duration.
+   */
+  public static <T> ImmutableSet<Key<T>> loadKeysOfEntitiesSavedSince(
+      Class<T> clazz, DateTime lowerBound) {
+    String kind = Key.getKind(clazz);
+    // Query iterators are asynchronous, so this only kicks off the queries.
+    ImmutableList<Iterator<Key<CommitLogMutation>>> mutationKeysByBucket =
+        CommitLogBucket.getBucketIds().stream()
+            .map(
+                bucketId -> {
+                  Key<CommitLogBucket> bucketKey = getBucketKey(bucketId);
+                  // Mutation keys are children of their manifests, so they sort after the key of
+                  // the manifest they belong to, and a single key range over the bucket covers
+                  // every mutation committed since the lower bound.
+                  return ofy()
+                      .load()
+                      .type(CommitLogMutation.class)
+                      .ancestor(bucketKey)
+                      .filterKey(">=", CommitLogManifest.createKey(bucketKey, lowerBound))
+                      .keys()
+                      .iterator();
+                })
+            .collect(toImmutableList());
+    ImmutableSet.Builder<Key<T>> entityKeys = new ImmutableSet.Builder<>();
+    for (Iterator<Key<CommitLogMutation>> mutationKeys : mutationKeysByBucket) {
+      while (mutationKeys.hasNext()) {
+        Key<T> entityKey = Key.create(mutationKeys.next().getName());
+        if (kind.equals(entityKey.getKind())) {
+          entityKeys.add(entityKey);
+        }
+      }
+    }
+    return entityKeys.build();
+  }
 }
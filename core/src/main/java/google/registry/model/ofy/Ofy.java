@@ -19,7 +19,9 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Maps.uniqueIndex;
 import static com.googlecode.objectify.ObjectifyService.ofy;
 import static google.registry.config.RegistryConfig.getBaseOfyRetryDuration;
+import static google.registry.config.RegistryConfig.getOfyRetryBudget;
 import static google.registry.util.CollectionUtils.union;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 import com.google.appengine.api.datastore.DatastoreFailureException;
 import com.google.appengine.api.datastore.DatastoreTimeoutException;
@@ -44,7 +46,11 @@ import google.registry.util.Sleeper;
 import google.registry.util.SystemClock;
 import google.registry.util.SystemSleeper;
 import java.lang.annotation.Annotation;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
@@ -77,9 +83,15 @@ public class Ofy {
    */
   private final Clock injectedClock;
 
-  /** Retry for 8^2 * 100ms = ~25 seconds. */
+  /** Retry at most 8 times, unless the request's retry budget runs out first. */
   private static final int NUM_RETRIES = 8;
 
+  /**
+   * The most times that the base retry duration is doubled to get the longest wait between
+   * retries, i.e. 2^7 * 100ms = ~13 seconds.
+   */
+  private static final int MAX_RETRY_DOUBLINGS = 7;
+
   @Inject
   public Ofy(Clock injectedClock) {
     this.injectedClock = injectedClock;
@@ -235,34 +247,71 @@ public class Ofy {
   }
 
   /**
-   * Transact with commit logs and retry with exponential backoff.
+   * Transact with commit logs and retry with jittered exponential backoff.
+   *
+   * <p>Retries wait a random time between the base retry duration and three times the previous
+   * wait ("decorrelated jitter"), so that transactions that collided don't collide again when they
+   * are retried in lockstep. The total time that the transactions of a request spend waiting is
+   * capped by a {@link TransactionRetryBudget}. Collisions are recorded in {@link
+   * TransactionContention}.
    *
    * <p>This method is broken out from {@link #transactNew(Work)} for testing purposes.
    */
   @VisibleForTesting
   <R> R transactCommitLoggedWork(CommitLoggedWork<R> work) {
     long baseRetryMillis = getBaseOfyRetryDuration().getMillis();
-    for (long attempt = 0, sleepMillis = baseRetryMillis;
-        true;
-        attempt++, sleepMillis *= 2) {
+    TransactionRetryBudget retryBudget = null;
+    Set<Key<?>> entityGroups = new HashSet<>();
+    long firstFailureNanos = 0;
+    for (long attempt = 0, sleepMillis = baseRetryMillis; true; attempt++) {
       try {
-        ofy().transactNew(() -> {
-          work.run();
-          return null;
-        });
+        entityGroups.clear();
+        // Have Objectify throw ConcurrentModificationExceptions instead of retrying them right
+        // away and without limit, so that they are backed off and recorded like other failures.
+        ofy()
+            .transactNew(
+                0,
+                () -> {
+                  try {
+                    work.run();
+                  } finally {
+                    getSessionKeys().stream().map(Key::getRoot).forEach(entityGroups::add);
+                  }
+                  return null;
+                });
+        if (attempt > 0) {
+          TransactionContention.recordRetryTime(retryTimeSince(firstFailureNanos), true);
+        }
         return work.getResult();
-      } catch (TransientFailureException
+      } catch (ConcurrentModificationException
+          | TransientFailureException
           | TimestampInversionException
           | DatastoreTimeoutException
           | DatastoreFailureException e) {
-        // TransientFailureExceptions come from task queues and always mean nothing committed.
-        // TimestampInversionExceptions are thrown by our code and are always retryable as well.
-        // However, Datastore exceptions might get thrown even if the transaction succeeded.
+        // ConcurrentModificationExceptions and TransientFailureExceptions (which come from task
+        // queues) always mean nothing committed. TimestampInversionExceptions are thrown by our
+        // code and are always retryable as well. However, Datastore exceptions might get thrown
+        // even if the transaction succeeded.
         if ((e instanceof DatastoreTimeoutException || e instanceof DatastoreFailureException)
             && checkIfAlreadySucceeded(work)) {
+          if (attempt > 0) {
+            TransactionContention.recordRetryTime(retryTimeSince(firstFailureNanos), true);
+          }
           return work.getResult();
         }
-        if (attempt == NUM_RETRIES) {
+        if (e instanceof ConcurrentModificationException) {
+          TransactionContention.recordConflict(ImmutableSet.copyOf(entityGroups));
+        }
+        if (attempt == 0) {
+          firstFailureNanos = System.nanoTime();
+          retryBudget = TransactionRetryBudget.forCurrentRequest(getOfyRetryBudget());
+        }
+        sleepMillis = getJitteredRetryMillis(baseRetryMillis, sleepMillis);
+        if (attempt == NUM_RETRIES || !retryBudget.tryConsume(Duration.millis(sleepMillis))) {
+          TransactionContention.recordRetryTime(retryTimeSince(firstFailureNanos), false);
+          logger.atWarning().log(
+              "Giving up on %s after %d attempts, with %s of the request's retry budget left",
+              e.getClass().getSimpleName(), attempt + 1, retryBudget.getRemaining());
           throw e;  // Give up.
         }
         sleeper.sleepUninterruptibly(Duration.millis(sleepMillis));
@@ -272,6 +321,20 @@ public class Ofy {
     }
   }
 
+  /** Returns a random wait before the next retry, given the wait before the previous one. */
+  @VisibleForTesting
+  static long getJitteredRetryMillis(long baseRetryMillis, long previousRetryMillis) {
+    long maxRetryMillis = baseRetryMillis << MAX_RETRY_DOUBLINGS;
+    long upperBound = Math.min(maxRetryMillis, previousRetryMillis * 3);
+    return upperBound <= baseRetryMillis
+        ? baseRetryMillis
+        : ThreadLocalRandom.current().nextLong(baseRetryMillis, upperBound + 1);
+  }
+
+  private static Duration retryTimeSince(long firstFailureNanos) {
+    return Duration.millis(NANOSECONDS.toMillis(System.nanoTime() - firstFailureNanos));
+  }
+
   /**
    * We can determine whether a transaction has succeded by trying to read the commit log back in
    * its own retryable read-only transaction.
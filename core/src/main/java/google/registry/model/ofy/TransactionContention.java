@@ -0,0 +1,177 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static google.registry.config.RegistryConfig.getTransactionContentionFlushInterval;
+import static java.util.Comparator.comparing;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.flogger.FluentLogger;
+import com.googlecode.objectify.Key;
+import google.registry.util.LatencyHistogram;
+import google.registry.util.LatencyHistogram.Snapshot;
+import google.registry.util.NonFinalForTesting;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.joda.time.Duration;
+
+/**
+ * In-process statistics about Datastore transactions that collided with others.
+ *
+ * <p>Each {@link java.util.ConcurrentModificationException} is counted against every entity group
+ * that the failed transaction touched, both by kind and by individual group. Datastore doesn't say
+ * which of the groups of a transaction was the contended one, but since every transaction touches
+ * a randomly chosen {@link CommitLogBucket}, a group or kind that keeps showing up is a hot spot.
+ * The time that retried transactions spent retrying is recorded in a histogram.
+ *
+ * <p>Like {@code FlowPhaseHistograms}, the statistics are aggregated per instance and summarized
+ * to the logs by whichever thread first records something after each flush interval elapses.
+ */
+final class TransactionContention {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** The number of most contended entity groups to log. */
+  private static final int LOGGED_ENTITY_GROUPS = 10;
+
+  private static final double[] LOGGED_PERCENTILES = {50, 90, 99};
+
+  private static final ConcurrentMap<String, AtomicLong> conflictsByKind =
+      new ConcurrentHashMap<>();
+
+  private static final ConcurrentMap<Key<?>, AtomicLong> conflictsByEntityGroup =
+      new ConcurrentHashMap<>();
+
+  /** Time spent retrying, in milliseconds, by transactions that eventually committed. */
+  private static final LatencyHistogram succeededRetryMillis = new LatencyHistogram();
+
+  /** Time spent retrying, in milliseconds, by transactions that were given up on. */
+  private static final LatencyHistogram abandonedRetryMillis = new LatencyHistogram();
+
+  @NonFinalForTesting
+  private static Duration flushInterval = getTransactionContentionFlushInterval();
+
+  private static final AtomicLong nextFlushNanos =
+      new AtomicLong(System.nanoTime() + getFlushIntervalNanos());
+
+  private TransactionContention() {}
+
+  /** Records a conflict of a transaction that touched the given entity groups. */
+  static void recordConflict(ImmutableSet<Key<?>> entityGroups) {
+    for (Key<?> entityGroup : entityGroups) {
+      increment(conflictsByKind, entityGroup.getKind());
+      increment(conflictsByEntityGroup, entityGroup);
+    }
+    maybeFlush();
+  }
+
+  /**
+   * Records the time that a transaction spent retrying, from its first failure until it either
+   * committed or was given up on.
+   */
+  static void recordRetryTime(Duration retryTime, boolean succeeded) {
+    (succeeded ? succeededRetryMillis : abandonedRetryMillis).record(retryTime.getMillis());
+    maybeFlush();
+  }
+
+  private static <K> void increment(ConcurrentMap<K, AtomicLong> counters, K key) {
+    counters.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+  }
+
+  private static void maybeFlush() {
+    long now = System.nanoTime();
+    long nextFlush = nextFlushNanos.get();
+    // Only the thread that wins the race to move the next flush time forward does the flush.
+    if (now - nextFlush >= 0
+        && nextFlushNanos.compareAndSet(nextFlush, now + getFlushIntervalNanos())) {
+      flush();
+    }
+  }
+
+  private static long getFlushIntervalNanos() {
+    return MILLISECONDS.toNanos(flushInterval.getMillis());
+  }
+
+  /** Returns the conflict counts by kind since the last drain, and resets them. */
+  @VisibleForTesting
+  static ImmutableSortedMap<String, Long> drainConflictsByKind() {
+    return ImmutableSortedMap.copyOf(drain(conflictsByKind));
+  }
+
+  /**
+   * Returns the most contended entity groups since the last drain, with their conflict counts, and
+   * resets the counts of all entity groups.
+   */
+  @VisibleForTesting
+  static ImmutableList<Map.Entry<Key<?>, Long>> drainMostContendedEntityGroups() {
+    return drain(conflictsByEntityGroup).entrySet().stream()
+        .sorted(comparing(Map.Entry<Key<?>, Long>::getValue).reversed())
+        .limit(LOGGED_ENTITY_GROUPS)
+        .collect(toImmutableList());
+  }
+
+  private static <K> ImmutableMap<K, Long> drain(ConcurrentMap<K, AtomicLong> counters) {
+    ImmutableMap.Builder<K, Long> counts = new ImmutableMap.Builder<>();
+    for (K key : counters.keySet()) {
+      // Removing the counter rather than resetting it keeps entity groups that are no longer
+      // contended from accumulating in memory. Increments racing with the removal may be lost.
+      AtomicLong counter = counters.remove(key);
+      if (counter != null) {
+        counts.put(key, counter.get());
+      }
+    }
+    return counts.build();
+  }
+
+  /** Logs a summary of the statistics recorded since the last flush, and resets them. */
+  @VisibleForTesting
+  static void flush() {
+    ImmutableSortedMap<String, Long> byKind = drainConflictsByKind();
+    ImmutableList<Map.Entry<Key<?>, Long>> byEntityGroup = drainMostContendedEntityGroups();
+    Snapshot succeeded = succeededRetryMillis.drain();
+    Snapshot abandoned = abandonedRetryMillis.drain();
+    if (byKind.isEmpty() && succeeded.getTotalCount() == 0 && abandoned.getTotalCount() == 0) {
+      return;
+    }
+    logger.atInfo().log(
+        "Transaction contention over the last %s: conflicts by kind %s; most contended entity "
+            + "groups %s; retry times in ms of committed transactions %s, of abandoned ones %s",
+        flushInterval,
+        byKind,
+        byEntityGroup,
+        formatSnapshot(succeeded),
+        formatSnapshot(abandoned));
+  }
+
+  private static String formatSnapshot(Snapshot snapshot) {
+    StringBuilder result = new StringBuilder(String.format("{count=%d", snapshot.getTotalCount()));
+    if (snapshot.getTotalCount() > 0) {
+      for (double percentile : LOGGED_PERCENTILES) {
+        result.append(
+            String.format(", p%.0f=%d", percentile, snapshot.getValueAtPercentile(percentile)));
+      }
+      result.append(String.format(", max=%d", snapshot.getMax()));
+    }
+    return result.append('}').toString();
+  }
+}
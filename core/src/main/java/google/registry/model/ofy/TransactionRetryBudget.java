@@ -0,0 +1,81 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.apphosting.api.ApiProxy.Environment;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.joda.time.Duration;
+
+/**
+ * The time that the transactions of a request may, in total, spend sleeping between retries.
+ *
+ * <p>Without a shared budget, a request that runs many transactions against a contended entity
+ * group could spend the full backoff of every one of them waiting, long after whoever sent the
+ * request gave up on it. Once the budget is used up, failing transactions are no longer retried.
+ */
+final class TransactionRetryBudget {
+
+  private static final String ENVIRONMENT_ATTRIBUTE_KEY =
+      TransactionRetryBudget.class.getName();
+
+  private final AtomicLong remainingMillis;
+
+  TransactionRetryBudget(Duration budget) {
+    this.remainingMillis = new AtomicLong(budget.getMillis());
+  }
+
+  /**
+   * Returns the budget shared by all transactions of the current request, creating it with the
+   * given size on first use.
+   *
+   * <p>Outside of a request, e.g. in tests or tools, every call returns a new budget.
+   */
+  static TransactionRetryBudget forCurrentRequest(Duration budget) {
+    Environment environment = ApiProxy.getCurrentEnvironment();
+    if (environment == null) {
+      return new TransactionRetryBudget(budget);
+    }
+    Map<String, Object> attributes = environment.getAttributes();
+    synchronized (attributes) {
+      return (TransactionRetryBudget)
+          attributes.computeIfAbsent(
+              ENVIRONMENT_ATTRIBUTE_KEY, key -> new TransactionRetryBudget(budget));
+    }
+  }
+
+  /**
+   * Takes the given time out of the budget if there's enough of it left.
+   *
+   * @return whether the time was taken, i.e. whether the caller may sleep for it and retry
+   */
+  boolean tryConsume(Duration time) {
+    long millis = time.getMillis();
+    long remaining;
+    do {
+      remaining = remainingMillis.get();
+      if (remaining < millis) {
+        return false;
+      }
+    } while (!remainingMillis.compareAndSet(remaining, remaining - millis));
+    return true;
+  }
+
+  /** Returns the time left in the budget. */
+  Duration getRemaining() {
+    return Duration.millis(remainingMillis.get());
+  }
+}
@@ -14,6 +14,10 @@
 
 package google.registry.model.pricing;
 
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import java.util.Optional;
 import org.joda.money.Money;
 import org.joda.time.DateTime;
@@ -34,6 +38,20 @@ public interface PremiumPricingEngine {
    */
   DomainPrices getDomainPrices(String fullyQualifiedDomainName, DateTime priceTime);
 
+  /**
+   * Returns the prices for all of the given fully qualified domain names on a single TLD at the
+   * given time, keyed by domain name.
+   *
+   * <p>This is used to price all the names of a multi-name command at once. The default
+   * implementation prices each name separately; implementations that resolve per-TLD state (such
+   * as a premium list) should override it to only do so once.
+   */
+  default ImmutableMap<String, DomainPrices> getDomainPrices(
+      String tld, ImmutableSet<String> fullyQualifiedDomainNames, DateTime priceTime) {
+    return fullyQualifiedDomainNames.stream()
+        .collect(toImmutableMap(name -> name, name -> getDomainPrices(name, priceTime)));
+  }
+
   /**
    * A class containing information on premium prices for a specific domain name.
    *
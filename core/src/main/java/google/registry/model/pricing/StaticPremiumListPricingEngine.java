@@ -16,15 +16,20 @@ package google.registry.model.pricing;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.emptyToNull;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static google.registry.model.registry.Registry.TldState.START_DATE_SUNRISE;
 import static google.registry.model.registry.label.PremiumListUtils.getPremiumPrice;
+import static google.registry.model.registry.label.PremiumListUtils.getPremiumPrices;
 import static google.registry.model.registry.label.ReservationType.NAME_COLLISION;
 import static google.registry.model.registry.label.ReservedList.getReservationTypes;
 import static google.registry.util.DomainNameUtils.getTldFromDomainName;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.net.InternetDomainName;
 import google.registry.model.registry.Registry;
+import java.util.Map;
 import java.util.Optional;
 import javax.inject.Inject;
 import org.joda.money.Money;
@@ -43,10 +48,36 @@ public final class StaticPremiumListPricingEngine implements PremiumPricingEngin
     String tld = getTldFromDomainName(fullyQualifiedDomainName);
     String label = InternetDomainName.from(fullyQualifiedDomainName).parts().get(0);
     Registry registry = Registry.get(checkNotNull(tld, "tld"));
-    Optional<Money> premiumPrice = getPremiumPrice(label, registry);
+    return getDomainPrices(registry, label, getPremiumPrice(label, registry), priceTime);
+  }
+
+  @Override
+  public ImmutableMap<String, DomainPrices> getDomainPrices(
+      String tld, ImmutableSet<String> fullyQualifiedDomainNames, DateTime priceTime) {
+    Registry registry = Registry.get(checkNotNull(tld, "tld"));
+    ImmutableMap<String, String> labelsByDomainName =
+        fullyQualifiedDomainNames.stream()
+            .collect(
+                toImmutableMap(name -> name, name -> InternetDomainName.from(name).parts().get(0)));
+    ImmutableMap<String, Money> premiumPrices =
+        getPremiumPrices(labelsByDomainName.values(), registry);
+    return labelsByDomainName.entrySet().stream()
+        .collect(
+            toImmutableMap(
+                Map.Entry::getKey,
+                entry ->
+                    getDomainPrices(
+                        registry,
+                        entry.getValue(),
+                        Optional.ofNullable(premiumPrices.get(entry.getValue())),
+                        priceTime)));
+  }
+
+  private static DomainPrices getDomainPrices(
+      Registry registry, String label, Optional<Money> premiumPrice, DateTime priceTime) {
     boolean isNameCollisionInSunrise =
         registry.getTldState(priceTime).equals(START_DATE_SUNRISE)
-            && getReservationTypes(label, tld).contains(NAME_COLLISION);
+            && getReservationTypes(label, registry.getTldStr()).contains(NAME_COLLISION);
     String feeClass = emptyToNull(Joiner.on('-').skipNulls().join(
             premiumPrice.isPresent() ? "premium" : null,
             isNameCollisionInSunrise ? "collision" : null));
@@ -27,11 +27,10 @@ import static com.google.common.collect.Ordering.natural;
 import static com.google.common.collect.Sets.immutableEnumSet;
 import static com.google.common.io.BaseEncoding.base64;
 import static google.registry.config.RegistryConfig.getDefaultRegistrarWhoisServer;
-import static google.registry.model.CacheUtils.memoizeWithShortExpiration;
+import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
 import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.Registries.assertTldsExist;
-import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.util.CollectionUtils.nullToEmptyImmutableCopy;
 import static google.registry.util.CollectionUtils.nullToEmptyImmutableSortedCopy;
 import static google.registry.util.PasswordUtils.SALT_SUPPLIER;
@@ -43,12 +42,10 @@ import static java.util.Comparator.comparing;
 import static java.util.function.Predicate.isEqual;
 
 import com.google.common.base.Strings;
-import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Range;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Streams;
@@ -74,6 +71,7 @@ import google.registry.model.common.EntityGroupRoot;
 import google.registry.model.registrar.Registrar.BillingAccountEntry.CurrencyMapper;
 import google.registry.model.registry.Registry;
 import google.registry.util.CidrAddressBlock;
+import google.registry.util.SystemClock;
 import java.security.cert.CertificateParsingException;
 import java.util.Comparator;
 import java.util.List;
@@ -211,18 +209,12 @@ public class Registrar extends ImmutableObject implements Buildable, Jsonifiable
   private static final Comparator<RegistrarContact> CONTACT_EMAIL_COMPARATOR =
       comparing(RegistrarContact::getEmailAddress, String::compareTo);
 
-  /**
-   * A caching {@link Supplier} of a clientId to {@link Registrar} map.
-   *
-   * <p>The supplier's get() method enters a transactionless context briefly to avoid enrolling the
-   * query inside an unrelated client-affecting transaction.
-   */
-  private static final Supplier<ImmutableMap<String, Registrar>> CACHE_BY_CLIENT_ID =
-      memoizeWithShortExpiration(
-          () ->
-              tm()
-                  .doTransactionless(
-                      () -> Maps.uniqueIndex(loadAll(), Registrar::getClientId)));
+  /** An in-memory cache of all registrars, by client id. */
+  private static final RegistrarCache CACHE_BY_CLIENT_ID =
+      new RegistrarCache(
+          getSingletonCacheRefreshDuration(),
+          new SystemClock(),
+          RegistrarCache::requestThreadExecutor);
 
   @Parent @Transient Key<EntityGroupRoot> parent = getCrossTldKey();
 
@@ -0,0 +1,214 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registrar;
+
+import static com.google.appengine.api.ThreadManager.currentRequestThreadFactory;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.FluentLogger;
+import com.google.monitoring.metrics.EventMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
+import com.google.monitoring.metrics.MetricRegistryImpl;
+import google.registry.util.Clock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * In-memory cache of all {@link Registrar}s, by client id.
+ *
+ * <p>Only the first load on an instance blocks. Once the cache is older than the refresh interval,
+ * the next lookup starts reloading all registrars on a separate thread of its request and, like
+ * every lookup while the reload runs, gets the cached registrars as they are. Loading all
+ * registrars is a single query, which is cheaper than working out which of them changed. The time
+ * each load takes, and how stale the cache was when a reload started, are exported as metrics.
+ *
+ * <p>The reload is not a background task: it runs on a thread of the request that triggered it,
+ * which can't outlive that request. If the request ends first, the cache stays as it was, and a
+ * later lookup starts another reload.
+ *
+ * <p>A refresh interval of zero, as used in unit tests, disables caching altogether.
+ */
+@ThreadSafe
+final class RegistrarCache {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final ImmutableSet<LabelDescriptor> REFRESH_LABEL_DESCRIPTORS =
+      ImmutableSet.of(LabelDescriptor.create("type", "Type of load (initial or refresh)."));
+
+  private static final EventMetric refreshDurationMetric =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/registrar_cache/refresh_duration",
+              "Time taken to refresh the registrar cache",
+              "milliseconds",
+              REFRESH_LABEL_DESCRIPTORS,
+              EventMetric.DEFAULT_FITTER);
+
+  private static final EventMetric stalenessMetric =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/registrar_cache/staleness",
+              "Age of the registrar cache when a refresh of it starts",
+              "milliseconds",
+              ImmutableSet.of(),
+              EventMetric.DEFAULT_FITTER);
+
+  private final Duration refreshInterval;
+  private final Clock clock;
+  private final Supplier<Executor> refreshExecutorSupplier;
+
+  /** Set while a refresh is pending or running, so that only one runs at a time. */
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  /** Held while loading the cache for the first time. */
+  private final Object initialLoadLock = new Object();
+
+  @Nullable private volatile Snapshot snapshot;
+
+  RegistrarCache(
+      Duration refreshInterval, Clock clock, Supplier<Executor> refreshExecutorSupplier) {
+    this.refreshInterval = refreshInterval;
+    this.clock = clock;
+    this.refreshExecutorSupplier = refreshExecutorSupplier;
+  }
+
+  /** Returns all registrars by client id, as of the last refresh. */
+  ImmutableMap<String, Registrar> get() {
+    if (refreshInterval.getMillis() == 0) {
+      return loadAll();
+    }
+    Snapshot current = snapshot;
+    if (current == null) {
+      return loadInitially();
+    }
+    DateTime now = clock.nowUtc();
+    if (!now.isBefore(current.refreshTime().plus(refreshInterval))
+        && refreshing.compareAndSet(false, true)) {
+      try {
+        refreshExecutorSupplier.get().execute(() -> refresh(current));
+      } catch (RuntimeException e) {
+        refreshing.set(false);
+        logger.atWarning().withCause(e).log("Failed to start refreshing the registrar cache.");
+      }
+    }
+    return current.registrars();
+  }
+
+  private ImmutableMap<String, Registrar> loadInitially() {
+    synchronized (initialLoadLock) {
+      // Recheck, in case another request loaded the cache while this one waited for the lock.
+      Snapshot current = snapshot;
+      if (current == null) {
+        DateTime now = clock.nowUtc();
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        current = Snapshot.create(loadAll(), now);
+        snapshot = current;
+        recordRefresh("initial", stopwatch);
+        logger.atInfo().log(
+            "Loaded %d registrars into the registrar cache.", current.registrars().size());
+      }
+      return current.registrars();
+    }
+  }
+
+  /** Reloads all registrars, and replaces the given snapshot with them. */
+  private void refresh(Snapshot previous) {
+    try {
+      DateTime now = clock.nowUtc();
+      stalenessMetric.record(new Duration(previous.refreshTime(), now).getMillis());
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      ImmutableMap<String, Registrar> registrars = loadAll();
+      snapshot = Snapshot.create(registrars, now);
+      recordRefresh("refresh", stopwatch);
+      logger.atInfo().log(
+          "Refreshed the registrar cache, in which %d registrars changed.",
+          countChanged(previous.registrars(), registrars));
+    } catch (RuntimeException e) {
+      // Keep serving the cache as it is, and try again on the next lookup.
+      logger.atWarning().withCause(e).log("Failed to refresh the registrar cache.");
+    } finally {
+      refreshing.set(false);
+    }
+  }
+
+  /** Returns how many of the registrars are new or have a different last update time. */
+  private static long countChanged(
+      ImmutableMap<String, Registrar> previous, ImmutableMap<String, Registrar> current) {
+    return current.values().stream()
+        .filter(
+            registrar -> {
+              Registrar cached = previous.get(registrar.getClientId());
+              return cached == null
+                  || !cached.getLastUpdateTime().equals(registrar.getLastUpdateTime());
+            })
+        .count();
+  }
+
+  private static ImmutableMap<String, Registrar> loadAll() {
+    // Enter a transactionless context briefly to avoid enrolling the query inside an unrelated
+    // client-affecting transaction.
+    return tm().doTransactionless(
+            () -> Maps.uniqueIndex(Registrar.loadAll(), Registrar::getClientId));
+  }
+
+  private static void recordRefresh(String type, Stopwatch stopwatch) {
+    refreshDurationMetric.record(stopwatch.elapsed(MILLISECONDS), type);
+  }
+
+  /**
+   * Returns an executor that runs each refresh on a new thread of the current request, or in the
+   * calling thread if there is no request, e.g. in tools.
+   *
+   * <p>Only request threads may talk to Datastore. They can't outlive the request that started
+   * them, but neither the lookup that triggers a refresh nor any concurrent one waits for it.
+   */
+  @VisibleForTesting
+  static Executor requestThreadExecutor() {
+    ThreadFactory threadFactory =
+        (ApiProxy.getCurrentEnvironment() == null) ? null : currentRequestThreadFactory();
+    return (threadFactory == null)
+        ? directExecutor()
+        : command -> threadFactory.newThread(command).start();
+  }
+
+  /** The cached registrars, with the time they were loaded. */
+  @AutoValue
+  abstract static class Snapshot {
+
+    abstract ImmutableMap<String, Registrar> registrars();
+
+    abstract DateTime refreshTime();
+
+    static Snapshot create(ImmutableMap<String, Registrar> registrars, DateTime refreshTime) {
+      return new AutoValue_RegistrarCache_Snapshot(registrars, refreshTime);
+    }
+  }
+}
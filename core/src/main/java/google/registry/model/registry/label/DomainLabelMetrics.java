@@ -39,6 +39,12 @@ class DomainLabelMetrics {
     /** Bloom filter thinks it might be premium, but it is not (though wasn't in the cache) */
     UNCACHED_NEGATIVE,
 
+    /** Bloom filter thinks it might be premium, and the revision snapshot says it is */
+    SNAPSHOT_POSITIVE,
+
+    /** Bloom filter thinks it might be premium, but the revision snapshot says it is not */
+    SNAPSHOT_NEGATIVE,
+
     /** Bloom filter thinks it might be premium, and it is, but wasn't in the cache */
     UNCACHED_POSITIVE
   }
@@ -221,6 +221,45 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
             });
   }
 
+  /**
+   * In-memory cache for {@link PremiumListSnapshot}s of entire {@link PremiumListRevision}s.
+   *
+   * <p>This is only used when premium list snapshots are enabled, in lieu of {@link
+   * #cachePremiumListEntries}. Like the revisions themselves, snapshots never need to expire; they
+   * are dropped after the usual duration so that superseded revisions don't stay in memory.
+   */
+  @NonFinalForTesting
+  static LoadingCache<Key<PremiumListRevision>, PremiumListSnapshot> cachePremiumListSnapshots =
+      createCachePremiumListSnapshots(getSingletonCachePersistDuration());
+
+  @VisibleForTesting
+  public static void setPremiumListSnapshotsCacheForTest(Optional<Duration> expiry) {
+    Duration effectiveExpiry = expiry.orElse(getSingletonCachePersistDuration());
+    cachePremiumListSnapshots = createCachePremiumListSnapshots(effectiveExpiry);
+  }
+
+  @VisibleForTesting
+  static LoadingCache<Key<PremiumListRevision>, PremiumListSnapshot>
+      createCachePremiumListSnapshots(Duration cachePersistDuration) {
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(cachePersistDuration.getMillis(), MILLISECONDS)
+        .build(
+            new CacheLoader<Key<PremiumListRevision>, PremiumListSnapshot>() {
+              @Override
+              public PremiumListSnapshot load(final Key<PremiumListRevision> revisionKey) {
+                return tm()
+                    .doTransactionless(
+                        () ->
+                            PremiumListSnapshot.create(
+                                ofy()
+                                    .load()
+                                    .type(PremiumListEntry.class)
+                                    .ancestor(revisionKey)
+                                    .iterable()));
+              }
+            });
+  }
+
   @VisibleForTesting
   public Key<PremiumListRevision> getRevisionKey() {
     return revisionKey;
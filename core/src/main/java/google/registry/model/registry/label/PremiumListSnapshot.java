@@ -0,0 +1,189 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry.label;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSortedMap.toImmutableSortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Streams;
+import google.registry.model.registry.label.PremiumList.PremiumListEntry;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+/**
+ * An immutable, compact in-memory copy of all the entries of a single {@link
+ * PremiumList.PremiumListRevision}.
+ *
+ * <p>Labels are kept sorted and front coded in blocks of {@link #BLOCK_SIZE}: the first label of
+ * each block is stored whole, and every following label is stored as the length of the prefix it
+ * shares with its predecessor plus the remaining suffix. A lookup is a binary search over the block
+ * heads followed by a short linear scan of one block. Prices are stored as amounts in minor units
+ * in a primitive array, alongside an index into the (usually single-element) list of currencies
+ * used by the list.
+ */
+final class PremiumListSnapshot {
+
+  /** The number of labels in each front-coded block. */
+  private static final int BLOCK_SIZE = 16;
+
+  private final int size;
+
+  /** The first label of each block. */
+  private final String[] blockHeads;
+
+  /** Offset into {@link #suffixes} of the second label of each block. */
+  private final int[] blockOffsets;
+
+  /**
+   * The non-head labels of all blocks, each as the shared prefix length, the suffix length, and the
+   * suffix itself.
+   */
+  private final char[] suffixes;
+
+  /** The length of the longest label, used to size the buffer used during lookups. */
+  private final int maxLabelLength;
+
+  private final long[] amounts;
+  private final ImmutableList<CurrencyUnit> currencies;
+
+  /** Index into {@link #currencies} of the price of each label, or null if there's one currency. */
+  private final byte[] currencyIndexes;
+
+  private PremiumListSnapshot(ImmutableSortedMap<String, Money> prices) {
+    size = prices.size();
+    int numBlocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    blockHeads = new String[numBlocks];
+    blockOffsets = new int[numBlocks];
+    amounts = new long[size];
+    ImmutableList<CurrencyUnit> distinctCurrencies =
+        prices.values().stream()
+            .map(Money::getCurrencyUnit)
+            .distinct()
+            .collect(toImmutableList());
+    checkArgument(
+        distinctCurrencies.size() <= Byte.MAX_VALUE, "Too many currencies in premium list");
+    currencies = distinctCurrencies;
+    currencyIndexes = currencies.size() > 1 ? new byte[size] : null;
+
+    StringBuilder encoded = new StringBuilder();
+    int maxLength = 0;
+    String previous = null;
+    int i = 0;
+    for (Map.Entry<String, Money> entry : prices.entrySet()) {
+      String label = entry.getKey();
+      maxLength = Math.max(maxLength, label.length());
+      if (i % BLOCK_SIZE == 0) {
+        blockHeads[i / BLOCK_SIZE] = label;
+        blockOffsets[i / BLOCK_SIZE] = encoded.length();
+      } else {
+        int prefix = sharedPrefixLength(previous, label);
+        encoded
+            .append((char) prefix)
+            .append((char) (label.length() - prefix))
+            .append(label, prefix, label.length());
+      }
+      amounts[i] = entry.getValue().getAmountMinorLong();
+      if (currencyIndexes != null) {
+        currencyIndexes[i] = (byte) currencies.indexOf(entry.getValue().getCurrencyUnit());
+      }
+      previous = label;
+      i++;
+    }
+    suffixes = encoded.toString().toCharArray();
+    maxLabelLength = maxLength;
+  }
+
+  /** Creates a snapshot of the given entries, which must all belong to the same revision. */
+  static PremiumListSnapshot create(Iterable<PremiumListEntry> entries) {
+    return new PremiumListSnapshot(
+        Streams.stream(entries)
+            .collect(
+                toImmutableSortedMap(
+                    Ordering.natural(), PremiumListEntry::getLabel, PremiumListEntry::getValue)));
+  }
+
+  /** Returns the number of labels in this snapshot. */
+  int size() {
+    return size;
+  }
+
+  /** Returns the premium price of the given label, or absent if it isn't on the list. */
+  Optional<Money> getPremiumPrice(String label) {
+    int index = indexOf(label);
+    if (index < 0) {
+      return Optional.empty();
+    }
+    CurrencyUnit currency = currencies.get(currencyIndexes == null ? 0 : currencyIndexes[index]);
+    return Optional.of(Money.ofMinor(currency, amounts[index]));
+  }
+
+  private int indexOf(String label) {
+    int block = Arrays.binarySearch(blockHeads, label);
+    if (block >= 0) {
+      return block * BLOCK_SIZE;
+    }
+    // The label can only be in the block whose head immediately precedes it.
+    block = -block - 2;
+    if (block < 0 || label.length() > maxLabelLength) {
+      return -1;
+    }
+    char[] current = new char[maxLabelLength];
+    String head = blockHeads[block];
+    head.getChars(0, head.length(), current, 0);
+    int pos = blockOffsets[block];
+    int blockEnd = Math.min(size, (block + 1) * BLOCK_SIZE);
+    for (int index = block * BLOCK_SIZE + 1; index < blockEnd; index++) {
+      int prefix = suffixes[pos];
+      int suffixLength = suffixes[pos + 1];
+      System.arraycopy(suffixes, pos + 2, current, prefix, suffixLength);
+      pos += 2 + suffixLength;
+      int comparison = compare(current, prefix + suffixLength, label);
+      if (comparison == 0) {
+        return index;
+      } else if (comparison > 0) {
+        // Labels are sorted, so we've gone past where this one would be.
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /** Compares the first {@code length} chars of {@code chars} to {@code s}, as String would. */
+  private static int compare(char[] chars, int length, String s) {
+    int limit = Math.min(length, s.length());
+    for (int i = 0; i < limit; i++) {
+      if (chars[i] != s.charAt(i)) {
+        return chars[i] - s.charAt(i);
+      }
+    }
+    return length - s.length();
+  }
+
+  private static int sharedPrefixLength(String a, String b) {
+    int limit = Math.min(a.length(), b.length());
+    int i = 0;
+    while (i < limit && a.charAt(i) == b.charAt(i)) {
+      i++;
+    }
+    return i;
+  }
+}
@@ -17,15 +17,19 @@ package google.registry.model.registry.label;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.partition;
+import static google.registry.config.RegistryConfig.isPremiumListSnapshotsEnabled;
 import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.BLOOM_FILTER_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.CACHED_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.CACHED_POSITIVE;
+import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.SNAPSHOT_NEGATIVE;
+import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.SNAPSHOT_POSITIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.UNCACHED_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.UNCACHED_POSITIVE;
 import static google.registry.model.registry.label.PremiumList.cachePremiumListEntries;
 import static google.registry.model.registry.label.PremiumList.cachePremiumListRevisions;
+import static google.registry.model.registry.label.PremiumList.cachePremiumListSnapshots;
 import static google.registry.model.registry.label.PremiumList.cachePremiumLists;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static org.joda.time.DateTimeZone.UTC;
@@ -43,6 +47,7 @@ import google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckO
 import google.registry.model.registry.label.PremiumList.PremiumListEntry;
 import google.registry.model.registry.label.PremiumList.PremiumListRevision;
 import google.registry.schema.tld.PremiumListDao;
+import google.registry.util.NonFinalForTesting;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -58,6 +63,10 @@ public final class PremiumListUtils {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /** Whether to look up prices in {@link PremiumListSnapshot}s instead of per-entry caches. */
+  @NonFinalForTesting
+  private static boolean snapshotsEnabled = isPremiumListSnapshotsEnabled();
+
   /** Value type class used by {@link #checkStatus} to return the results of a premiumness check. */
   @AutoValue
   abstract static class CheckResults {
@@ -79,6 +88,42 @@ public final class PremiumListUtils {
       return Optional.empty();
     }
     DateTime startTime = DateTime.now(UTC);
+    return getPremiumPrice(label, registry, loadPremiumListRevision(registry), startTime);
+  }
+
+  /**
+   * Returns the premium prices of those of the specified labels that are premium on the specified
+   * registry.
+   *
+   * <p>This is equivalent to calling {@link #getPremiumPrice(String, Registry)} for each label, but
+   * only resolves the registry's premium list and its current revision once.
+   */
+  public static ImmutableMap<String, Money> getPremiumPrices(
+      Iterable<String> labels, Registry registry) {
+    if (registry.getPremiumList() == null) {
+      return ImmutableMap.of();
+    }
+    PremiumListRevision revision = loadPremiumListRevision(registry);
+    ImmutableMap.Builder<String, Money> prices = new ImmutableMap.Builder<>();
+    for (String label : ImmutableSet.copyOf(labels)) {
+      getPremiumPrice(label, registry, revision, DateTime.now(UTC))
+          .ifPresent(price -> prices.put(label, price));
+    }
+    return prices.build();
+  }
+
+  /**
+   * Loads the premium list of the specified registry, and its current revision, into their caches.
+   *
+   * <p>Unlike looking up a price, this doesn't record any domain label metrics.
+   */
+  public static void loadIntoCache(Registry registry) {
+    if (registry.getPremiumList() != null) {
+      loadPremiumListRevision(registry);
+    }
+  }
+
+  private static PremiumListRevision loadPremiumListRevision(Registry registry) {
     String listName = registry.getPremiumList().getName();
     Optional<PremiumList> optionalPremiumList = PremiumList.getCached(listName);
     checkState(optionalPremiumList.isPresent(), "Could not load premium list '%s'", listName);
@@ -94,11 +139,15 @@ public final class PremiumListUtils {
         revision.getProbablePremiumLabels() != null,
         "Probable premium labels Bloom filter is null on revision '%s'",
         premiumList.getRevisionKey());
+    return revision;
+  }
 
+  private static Optional<Money> getPremiumPrice(
+      String label, Registry registry, PremiumListRevision revision, DateTime startTime) {
     CheckResults checkResults = checkStatus(revision, label);
     DomainLabelMetrics.recordPremiumListCheckOutcome(
         registry.getTldStr(),
-        listName,
+        registry.getPremiumList().getName(),
         checkResults.checkOutcome(),
         DateTime.now(UTC).getMillis() - startTime.getMillis());
 
@@ -122,6 +171,18 @@ public final class PremiumListUtils {
       return CheckResults.create(BLOOM_FILTER_NEGATIVE, Optional.empty());
     }
 
+    if (snapshotsEnabled) {
+      Key<PremiumListRevision> revisionKey = Key.create(premiumListRevision);
+      PremiumListSnapshot snapshot;
+      try {
+        snapshot = cachePremiumListSnapshots.get(revisionKey);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Could not load premium list snapshot " + revisionKey, e);
+      }
+      Optional<Money> price = snapshot.getPremiumPrice(label);
+      return CheckResults.create(price.isPresent() ? SNAPSHOT_POSITIVE : SNAPSHOT_NEGATIVE, price);
+    }
+
     Key<PremiumListEntry> entryKey =
         Key.create(Key.create(premiumListRevision), PremiumListEntry.class, label);
     try {
@@ -14,6 +14,7 @@
 
 package google.registry.module.frontend;
 
+import com.google.common.flogger.FluentLogger;
 import com.google.monitoring.metrics.MetricReporter;
 import dagger.Lazy;
 import google.registry.module.ServletBase;
@@ -21,6 +22,8 @@ import google.registry.module.ServletBase;
 /** Servlet that should handle all requests to our "default" App Engine module. */
 public final class FrontendServlet extends ServletBase {
 
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
   private static final FrontendComponent component = DaggerFrontendComponent.create();
   private static final FrontendRequestHandler requestHandler = component.requestHandler();
   private static final Lazy<MetricReporter> metricReporter = component.metricReporter();
@@ -28,4 +31,18 @@ public final class FrontendServlet extends ServletBase {
   public FrontendServlet() {
     super(requestHandler, metricReporter);
   }
+
+  @Override
+  public void init() {
+    super.init();
+    // This servlet is loaded on startup, so for manually and basically scaled instances this runs
+    // as part of the start request, which has to finish before the instance gets any traffic. A
+    // failed warm-up mustn't keep the servlet from serving, since everything it initializes is
+    // also initialized lazily.
+    try {
+      WarmupAction.warmUp();
+    } catch (RuntimeException e) {
+      logger.atSevere().withCause(e).log("Failed to warm up.");
+    }
+  }
 }
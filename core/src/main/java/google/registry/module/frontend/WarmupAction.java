@@ -0,0 +1,251 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.module.frontend;
+
+import static com.google.appengine.api.ThreadManager.currentRequestThreadFactory;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.net.MediaType.PLAIN_TEXT_UTF_8;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.googlecode.objectify.Key;
+import google.registry.model.eppcommon.EppXmlTransformer;
+import google.registry.model.eppinput.EppInput;
+import google.registry.model.ofy.ObjectifyService;
+import google.registry.model.registrar.Registrar;
+import google.registry.model.registry.Registries;
+import google.registry.model.registry.Registry;
+import google.registry.model.registry.label.PremiumListUtils;
+import google.registry.model.registry.label.ReservedList;
+import google.registry.request.Action;
+import google.registry.request.Response;
+import google.registry.request.auth.Auth;
+import google.registry.tldconfig.idn.IdnTableEnum;
+import google.registry.xjc.XjcXmlTransformer;
+import google.registry.xml.XmlException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+
+/**
+ * Action that eagerly initializes the expensive static state of the frontend, so that a new
+ * instance doesn't make the first EPP request that hits it pay for it.
+ *
+ * <p>This handles the warm-up requests that App Engine sends to automatically scaled instances
+ * before routing traffic to them. Manually and basically scaled instances get a start request
+ * instead, and don't receive traffic until it returns, so {@link FrontendServlet} warms up from its
+ * {@code init()}, which runs as part of that request.
+ *
+ * <p>The components are initialized in parallel, and the warm-up only happens once per instance,
+ * with later requests reporting the timings of the first one.
+ */
+@Action(
+    service = Action.Service.DEFAULT,
+    path = WarmupAction.PATH,
+    automaticallyPrintOk = false,
+    auth = Auth.AUTH_PUBLIC_ANONYMOUS)
+public final class WarmupAction implements Runnable {
+
+  static final String PATH = "/_ah/warmup";
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  private static final byte[] HELLO =
+      "<epp xmlns=\"urn:ietf:params:xml:ns:epp-1.0\"><hello/></epp>".getBytes(UTF_8);
+
+  /**
+   * The components to initialize, by name.
+   *
+   * <p>Objectify has to come first, as everything that loads from Datastore needs it, so it is
+   * initialized before all others rather than in parallel with them.
+   */
+  private static final ImmutableMap<String, Runnable> COMPONENTS =
+      new ImmutableMap.Builder<String, Runnable>()
+          .put("epp_xml", WarmupAction::initEppXml)
+          .put("xjc_xml", XjcXmlTransformer::get)
+          .put("idn_tables", WarmupAction::initIdnTables)
+          .put("registries", WarmupAction::initRegistries)
+          .put("registrars", Registrar::loadAllCached)
+          .put("reserved_lists", WarmupAction::initReservedLists)
+          .put("premium_lists", WarmupAction::initPremiumLists)
+          .build();
+
+  private static final Supplier<ImmutableList<ComponentResult>> warmup =
+      Suppliers.memoize(() -> warmUp(requestThreadFactory()));
+
+  @Inject Response response;
+  @Inject WarmupAction() {}
+
+  @Override
+  public void run() {
+    ImmutableList<ComponentResult> results = warmUp();
+    StringBuilder report = new StringBuilder();
+    for (ComponentResult result : results) {
+      report.append(result).append('\n');
+    }
+    boolean failed = results.stream().anyMatch(result -> result.failure().isPresent());
+    response.setStatus(failed ? SC_INTERNAL_SERVER_ERROR : SC_OK);
+    response.setContentType(PLAIN_TEXT_UTF_8);
+    response.setPayload(report.toString());
+  }
+
+  /** Warms up this instance, unless it already has been, and returns the results. */
+  static ImmutableList<ComponentResult> warmUp() {
+    return warmup.get();
+  }
+
+  /**
+   * Returns a factory of threads of the current request, or null if this isn't running in a
+   * request, e.g. when the servlet is initialized outside of one.
+   */
+  @Nullable
+  private static ThreadFactory requestThreadFactory() {
+    return (ApiProxy.getCurrentEnvironment() == null) ? null : currentRequestThreadFactory();
+  }
+
+  /**
+   * Initializes all components, in parallel if a request thread factory is given, and returns how
+   * long each took.
+   *
+   * <p>A component failing to initialize is logged and reported, but doesn't stop the others, and
+   * the instance will still serve: whatever failed is lazily initialized again when first used.
+   */
+  @VisibleForTesting
+  static ImmutableList<ComponentResult> warmUp(@Nullable ThreadFactory threadFactory) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    ImmutableList.Builder<ComponentResult> results = new ImmutableList.Builder<>();
+    results.add(initComponent("objectify", ObjectifyService::initOfy));
+    if (threadFactory == null) {
+      // Without a request thread factory, e.g. when the servlet isn't initialized as part of a
+      // request, we can't start threads that may talk to Datastore, so initialize sequentially.
+      COMPONENTS.forEach((name, init) -> results.add(initComponent(name, init)));
+    } else {
+      ExecutorService executor = newFixedThreadPool(COMPONENTS.size(), threadFactory);
+      try {
+        ImmutableList<Future<ComponentResult>> futures =
+            COMPONENTS.entrySet().stream()
+                .map(
+                    entry ->
+                        executor.submit(() -> initComponent(entry.getKey(), entry.getValue())))
+                .collect(toImmutableList());
+        for (Future<ComponentResult> future : futures) {
+          try {
+            results.add(Uninterruptibles.getUninterruptibly(future));
+          } catch (ExecutionException e) {
+            // Not reachable, as initComponent catches everything its component throws.
+            throw new IllegalStateException(e.getCause());
+          }
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    ImmutableList<ComponentResult> resultList = results.build();
+    logger.atInfo().log("Warmed up in %dms: %s", stopwatch.elapsed(MILLISECONDS), resultList);
+    return resultList;
+  }
+
+  private static ComponentResult initComponent(String name, Runnable init) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    try {
+      init.run();
+      return ComponentResult.create(name, stopwatch.elapsed(MILLISECONDS), Optional.empty());
+    } catch (Throwable e) {
+      logger.atSevere().withCause(e).log("Failed to warm up %s.", name);
+      return ComponentResult.create(
+          name, stopwatch.elapsed(MILLISECONDS), Optional.of(String.valueOf(e)));
+    }
+  }
+
+  /** Compiles the EPP schemas and JAXB contexts, and exercises them with a hello. */
+  private static void initEppXml() {
+    try {
+      EppXmlTransformer.unmarshal(EppInput.class, HELLO);
+    } catch (XmlException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void initIdnTables() {
+    for (IdnTableEnum idnTable : IdnTableEnum.values()) {
+      idnTable.getTable();
+    }
+  }
+
+  private static void initRegistries() {
+    for (String tld : Registries.getTlds()) {
+      Registry.get(tld);
+    }
+  }
+
+  /**
+   * Loads the reserved lists of each TLD into their cache.
+   *
+   * <p>This goes through the cache directly, rather than checking a label, so that the warm-up
+   * doesn't show up in the domain label metrics.
+   */
+  private static void initReservedLists() {
+    for (String tld : Registries.getTlds()) {
+      for (Key<ReservedList> reservedList : Registry.get(tld).getReservedLists()) {
+        ReservedList.load(reservedList);
+      }
+    }
+  }
+
+  /** Loads the premium list of each TLD into its caches, without checking any label. */
+  private static void initPremiumLists() {
+    for (String tld : Registries.getTlds()) {
+      PremiumListUtils.loadIntoCache(Registry.get(tld));
+    }
+  }
+
+  /** How long a component took to initialize, and why it failed, if it did. */
+  @AutoValue
+  abstract static class ComponentResult {
+
+    abstract String name();
+
+    abstract long elapsedMillis();
+
+    abstract Optional<String> failure();
+
+    static ComponentResult create(String name, long elapsedMillis, Optional<String> failure) {
+      return new AutoValue_WarmupAction_ComponentResult(name, elapsedMillis, failure);
+    }
+
+    @Override
+    public final String toString() {
+      return String.format(
+          "%s: %dms%s", name(), elapsedMillis(), failure().map(f -> " FAILED " + f).orElse(""));
+    }
+  }
+}
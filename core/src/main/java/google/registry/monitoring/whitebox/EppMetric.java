@@ -17,11 +17,14 @@ package google.registry.monitoring.whitebox;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 import google.registry.model.eppoutput.Result.Code;
 import google.registry.model.registry.Registries;
 import google.registry.util.Clock;
+import java.util.EnumMap;
 import java.util.Optional;
 import org.joda.time.DateTime;
 
@@ -65,6 +68,14 @@ public abstract class EppMetric {
     /** Builder-only clock to support automatic recording of endTimestamp on {@link #build()}. */
     private Clock clock = null;
 
+    /**
+     * Builder-only time spent in each phase of the request, in nanoseconds.
+     *
+     * <p>These go to {@link FlowPhaseHistograms} rather than to Stackdriver, so they aren't part
+     * of the built metric.
+     */
+    private final EnumMap<FlowPhase, Long> phaseNanos = new EnumMap<>(FlowPhase.class);
+
     abstract Builder setStartTimestamp(DateTime startTimestamp);
 
     abstract Builder setEndTimestamp(DateTime endTimestamp);
@@ -115,6 +126,17 @@ public abstract class EppMetric {
 
     public abstract Builder setStatus(Code code);
 
+    /** Adds to the time spent in the given phase of the request. */
+    public Builder addPhaseTime(FlowPhase phase, long nanos) {
+      phaseNanos.merge(phase, nanos, Long::sum);
+      return this;
+    }
+
+    /** Returns the time spent in each phase of the request so far, in nanoseconds. */
+    public ImmutableMap<FlowPhase, Long> getPhaseTimes() {
+      return Maps.immutableEnumMap(phaseNanos);
+    }
+
     Builder setClock(Clock clock) {
       this.clock = clock;
       return this;
@@ -0,0 +1,41 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+/**
+ * The phases that the handling of an EPP request is broken down into for latency tracking.
+ *
+ * @see FlowPhaseHistograms
+ */
+public enum FlowPhase {
+
+  /** Parsing and schema validation of the request XML. */
+  UNMARSHAL,
+
+  /**
+   * Constructing and running the flow, which includes authorization, loading resources and
+   * validating the command against them, and enqueuing any saves.
+   */
+  RUN,
+
+  /**
+   * Everything in the transaction other than the final run of the flow, i.e. committing its saves
+   * plus any attempts that had to be retried. Not recorded for non-transactional flows.
+   */
+  COMMIT,
+
+  /** Marshalling and schema validation of the response XML. */
+  MARSHAL
+}
@@ -0,0 +1,148 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static google.registry.config.RegistryConfig.getFlowPhaseHistogramsFlushInterval;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.flogger.FluentLogger;
+import google.registry.util.LatencyHistogram;
+import google.registry.util.LatencyHistogram.Snapshot;
+import google.registry.util.NonFinalForTesting;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.joda.time.Duration;
+
+/**
+ * In-process latency histograms of each {@link FlowPhase} of each EPP command.
+ *
+ * <p>The Stackdriver request time metric only records the end-to-end time of a request, in coarse
+ * buckets. These histograms break it down by phase, with a few percent precision, at the cost of
+ * a couple of atomic increments per request. They are aggregated per instance and summarized to
+ * the logs by whichever request thread first records a value after each flush interval elapses,
+ * so no background thread is needed.
+ */
+public final class FlowPhaseHistograms {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** The command name recorded for requests that didn't get as far as determining one. */
+  static final String UNKNOWN_COMMAND = "_unknown";
+
+  private static final double[] LOGGED_PERCENTILES = {50, 90, 99};
+
+  private static final ConcurrentMap<String, ImmutableMap<FlowPhase, LatencyHistogram>>
+      histograms = new ConcurrentHashMap<>();
+
+  @NonFinalForTesting
+  private static Duration flushInterval = getFlowPhaseHistogramsFlushInterval();
+
+  private static final AtomicLong nextFlushNanos =
+      new AtomicLong(System.nanoTime() + getFlushIntervalNanos());
+
+  private FlowPhaseHistograms() {}
+
+  @VisibleForTesting
+  static void setFlushIntervalForTest(Duration interval) {
+    flushInterval = interval;
+    nextFlushNanos.set(System.nanoTime() + getFlushIntervalNanos());
+  }
+
+  /** Records the time taken by a phase of the given command. */
+  public static void record(String commandName, FlowPhase phase, long nanos) {
+    getHistograms(commandName.isEmpty() ? UNKNOWN_COMMAND : commandName)
+        .get(phase)
+        .record(NANOSECONDS.toMicros(nanos));
+    long now = System.nanoTime();
+    long nextFlush = nextFlushNanos.get();
+    // Only the thread that wins the race to move the next flush time forward does the flush.
+    if (now - nextFlush >= 0
+        && nextFlushNanos.compareAndSet(nextFlush, now + getFlushIntervalNanos())) {
+      flush();
+    }
+  }
+
+  private static long getFlushIntervalNanos() {
+    return MILLISECONDS.toNanos(flushInterval.getMillis());
+  }
+
+  private static ImmutableMap<FlowPhase, LatencyHistogram> getHistograms(String commandName) {
+    ImmutableMap<FlowPhase, LatencyHistogram> commandHistograms = histograms.get(commandName);
+    if (commandHistograms != null) {
+      return commandHistograms;
+    }
+    EnumMap<FlowPhase, LatencyHistogram> newHistograms = new EnumMap<>(FlowPhase.class);
+    for (FlowPhase phase : FlowPhase.values()) {
+      newHistograms.put(phase, new LatencyHistogram());
+    }
+    return histograms.computeIfAbsent(commandName, k -> Maps.immutableEnumMap(newHistograms));
+  }
+
+  /** Returns the values recorded since the last drain, by command and phase, and resets them. */
+  @VisibleForTesting
+  static ImmutableMap<String, ImmutableMap<FlowPhase, Snapshot>> drain() {
+    return histograms.entrySet().stream()
+        .collect(
+            toImmutableMap(
+                Map.Entry::getKey,
+                entry ->
+                    Maps.immutableEnumMap(
+                        Maps.transformValues(entry.getValue(), LatencyHistogram::drain))));
+  }
+
+  /** Logs a summary of the values recorded since the last flush, and resets the histograms. */
+  @VisibleForTesting
+  static void flush() {
+    drain()
+        .forEach(
+            (commandName, snapshots) -> {
+              StringBuilder summary = new StringBuilder();
+              snapshots.forEach(
+                  (phase, snapshot) -> {
+                    if (snapshot.getTotalCount() > 0) {
+                      summary.append(formatSnapshot(phase, snapshot));
+                    }
+                  });
+              if (summary.length() > 0) {
+                logger.atInfo().log(
+                    "Flow phase latencies in ms for %s over the last %s:%s",
+                    commandName, flushInterval, summary);
+              }
+            });
+  }
+
+  private static String formatSnapshot(FlowPhase phase, Snapshot snapshot) {
+    StringBuilder result =
+        new StringBuilder(String.format(" %s{count=%d", phase, snapshot.getTotalCount()));
+    for (double percentile : LOGGED_PERCENTILES) {
+      result.append(
+          String.format(
+              ", p%.0f=%s", percentile, toMillis(snapshot.getValueAtPercentile(percentile))));
+    }
+    return result.append(String.format(", max=%s}", toMillis(snapshot.getMax()))).toString();
+  }
+
+  private static String toMillis(long micros) {
+    return String.format("%.1f", micros / 1000.0);
+  }
+}
@@ -16,8 +16,12 @@ package google.registry.pricing;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableSetMultimap.toImmutableSetMultimap;
 import static google.registry.util.DomainNameUtils.getTldFromDomainName;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Streams;
 import google.registry.model.pricing.PremiumPricingEngine;
 import google.registry.model.pricing.PremiumPricingEngine.DomainPrices;
 import google.registry.model.registry.Registry;
@@ -43,8 +47,13 @@ public final class PricingEngineProxy {
 
   /** Returns the billing cost for renewing the specified domain name for this many years. */
   public static Money getDomainRenewCost(String domainName, DateTime priceTime, int years) {
+    return getDomainRenewCost(getPricesForDomainName(domainName, priceTime), years);
+  }
+
+  /** Returns the billing cost for renewing a domain with the given prices for this many years. */
+  public static Money getDomainRenewCost(DomainPrices domainPrices, int years) {
     checkArgument(years > 0, "Number of years must be positive");
-    return getPricesForDomainName(domainName, priceTime).getRenewCost().multipliedBy(years);
+    return domainPrices.getRenewCost().multipliedBy(years);
   }
 
   /** Returns true if the specified domain name is premium. */
@@ -64,10 +73,34 @@ public final class PricingEngineProxy {
    */
   public static DomainPrices getPricesForDomainName(String domainName, DateTime priceTime) {
     String tld = getTldFromDomainName(domainName);
+    return getPricingEngine(tld).getDomainPrices(domainName, priceTime);
+  }
+
+  /**
+   * Returns the full {@link DomainPrices} details for all of the given domain names, keyed by
+   * domain name.
+   *
+   * <p>The names are grouped by TLD, and each group is priced in a single call to the {@link
+   * PremiumPricingEngine} configured for that TLD.
+   */
+  public static ImmutableMap<String, DomainPrices> getPricesForDomainNames(
+      Iterable<String> domainNames, DateTime priceTime) {
+    ImmutableSetMultimap<String, String> domainNamesByTld =
+        Streams.stream(domainNames)
+            .collect(toImmutableSetMultimap(name -> getTldFromDomainName(name), name -> name));
+    ImmutableMap.Builder<String, DomainPrices> prices = new ImmutableMap.Builder<>();
+    for (String tld : domainNamesByTld.keySet()) {
+      prices.putAll(
+          getPricingEngine(tld).getDomainPrices(tld, domainNamesByTld.get(tld), priceTime));
+    }
+    return prices.build();
+  }
+
+  private static PremiumPricingEngine getPricingEngine(String tld) {
     String clazz = Registry.get(tld).getPremiumPricingEngineClassName();
     PremiumPricingEngine engine = premiumPricingEngines.get(clazz);
     checkState(engine != null, "Could not load pricing engine %s for TLD %s", clazz, tld);
-    return engine.getDomainPrices(domainName, priceTime);
+    return engine;
   }
 
   private PricingEngineProxy() {}
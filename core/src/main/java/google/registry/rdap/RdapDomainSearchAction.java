@@ -30,6 +30,7 @@ import com.google.common.net.InetAddresses;
 import com.google.common.primitives.Booleans;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.cmd.Query;
+import google.registry.config.RegistryConfig.Config;
 import google.registry.model.domain.DomainBase;
 import google.registry.model.host.HostResource;
 import google.registry.rdap.RdapJsonFormatter.OutputDataType;
@@ -46,9 +47,13 @@ import google.registry.request.Parameter;
 import google.registry.request.auth.Auth;
 import google.registry.util.NonFinalForTesting;
 import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import javax.inject.Inject;
 
@@ -82,6 +87,8 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
   @Inject @Parameter("name") Optional<String> nameParam;
   @Inject @Parameter("nsLdhName") Optional<String> nsLdhNameParam;
   @Inject @Parameter("nsIp") Optional<String> nsIpParam;
+  @Inject @Config("rdapSearchIndexEnabled") boolean searchIndexEnabled;
+  @Inject RdapDomainSearchIndex searchIndex;
   @Inject public RdapDomainSearchAction() {
     super("domain search", EndpointType.DOMAINS);
   }
@@ -170,7 +177,7 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
       throw new UnprocessableEntityException(
           "Initial search string is required for wildcard domain searches without a TLD suffix");
     }
-    return searchByDomainNameByTld(partialStringQuery.getSuffix());
+    return searchByDomainNameByTld(partialStringQuery);
   }
 
   /** Searches for domains by domain name without a wildcard or interest in deleted entries. */
@@ -187,6 +194,12 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
   /** Searches for domains by domain name with an initial string, wildcard and possible suffix. */
   private DomainSearchResponse searchByDomainNameWithInitialString(
       final RdapSearchPattern partialStringQuery) {
+    if (shouldUseSearchIndex()) {
+      Optional<DomainSearchResponse> response = searchByDomainNameUsingIndex(partialStringQuery);
+      if (response.isPresent()) {
+        return response.get();
+      }
+    }
     // We can't query for undeleted domains as part of the query itself; that would require an
     // inequality query on deletion time, and we are already using inequality queries on
     // fullyQualifiedDomainName. So we instead pick an arbitrary limit of
@@ -215,7 +228,14 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
   }
 
   /** Searches for domains by domain name with a TLD suffix. */
-  private DomainSearchResponse searchByDomainNameByTld(String tld) {
+  private DomainSearchResponse searchByDomainNameByTld(RdapSearchPattern partialStringQuery) {
+    if (shouldUseSearchIndex()) {
+      Optional<DomainSearchResponse> response = searchByDomainNameUsingIndex(partialStringQuery);
+      if (response.isPresent()) {
+        return response.get();
+      }
+    }
+    String tld = partialStringQuery.getSuffix();
     // Even though we are not searching on fullyQualifiedDomainName, we want the results to come
     // back ordered by name, so we are still in the same boat as
     // searchByDomainNameWithInitialString, unable to perform an inequality query on deletion time.
@@ -233,6 +253,27 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
     return makeSearchResults(getMatchingResources(query, true, querySizeLimit));
   }
 
+  /**
+   * Searches for domains by domain name with a wildcard, using the {@link RdapDomainSearchIndex}.
+   *
+   * <p>The index only holds active domains, and already filters on the suffix, cursor and
+   * registrar, so it usually returns exactly the next page of names (plus one, to tell whether
+   * there are more). The domains are still checked for visibility after loading, in case they
+   * changed since the index was last refreshed.
+   *
+   * @return the response, or empty if the index can't be used, in which case Datastore has to be
+   *     queried instead
+   */
+  private Optional<DomainSearchResponse> searchByDomainNameUsingIndex(
+      RdapSearchPattern partialStringQuery) {
+    return searchUsingIndex(
+        (cursor, limit) ->
+            searchIndex.searchByDomainName(
+                partialStringQuery, cursor, getDesiredRegistrar(), limit),
+        this::shouldBeVisible,
+        IncompletenessWarningType.COMPLETE);
+  }
+
   /**
    * Searches for domains by nameserver name, returning a JSON array of domain info maps.
    *
@@ -411,6 +452,12 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
    * #searchByNameserverIp} after they assemble the relevant host keys.
    */
   private DomainSearchResponse searchByNameserverRefs(final Iterable<Key<HostResource>> hostKeys) {
+    if (shouldUseSearchIndex()) {
+      Optional<DomainSearchResponse> response = searchByNameserverRefsUsingIndex(hostKeys);
+      if (response.isPresent()) {
+        return response.get();
+      }
+    }
     // We must break the query up into chunks, because the in operator is limited to 30 subqueries.
     // Since it is possible for the same domain to show up more than once in our result list (if
     // we do a wildcard nameserver search that returns multiple nameservers used by the same
@@ -454,6 +501,96 @@ public class RdapDomainSearchAction extends RdapSearchActionBase {
         (numHostKeysSearched > 0) ? Optional.of((long) domains.size()) : Optional.empty());
   }
 
+  /**
+   * Locates all domains which are linked to a set of host keys, using the {@link
+   * RdapDomainSearchIndex}.
+   *
+   * <p>Rather than querying for every domain using each host, this merges the sorted postings
+   * lists of the hosts, so only the domains on the requested page are ever loaded.
+   *
+   * @return the response, or empty if the index can't be used, in which case Datastore has to be
+   *     queried instead
+   */
+  private Optional<DomainSearchResponse> searchByNameserverRefsUsingIndex(
+      final Iterable<Key<HostResource>> hostKeys) {
+    ImmutableList<Key<HostResource>> hostKeyList = ImmutableList.copyOf(hostKeys);
+    Optional<DomainSearchResponse> response =
+        searchUsingIndex(
+            (cursor, limit) -> searchIndex.searchByNameservers(hostKeyList, cursor, limit),
+            this::isAuthorized,
+            (hostKeyList.size() >= maxNameserversInFirstStage)
+                ? IncompletenessWarningType.MIGHT_BE_INCOMPLETE
+                : IncompletenessWarningType.COMPLETE);
+    response.ifPresent(unused -> metricInformationBuilder.setNumHostsRetrieved(hostKeyList.size()));
+    return response;
+  }
+
+  /**
+   * Returns whether the search can be answered from the {@link RdapDomainSearchIndex}.
+   *
+   * <p>The index only holds active domains, so searches including deleted domains must still go to
+   * Datastore.
+   */
+  private boolean shouldUseSearchIndex() {
+    return searchIndexEnabled && !shouldIncludeDeleted();
+  }
+
+  /**
+   * Searches the {@link RdapDomainSearchIndex} and loads the domains it finds, in order, for a page
+   * of results.
+   *
+   * <p>Domains that fail the visibility check, because they changed since the index was last
+   * refreshed, are dropped, and the index is searched again past them, until one more visible
+   * domain than fits on the page has been found (so that truncation is detected), or the index has
+   * no more matches. All loaded domains count towards the number of domains retrieved.
+   *
+   * @param search returns the keys of up to the given number of domains whose names come after the
+   *     given cursor, or empty if the index can't be used
+   * @return the response, or empty if the index can't be used, in which case Datastore has to be
+   *     queried instead
+   */
+  private Optional<DomainSearchResponse> searchUsingIndex(
+      BiFunction<Optional<String>, Integer, Optional<ImmutableList<Key<DomainBase>>>> search,
+      Predicate<DomainBase> visibilityCheck,
+      IncompletenessWarningType incompletenessWarningType) {
+    int numWanted = rdapResultSetMaxSize + 1;
+    List<DomainBase> visibleDomains = new ArrayList<>();
+    long numDomainsRetrieved = 0;
+    Optional<String> cursor = cursorString;
+    while (visibleDomains.size() < numWanted) {
+      int limit = numWanted - visibleDomains.size();
+      Optional<ImmutableList<Key<DomainBase>>> domainKeys = search.apply(cursor, limit);
+      if (!domainKeys.isPresent()) {
+        if (numDomainsRetrieved == 0) {
+          return Optional.empty();
+        }
+        break;
+      }
+      Map<Key<DomainBase>, DomainBase> domains = ofy().load().keys(domainKeys.get());
+      numDomainsRetrieved += domainKeys.get().size();
+      Optional<String> lastName = Optional.empty();
+      for (Key<DomainBase> domainKey : domainKeys.get()) {
+        DomainBase domain = domains.get(domainKey);
+        if (domain == null) {
+          continue;
+        }
+        lastName = Optional.of(domain.getFullyQualifiedDomainName());
+        if (visibilityCheck.test(domain)) {
+          visibleDomains.add(domain);
+        }
+      }
+      // Stop if the index has no more matches, or if none of this batch could be loaded, in which
+      // case there is no name to continue the search from.
+      if (domainKeys.get().size() < limit || !lastName.isPresent()) {
+        break;
+      }
+      cursor = lastName;
+    }
+    return Optional.of(
+        makeSearchResults(
+            visibleDomains, incompletenessWarningType, Optional.of(numDomainsRetrieved)));
+  }
+
   /** Output JSON for a list of domains, with no incompleteness warnings. */
   private DomainSearchResponse makeSearchResults(List<DomainBase> domains) {
     return makeSearchResults(
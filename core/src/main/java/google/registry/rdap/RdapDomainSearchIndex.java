@@ -0,0 +1,443 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.partition;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.DateTimeUtils.END_OF_TIME;
+import static java.util.Comparator.comparing;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.FluentLogger;
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+import google.registry.config.RegistryConfig.Config;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.host.HostResource;
+import google.registry.model.ofy.CommitLogMutation;
+import google.registry.util.Clock;
+import google.registry.util.NonFinalForTesting;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * In-memory secondary index of active domains, used to answer RDAP domain searches.
+ *
+ * <p>Datastore can't combine the inequality on {@code fullyQualifiedDomainName} needed for a
+ * partial match search with an inequality on {@code deletionTime}, so searching Datastore directly
+ * means over-fetching and throwing away deleted domains in memory, with no guarantee of filling a
+ * page. This index instead keeps the names of all active domains sorted in memory, both globally
+ * and per TLD, along with postings lists from each nameserver to the domains that use it. Wildcard
+ * and nameserver searches then become bounded range scans that return exactly the keys of the next
+ * page of results.
+ *
+ * <p>The index is built by the searches made on an instance, each of which loads the next chunk
+ * of at most {@link #buildChunkSize} active domains, so that no request has to scan all of them.
+ * Once built, it is refreshed incrementally by reading the keys of the {@link CommitLogMutation}s
+ * written since the last refresh (or since the build started) and reloading the domains they refer
+ * to. Writes made without backups are not seen by the refresh, nor are hard deletions; neither
+ * happens to domains in normal operation.
+ *
+ * <p>Only one request builds or refreshes the index at a time, and searches never wait for it:
+ * while the index is being built, searches get no answer from it and have to query Datastore
+ * instead, and while it is being refreshed, they get answers as of the previous refresh. If the
+ * index ever holds more than its maximum number of domains, it is dropped for good, and all
+ * searches go to Datastore.
+ *
+ * <p>Results are only as fresh as the last refresh, so callers must load the returned domains and
+ * check their visibility before using them.
+ */
+@Singleton
+public class RdapDomainSearchIndex {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /**
+   * The amount by which each incremental refresh overlaps the previous one.
+   *
+   * <p>Commit log manifests are keyed on the transaction time, which is assigned before the
+   * transaction commits, so a manifest can become visible only after a refresh has read past its
+   * timestamp. Datastore transactions can't run for longer than sixty seconds, so re-reading the
+   * last minute ensures nothing is missed. Reading a mutation twice is harmless, because the
+   * current version of the domain is always what gets indexed.
+   */
+  private static final Duration REFRESH_OVERLAP = Duration.standardMinutes(1);
+
+  /** The number of domains to load from Datastore at once when applying changes. */
+  private static final int LOAD_BATCH_SIZE = 500;
+
+  /** The number of domains that each search loads into the index while it is being built. */
+  @NonFinalForTesting static int buildChunkSize = 5000;
+
+  private final Clock clock;
+  private final Duration refreshInterval;
+  private final int maxDomains;
+
+  /** Held while building or refreshing the index, which searches never wait for. */
+  private final ReentrantLock refreshLock = new ReentrantLock();
+
+  /** All indexed domains, keyed and sorted by fully qualified domain name. */
+  private final ConcurrentNavigableMap<String, IndexedDomain> domainsByName =
+      new ConcurrentSkipListMap<>();
+
+  /** Sorted domain names in each TLD, for searches restricted to a TLD. */
+  private final ConcurrentMap<String, NavigableSet<String>> namesByTld = new ConcurrentHashMap<>();
+
+  /** Sorted names of the domains using each nameserver. */
+  private final ConcurrentMap<Key<HostResource>, NavigableSet<String>> namesByNameserver =
+      new ConcurrentHashMap<>();
+
+  /** Indexed domains with a deletion time set, ordered by when they need to be pruned. */
+  @GuardedBy("refreshLock")
+  private final PriorityQueue<IndexedDomain> pendingDeletes =
+      new PriorityQueue<>(comparing(IndexedDomain::deletionTime));
+
+  /** The number of indexed domains, since counting the entries of a skip list is linear. */
+  @GuardedBy("refreshLock")
+  private int numDomains;
+
+  /** The time the current build started, while the index is being built. */
+  @GuardedBy("refreshLock")
+  @Nullable
+  private DateTime buildStartTime;
+
+  /** Where the next chunk of the current build starts, if it isn't the first. */
+  @GuardedBy("refreshLock")
+  @Nullable
+  private Cursor buildCursor;
+
+  @GuardedBy("refreshLock")
+  @Nullable
+  private DateTime lastRefreshTime;
+
+  /** Set once the index has been built, after which searches are answered from it. */
+  private volatile boolean built;
+
+  /** Set if the index outgrew its maximum size, after which it is no longer used. */
+  private volatile boolean abandoned;
+
+  @Inject
+  RdapDomainSearchIndex(
+      Clock clock,
+      @Config("rdapSearchIndexRefreshInterval") Duration refreshInterval,
+      @Config("rdapSearchIndexMaxDomains") int maxDomains) {
+    this.clock = clock;
+    this.refreshInterval = refreshInterval;
+    this.maxDomains = maxDomains;
+  }
+
+  /** Summary of an indexed domain, holding just the fields that searches filter on. */
+  @AutoValue
+  abstract static class IndexedDomain {
+    abstract Key<DomainBase> key();
+
+    abstract String fullyQualifiedDomainName();
+
+    abstract String tld();
+
+    abstract String currentSponsorClientId();
+
+    abstract DateTime deletionTime();
+
+    abstract ImmutableSet<Key<HostResource>> nsHosts();
+
+    static IndexedDomain create(DomainBase domain) {
+      return new AutoValue_RdapDomainSearchIndex_IndexedDomain(
+          Key.create(domain),
+          domain.getFullyQualifiedDomainName(),
+          domain.getTld(),
+          domain.getPersistedCurrentSponsorClientId(),
+          domain.getDeletionTime(),
+          domain.getNameservers());
+    }
+  }
+
+  /**
+   * Returns the keys of active domains matching a domain name search pattern, in name order, or
+   * empty if the index can't be used yet (or at all), in which case Datastore has to be queried.
+   *
+   * <p>If the pattern has a suffix, only domains in that TLD are returned; otherwise the initial
+   * string must not be empty, since that would mean listing every domain in the system.
+   *
+   * @param partialStringQuery the search pattern, which must have a wildcard
+   * @param cursorString if present, only names after this one are returned
+   * @param desiredRegistrar if present, only domains sponsored by this registrar are returned
+   * @param limit the maximum number of keys to return
+   */
+  Optional<ImmutableList<Key<DomainBase>>> searchByDomainName(
+      RdapSearchPattern partialStringQuery,
+      Optional<String> cursorString,
+      Optional<String> desiredRegistrar,
+      int limit) {
+    if (!refreshIfStale()) {
+      return Optional.empty();
+    }
+    NavigableSet<String> names;
+    if (partialStringQuery.getSuffix() == null) {
+      names = domainsByName.navigableKeySet();
+    } else {
+      names = namesByTld.get(partialStringQuery.getSuffix());
+      if (names == null) {
+        return Optional.of(ImmutableList.of());
+      }
+    }
+    String initialString = partialStringQuery.getInitialString();
+    if (!initialString.isEmpty()) {
+      names = names.subSet(initialString, true, partialStringQuery.getNextInitialString(), false);
+    }
+    if (cursorString.isPresent()) {
+      names = names.tailSet(cursorString.get(), false);
+    }
+    return Optional.of(
+        collectActive(names, desiredRegistrar, limit).stream()
+            .map(IndexedDomain::key)
+            .collect(toImmutableList()));
+  }
+
+  /**
+   * Returns the keys of active domains using any of the given nameservers, in name order, or empty
+   * if the index can't be used yet (or at all), in which case Datastore has to be queried.
+   *
+   * @param hostKeys the nameservers to search for
+   * @param cursorString if present, only names after this one are returned
+   * @param limit the maximum number of keys to return
+   */
+  Optional<ImmutableList<Key<DomainBase>>> searchByNameservers(
+      Iterable<Key<HostResource>> hostKeys, Optional<String> cursorString, int limit) {
+    if (!refreshIfStale()) {
+      return Optional.empty();
+    }
+    // Each postings list is already sorted, so the first page of the union is contained within the
+    // union of the first pages of the individual lists.
+    TreeMap<String, Key<DomainBase>> domainKeys = new TreeMap<>();
+    for (Key<HostResource> hostKey : hostKeys) {
+      NavigableSet<String> postings = namesByNameserver.get(hostKey);
+      if (postings == null) {
+        continue;
+      }
+      if (cursorString.isPresent()) {
+        postings = postings.tailSet(cursorString.get(), false);
+      }
+      for (IndexedDomain domain : collectActive(postings, Optional.empty(), limit)) {
+        if (domain.nsHosts().contains(hostKey)) {
+          domainKeys.put(domain.fullyQualifiedDomainName(), domain.key());
+        }
+      }
+    }
+    return Optional.of(domainKeys.values().stream().limit(limit).collect(toImmutableList()));
+  }
+
+  /** Walks a sorted set of names, returning up to {@code limit} domains that are still active. */
+  private ImmutableList<IndexedDomain> collectActive(
+      Iterable<String> names, Optional<String> desiredRegistrar, int limit) {
+    DateTime now = clock.nowUtc();
+    ImmutableList.Builder<IndexedDomain> domains = new ImmutableList.Builder<>();
+    int count = 0;
+    for (String name : names) {
+      if (count >= limit) {
+        break;
+      }
+      IndexedDomain domain = domainsByName.get(name);
+      // Pending deletes whose deletion time has passed since the last refresh are skipped here, and
+      // pruned from the index on the next refresh.
+      if (domain == null || !now.isBefore(domain.deletionTime())) {
+        continue;
+      }
+      if (desiredRegistrar.isPresent()
+          && !desiredRegistrar.get().equals(domain.currentSponsorClientId())) {
+        continue;
+      }
+      domains.add(domain);
+      count++;
+    }
+    return domains.build();
+  }
+
+  /**
+   * Builds the next chunk of the index, or brings it up to date if it hasn't been refreshed within
+   * the refresh interval, unless another request is already doing so. Returns whether the index
+   * can be used.
+   */
+  private boolean refreshIfStale() {
+    if (abandoned) {
+      return false;
+    }
+    if (refreshLock.tryLock()) {
+      try {
+        DateTime now = clock.nowUtc();
+        if (!built) {
+          buildNextChunk(now);
+        } else if (!now.isBefore(lastRefreshTime.plus(refreshInterval))) {
+          applyChangesSince(lastRefreshTime.minus(REFRESH_OVERLAP), now);
+          prunePendingDeletes(now);
+          lastRefreshTime = now;
+        }
+        if (numDomains > maxDomains) {
+          abandon();
+        }
+      } catch (RuntimeException e) {
+        // Keep the index as it is, and try again on the next search.
+        logger.atWarning().withCause(e).log("Failed to refresh the RDAP domain search index.");
+      } finally {
+        refreshLock.unlock();
+      }
+    }
+    return built && !abandoned;
+  }
+
+  /**
+   * Loads the next chunk of active domains into the index, and once there are none left, catches
+   * up on the changes made since the build started.
+   */
+  @GuardedBy("refreshLock")
+  private void buildNextChunk(DateTime now) {
+    if (buildStartTime == null) {
+      buildStartTime = now;
+    }
+    Query<DomainBase> query =
+        ofy()
+            .load()
+            .type(DomainBase.class)
+            .filter("deletionTime >", buildStartTime)
+            .limit(buildChunkSize);
+    if (buildCursor != null) {
+      query = query.startAt(buildCursor);
+    }
+    QueryResultIterator<DomainBase> domains = query.iterator();
+    int numLoaded = 0;
+    while (domains.hasNext()) {
+      index(domains.next(), now);
+      if (++numLoaded % LOAD_BATCH_SIZE == 0) {
+        ofy().clearSessionCache();
+      }
+    }
+    ofy().clearSessionCache();
+    if (numLoaded == buildChunkSize) {
+      buildCursor = domains.getCursor();
+      logger.atInfo().log("Building RDAP domain search index, %d domains so far.", numDomains);
+      return;
+    }
+    // Domains that changed after their chunk was loaded are picked up from the commit logs.
+    applyChangesSince(buildStartTime.minus(REFRESH_OVERLAP), now);
+    prunePendingDeletes(now);
+    lastRefreshTime = now;
+    buildStartTime = null;
+    buildCursor = null;
+    built = true;
+    logger.atInfo().log("Built RDAP domain search index with %d domains.", numDomains);
+  }
+
+  /** Drops the index for good, because it has grown too large to keep in memory. */
+  @GuardedBy("refreshLock")
+  private void abandon() {
+    logger.atWarning().log(
+        "RDAP domain search index has %d domains, more than the maximum of %d; not using it.",
+        numDomains, maxDomains);
+    abandoned = true;
+    domainsByName.clear();
+    namesByTld.clear();
+    namesByNameserver.clear();
+    pendingDeletes.clear();
+    numDomains = 0;
+  }
+
+  @GuardedBy("refreshLock")
+  private void applyChangesSince(DateTime lowerBound, DateTime now) {
+    ImmutableSet<Key<DomainBase>> changedKeys =
+        CommitLogMutation.loadKeysOfEntitiesSavedSince(DomainBase.class, lowerBound);
+    for (List<Key<DomainBase>> batch : partition(changedKeys, LOAD_BATCH_SIZE)) {
+      for (DomainBase domain : ofy().load().keys(batch).values()) {
+        index(domain, now);
+      }
+      ofy().clearSessionCache();
+    }
+    logger.atInfo().log("Applied %d changed domains to RDAP search index.", changedKeys.size());
+  }
+
+  /** Removes all pending deletes whose deletion time has passed. */
+  @GuardedBy("refreshLock")
+  private void prunePendingDeletes(DateTime now) {
+    while (!pendingDeletes.isEmpty() && !now.isBefore(pendingDeletes.peek().deletionTime())) {
+      remove(pendingDeletes.poll());
+    }
+  }
+
+  /** Adds, updates or removes a single domain, depending on whether it is still active. */
+  @GuardedBy("refreshLock")
+  private void index(DomainBase domain, DateTime now) {
+    IndexedDomain existing = domainsByName.get(domain.getFullyQualifiedDomainName());
+    // A deleted domain may share its name with a newer, active registration, so only drop the
+    // existing entry if it was for this same domain.
+    if (!now.isBefore(domain.getDeletionTime())) {
+      if (existing != null && existing.key().equals(Key.create(domain))) {
+        remove(existing);
+      }
+      return;
+    }
+    if (existing != null) {
+      remove(existing);
+    }
+    IndexedDomain indexedDomain = IndexedDomain.create(domain);
+    String name = indexedDomain.fullyQualifiedDomainName();
+    domainsByName.put(name, indexedDomain);
+    numDomains++;
+    namesByTld.computeIfAbsent(indexedDomain.tld(), tld -> new ConcurrentSkipListSet<>()).add(name);
+    for (Key<HostResource> hostKey : indexedDomain.nsHosts()) {
+      namesByNameserver.computeIfAbsent(hostKey, key -> new ConcurrentSkipListSet<>()).add(name);
+    }
+    if (indexedDomain.deletionTime().isBefore(END_OF_TIME)) {
+      pendingDeletes.add(indexedDomain);
+    }
+  }
+
+  /**
+   * Removes a domain from the index, if it is still the entry indexed under its name.
+   *
+   * <p>Entries are only ever removed by value, so stale references to an entry that has since been
+   * replaced (for instance in {@link #pendingDeletes}, after a delete was cancelled) are harmless.
+   */
+  @GuardedBy("refreshLock")
+  private void remove(IndexedDomain domain) {
+    String name = domain.fullyQualifiedDomainName();
+    if (!domainsByName.remove(name, domain)) {
+      return;
+    }
+    numDomains--;
+    Optional.ofNullable(namesByTld.get(domain.tld())).ifPresent(names -> names.remove(name));
+    for (Key<HostResource> hostKey : domain.nsHosts()) {
+      Optional.ofNullable(namesByNameserver.get(hostKey)).ifPresent(names -> names.remove(name));
+    }
+  }
+}
@@ -0,0 +1,227 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde;
+
+import static com.google.appengine.api.ThreadManager.currentRequestThreadFactory;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.apphosting.api.ApiProxy;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.WillCloseWhenClosed;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * {@link OutputStream} that hands its data off to a background thread to be written to the
+ * underlying stream.
+ *
+ * <p>Writes are buffered into fixed-size chunks, which are passed through a bounded queue to a
+ * single thread that writes them, in order, to the wrapped stream. This lets an expensive stream
+ * stack (such as {@link Ghostryde} compression and encryption followed by a GCS upload) run
+ * concurrently with whatever is producing the data, while the bounded queue keeps the amount of
+ * data in flight, and therefore memory use, fixed no matter how big the output gets.
+ *
+ * <p>If the wrapped stream throws, the exception is rethrown to the producer by the next write, or
+ * by {@link #close()} at the latest. The wrapped stream is closed when this stream is closed.
+ */
+@NotThreadSafe
+final class PipelinedOutputStream extends OutputStream {
+
+  /** The size of the chunks that data is handed off to the background thread in. */
+  static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  /** The number of chunks that can be waiting to be written before writes block. */
+  static final int DEFAULT_MAX_PENDING_CHUNKS = 32;
+
+  /** Marker put on the queue to tell the background thread that there's no more data. */
+  private static final byte[] END_OF_STREAM = new byte[0];
+
+  private final OutputStream out;
+  private final int chunkSize;
+  private final BlockingQueue<byte[]> queue;
+  private final ExecutorService executor;
+  private final Future<?> writerFuture;
+
+  /** Set by the background thread if writing to {@link #out} failed. */
+  private volatile Throwable failure;
+
+  private byte[] chunk;
+  private int chunkLength;
+  private boolean closed;
+
+  /**
+   * Returns a pipelined wrapper around {@code out} with the default buffering, or {@code out}
+   * itself if this isn't running in an App Engine request (e.g. when running as a command-line
+   * tool).
+   */
+  static OutputStream wrap(@WillCloseWhenClosed OutputStream out) {
+    // currentRequestThreadFactory() throws rather than returning null outside of a request.
+    ThreadFactory threadFactory =
+        (ApiProxy.getCurrentEnvironment() == null) ? null : currentRequestThreadFactory();
+    if (threadFactory == null) {
+      return out;
+    }
+    return new PipelinedOutputStream(
+        out, threadFactory, DEFAULT_CHUNK_SIZE, DEFAULT_MAX_PENDING_CHUNKS);
+  }
+
+  PipelinedOutputStream(
+      @WillCloseWhenClosed OutputStream out,
+      ThreadFactory threadFactory,
+      int chunkSize,
+      int maxPendingChunks) {
+    checkArgument(chunkSize > 0, "chunkSize must be positive");
+    checkArgument(maxPendingChunks > 0, "maxPendingChunks must be positive");
+    this.out = checkNotNull(out, "out");
+    this.chunkSize = chunkSize;
+    this.chunk = new byte[chunkSize];
+    this.queue = new ArrayBlockingQueue<>(maxPendingChunks);
+    this.executor = Executors.newSingleThreadExecutor(threadFactory);
+    this.writerFuture = executor.submit(this::writeChunks);
+  }
+
+  /** Runs on the background thread, writing chunks until the end of the stream is reached. */
+  private void writeChunks() {
+    while (true) {
+      byte[] next;
+      try {
+        next = queue.take();
+      } catch (InterruptedException e) {
+        // The producer gave up on the stream (see close()), so there's nothing left to do.
+        return;
+      }
+      if (next == END_OF_STREAM) {
+        return;
+      }
+      if (failure != null) {
+        // Keep draining the queue so that the producer never blocks forever.
+        continue;
+      }
+      try {
+        out.write(next);
+      } catch (Throwable t) {
+        failure = t;
+      }
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkState(!closed, "Stream is closed");
+    chunk[chunkLength++] = (byte) b;
+    if (chunkLength == chunkSize) {
+      handOffChunk();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    checkState(!closed, "Stream is closed");
+    while (len > 0) {
+      int n = Math.min(len, chunkSize - chunkLength);
+      System.arraycopy(b, off, chunk, chunkLength, n);
+      chunkLength += n;
+      off += n;
+      len -= n;
+      if (chunkLength == chunkSize) {
+        handOffChunk();
+      }
+    }
+  }
+
+  /**
+   * Hands off any partially filled chunk to the background thread.
+   *
+   * <p>This doesn't wait for the data to be written, nor flush the wrapped stream, since the point
+   * of this class is to not wait on it. The wrapped stream is flushed when this stream is closed.
+   */
+  @Override
+  public void flush() throws IOException {
+    checkState(!closed, "Stream is closed");
+    if (chunkLength > 0) {
+      handOffChunk();
+    }
+  }
+
+  /**
+   * Writes out all remaining data, waits for the background thread to finish, and closes the
+   * wrapped stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try {
+      flush();
+      put(END_OF_STREAM);
+      try {
+        Uninterruptibles.getUninterruptibly(writerFuture);
+      } catch (ExecutionException e) {
+        failure = e.getCause();
+      }
+      throwIfFailed();
+    } finally {
+      closed = true;
+      executor.shutdownNow();
+      out.close();
+    }
+  }
+
+  private void handOffChunk() throws IOException {
+    put(chunkLength == chunkSize ? chunk : Arrays.copyOf(chunk, chunkLength));
+    chunk = new byte[chunkSize];
+    chunkLength = 0;
+  }
+
+  private void put(byte[] data) throws IOException {
+    throwIfFailed();
+    try {
+      queue.put(data);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while handing off data to writer thread");
+    }
+  }
+
+  private void throwIfFailed() throws IOException {
+    Throwable t = failure;
+    if (t == null) {
+      return;
+    }
+    if (t instanceof IOException) {
+      throw new IOException("Background write failed", t);
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    }
+    if (t instanceof Error) {
+      throw (Error) t;
+    }
+    throw new IOException("Background write failed", t);
+  }
+}
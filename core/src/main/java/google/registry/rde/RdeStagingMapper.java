@@ -16,7 +16,7 @@ package google.registry.rde;
 
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
-import static google.registry.model.EppResourceUtils.loadAtPointInTime;
+import static google.registry.model.EppResourceUtils.loadAtPointsInTime;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
 import com.google.appengine.tools.mapreduce.Mapper;
@@ -24,7 +24,7 @@ import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
-import com.google.common.collect.Maps;
+import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Result;
 import google.registry.model.EppResource;
 import google.registry.model.contact.ContactResource;
@@ -113,9 +113,9 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
             .map(PendingDeposit::watermark)
             .collect(toImmutableSet());
 
-    // Launch asynchronous fetches of point-in-time representations of resource.
+    // Launch a batched asynchronous fetch of point-in-time representations of resource.
     ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes =
-        ImmutableMap.copyOf(Maps.asMap(dates, input -> loadAtPointInTime(resource, input)));
+        loadAtPointsInTime(resource, dates);
 
     // Convert resource to an XML fragment for each watermark/mode pair lazily and cache the result.
     Fragmenter fragmenter = new Fragmenter(resourceAtTimes);
@@ -151,6 +151,8 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
   private class Fragmenter {
     private final Map<WatermarkModePair, Optional<DepositFragment>> cache = new HashMap<>();
     private final ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes;
+    private final Map<Key<DomainBase>, ImmutableMap<DateTime, Result<DomainBase>>>
+        superordinateDomainAtTimes = new HashMap<>();
 
     long cacheHits = 0;
     long resourcesNotFound = 0;
@@ -188,10 +190,7 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
         HostResource host = (HostResource) resource;
         result = Optional.of(host.isSubordinate()
             ? marshaller.marshalSubordinateHost(
-                host,
-                // Note that loadAtPointInTime() does cloneProjectedAtTime(watermark) for us.
-                loadAtPointInTime(
-                    ofy().load().key(host.getSuperordinateDomain()).now(), watermark).now())
+                host, loadSuperordinateDomainAtTime(host.getSuperordinateDomain(), watermark))
             : marshaller.marshalExternalHost(host));
         cache.put(WatermarkModePair.create(watermark, RdeMode.FULL), result);
         cache.put(WatermarkModePair.create(watermark, RdeMode.THIN), result);
@@ -200,6 +199,23 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
         throw new AssertionError(resource.toString());
       }
     }
+
+    /**
+     * Returns the superordinate domain of a host at the given watermark.
+     *
+     * <p>The domain is rewound to all of the watermarks at once the first time it's needed, since
+     * the host will usually have the same superordinate domain at each of them.
+     */
+    private DomainBase loadSuperordinateDomainAtTime(
+        Key<DomainBase> superordinateDomain, DateTime watermark) {
+      // Note that loadAtPointsInTime() does cloneProjectedAtTime(watermark) for us.
+      return superordinateDomainAtTimes
+          .computeIfAbsent(
+              superordinateDomain,
+              key -> loadAtPointsInTime(ofy().load().key(key).now(), resourceAtTimes.keySet()))
+          .get(watermark)
+          .now();
+    }
   }
 
   /** Map key for {@link Fragmenter} cache. */
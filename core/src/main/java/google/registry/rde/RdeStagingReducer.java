@@ -146,12 +146,17 @@ public final class RdeStagingReducer extends Reducer<PendingDeposit, DepositFrag
     XjcRdeHeader header;
 
     // Write a gigantic XML file to GCS. We'll start by opening encrypted out/err file handles.
+    //
+    // Compressing, encrypting and uploading the deposit is done on a background thread, fed through
+    // a bounded pipeline, so that it overlaps with reading the fragments emitted by the mappers
+    // rather than alternating with it. Only a few megabytes of the deposit are ever held in memory.
 
     logger.atInfo().log("Writing %s and %s", xmlFilename, xmlLengthFilename);
     try (OutputStream gcsOutput = cloudStorage.openOutputStream(xmlFilename);
         OutputStream lengthOutput = cloudStorage.openOutputStream(xmlLengthFilename);
         OutputStream ghostrydeEncoder = Ghostryde.encoder(gcsOutput, stagingKey, lengthOutput);
-        Writer output = new OutputStreamWriter(ghostrydeEncoder, UTF_8)) {
+        OutputStream pipeline = PipelinedOutputStream.wrap(ghostrydeEncoder);
+        Writer output = new OutputStreamWriter(pipeline, UTF_8)) {
 
       // Output the top portion of the XML document.
       output.write(marshaller.makeHeader(id, watermark, RdeResourceType.getUris(mode), revision));
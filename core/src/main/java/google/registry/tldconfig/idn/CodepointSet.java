@@ -0,0 +1,97 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tldconfig.idn;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.errorprone.annotations.Immutable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * An immutable set of Unicode codepoints, stored as a two-level bitmap.
+ *
+ * <p>The codepoint space is split into pages of 256 codepoints. A page index maps each page to its
+ * 256-bit bitmap, with all pages that contain no codepoints sharing a single all-zero bitmap. This
+ * makes a lookup two array reads and a bit test, with no boxing, while a table whose codepoints are
+ * clustered in a few scripts only takes a few kilobytes.
+ */
+@Immutable
+final class CodepointSet {
+
+  private static final int PAGE_BITS = 8;
+  private static final int WORDS_PER_PAGE = (1 << PAGE_BITS) / Long.SIZE;
+  private static final int NUM_PAGES = (Character.MAX_CODE_POINT >>> PAGE_BITS) + 1;
+
+  /** The index into {@link #words} of the bitmap of each page, in units of pages. */
+  @SuppressWarnings("Immutable") // Never modified after construction.
+  private final char[] pageIndex;
+
+  /** The page bitmaps, starting with the shared empty page. */
+  @SuppressWarnings("Immutable") // Never modified after construction.
+  private final long[] words;
+
+  private final int size;
+
+  private CodepointSet(char[] pageIndex, long[] words, int size) {
+    this.pageIndex = pageIndex;
+    this.words = words;
+    this.size = size;
+  }
+
+  /** Creates a set containing the codepoints whose bits are set in the given {@link BitSet}. */
+  static CodepointSet create(BitSet codepoints) {
+    checkArgument(
+        codepoints.length() <= Character.MAX_CODE_POINT + 1, "Bits set beyond max codepoint");
+    char[] pageIndex = new char[NUM_PAGES];
+    // Page 0 is the shared empty page.
+    long[] words = new long[WORDS_PER_PAGE];
+    int numPages = 1;
+    for (int page = 0; page < NUM_PAGES; page++) {
+      int pageStart = page << PAGE_BITS;
+      int next = codepoints.nextSetBit(pageStart);
+      if (next < 0) {
+        break;
+      }
+      if (next >= pageStart + (1 << PAGE_BITS)) {
+        continue;
+      }
+      long[] bitmap = codepoints.get(pageStart, pageStart + (1 << PAGE_BITS)).toLongArray();
+      if (numPages * WORDS_PER_PAGE == words.length) {
+        words = Arrays.copyOf(words, words.length * 2);
+      }
+      System.arraycopy(bitmap, 0, words, numPages * WORDS_PER_PAGE, bitmap.length);
+      pageIndex[page] = (char) numPages++;
+    }
+    return new CodepointSet(
+        pageIndex, Arrays.copyOf(words, numPages * WORDS_PER_PAGE), codepoints.cardinality());
+  }
+
+  /** Returns true if the given codepoint is in this set. */
+  boolean contains(int codepoint) {
+    if (codepoint < 0 || codepoint > Character.MAX_CODE_POINT) {
+      return false;
+    }
+    int word =
+        pageIndex[codepoint >>> PAGE_BITS] * WORDS_PER_PAGE
+            + ((codepoint & ((1 << PAGE_BITS) - 1)) >>> 6);
+    return (words[word] & (1L << codepoint)) != 0;
+  }
+
+  /** Returns the number of codepoints in this set. */
+  int size() {
+    return size;
+  }
+}
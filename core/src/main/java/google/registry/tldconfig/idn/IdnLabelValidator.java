@@ -14,6 +14,7 @@
 
 package google.registry.tldconfig.idn;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static google.registry.tldconfig.idn.IdnTableEnum.EXTENDED_LATIN;
 import static google.registry.tldconfig.idn.IdnTableEnum.JA;
 
@@ -37,6 +38,10 @@ public final class IdnLabelValidator {
   private ImmutableMap<String, ImmutableList<IdnTableEnum>> idnTableListsPerTld;
 
   IdnLabelValidator(ImmutableMap<String, ImmutableList<IdnTableEnum>> indTableListsPerTld) {
+    indTableListsPerTld.forEach(
+        (tld, tables) ->
+            checkArgument(
+                tables.size() < Long.SIZE, "Too many IDN tables for TLD %s: %s", tld, tables));
     this.idnTableListsPerTld = indTableListsPerTld;
   }
 
@@ -49,13 +54,34 @@ public final class IdnLabelValidator {
    *
    * <p>A label is valid if it is considered valid by at least one configured IDN table for that
    * TLD. If no match is found, an absent value is returned.
+   *
+   * <p>The label is checked against all of the TLD's tables in a single pass over its codepoints,
+   * keeping a bitmask of the tables that still contain every codepoint seen so far, and stopping
+   * as soon as none do. Language rules are then checked, in configuration order, only for the
+   * tables that are left.
    */
   public Optional<String> findValidIdnTableForTld(String label, String tld) {
     String unicodeString = Idn.toUnicode(label);
-    for (IdnTableEnum idnTable :
-        Optional.ofNullable(idnTableListsPerTld.get(tld)).orElse(DEFAULT_IDN_TABLES)) {
-      if (idnTable.getTable().isValidLabel(unicodeString)) {
-        return Optional.of(idnTable.getTable().getName());
+    ImmutableList<IdnTableEnum> idnTables =
+        Optional.ofNullable(idnTableListsPerTld.get(tld)).orElse(DEFAULT_IDN_TABLES);
+    long candidates = (1L << idnTables.size()) - 1;
+    final int length = unicodeString.length();
+    for (int i = 0; i < length && candidates != 0; ) {
+      int codepoint = unicodeString.codePointAt(i);
+      for (long remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+        int index = Long.numberOfTrailingZeros(remaining);
+        if (!idnTables.get(index).getTable().containsCodepoint(codepoint)) {
+          candidates &= ~(1L << index);
+        }
+      }
+      // Some codepoints take up more than one character in Java strings (e.g. high and low
+      // surrogates).
+      i += Character.charCount(codepoint);
+    }
+    for (; candidates != 0; candidates &= candidates - 1) {
+      IdnTable idnTable = idnTables.get(Long.numberOfTrailingZeros(candidates)).getTable();
+      if (idnTable.isValidForLanguage(unicodeString)) {
+        return Optional.of(idnTable.getName());
       }
     }
     return Optional.empty();
@@ -17,12 +17,11 @@ package google.registry.tldconfig.idn;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.collect.ImmutableRangeSet;
-import com.google.common.collect.Range;
 import com.google.errorprone.annotations.Immutable;
 import com.google.re2j.Matcher;
 import com.google.re2j.Pattern;
 import java.net.URI;
+import java.util.BitSet;
 import java.util.Optional;
 
 /** An IDN table for a particular TLD. */
@@ -49,8 +48,8 @@ public final class IdnTable {
   /** Public URL of policy for this IDN table, which is needed by RDE. */
   private final URI policy;
 
-  /** {@link ImmutableRangeSet} containing the valid codepoints in this table. */
-  private final ImmutableRangeSet<Integer> validCodepoints;
+  /** {@link CodepointSet} containing the valid codepoints in this table. */
+  private final CodepointSet validCodepoints;
 
   /** Validates the language rules associated with this IDN table. */
   private final Optional<LanguageValidator> languageValidator;
@@ -59,7 +58,7 @@ public final class IdnTable {
       String name,
       URI url,
       URI policy,
-      ImmutableRangeSet<Integer> validCodepoints,
+      CodepointSet validCodepoints,
       Optional<LanguageValidator> languageValidator) {
     this.name = name;
     this.url = checkNotNull(url, "%s missing '# URL: http://foo.example/page' line", name);
@@ -96,6 +95,19 @@ public final class IdnTable {
       // surrogates).
       i += Character.charCount(codepoint);
     }
+    return isValidForLanguage(label);
+  }
+
+  /** Returns true if the given codepoint is in this IDN table. */
+  boolean containsCodepoint(int codepoint) {
+    return validCodepoints.contains(codepoint);
+  }
+
+  /**
+   * Returns true if the given label, all of whose codepoints are in this table, also satisfies the
+   * language rules associated with this table.
+   */
+  boolean isValidForLanguage(String label) {
     return !(languageValidator.isPresent()
         && !languageValidator.get().isValidLabelForLanguage(label));
   }
@@ -103,7 +115,7 @@ public final class IdnTable {
   /** Creates an IDN table given the lines from text file. */
   static IdnTable createFrom(
       String language, Iterable<String> data, Optional<LanguageValidator> languageValidator) {
-    ImmutableRangeSet.Builder<Integer> rangeSet = new ImmutableRangeSet.Builder<>();
+    BitSet codepoints = new BitSet();
     URI url = null;
     URI policy = null;
     for (String line : data) {
@@ -122,10 +134,10 @@ public final class IdnTable {
         continue;
       }
 
-      int codepoint = readCodepoint(line);
-      rangeSet.add(Range.singleton(codepoint));
+      codepoints.set(readCodepoint(line));
     }
-    return new IdnTable(language, url, policy, rangeSet.build(), languageValidator);
+    return new IdnTable(
+        language, url, policy, CodepointSet.create(codepoints), languageValidator);
   }
 
   /**
@@ -138,6 +150,8 @@ public final class IdnTable {
     checkArgument(matcher.lookingAt(), "Can't parse line: %s", line);
 
     String hexString = matcher.group(1);
-    return Integer.parseInt(hexString, 16);
+    int codepoint = Integer.parseInt(hexString, 16);
+    checkArgument(Character.isValidCodePoint(codepoint), "Invalid codepoint: %s", line);
+    return codepoint;
   }
 }
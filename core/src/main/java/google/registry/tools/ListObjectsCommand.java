@@ -14,9 +14,12 @@
 
 package google.registry.tools;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static google.registry.security.JsonHttp.JSON_SAFETY_PREFIX;
+import static google.registry.tools.server.ListObjectsAction.CURSOR_PARAM;
 import static google.registry.tools.server.ListObjectsAction.FIELDS_PARAM;
 import static google.registry.tools.server.ListObjectsAction.FULL_FIELD_NAMES_PARAM;
+import static google.registry.tools.server.ListObjectsAction.PAGE_SIZE_PARAM;
 import static google.registry.tools.server.ListObjectsAction.PRINT_HEADER_ROW_PARAM;
 
 import com.beust.jcommander.Parameter;
@@ -25,6 +28,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.net.MediaType;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import javax.annotation.Nullable;
 import org.json.simple.JSONValue;
 
@@ -32,6 +36,7 @@ import org.json.simple.JSONValue;
  * Abstract base class for commands that list objects by calling a server task.
  *
  * <p>The formatting is done on the server side; this class just dumps the results to the screen.
+ * When paging, the pages are requested one after the other and each is printed as it arrives.
  */
 abstract class ListObjectsCommand implements CommandWithConnection, CommandWithRemoteApi {
 
@@ -54,6 +59,14 @@ abstract class ListObjectsCommand implements CommandWithConnection, CommandWithR
       description = "Whether to print full field names in header row (as opposed to aliases)")
   private boolean fullFieldNames = false;
 
+  @Nullable
+  @Parameter(
+      names = {"--page_size"},
+      description = "Fetch and print the objects in pages of this many objects each, one JSON "
+          + "object per line, instead of fetching them all at once and printing a table; use this "
+          + "when listing more objects than a single request can load")
+  private Integer pageSize;
+
   private AppEngineConnection connection;
 
   @Override
@@ -82,10 +95,32 @@ abstract class ListObjectsCommand implements CommandWithConnection, CommandWithR
       params.put(FULL_FIELD_NAMES_PARAM, Boolean.TRUE);
     }
     params.putAll(getParameterMap());
-    // Call the server and get the response data.
+    if (pageSize == null) {
+      printLines(sendRequest(params.build()));
+      return;
+    }
+    checkArgument(pageSize > 0, "--page_size must be positive");
+    ImmutableMap<String, Object> pagedParams = params.put(PAGE_SIZE_PARAM, pageSize).build();
+    Optional<String> cursor = Optional.empty();
+    do {
+      Map<String, Object> responseMap =
+          sendRequest(
+              cursor.isPresent()
+                  ? new ImmutableMap.Builder<String, Object>()
+                      .putAll(pagedParams)
+                      .put(CURSOR_PARAM, cursor.get())
+                      .build()
+                  : pagedParams);
+      printLines(responseMap);
+      cursor = Optional.ofNullable((String) responseMap.get(CURSOR_PARAM));
+    } while (cursor.isPresent());
+  }
+
+  /** Calls the server, and returns its response data if it succeeded. */
+  private Map<String, Object> sendRequest(ImmutableMap<String, Object> params) throws Exception {
     String response =
         connection.sendPostRequest(
-            getCommandPath(), params.build(), MediaType.PLAIN_TEXT_UTF_8, new byte[0]);
+            getCommandPath(), params, MediaType.PLAIN_TEXT_UTF_8, new byte[0]);
     // Parse the returned JSON and make sure it's a map.
     Object obj = JSONValue.parse(response.substring(JSON_SAFETY_PREFIX.length()));
     if (!(obj instanceof Map<?, ?>)) {
@@ -111,19 +146,24 @@ abstract class ListObjectsCommand implements CommandWithConnection, CommandWithR
       throw new VerifyException(String.format("Server returned an error with message '%s'", obj));
     // Handle success.
     } else if (status.equals("success")) {
-      obj = responseMap.get("lines");
-      if (obj == null) {
-        throw new VerifyException("Server returned no response data");
-      }
-      if (!(obj instanceof List<?>)) {
-        throw new VerifyException("Server returned unexpected response data");
-      }
-      for (Object lineObj : (List<?>) obj) {
-        System.out.println(lineObj);
-      }
+      return responseMap;
     // Handle unexpected status values.
     } else {
       throw new VerifyException("Server returned unexpected status");
     }
   }
+
+  /** Prints the lines of a successful response. */
+  private static void printLines(Map<String, Object> responseMap) {
+    Object obj = responseMap.get("lines");
+    if (obj == null) {
+      throw new VerifyException("Server returned no response data");
+    }
+    if (!(obj instanceof List<?>)) {
+      throw new VerifyException("Server returned unexpected response data");
+    }
+    for (Object lineObj : (List<?>) obj) {
+      System.out.println(lineObj);
+    }
+  }
 }
@@ -23,10 +23,15 @@ import static google.registry.request.Action.Method.POST;
 import static google.registry.request.RequestParameters.PARAM_TLDS;
 import static java.util.Comparator.comparing;
 
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.googlecode.objectify.cmd.Query;
 import google.registry.model.EppResource;
 import google.registry.model.EppResourceUtils;
 import google.registry.model.domain.DomainBase;
@@ -36,10 +41,16 @@ import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
 import google.registry.util.NonFinalForTesting;
 import java.util.List;
+import java.util.Optional;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 
-/** An action that lists domains, for use by the {@code nomulus list_domains} command. */
+/**
+ * An action that lists domains, for use by the {@code nomulus list_domains} command.
+ *
+ * <p>When paging, domains are listed one TLD after the other in key order, as the limit of most
+ * recently created domains requires sorting all of them.
+ */
 @Action(
     service = Action.Service.TOOLS,
     path = ListDomainsAction.PATH,
@@ -52,6 +63,9 @@ public final class ListDomainsAction extends ListObjectsAction<DomainBase> {
 
   public static final String PATH = "/_dr/admin/list/domains";
 
+  /** Separates the TLD from the Datastore cursor within that TLD in the cursor of a page. */
+  private static final char CURSOR_SEPARATOR = ':';
+
   @Inject
   @Parameter(PARAM_TLDS)
   ImmutableSet<String> tlds;
@@ -104,4 +118,43 @@ public final class ListDomainsAction extends ListObjectsAction<DomainBase> {
             .collect(toImmutableList())
             .reverse());
   }
+
+  @Override
+  Page<DomainBase> loadPage(Optional<String> cursor, int pageSize) {
+    checkArgument(!tlds.isEmpty(), "Must specify TLDs to query");
+    checkArgument(limit == Integer.MAX_VALUE, "Can't limit the number of domains when paging");
+    assertTldsExist(tlds);
+    DateTime now = clock.nowUtc();
+    ImmutableList<String> sortedTlds = ImmutableSortedSet.copyOf(tlds).asList();
+    int tldIndex = 0;
+    Query<DomainBase> query = ofy().load().type(DomainBase.class).limit(pageSize);
+    if (cursor.isPresent()) {
+      List<String> cursorParts = Splitter.on(CURSOR_SEPARATOR).limit(2).splitToList(cursor.get());
+      tldIndex = sortedTlds.indexOf(cursorParts.get(0));
+      checkArgument(tldIndex >= 0, "Invalid cursor: %s", cursor.get());
+      if (cursorParts.size() == 2) {
+        query = query.startAt(Cursor.fromWebSafeString(cursorParts.get(1)));
+      }
+    }
+    String tld = sortedTlds.get(tldIndex);
+    QueryResultIterator<DomainBase> domains = query.filter("tld", tld).iterator();
+    ImmutableSet.Builder<DomainBase> activeDomains = new ImmutableSet.Builder<>();
+    int numLoaded = 0;
+    while (domains.hasNext()) {
+      DomainBase domain = EppResourceUtils.cloneProjectedAtTime(domains.next(), now);
+      numLoaded++;
+      if (domain.getDeletionTime().isAfter(now)) {
+        activeDomains.add(domain);
+      }
+    }
+    Optional<String> nextCursor;
+    if (numLoaded == pageSize) {
+      nextCursor = Optional.of(tld + CURSOR_SEPARATOR + domains.getCursor().toWebSafeString());
+    } else if (tldIndex + 1 < sortedTlds.size()) {
+      nextCursor = Optional.of(sortedTlds.get(tldIndex + 1));
+    } else {
+      nextCursor = Optional.empty();
+    }
+    return Page.create(activeDomains.build(), nextCursor);
+  }
 }
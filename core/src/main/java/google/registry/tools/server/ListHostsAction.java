@@ -20,17 +20,25 @@ import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.POST;
 import static java.util.Comparator.comparing;
 
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Streams;
+import com.googlecode.objectify.cmd.Query;
 import google.registry.model.EppResourceUtils;
 import google.registry.model.host.HostResource;
 import google.registry.request.Action;
 import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
+import java.util.Optional;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 
-/** An action that lists hosts, for use by the {@code nomulus list_hosts} command. */
+/**
+ * An action that lists hosts, for use by the {@code nomulus list_hosts} command.
+ *
+ * <p>When paging, hosts are listed in key order rather than by name.
+ */
 @Action(
     service = Action.Service.TOOLS,
     path = ListHostsAction.PATH,
@@ -55,4 +63,28 @@ public final class ListHostsAction extends ListObjectsAction<HostResource> {
         .filter(host -> EppResourceUtils.isActive(host, now))
         .collect(toImmutableSortedSet(comparing(HostResource::getFullyQualifiedHostName)));
   }
+
+  @Override
+  Page<HostResource> loadPage(Optional<String> cursor, int pageSize) {
+    DateTime now = clock.nowUtc();
+    Query<HostResource> query = ofy().load().type(HostResource.class).limit(pageSize);
+    if (cursor.isPresent()) {
+      query = query.startAt(Cursor.fromWebSafeString(cursor.get()));
+    }
+    QueryResultIterator<HostResource> hosts = query.iterator();
+    ImmutableSet.Builder<HostResource> activeHosts = new ImmutableSet.Builder<>();
+    int numLoaded = 0;
+    while (hosts.hasNext()) {
+      HostResource host = hosts.next();
+      numLoaded++;
+      if (EppResourceUtils.isActive(host, now)) {
+        activeHosts.add(host);
+      }
+    }
+    return Page.create(
+        activeHosts.build(),
+        (numLoaded == pageSize)
+            ? Optional.of(hosts.getCursor().toWebSafeString())
+            : Optional.empty());
+  }
 }
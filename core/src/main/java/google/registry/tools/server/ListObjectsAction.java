@@ -16,8 +16,10 @@ package google.registry.tools.server;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
@@ -44,12 +46,18 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import javax.inject.Inject;
+import org.json.simple.JSONValue;
 
 /**
  * Abstract base class for actions that list ImmutableObjects.
  *
  * <p>Returns formatted text to be displayed on the screen.
  *
+ * <p>If a page size is given, only returns one page of objects, with one JSON object per line
+ * rather than a table (as column widths can't be known until all objects are loaded), and the
+ * cursor to pass back to get the next page, if there is one. This lets callers list more objects
+ * than fit into the memory or the deadline of a single request.
+ *
  * @param <T> type of object
  */
 public abstract class ListObjectsAction<T extends ImmutableObject> implements Runnable {
@@ -59,15 +67,39 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
   public static final String FIELDS_PARAM = "fields";
   public static final String PRINT_HEADER_ROW_PARAM = "printHeaderRow";
   public static final String FULL_FIELD_NAMES_PARAM = "fullFieldNames";
+  public static final String PAGE_SIZE_PARAM = "pageSize";
+  public static final String CURSOR_PARAM = "cursor";
 
   @Inject JsonResponse response;
   @Inject @Parameter("fields") Optional<String> fields;
   @Inject @Parameter("printHeaderRow") Optional<Boolean> printHeaderRow;
   @Inject @Parameter("fullFieldNames") Optional<Boolean> fullFieldNames;
+  @Inject @Parameter("pageSize") Optional<Integer> pageSize;
+  @Inject @Parameter("cursor") Optional<String> cursor;
 
   /** Returns the set of objects to list, in the desired listing order. */
   abstract ImmutableSet<T> loadObjects();
 
+  /**
+   * Returns the page of at most {@code pageSize} objects that starts at the given cursor, or at
+   * the first object if there is no cursor.
+   *
+   * <p>By default, this loads all objects and returns a slice of them, using the offset of the next
+   * page as its cursor. Subclasses that can list a lot of objects should override this to page
+   * through a query instead.
+   *
+   * @throws IllegalArgumentException if the cursor is invalid
+   */
+  Page<T> loadPage(Optional<String> cursor, int pageSize) {
+    ImmutableList<T> objects = loadObjects().asList();
+    int start = cursor.map(Integer::parseInt).orElse(0);
+    checkArgument(start >= 0 && start <= objects.size(), "Invalid cursor: %s", start);
+    int end = Math.min(objects.size(), start + pageSize);
+    return Page.create(
+        ImmutableSet.copyOf(objects.subList(start, end)),
+        (end < objects.size()) ? Optional.of(String.valueOf(end)) : Optional.empty());
+  }
+
   /**
    * Returns a set of fields to always include in the output as the leftmost columns.  Subclasses
    * can use this to specify the equivalent of a "primary key" for each object listed.
@@ -104,6 +136,10 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
   @Override
   public void run() {
     try {
+      if ((pageSize != null) && pageSize.isPresent()) {
+        runPaged(pageSize.get());
+        return;
+      }
       // Get the object data first, so we can figure out the list of all available fields using the
       // data if necessary.
       ImmutableSet<T> objects = loadObjects();
@@ -132,6 +168,21 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
     }
   }
 
+  /** Returns one page of objects, one JSON object per line, and the cursor of the next page. */
+  private void runPaged(int pageSize) {
+    checkArgument(pageSize > 0, "Page size must be positive");
+    Page<T> page = loadPage((cursor == null) ? Optional.empty() : cursor, pageSize);
+    logger.atInfo().log("Loaded a page of %d objects.", page.objects().size());
+    ImmutableTable<T, String, String> data =
+        extractData(getFieldsToUse(page.objects()), page.objects());
+    ImmutableList<String> lines =
+        data.rowMap().values().stream().map(JSONValue::toJSONString).collect(toImmutableList());
+    ImmutableMap.Builder<String, Object> payload = new ImmutableMap.Builder<>();
+    payload.put("lines", lines).put("status", "success");
+    page.nextCursor().ifPresent(nextCursor -> payload.put(CURSOR_PARAM, nextCursor));
+    response.setPayload(payload.build());
+  }
+
   /**
    * Returns the set of fields to return, aliased or not according to --full_field_names, and
    * with duplicates eliminated but the ordering otherwise preserved.
@@ -198,6 +249,19 @@ public abstract class ListObjectsAction<T extends ImmutableObject> implements Ru
     return builder.build();
   }
 
+  /** A page of objects to list, and the cursor of the next page, if there is one. */
+  @AutoValue
+  abstract static class Page<T> {
+
+    abstract ImmutableSet<T> objects();
+
+    abstract Optional<String> nextCursor();
+
+    static <T> Page<T> create(ImmutableSet<T> objects, Optional<String> nextCursor) {
+      return new AutoValue_ListObjectsAction_Page<>(objects, nextCursor);
+    }
+  }
+
   /**
    * Computes the column widths of the given table of strings column-keyed by strings and returns
    * them as a map from column key name to integer width.  The column width is defined as the max
@@ -17,6 +17,7 @@ package google.registry.tools.server;
 import static com.google.common.base.Strings.emptyToNull;
 import static google.registry.request.RequestParameters.extractBooleanParameter;
 import static google.registry.request.RequestParameters.extractIntParameter;
+import static google.registry.request.RequestParameters.extractOptionalIntParameter;
 import static google.registry.request.RequestParameters.extractOptionalParameter;
 import static google.registry.request.RequestParameters.extractRequiredParameter;
 import static google.registry.request.RequestParameters.extractSetOfParameters;
@@ -54,6 +55,18 @@ public class ToolsServerModule {
     return (s == null) ? Optional.empty() : Optional.of(Boolean.parseBoolean(s));
   }
 
+  @Provides
+  @Parameter("pageSize")
+  static Optional<Integer> providePageSize(HttpServletRequest req) {
+    return extractOptionalIntParameter(req, ListObjectsAction.PAGE_SIZE_PARAM);
+  }
+
+  @Provides
+  @Parameter("cursor")
+  static Optional<String> provideCursor(HttpServletRequest req) {
+    return extractOptionalParameter(req, ListObjectsAction.CURSOR_PARAM);
+  }
+
   @Provides
   @Parameter("inputData")
   static String provideInput(HttpServletRequest req) {
@@ -80,51 +80,70 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
         "Could not load registrar %s",
         domain.getCurrentSponsorClientId());
     Registrar registrar = registrarOptional.get();
+    String body =
+        WhoisResponseCache.getDomainResponseBody(
+            domain,
+            registrar,
+            fullOutput,
+            preferUnicode,
+            () -> renderBody(registrar, preferUnicode));
+    return WhoisResponseResults.create(
+        body
+            + new DomainEmitter()
+                .emitLastUpdated(getTimestamp())
+                .emitAwipMessage()
+                .emitFooter(disclaimer)
+                .toString(),
+        1);
+  }
+
+  /**
+   * Renders the part of the response that depends on stored data.
+   *
+   * <p>This excludes the trailer, which depends on the time of the request, so that the result can
+   * be cached by {@link WhoisResponseCache}.
+   */
+  private String renderBody(Registrar registrar, boolean preferUnicode) {
     Optional<RegistrarContact> abuseContact =
         registrar
             .getContacts()
             .stream()
             .filter(RegistrarContact::getVisibleInDomainWhoisAsAbuse)
             .findFirst();
-    return WhoisResponseResults.create(
-        new DomainEmitter()
-            .emitField(
-                "Domain Name",
-                maybeFormatHostname(domain.getFullyQualifiedDomainName(), preferUnicode))
-            .emitField("Registry Domain ID", domain.getRepoId())
-            .emitField("Registrar WHOIS Server", registrar.getWhoisServer())
-            .emitField("Registrar URL", registrar.getUrl())
-            .emitFieldIfDefined("Updated Date", getFormattedString(domain.getLastEppUpdateTime()))
-            .emitField("Creation Date", getFormattedString(domain.getCreationTime()))
-            .emitField(
-                "Registry Expiry Date", getFormattedString(domain.getRegistrationExpirationTime()))
-            .emitField("Registrar", registrar.getRegistrarName())
-            .emitField("Registrar IANA ID", Objects.toString(registrar.getIanaIdentifier(), ""))
-            // Email address is a required field for registrar contacts. Therefore as long as there
-            // is an abuse contact, we can get an email address from it.
-            .emitField(
-                "Registrar Abuse Contact Email",
-                abuseContact.map(RegistrarContact::getEmailAddress).orElse(""))
-            .emitField(
-                "Registrar Abuse Contact Phone",
-                abuseContact.map(RegistrarContact::getPhoneNumber).orElse(""))
-            .emitStatusValues(domain.getStatusValues(), domain.getGracePeriods())
-            .emitContact("Registrant", Optional.of(domain.getRegistrant()), preferUnicode)
-            .emitContact("Admin", getContactReference(Type.ADMIN), preferUnicode)
-            .emitContact("Tech", getContactReference(Type.TECH), preferUnicode)
-            .emitContact("Billing", getContactReference(Type.BILLING), preferUnicode)
-            .emitSet(
-                "Name Server",
-                domain.loadNameserverFullyQualifiedHostNames(),
-                hostName -> maybeFormatHostname(hostName, preferUnicode))
-            .emitField(
-                "DNSSEC", isNullOrEmpty(domain.getDsData()) ? "unsigned" : "signedDelegation")
-            .emitWicfLink()
-            .emitLastUpdated(getTimestamp())
-            .emitAwipMessage()
-            .emitFooter(disclaimer)
-            .toString(),
-        1);
+    return new DomainEmitter()
+        .emitField(
+            "Domain Name",
+            maybeFormatHostname(domain.getFullyQualifiedDomainName(), preferUnicode))
+        .emitField("Registry Domain ID", domain.getRepoId())
+        .emitField("Registrar WHOIS Server", registrar.getWhoisServer())
+        .emitField("Registrar URL", registrar.getUrl())
+        .emitFieldIfDefined("Updated Date", getFormattedString(domain.getLastEppUpdateTime()))
+        .emitField("Creation Date", getFormattedString(domain.getCreationTime()))
+        .emitField(
+            "Registry Expiry Date", getFormattedString(domain.getRegistrationExpirationTime()))
+        .emitField("Registrar", registrar.getRegistrarName())
+        .emitField("Registrar IANA ID", Objects.toString(registrar.getIanaIdentifier(), ""))
+        // Email address is a required field for registrar contacts. Therefore as long as there
+        // is an abuse contact, we can get an email address from it.
+        .emitField(
+            "Registrar Abuse Contact Email",
+            abuseContact.map(RegistrarContact::getEmailAddress).orElse(""))
+        .emitField(
+            "Registrar Abuse Contact Phone",
+            abuseContact.map(RegistrarContact::getPhoneNumber).orElse(""))
+        .emitStatusValues(domain.getStatusValues(), domain.getGracePeriods())
+        .emitContact("Registrant", Optional.of(domain.getRegistrant()), preferUnicode)
+        .emitContact("Admin", getContactReference(Type.ADMIN), preferUnicode)
+        .emitContact("Tech", getContactReference(Type.TECH), preferUnicode)
+        .emitContact("Billing", getContactReference(Type.BILLING), preferUnicode)
+        .emitSet(
+            "Name Server",
+            domain.loadNameserverFullyQualifiedHostNames(),
+            hostName -> maybeFormatHostname(hostName, preferUnicode))
+        .emitField(
+            "DNSSEC", isNullOrEmpty(domain.getDsData()) ? "unsigned" : "signedDelegation")
+        .emitWicfLink()
+        .toString();
   }
 
   /** Returns the contact of the given type. */
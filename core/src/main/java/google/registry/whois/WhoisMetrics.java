@@ -56,6 +56,16 @@ public class WhoisMetrics {
               LABEL_DESCRIPTORS,
               DEFAULT_FITTER);
 
+  private static final IncrementableMetric responseCacheLookups =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/whois/response_cache/lookups",
+              "Count of WHOIS response cache lookups",
+              "count",
+              ImmutableSet.of(
+                  LabelDescriptor.create(
+                      "result", "Whether the lookup was served from the cache (hit or miss).")));
+
   @Inject
   public WhoisMetrics() {}
 
@@ -72,6 +82,17 @@ public class WhoisMetrics {
         Integer.toString(metric.status()));
   }
 
+  /**
+   * Records the outcome of a lookup in the {@link WhoisResponseCache}.
+   *
+   * <p>This is static because the cache is shared by all requests on the instance, rather than
+   * being tied to the request that owns a {@link WhoisMetrics} instance. The hit ratio is the
+   * proportion of lookups with a result of {@code hit}.
+   */
+  static void recordResponseCacheLookup(boolean hit) {
+    responseCacheLookups.increment(hit ? "hit" : "miss");
+  }
+
   /** A value class for recording attributes of a WHOIS metric. */
   @AutoValue
   public abstract static class WhoisMetric {
@@ -0,0 +1,194 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.whois;
+
+import static google.registry.config.RegistryConfig.getWhoisResponseCachingDuration;
+import static google.registry.config.RegistryConfig.getWhoisResponseMaxCachedEntries;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.googlecode.objectify.Key;
+import google.registry.model.EppResource;
+import google.registry.model.contact.ContactResource;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.registrar.Registrar;
+import google.registry.util.NonFinalForTesting;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+
+/**
+ * A bounded, in-memory cache of the rendered body of WHOIS domain responses.
+ *
+ * <p>Popular names are queried over and over by scrapers, and each query otherwise re-renders the
+ * response from the domain, its registrar, contacts and nameservers. The cache is keyed on the
+ * domain name and the output flavor (full or redacted, Unicode or ASCII), and holds the part of the
+ * response that depends on stored data; the trailer with the response timestamp and disclaimer is
+ * always emitted fresh.
+ *
+ * <p>A cached body is only used if it was rendered from the same domain entity (by key and update
+ * timestamp), the same version of the registrar, and the same versions of the contacts and hosts
+ * the domain references. Those are loaded for every lookup the same way rendering loads them, so
+ * changes to any of them are seen as soon as rendering would see them; what is saved on a hit is
+ * rendering the body itself. Changes that happen by projecting the domain forward in time (such as
+ * an implicit transfer or autorenew) don't involve a write, so they are seen once the cached entry
+ * expires.
+ *
+ * <p>Checking those versions takes Datastore reads of the contacts and hosts on every lookup, so
+ * the cache only pays off where rendering is the bottleneck, and is off by default. While it's
+ * off, responses are rendered without loading anything beyond what rendering itself loads.
+ */
+final class WhoisResponseCache {
+
+  /** The cache, or null if caching is disabled. */
+  @NonFinalForTesting @Nullable
+  private static Cache<CacheKey, CachedBody> cache =
+      createCache(getWhoisResponseCachingDuration(), getWhoisResponseMaxCachedEntries());
+
+  private WhoisResponseCache() {}
+
+  @Nullable
+  private static Cache<CacheKey, CachedBody> createCache(Duration expiry, int maxEntries) {
+    if (maxEntries == 0 || expiry.getMillis() == 0) {
+      return null;
+    }
+    return CacheBuilder.newBuilder()
+        .expireAfterWrite(expiry.getMillis(), MILLISECONDS)
+        .maximumSize(maxEntries)
+        .build();
+  }
+
+  @VisibleForTesting
+  static void setCacheForTest(Duration expiry, int maxEntries) {
+    cache = createCache(expiry, maxEntries);
+  }
+
+  /**
+   * Returns the cached body of the WHOIS response for a domain, rendering it on a miss.
+   *
+   * @param domain the domain being looked up, as just loaded for this request
+   * @param registrar the sponsoring registrar of the domain, as just loaded for this request
+   * @param fullOutput whether the response shows unredacted contact data
+   * @param preferUnicode whether hostnames are rendered in Unicode
+   * @param renderer renders the body from the domain and registrar, on a miss
+   */
+  static String getDomainResponseBody(
+      DomainBase domain,
+      Registrar registrar,
+      boolean fullOutput,
+      boolean preferUnicode,
+      Supplier<String> renderer) {
+    if (cache == null) {
+      return renderer.get();
+    }
+    CacheKey cacheKey =
+        CacheKey.create(domain.getFullyQualifiedDomainName(), fullOutput, preferUnicode);
+    ImmutableMap<Key<? extends EppResource>, DateTime> referencedUpdateTimes =
+        loadReferencedUpdateTimes(domain);
+    CachedBody cachedBody = cache.getIfPresent(cacheKey);
+    if (cachedBody != null && cachedBody.isRenderedFrom(domain, registrar, referencedUpdateTimes)) {
+      WhoisMetrics.recordResponseCacheLookup(true);
+      return cachedBody.body();
+    }
+    WhoisMetrics.recordResponseCacheLookup(false);
+    String body = renderer.get();
+    cache.put(cacheKey, CachedBody.create(domain, registrar, referencedUpdateTimes, body));
+    return body;
+  }
+
+  /**
+   * Returns the update times of the contacts and hosts that a domain references, loaded the same
+   * way as {@link DomainWhoisResponse} loads them to render the response.
+   */
+  private static ImmutableMap<Key<? extends EppResource>, DateTime> loadReferencedUpdateTimes(
+      DomainBase domain) {
+    ImmutableMap.Builder<Key<? extends EppResource>, DateTime> updateTimes =
+        new ImmutableMap.Builder<>();
+    for (Key<ContactResource> contactKey : domain.getReferencedContacts()) {
+      ContactResource contact = EppResource.loadCached(contactKey);
+      if (contact != null) {
+        updateTimes.put(contactKey, getUpdateTime(contact));
+      }
+    }
+    ofy()
+        .load()
+        .keys(domain.getNameservers())
+        .forEach((hostKey, host) -> updateTimes.put(hostKey, getUpdateTime(host)));
+    return updateTimes.build();
+  }
+
+  private static DateTime getUpdateTime(EppResource resource) {
+    return resource.getUpdateAutoTimestamp().getTimestamp();
+  }
+
+  /** The domain name and output flavor that a cached body was rendered for. */
+  @AutoValue
+  abstract static class CacheKey {
+    abstract String fullyQualifiedDomainName();
+
+    abstract boolean fullOutput();
+
+    abstract boolean preferUnicode();
+
+    static CacheKey create(
+        String fullyQualifiedDomainName, boolean fullOutput, boolean preferUnicode) {
+      return new AutoValue_WhoisResponseCache_CacheKey(
+          fullyQualifiedDomainName, fullOutput, preferUnicode);
+    }
+  }
+
+  /** A rendered body, along with the versions of the entities it was rendered from. */
+  @AutoValue
+  abstract static class CachedBody {
+    abstract Key<DomainBase> domainKey();
+
+    abstract DateTime domainUpdateTime();
+
+    abstract DateTime registrarUpdateTime();
+
+    abstract ImmutableMap<Key<? extends EppResource>, DateTime> referencedUpdateTimes();
+
+    abstract String body();
+
+    static CachedBody create(
+        DomainBase domain,
+        Registrar registrar,
+        ImmutableMap<Key<? extends EppResource>, DateTime> referencedUpdateTimes,
+        String body) {
+      return new AutoValue_WhoisResponseCache_CachedBody(
+          Key.create(domain),
+          getUpdateTime(domain),
+          registrar.getLastUpdateTime(),
+          referencedUpdateTimes,
+          body);
+    }
+
+    boolean isRenderedFrom(
+        DomainBase domain,
+        Registrar registrar,
+        ImmutableMap<Key<? extends EppResource>, DateTime> referencedUpdateTimes) {
+      return domainKey().equals(Key.create(domain))
+          && domainUpdateTime().equals(getUpdateTime(domain))
+          && registrarUpdateTime().equals(registrar.getLastUpdateTime())
+          && referencedUpdateTimes().equals(referencedUpdateTimes);
+    }
+  }
+}
@@ -16,6 +16,8 @@ package google.registry.backup;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assertWithMessage;
+import static google.registry.backup.BackupUtils.GZIP_COMPRESSION;
+import static google.registry.backup.BackupUtils.GcsMetadataKeys.COMPRESSION;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.LOWER_BOUND_CHECKPOINT;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.NUM_TRANSACTIONS;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.UPPER_BOUND_CHECKPOINT;
@@ -28,6 +30,7 @@ import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import com.googlecode.objectify.Key;
 import google.registry.model.ImmutableObject;
 import google.registry.model.ofy.CommitLogBucket;
@@ -37,7 +40,9 @@ import google.registry.model.ofy.CommitLogMutation;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.GcsTestingUtils;
 import google.registry.testing.TestObject;
+import java.io.ByteArrayInputStream;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Rule;
@@ -67,6 +72,7 @@ public class ExportCommitLogDiffActionTest {
     task.gcsService = gcsService;
     task.gcsBucket = "gcs bucket";
     task.batchSize = 5;
+    task.batchesInFlight = 2;
   }
 
   @Test
@@ -285,6 +291,67 @@ public class ExportCommitLogDiffActionTest {
             .inOrder();
   }
 
+  @Test
+  public void testRun_compressed_exportsAcrossMultipleBatches() throws Exception {
+    task.batchSize = 2;
+    task.compress = true;
+    task.lowerCheckpointTime = oneMinuteAgo;
+    task.upperCheckpointTime = now;
+
+    persistResource(CommitLogCheckpoint.create(
+        oneMinuteAgo,
+        ImmutableMap.of(1, START_OF_TIME, 2, START_OF_TIME, 3, START_OF_TIME)));
+    CommitLogCheckpoint upperCheckpoint = persistResource(CommitLogCheckpoint.create(
+        now,
+        ImmutableMap.of(1, now, 2, now, 3, now)));
+
+    // Persist some fake commit log manifests.
+    persistManifestAndMutation(1, oneMinuteAgo);
+    persistManifestAndMutation(2, oneMinuteAgo);
+    persistManifestAndMutation(3, oneMinuteAgo);
+    persistManifestAndMutation(1, now);
+    persistManifestAndMutation(2, now);
+
+    task.run();
+
+    GcsFilename expectedFilename = new GcsFilename("gcs bucket", "commit_diff_until_" + now);
+    assertThat(gcsService.getMetadata(expectedFilename).getOptions().getUserMetadata())
+        .containsExactly(
+            LOWER_BOUND_CHECKPOINT,
+            oneMinuteAgo.toString(),
+            UPPER_BOUND_CHECKPOINT,
+            now.toString(),
+            NUM_TRANSACTIONS,
+            "5",
+            COMPRESSION,
+            GZIP_COMPRESSION);
+    // The whole file is a single gzip stream.
+    List<ImmutableObject> exported =
+        deserializeEntities(
+            ByteStreams.toByteArray(
+                new GZIPInputStream(
+                    new ByteArrayInputStream(
+                        GcsTestingUtils.readGcsFile(gcsService, expectedFilename)))));
+    CommitLogManifest manifest1 = createManifest(1, oneMinuteAgo);
+    CommitLogManifest manifest2 = createManifest(2, oneMinuteAgo);
+    CommitLogManifest manifest3 = createManifest(3, oneMinuteAgo);
+    CommitLogManifest manifest4 = createManifest(1, now);
+    CommitLogManifest manifest5 = createManifest(2, now);
+    assertThat(exported).containsExactly(
+        upperCheckpoint,
+        manifest1,
+        createMutation(manifest1),
+        manifest2,
+        createMutation(manifest2),
+        manifest3,
+        createMutation(manifest3),
+        manifest4,
+        createMutation(manifest4),
+        manifest5,
+        createMutation(manifest5))
+            .inOrder();
+  }
+
   @Test
   public void testRun_checkpointDiffWithNeverTouchedBuckets_exportsCorrectly() throws Exception {
     task.lowerCheckpointTime = oneMinuteAgo;
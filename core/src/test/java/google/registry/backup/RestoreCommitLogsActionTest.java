@@ -19,6 +19,8 @@ import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Maps.toMap;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.util.concurrent.MoreExecutors.newDirectExecutorService;
+import static google.registry.backup.BackupUtils.GZIP_COMPRESSION;
+import static google.registry.backup.BackupUtils.GcsMetadataKeys.COMPRESSION;
 import static google.registry.backup.BackupUtils.GcsMetadataKeys.LOWER_BOUND_CHECKPOINT;
 import static google.registry.backup.BackupUtils.serializeEntity;
 import static google.registry.backup.ExportCommitLogDiffAction.DIFF_FILE_PREFIX;
@@ -31,6 +33,7 @@ import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.tools.cloudstorage.GcsFileOptions;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -45,14 +48,17 @@ import google.registry.model.ofy.CommitLogMutation;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeSleeper;
+import google.registry.testing.InjectRule;
 import google.registry.testing.TestObject;
 import google.registry.util.Retrier;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.zip.GZIPOutputStream;
 import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Rule;
@@ -75,6 +81,8 @@ public class RestoreCommitLogsActionTest {
       .withDatastore()
       .build();
 
+  @Rule public final InjectRule inject = new InjectRule();
+
   @Before
   public void init() {
     action.gcsService = gcsService;
@@ -171,6 +179,67 @@ public class RestoreCommitLogsActionTest {
     assertCommitLogBuckets(ImmutableMap.of(1, now));
 }
 
+  @Test
+  public void testRestore_compressedMutations() throws Exception {
+    inject.setStaticField(CommitLogMutation.class, "compressMutations", true);
+    String field = Strings.repeat("compressible ", 100);
+    Key<CommitLogBucket> bucketKey = getBucketKey(1);
+    Key<CommitLogManifest> manifestKey = CommitLogManifest.createKey(bucketKey, now);
+    saveDiffFileNotToRestore(now.minusMinutes(1));
+    Iterable<ImmutableObject> commitLogs = saveDiffFile(
+        createCheckpoint(now),
+        CommitLogManifest.create(bucketKey, now, null),
+        CommitLogMutation.create(manifestKey, TestObject.create("a", field)));
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds("a");
+    assertInDatastore(TestObject.create("a", field));
+    assertInDatastore(commitLogs);
+    assertCommitLogBuckets(ImmutableMap.of(1, now));
+  }
+
+  @Test
+  public void testRestore_gzippedDiffFile() throws Exception {
+    ofy().saveWithoutBackup().entity(TestObject.create("previous to keep")).now();
+    Key<CommitLogBucket> bucketKey = getBucketKey(1);
+    Key<CommitLogManifest> manifestKey = CommitLogManifest.createKey(bucketKey, now);
+    saveDiffFileNotToRestore(now.minusMinutes(1));
+    Iterable<ImmutableObject> commitLogs = saveGzippedDiffFile(
+        createCheckpoint(now),
+        CommitLogManifest.create(bucketKey, now, null),
+        CommitLogMutation.create(manifestKey, TestObject.create("a")),
+        CommitLogMutation.create(manifestKey, TestObject.create("b")));
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds("previous to keep", "a", "b");
+    assertInDatastore(commitLogs);
+    assertInDatastore(CommitLogCheckpointRoot.create(now));
+    assertCommitLogBuckets(ImmutableMap.of(1, now));
+  }
+
+  @Test
+  public void testRestore_gzippedDiffFile_manyEntities() throws Exception {
+    Key<CommitLogBucket> bucketKey = getBucketKey(1);
+    Key<CommitLogManifest> manifestKey = CommitLogManifest.createKey(bucketKey, now);
+    List<ImmutableObject> entities = new ArrayList<>();
+    List<String> ids = new ArrayList<>();
+    entities.add(CommitLogManifest.create(bucketKey, now, null));
+    for (int i = 0; i < 1000; i++) {
+      ids.add("entity " + i);
+      entities.add(CommitLogMutation.create(manifestKey, TestObject.create("entity " + i)));
+    }
+    saveDiffFileNotToRestore(now.minusMinutes(1));
+    // The action reads the file through a channel, whose stream never has bytes available without
+    // blocking, so this checks that none of the file is dropped at buffer boundaries.
+    Iterable<ImmutableObject> commitLogs =
+        saveGzippedDiffFile(createCheckpoint(now), entities.toArray(new ImmutableObject[0]));
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds(ids.toArray(new String[0]));
+    assertInDatastore(commitLogs);
+    assertCommitLogBuckets(ImmutableMap.of(1, now));
+  }
+
   @Test
   public void testRestore_manifestWithNoMutations() throws Exception {
     ofy().saveWithoutBackup().entities(
@@ -265,6 +334,27 @@ public class RestoreCommitLogsActionTest {
     return allEntities;
   }
 
+  /** Saves a diff file the way it is exported when compressed, as a single gzip stream. */
+  private Iterable<ImmutableObject> saveGzippedDiffFile(
+      CommitLogCheckpoint checkpoint, ImmutableObject... entities) throws IOException {
+    DateTime now = checkpoint.getCheckpointTime();
+    List<ImmutableObject> allEntities = Lists.asList(checkpoint, entities);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+      for (ImmutableObject entity : allEntities) {
+        serializeEntity(entity, gzipOutput);
+      }
+    }
+    gcsService.createOrReplace(
+        new GcsFilename(GCS_BUCKET, DIFF_FILE_PREFIX + now),
+        new GcsFileOptions.Builder()
+            .addUserMetadata(LOWER_BOUND_CHECKPOINT, now.minusMinutes(1).toString())
+            .addUserMetadata(COMPRESSION, GZIP_COMPRESSION)
+            .build(),
+        ByteBuffer.wrap(output.toByteArray()));
+    return allEntities;
+  }
+
   private void saveDiffFileNotToRestore(DateTime now) throws Exception {
     saveDiffFile(
         createCheckpoint(now),
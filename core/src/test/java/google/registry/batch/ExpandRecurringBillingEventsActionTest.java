@@ -32,11 +32,16 @@ import static google.registry.util.DateTimeUtils.END_OF_TIME;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.money.CurrencyUnit.USD;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
+import com.google.appengine.tools.mapreduce.MapperContext;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
 import com.googlecode.objectify.Key;
+import google.registry.batch.ExpandRecurringBillingEventsAction.ExpandRecurringBillingEventsMapper;
 import google.registry.model.billing.BillingEvent;
 import google.registry.model.billing.BillingEvent.Flag;
 import google.registry.model.billing.BillingEvent.OneTime;
@@ -64,6 +69,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.Mock;
 
 /** Unit tests for {@link ExpandRecurringBillingEventsAction}. */
 @RunWith(JUnit4.class)
@@ -75,6 +81,8 @@ public class ExpandRecurringBillingEventsActionTest
   private final DateTime beginningOfTest = DateTime.parse("2000-10-02T00:00:00Z");
   private final FakeClock clock = new FakeClock(beginningOfTest);
 
+  @Mock private MapperContext<DateTime> mapperContext;
+
   DomainBase domain;
   HistoryEntry historyEntry;
   BillingEvent.Recurring recurring;
@@ -308,6 +316,36 @@ public class ExpandRecurringBillingEventsActionTest
     assertBillingEventsForResource(domain, recurring);
   }
 
+  @Test
+  public void testMap_recurringNotDue_skipsDatastoreWork() {
+    recurring = persistResource(recurring);
+    // The only billing time up to the execution time is 2000-02-19, before the cursor.
+    ExpandRecurringBillingEventsMapper mapper =
+        new ExpandRecurringBillingEventsMapper(
+            false, DateTime.parse("2000-03-01T00:00:00Z"), beginningOfTest);
+    mapper.setContext(mapperContext);
+    mapper.map(recurring);
+    verify(mapperContext).incrementCounter("Recurring billing events encountered");
+    verify(mapperContext).incrementCounter("Recurring billing events not due");
+    verifyNoMoreInteractions(mapperContext);
+    assertThat(getHistoryEntriesOfType(domain, DOMAIN_AUTORENEW)).isEmpty();
+    assertBillingEventsForResource(domain, recurring);
+  }
+
+  @Test
+  public void testMap_recurringDue_notCountedAsNotDue() {
+    recurring = persistResource(recurring);
+    ExpandRecurringBillingEventsMapper mapper =
+        new ExpandRecurringBillingEventsMapper(
+            false, DateTime.parse("2000-02-01T00:00:00Z"), beginningOfTest);
+    mapper.setContext(mapperContext);
+    mapper.map(recurring);
+    verify(mapperContext).incrementCounter("Recurring billing events encountered");
+    verify(mapperContext).incrementCounter("Saved OneTime billing events", 1);
+    verify(mapperContext, never()).incrementCounter("Recurring billing events not due");
+    assertThat(getHistoryEntriesOfType(domain, DOMAIN_AUTORENEW)).hasSize(1);
+  }
+
   @Test
   public void testSuccess_expandSingleEvent_billingTimeAtCursorTime() throws Exception {
     persistResource(recurring);
@@ -36,9 +36,12 @@ import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.time.Duration.millis;
 import static org.joda.time.Duration.standardDays;
 import static org.joda.time.Duration.standardHours;
+import static org.joda.time.Duration.standardMinutes;
 import static org.joda.time.Duration.standardSeconds;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -47,6 +50,7 @@ import static org.mockito.Mockito.when;
 import com.googlecode.objectify.Key;
 import google.registry.batch.AsyncTaskMetrics.OperationResult;
 import google.registry.batch.RefreshDnsOnHostRenameAction.RefreshDnsOnHostRenameReducer;
+import google.registry.dns.DnsQueue;
 import google.registry.model.host.HostResource;
 import google.registry.model.server.Lock;
 import google.registry.testing.FakeClock;
@@ -98,7 +102,11 @@ public class RefreshDnsOnHostRenameActionTest
     action.asyncTaskMetrics = asyncTaskMetricsMock;
     inject.setStaticField(
         RefreshDnsOnHostRenameReducer.class, "asyncTaskMetrics", asyncTaskMetricsMock);
+    // Unless a test says otherwise, a single targeted refresh is enough for any rename.
+    inject.setStaticField(
+        RefreshDnsOnHostRenameAction.class, "indexConsistencyWindow", Duration.ZERO);
     action.clock = clock;
+    action.dnsQueue = DnsQueue.create();
     action.mrRunner = makeDefaultRunner();
     action.pullQueue = getQueue(QUEUE_ASYNC_HOST_RENAME);
     action.requestStatusChecker = requestStatusChecker;
@@ -155,8 +163,8 @@ public class RefreshDnsOnHostRenameActionTest
     persistResource(newDomainBase("example1.tld", host1));
     persistResource(newDomainBase("example2.tld", host2));
     persistResource(newDomainBase("example3.tld", host3));
-    DateTime timeEnqueued = clock.nowUtc();
-    DateTime laterTimeEnqueued = timeEnqueued.plus(standardSeconds(10));
+    DateTime laterTimeEnqueued = clock.nowUtc();
+    DateTime timeEnqueued = laterTimeEnqueued.minus(standardSeconds(10));
     enqueuer.enqueueAsyncDnsRefresh(host1, timeEnqueued);
     enqueuer.enqueueAsyncDnsRefresh(host2, timeEnqueued);
     enqueuer.enqueueAsyncDnsRefresh(host3, laterTimeEnqueued);
@@ -225,12 +233,83 @@ public class RefreshDnsOnHostRenameActionTest
 
   @Test
   public void test_mapreduceHasWorkToDo_lockIsAcquired() {
+    inject.setStaticField(RefreshDnsOnHostRenameAction.class, "maxDomainsForTargetedRefresh", 0);
     HostResource host = persistActiveHost("ns1.example.tld");
+    persistResource(newDomainBase("example.tld", host));
     enqueuer.enqueueAsyncDnsRefresh(host, clock.nowUtc());
     enqueueMapreduceOnly();
     assertThat(acquireLock()).isEmpty();
   }
 
+  @Test
+  public void testSuccess_targetedRefresh_doesntRunMapreduce_releasesLock() {
+    HostResource host = persistActiveHost("ns1.example.tld");
+    persistResource(newDomainBase("example.tld", host));
+    persistResource(newDomainBase("untouched.tld", persistActiveHost("ns2.example.tld")));
+    DateTime timeEnqueued = clock.nowUtc();
+    enqueuer.enqueueAsyncDnsRefresh(host, timeEnqueued);
+    enqueueMapreduceOnly();
+    assertDnsTasksEnqueued("example.tld");
+    assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
+    assertNoTasksEnqueued("mapreduce");
+    assertThat(fakeResponse.getPayload())
+        .isEqualTo("Enqueued DNS refreshes for 1 domains referencing renamed hosts.");
+    verify(action.asyncTaskMetrics)
+        .recordAsyncFlowResult(DNS_REFRESH, OperationResult.SUCCESS, timeEnqueued);
+    assertThat(acquireLock()).isPresent();
+  }
+
+  @Test
+  public void testSuccess_targetedRefresh_recentRename_keepsTaskForSecondPass() {
+    inject.setStaticField(
+        RefreshDnsOnHostRenameAction.class, "indexConsistencyWindow", standardMinutes(1));
+    HostResource host = persistActiveHost("ns1.example.tld");
+    persistResource(newDomainBase("example.tld", host));
+    enqueuer.enqueueAsyncDnsRefresh(host, clock.nowUtc());
+    enqueueMapreduceOnly();
+    assertDnsTasksEnqueued("example.tld");
+    // The task is leased until the end of the window, when the next run refreshes again.
+    assertTasksEnqueued(
+        QUEUE_ASYNC_HOST_RENAME,
+        new TaskMatcher()
+            .etaDelta(standardSeconds(50), standardSeconds(61))
+            .param("hostKey", Key.create(host).getString()));
+    assertNoTasksEnqueued("mapreduce");
+    verify(action.asyncTaskMetrics, never()).recordAsyncFlowResult(any(), any(), any());
+    assertThat(acquireLock()).isPresent();
+  }
+
+  @Test
+  public void testSuccess_targetedRefresh_renameOlderThanWindow_deletesTask() {
+    inject.setStaticField(
+        RefreshDnsOnHostRenameAction.class, "indexConsistencyWindow", standardMinutes(1));
+    HostResource host = persistActiveHost("ns1.example.tld");
+    persistResource(newDomainBase("example.tld", host));
+    DateTime timeEnqueued = clock.nowUtc().minus(standardMinutes(2));
+    enqueuer.enqueueAsyncDnsRefresh(host, timeEnqueued);
+    enqueueMapreduceOnly();
+    assertDnsTasksEnqueued("example.tld");
+    assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
+    verify(action.asyncTaskMetrics)
+        .recordAsyncFlowResult(DNS_REFRESH, OperationResult.SUCCESS, timeEnqueued);
+  }
+
+  @Test
+  public void testSuccess_tooManyReferencingDomains_fallsBackToMapreduce() throws Exception {
+    inject.setStaticField(RefreshDnsOnHostRenameAction.class, "maxDomainsForTargetedRefresh", 1);
+    HostResource host = persistActiveHost("ns1.example.tld");
+    persistResource(newDomainBase("example.tld", host));
+    persistResource(newDomainBase("otherexample.tld", host));
+    persistResource(newDomainBase("untouched.tld", persistActiveHost("ns2.example.tld")));
+    DateTime timeEnqueued = clock.nowUtc();
+    enqueuer.enqueueAsyncDnsRefresh(host, timeEnqueued);
+    runMapreduce();
+    assertDnsTasksEnqueued("example.tld", "otherexample.tld");
+    assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
+    verify(action.asyncTaskMetrics)
+        .recordAsyncFlowResult(DNS_REFRESH, OperationResult.SUCCESS, timeEnqueued);
+  }
+
   @Test
   public void test_noTasksToLease_releasesLockImmediately() throws Exception {
     enqueueMapreduceOnly();
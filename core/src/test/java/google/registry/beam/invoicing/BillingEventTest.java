@@ -17,6 +17,7 @@ package google.registry.beam.invoicing;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
+import google.registry.beam.invoicing.BillingEvent.BillingEventCoder;
 import google.registry.beam.invoicing.BillingEvent.InvoiceGroupingKey;
 import google.registry.beam.invoicing.BillingEvent.InvoiceGroupingKey.InvoiceGroupingKeyCoder;
 import java.io.ByteArrayInputStream;
@@ -28,6 +29,7 @@ import java.time.ZonedDateTime;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.beam.sdk.coders.SerializableCoder;
 import org.apache.beam.sdk.io.gcp.bigquery.SchemaAndRecord;
 import org.junit.Before;
 import org.junit.Test;
@@ -187,6 +189,36 @@ public class BillingEventTest {
     assertThat(coder.decode(inStream)).isEqualTo(invoiceKey);
   }
 
+  @Test
+  public void testBillingEventCoder_deterministicSerialization() throws IOException {
+    BillingEvent event = BillingEvent.parseFromRecord(schemaAndRecord);
+    BillingEventCoder coder = new BillingEventCoder();
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    coder.encode(event, outStream);
+    InputStream inStream = new ByteArrayInputStream(outStream.toByteArray());
+    assertThat(coder.decode(inStream)).isEqualTo(event);
+  }
+
+  @Test
+  public void testBillingEventCoder_equalEventsEncodeIdentically() throws IOException {
+    BillingEventCoder coder = new BillingEventCoder();
+    ByteArrayOutputStream first = new ByteArrayOutputStream();
+    coder.encode(BillingEvent.parseFromRecord(schemaAndRecord), first);
+    ByteArrayOutputStream second = new ByteArrayOutputStream();
+    coder.encode(BillingEvent.parseFromRecord(schemaAndRecord), second);
+    assertThat(first.toByteArray()).isEqualTo(second.toByteArray());
+  }
+
+  @Test
+  public void testBillingEventCoder_smallerThanJavaSerialization() throws IOException {
+    BillingEvent event = BillingEvent.parseFromRecord(schemaAndRecord);
+    ByteArrayOutputStream coded = new ByteArrayOutputStream();
+    new BillingEventCoder().encode(event, coded);
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    SerializableCoder.of(BillingEvent.class).encode(event, serialized);
+    assertThat(coded.size()).isLessThan(serialized.size() / 2);
+  }
+
   @Test
   public void testGetDetailReportHeader() {
     assertThat(BillingEvent.getHeader())
@@ -25,6 +25,7 @@ import com.google.auth.oauth2.GoogleCredentials;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.CharStreams;
 import google.registry.beam.spec11.SafeBrowsingTransforms.EvaluateSafeBrowsingFn;
+import google.registry.beam.spec11.Subdomain.SubdomainCoder;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeSleeper;
 import google.registry.util.GoogleCredentialsBundle;
@@ -127,7 +128,6 @@ public class Spec11PipelineTest {
   @SuppressWarnings("unchecked")
   public void testEndToEndPipeline_generatesExpectedFiles() throws Exception {
     // Establish mocks for testing
-    ImmutableList<Subdomain> inputRows = getInputDomains();
     CloseableHttpClient httpClient = mock(CloseableHttpClient.class, withSettings().serializable());
 
     // Return a mock HttpResponse that returns a JSON response based on the request.
@@ -138,9 +138,35 @@ public class Spec11PipelineTest {
             StaticValueProvider.of("apikey"),
             new Retrier(new FakeSleeper(new FakeClock()), 3),
             (Serializable & Supplier) () -> httpClient);
+    runPipelineAndVerifyReport(evalFn);
+  }
+
+  /**
+   * Tests the end-to-end Spec11 pipeline with small batches, so that several API requests are in
+   * flight at once.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testEndToEndPipeline_concurrentRequests_generatesExpectedFiles() throws Exception {
+    CloseableHttpClient httpClient = mock(CloseableHttpClient.class, withSettings().serializable());
+    when(httpClient.execute(any(HttpPost.class))).thenAnswer(new HttpResponder());
+
+    EvaluateSafeBrowsingFn evalFn =
+        new EvaluateSafeBrowsingFn(
+            StaticValueProvider.of("apikey"),
+            new Retrier(new FakeSleeper(new FakeClock()), 3),
+            (Serializable & Supplier) () -> httpClient,
+            2,
+            3,
+            1000);
+    runPipelineAndVerifyReport(evalFn);
+  }
+
+  private void runPipelineAndVerifyReport(EvaluateSafeBrowsingFn evalFn) throws Exception {
+    ImmutableList<Subdomain> inputRows = getInputDomains();
 
     // Apply input and evaluation transforms
-    PCollection<Subdomain> input = p.apply(Create.of(inputRows));
+    PCollection<Subdomain> input = p.apply(Create.of(inputRows).withCoder(new SubdomainCoder()));
     spec11Pipeline.evaluateUrlHealth(input, evalFn, StaticValueProvider.of("2018-06-01"));
     p.run();
 
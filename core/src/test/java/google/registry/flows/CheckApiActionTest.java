@@ -36,8 +36,10 @@ import google.registry.monitoring.whitebox.CheckApiMetric.Tier;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
+import google.registry.testing.InjectRule;
 import java.util.Map;
 import org.joda.time.DateTime;
+import org.joda.time.Duration;
 import org.json.simple.JSONValue;
 import org.junit.Before;
 import org.junit.Rule;
@@ -58,11 +60,13 @@ public class CheckApiActionTest {
 
   @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
   @Rule public final MockitoRule mocks = MockitoJUnit.rule();
+  @Rule public final InjectRule inject = new InjectRule();
 
   @Mock private CheckApiMetrics checkApiMetrics;
   @Captor private ArgumentCaptor<CheckApiMetric> metricCaptor;
 
   private DateTime endTime;
+  private DomainAvailabilityIndex availabilityIndex;
 
   @Before
   public void init() {
@@ -88,6 +92,8 @@ public class CheckApiActionTest {
     action.clock = fakeClock;
     action.metricBuilder = CheckApiMetric.builder(fakeClock);
     action.checkApiMetrics = checkApiMetrics;
+    action.availabilityIndexEnabled = availabilityIndex != null;
+    action.availabilityIndex = availabilityIndex;
     fakeClock.advanceOneMilli();
     endTime = fakeClock.nowUtc();
 
@@ -234,6 +240,48 @@ public class CheckApiActionTest {
     verifySuccessMetric(STANDARD, REGISTERED);
   }
 
+  @Test
+  public void testSuccess_registered_availabilityIndex() {
+    persistActiveDomain("somedomain.example");
+    availabilityIndex = new DomainAvailabilityIndex(new FakeClock(START_TIME), Duration.ZERO);
+    assertThat(getCheckResponse("somedomain.example"))
+        .containsExactly(
+            "tier", "standard",
+            "status", "success",
+            "available", false,
+            "reason", "In use");
+
+    verifySuccessMetric(STANDARD, REGISTERED);
+  }
+
+  @Test
+  public void testSuccess_available_availabilityIndex() {
+    persistActiveDomain("somedomain.example");
+    availabilityIndex = new DomainAvailabilityIndex(new FakeClock(START_TIME), Duration.ZERO);
+    assertThat(getCheckResponse("otherdomain.example"))
+        .containsExactly(
+            "status", "success",
+            "available", true,
+            "tier", "standard");
+
+    verifySuccessMetric(STANDARD, AVAILABLE);
+  }
+
+  @Test
+  public void testSuccess_registered_availabilityIndexNotBuilt_checksDatastore() {
+    inject.setStaticField(DomainAvailabilityIndex.class, "buildChunkSize", 1);
+    persistActiveDomain("somedomain.example");
+    availabilityIndex = new DomainAvailabilityIndex(new FakeClock(START_TIME), Duration.ZERO);
+    assertThat(getCheckResponse("somedomain.example"))
+        .containsExactly(
+            "tier", "standard",
+            "status", "success",
+            "available", false,
+            "reason", "In use");
+
+    verifySuccessMetric(STANDARD, REGISTERED);
+  }
+
   @Test
   public void testSuccess_reserved_standard() {
     assertThat(getCheckResponse("foo.example"))
@@ -0,0 +1,157 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static google.registry.testing.DatastoreHelper.createTlds;
+import static google.registry.testing.DatastoreHelper.newDomainBase;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistDeletedDomain;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
+
+import com.google.common.net.InternetDomainName;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.ofy.Ofy;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import java.util.Optional;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DomainAvailabilityIndex}. */
+@RunWith(JUnit4.class)
+public class DomainAvailabilityIndexTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Rule public final InjectRule inject = new InjectRule();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2000-01-01TZ"));
+  private final DomainAvailabilityIndex index = new DomainAvailabilityIndex(clock, Duration.ZERO);
+
+  private DomainBase dog;
+
+  @Before
+  public void before() {
+    inject.setStaticField(Ofy.class, "clock", clock);
+    createTlds("lol", "example");
+    persistActiveDomain("cat.lol");
+    persistActiveDomain("cat.example");
+    dog = persistActiveDomain("dog.lol");
+    persistDeletedDomain("bird.lol", clock.nowUtc().minusDays(1));
+  }
+
+  private boolean isRegistered(String domainName) {
+    return isRegistered(domainName, clock.nowUtc());
+  }
+
+  private boolean isRegistered(String domainName, DateTime now) {
+    Optional<Boolean> registered = index.isRegistered(InternetDomainName.from(domainName), now);
+    assertThat(registered).isPresent();
+    return registered.get();
+  }
+
+  @Test
+  public void testIsRegistered_activeDomains() {
+    assertThat(isRegistered("cat.lol")).isTrue();
+    assertThat(isRegistered("cat.example")).isTrue();
+    assertThat(isRegistered("dog.lol")).isTrue();
+  }
+
+  @Test
+  public void testIsRegistered_deletedDomain() {
+    assertThat(isRegistered("bird.lol")).isFalse();
+  }
+
+  @Test
+  public void testIsRegistered_unknownDomains() {
+    assertThat(isRegistered("dog.example")).isFalse();
+    assertThat(isRegistered("cat.tld")).isFalse();
+  }
+
+  @Test
+  public void testRefresh_picksUpCommitLoggedChanges() {
+    assertThat(isRegistered("cat2.lol")).isFalse();
+    assertThat(isRegistered("dog.lol")).isTrue();
+    clock.advanceOneMilli();
+    persistResourceWithCommitLog(newDomainBase("cat2.lol"));
+    clock.advanceOneMilli();
+    persistResourceWithCommitLog(dog.asBuilder().setDeletionTime(clock.nowUtc()).build());
+    clock.advanceOneMilli();
+    assertThat(isRegistered("cat2.lol")).isTrue();
+    assertThat(isRegistered("dog.lol")).isFalse();
+  }
+
+  @Test
+  public void testRefresh_picksUpReregistration() {
+    persistResource(
+        newDomainBase("bird.lol").asBuilder().setDeletionTime(clock.nowUtc().plusDays(5)).build());
+    assertThat(isRegistered("bird.lol")).isTrue();
+    clock.advanceBy(Duration.standardDays(5));
+    assertThat(isRegistered("bird.lol")).isFalse();
+    persistResourceWithCommitLog(newDomainBase("bird.lol"));
+    clock.advanceOneMilli();
+    assertThat(isRegistered("bird.lol")).isTrue();
+  }
+
+  @Test
+  public void testPendingDelete_becomesAvailableAtDeletionTime() {
+    DateTime deletionTime = clock.nowUtc().plusDays(5);
+    persistResource(newDomainBase("cat3.lol").asBuilder().setDeletionTime(deletionTime).build());
+    assertThat(isRegistered("cat3.lol")).isTrue();
+    // Domains become available at their deletion time even without a refresh.
+    assertThat(isRegistered("cat3.lol", deletionTime)).isFalse();
+    clock.advanceBy(Duration.standardDays(5));
+    assertThat(isRegistered("cat3.lol")).isFalse();
+  }
+
+  @Test
+  public void testBuild_inChunks_notUsedUntilComplete() {
+    inject.setStaticField(DomainAvailabilityIndex.class, "buildChunkSize", 2);
+    InternetDomainName cat = InternetDomainName.from("cat.lol");
+    // There are three active domains, so it takes two checks to find out that all are loaded.
+    assertThat(index.isRegistered(cat, clock.nowUtc())).isEmpty();
+    assertThat(isRegistered("cat.lol")).isTrue();
+    assertThat(isRegistered("cat.example")).isTrue();
+    assertThat(isRegistered("dog.lol")).isTrue();
+  }
+
+  @Test
+  public void testBuild_changesDuringBuild_arePickedUp() {
+    inject.setStaticField(DomainAvailabilityIndex.class, "buildChunkSize", 1);
+    InternetDomainName dogName = InternetDomainName.from("dog.lol");
+    assertThat(index.isRegistered(dogName, clock.nowUtc())).isEmpty();
+    clock.advanceOneMilli();
+    persistResourceWithCommitLog(dog.asBuilder().setDeletionTime(clock.nowUtc()).build());
+    persistResourceWithCommitLog(newDomainBase("aardvark.lol"));
+    clock.advanceOneMilli();
+    // How many more chunks there are depends on where the changed domains fall in the scan.
+    Optional<Boolean> dogRegistered = Optional.empty();
+    for (int i = 0; i < 10 && !dogRegistered.isPresent(); i++) {
+      dogRegistered = index.isRegistered(dogName, clock.nowUtc());
+    }
+    assertThat(dogRegistered).hasValue(false);
+    assertThat(isRegistered("aardvark.lol")).isTrue();
+    assertThat(isRegistered("cat.lol")).isTrue();
+  }
+}
@@ -24,12 +24,14 @@ import static google.registry.testing.TestLogHandlerUtils.findFirstLogRecordWith
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.logging.Level.INFO;
 import static java.util.logging.Level.SEVERE;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.testing.TestLogHandler;
 import google.registry.flows.EppException.UnimplementedExtensionException;
 import google.registry.flows.EppTestComponent.FakeServerTridProvider;
@@ -40,6 +42,7 @@ import google.registry.model.eppoutput.EppResponse;
 import google.registry.model.eppoutput.Result;
 import google.registry.model.eppoutput.Result.Code;
 import google.registry.monitoring.whitebox.EppMetric;
+import google.registry.monitoring.whitebox.FlowPhase;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.ShardableTestCase;
@@ -150,6 +153,44 @@ public class EppControllerTest extends ShardableTestCase {
     EppMetric expectedMetric = metricBuilder.build();
     verify(eppMetrics).incrementEppRequests(eq(expectedMetric));
     verify(eppMetrics).recordProcessingTime(eq(expectedMetric));
+    verify(eppMetrics)
+        .recordPhaseTimes(
+            eq(expectedMetric), argThat(phaseTimes -> phaseTimes.containsKey(FlowPhase.UNMARSHAL)));
+  }
+
+  @Test
+  public void testRecordMarshalTime_attributedToHandledCommand() {
+    createTld("tld");
+    eppController.handleEppCommand(
+        sessionMetadata,
+        transportCredentials,
+        EppRequestSource.UNIT_TEST,
+        false,
+        true,
+        domainCreateXml.getBytes(UTF_8));
+    eppController.recordMarshalTime(1234);
+    verify(eppMetrics)
+        .recordPhaseTimes(
+            eq(
+                EppMetric.builderForRequest(clock)
+                    .setClientId("some-client")
+                    .setStatus(Code.SUCCESS_WITH_NO_MESSAGES)
+                    .setTld("tld")
+                    .build()),
+            eq(ImmutableMap.of(FlowPhase.MARSHAL, 1234L)));
+  }
+
+  @Test
+  public void testRecordMarshalTime_dryRun_notRecorded() {
+    eppController.handleEppCommand(
+        sessionMetadata,
+        transportCredentials,
+        EppRequestSource.UNIT_TEST,
+        true,
+        true,
+        domainCreateXml.getBytes(UTF_8));
+    eppController.recordMarshalTime(1234);
+    verifyZeroInteractions(eppMetrics);
   }
 
   @Test
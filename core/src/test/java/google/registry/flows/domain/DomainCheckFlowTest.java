@@ -664,6 +664,13 @@ public class DomainCheckFlowTest extends ResourceCheckFlowTestCase<DomainCheckFl
     runFlowAssertResponse(loadFile("domain_check_fee_premium_response_v06.xml"));
   }
 
+  @Test
+  public void testFeeExtension_duplicateItems_mixedTlds_v06() throws Exception {
+    createTld("example");
+    setEppInput("domain_check_fee_duplicate_items_v06.xml");
+    runFlowAssertResponse(loadFile("domain_check_fee_duplicate_items_response_v06.xml"));
+  }
+
   @Test
   public void testFeeExtension_premium_eap_v06() throws Exception {
     createTld("example");
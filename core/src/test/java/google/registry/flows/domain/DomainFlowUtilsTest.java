@@ -16,10 +16,13 @@ package google.registry.flows.domain;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistActiveContact;
 import static google.registry.testing.DatastoreHelper.persistResource;
 import static google.registry.testing.EppExceptionSubject.assertAboutEppExceptions;
 import static org.junit.Assert.assertThrows;
 
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
 import google.registry.flows.EppException;
 import google.registry.flows.ResourceFlowTestCase;
 import google.registry.flows.domain.DomainFlowUtils.BadDomainNameCharacterException;
@@ -31,7 +34,11 @@ import google.registry.flows.domain.DomainFlowUtils.InvalidPunycodeException;
 import google.registry.flows.domain.DomainFlowUtils.LeadingDashException;
 import google.registry.flows.domain.DomainFlowUtils.TldDoesNotExistException;
 import google.registry.flows.domain.DomainFlowUtils.TrailingDashException;
+import google.registry.model.contact.ContactResource;
+import google.registry.model.domain.DesignatedContact;
+import google.registry.model.domain.DesignatedContact.Type;
 import google.registry.model.domain.DomainBase;
+import google.registry.model.domain.ForeignKeyedDesignatedContact;
 import google.registry.testing.AppEngineRule;
 import org.junit.Before;
 import org.junit.Test;
@@ -151,4 +158,18 @@ public class DomainFlowUtilsTest extends ResourceFlowTestCase<DomainInfoFlow, Do
         .isEqualTo("Non-IDN domain names cannot contain dashes in the third or fourth position");
     assertAboutEppExceptions().that(thrown).marshalsToXml();
   }
+
+  @Test
+  public void testLoadForeignKeyedDesignatedContacts() {
+    ContactResource admin = persistActiveContact("jd1234");
+    ContactResource tech = persistActiveContact("sh8013");
+    assertThat(
+            DomainFlowUtils.loadForeignKeyedDesignatedContacts(
+                ImmutableSet.of(
+                    DesignatedContact.create(Type.ADMIN, Key.create(admin)),
+                    DesignatedContact.create(Type.TECH, Key.create(tech)))))
+        .containsExactly(
+            ForeignKeyedDesignatedContact.create(Type.ADMIN, "jd1234"),
+            ForeignKeyedDesignatedContact.create(Type.TECH, "sh8013"));
+  }
 }
@@ -0,0 +1,136 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.flows.poll;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.config.RegistryConfig.getPollMessageQueueLengthCachingDuration;
+import static google.registry.flows.poll.PollMessageQueueLengthCache.getQueueLength;
+import static google.registry.flows.poll.PollMessageQueueLengthCache.getQueueLengthAfterAck;
+import static google.registry.testing.DatastoreHelper.createHistoryEntryForEppResource;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import google.registry.model.domain.DomainBase;
+import google.registry.model.poll.PollMessage;
+import google.registry.testing.AppEngineRule;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PollMessageQueueLengthCache}. */
+@RunWith(JUnit4.class)
+public class PollMessageQueueLengthCacheTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private final DateTime now = DateTime.parse("2011-01-02T01:01:01Z");
+  private DomainBase domain;
+
+  @Before
+  public void before() {
+    PollMessageQueueLengthCache.setCacheForTest(Duration.standardDays(1));
+    createTld("example");
+    domain = persistActiveDomain("test.example");
+  }
+
+  @After
+  public void after() {
+    PollMessageQueueLengthCache.setCacheForTest(getPollMessageQueueLengthCachingDuration());
+  }
+
+  private void persistPollMessage(String clientId, DateTime eventTime) {
+    persistResource(
+        new PollMessage.OneTime.Builder()
+            .setClientId(clientId)
+            .setEventTime(eventTime)
+            .setMsg("Domain deleted.")
+            .setParent(createHistoryEntryForEppResource(domain))
+            .build());
+  }
+
+  @Test
+  public void testGetQueueLength_countsPendingMessages() {
+    persistPollMessage("TheRegistrar", now.minusDays(2));
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    persistPollMessage("TheRegistrar", now.plusDays(1));
+    persistPollMessage("NewRegistrar", now.minusDays(1));
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(2);
+    assertThat(getQueueLength("NewRegistrar", now)).isEqualTo(1);
+  }
+
+  @Test
+  public void testGetQueueLength_cached_addsMessagesThatBecameVisible() {
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    persistPollMessage("TheRegistrar", now.plusDays(1));
+    persistPollMessage("TheRegistrar", now.plusDays(3));
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(1);
+    assertThat(getQueueLength("TheRegistrar", now.plusDays(2))).isEqualTo(2);
+    // A new message with an event time in the past of the cached time isn't seen until expiry.
+    persistPollMessage("TheRegistrar", now);
+    assertThat(getQueueLength("TheRegistrar", now.plusDays(3))).isEqualTo(3);
+    PollMessageQueueLengthCache.setCacheForTest(Duration.ZERO);
+    assertThat(getQueueLength("TheRegistrar", now.plusDays(3))).isEqualTo(4);
+  }
+
+  @Test
+  public void testGetQueueLength_clockWentBackwards_recounts() {
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(1);
+    persistPollMessage("TheRegistrar", now.minusDays(3));
+    assertThat(getQueueLength("TheRegistrar", now.minusDays(1))).isEqualTo(2);
+  }
+
+  @Test
+  public void testGetQueueLength_cachedCountOfOne_recounts() {
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(1);
+    // A message with an event time before the cached time, e.g. one that was indexed late.
+    persistPollMessage("TheRegistrar", now.minusDays(2));
+    assertThat(getQueueLength("TheRegistrar", now.plusDays(1))).isEqualTo(2);
+  }
+
+  @Test
+  public void testGetQueueLengthAfterAck_countsAllMessages() {
+    persistPollMessage("TheRegistrar", now.minusDays(2));
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    assertThat(getQueueLengthAfterAck("TheRegistrar", now, false)).isEqualTo(1);
+  }
+
+  @Test
+  public void testGetQueueLengthAfterAck_dropsCachedCount() {
+    persistPollMessage("TheRegistrar", now.minusDays(3));
+    persistPollMessage("TheRegistrar", now.minusDays(2));
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(2);
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    // The ack counts the message that the cached count missed.
+    assertThat(getQueueLengthAfterAck("TheRegistrar", now, false)).isEqualTo(2);
+    // The ack didn't commit (nothing was deleted here), and the cached count wasn't decremented.
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(3);
+  }
+
+  @Test
+  public void testGetQueueLengthAfterAck_stillPending() {
+    persistPollMessage("TheRegistrar", now.minusDays(2));
+    persistPollMessage("TheRegistrar", now.minusDays(1));
+    assertThat(getQueueLength("TheRegistrar", now)).isEqualTo(2);
+    assertThat(getQueueLengthAfterAck("TheRegistrar", now, true)).isEqualTo(2);
+  }
+}
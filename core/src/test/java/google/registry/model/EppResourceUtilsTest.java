@@ -16,6 +16,7 @@ package google.registry.model;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
+import static google.registry.model.EppResourceUtils.loadAtPointsInTime;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.newHostResource;
 import static google.registry.testing.DatastoreHelper.persistResource;
@@ -23,6 +24,9 @@ import static google.registry.testing.DatastoreHelper.persistResourceWithCommitL
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.time.DateTimeZone.UTC;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Result;
 import google.registry.model.host.HostResource;
 import google.registry.model.ofy.Ofy;
 import google.registry.testing.AppEngineRule;
@@ -100,6 +104,33 @@ public class EppResourceUtilsTest {
         .isEqualTo(oldHost);
   }
 
+  @Test
+  public void testLoadAtPointsInTime_returnsResourceAtEachTime() {
+    clock.advanceOneMilli();
+    DateTime creationTime = clock.nowUtc();
+    HostResource oldHost = persistResourceWithCommitLog(
+        newHostResource("ns1.cat.tld").asBuilder()
+            .setCreationTimeForTest(creationTime)
+            .setPersistedCurrentSponsorClientId("OLD")
+            .build());
+    // Advance a day so that the next created revision entry doesn't overwrite the existing one.
+    clock.advanceBy(Duration.standardDays(1));
+    HostResource currentHost = persistResource(oldHost.asBuilder()
+        .setPersistedCurrentSponsorClientId("NEW")
+        .build());
+    DateTime beforeCreation = creationTime.minusMillis(1);
+    DateTime beforeUpdate = clock.nowUtc().minusMillis(1);
+    DateTime justAfterCreation = creationTime.plusMillis(1);
+    DateTime now = clock.nowUtc();
+    ImmutableMap<DateTime, Result<HostResource>> hostAtTimes =
+        loadAtPointsInTime(
+            currentHost, ImmutableSet.of(beforeCreation, justAfterCreation, beforeUpdate, now));
+    assertThat(hostAtTimes.get(beforeCreation).now()).isNull();
+    assertThat(hostAtTimes.get(justAfterCreation).now()).isEqualTo(oldHost);
+    assertThat(hostAtTimes.get(beforeUpdate).now()).isEqualTo(oldHost);
+    assertThat(hostAtTimes.get(now).now()).isEqualTo(currentHost);
+  }
+
   @Test
   public void testLoadAtPointInTime_brokenRevisionHistory_returnsResourceAsIs() {
     // Don't save a commit log since we want to test the handling of a broken revisions key.
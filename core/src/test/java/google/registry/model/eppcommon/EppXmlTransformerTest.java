@@ -15,13 +15,21 @@
 package google.registry.model.eppcommon;
 
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.eppcommon.EppXmlTransformer.marshal;
 import static google.registry.model.eppcommon.EppXmlTransformer.unmarshal;
+import static google.registry.model.eppcommon.EppXmlTransformer.validateOutput;
 import static google.registry.testing.TestDataHelper.loadBytes;
+import static google.registry.xml.ValidationMode.LENIENT;
+import static google.registry.xml.ValidationMode.STRICT;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertThrows;
 
 import google.registry.model.eppinput.EppInput;
 import google.registry.model.eppoutput.EppOutput;
+import google.registry.model.eppoutput.Greeting;
 import google.registry.testing.ShardableTestCase;
+import google.registry.xml.ValidationMode;
+import org.joda.time.DateTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -42,4 +50,25 @@ public class EppXmlTransformerTest extends ShardableTestCase {
         ClassCastException.class,
         () -> unmarshal(EppOutput.class, loadBytes(getClass(), "contact_info.xml").read()));
   }
+
+  private static String marshalGreeting(DateTime svDate, ValidationMode validation)
+      throws Exception {
+    return new String(
+        marshal(EppOutput.create(Greeting.create(svDate, "Test & Registry")), validation), UTF_8);
+  }
+
+  @Test
+  public void testMarshalGreeting_cachedTemplateMatchesJaxbOutput() throws Exception {
+    DateTime firstDate = DateTime.parse("2020-01-02T03:04:05Z");
+    DateTime secondDate = DateTime.parse("2021-06-07T08:09:10Z");
+    String first = marshalGreeting(firstDate, STRICT);
+    String second = marshalGreeting(secondDate, STRICT);
+    assertThat(first).contains(">2020-01-02T03:04:05Z<");
+    assertThat(first).contains("Test &amp; Registry");
+    assertThat(second)
+        .isEqualTo(first.replace("2020-01-02T03:04:05Z", "2021-06-07T08:09:10Z"));
+    // Lenient marshalling doesn't use the cache, so it shows what JAXB outputs by itself.
+    assertThat(second).isEqualTo(marshalGreeting(secondDate, LENIENT));
+    validateOutput(second);
+  }
 }
@@ -26,6 +26,7 @@ import com.googlecode.objectify.Key;
 import google.registry.model.ImmutableObject;
 import google.registry.model.registry.Registry;
 import google.registry.testing.AppEngineRule;
+import google.registry.testing.InjectRule;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.junit.Before;
@@ -43,6 +44,8 @@ public class CommitLogMutationTest {
       .withDatastore()
       .build();
 
+  @Rule public final InjectRule inject = new InjectRule();
+
   private static final DateTime NOW = DateTime.now(DateTimeZone.UTC);
 
   private Key<CommitLogManifest> manifestKey;
@@ -89,6 +92,53 @@ public class CommitLogMutationTest {
         .isEqualTo(rawEntity);
   }
 
+  @Test
+  public void test_create_compressed() {
+    inject.setStaticField(CommitLogMutation.class, "compressMutations", true);
+    Entity rawEntity = convertToEntityInTxn(someObject);
+    CommitLogMutation mutation =
+        tm().transact(() -> CommitLogMutation.create(manifestKey, someObject));
+    assertThat(mutation.isCompressed()).isTrue();
+    assertThat(mutation.entityProtoBytes.length)
+        .isLessThan(EntityTranslator.convertToPb(rawEntity).toByteArray().length);
+    assertThat(mutation.getEntity()).isEqualTo(rawEntity);
+    assertThat(EntityTranslator.createFromPbBytes(mutation.getEntityProtoBytes()))
+        .isEqualTo(rawEntity);
+  }
+
+  @Test
+  public void test_create_compressed_survivesSaveAndLoad() {
+    inject.setStaticField(CommitLogMutation.class, "compressMutations", true);
+    Entity rawEntity = convertToEntityInTxn(someObject);
+    CommitLogMutation mutation =
+        tm().transact(() -> CommitLogMutation.create(manifestKey, someObject));
+    ofy().saveWithoutBackup().entity(mutation).now();
+    ofy().clearSessionCache();
+    CommitLogMutation loaded = ofy().load().entity(mutation).now();
+    assertThat(loaded.isCompressed()).isTrue();
+    assertThat(loaded.getEntity()).isEqualTo(rawEntity);
+  }
+
+  @Test
+  public void test_create_uncompressedByDefault() {
+    CommitLogMutation mutation =
+        tm().transact(() -> CommitLogMutation.create(manifestKey, someObject));
+    assertThat(mutation.isCompressed()).isFalse();
+    assertThat(ofy().save().toEntity(mutation).hasProperty("compressed")).isFalse();
+  }
+
+  @Test
+  public void test_loadKeysOfEntitiesSavedSince() {
+    tm().transact(
+        () -> ofy().saveWithoutBackup().entity(CommitLogMutation.create(manifestKey, someObject)));
+    assertThat(CommitLogMutation.loadKeysOfEntitiesSavedSince(Registry.class, NOW))
+        .containsExactly(Key.create(someObject));
+    assertThat(CommitLogMutation.loadKeysOfEntitiesSavedSince(Registry.class, NOW.plusMillis(1)))
+        .isEmpty();
+    assertThat(CommitLogMutation.loadKeysOfEntitiesSavedSince(CommitLogBucket.class, NOW))
+        .isEmpty();
+  }
+
   private static Entity convertToEntityInTxn(final ImmutableObject object) {
     return tm().transact(() -> ofy().save().toEntity(object));
   }
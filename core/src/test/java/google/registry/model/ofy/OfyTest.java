@@ -237,6 +237,62 @@ public class OfyTest {
       }});
   }
 
+  @Test
+  public void testTransact_concurrentModificationException_retriesAndRecordsConflict() {
+    TransactionContention.drainConflictsByKind();
+    assertThat(
+            tm().transact(
+                    new Supplier<Integer>() {
+
+                      int count = 0;
+
+                      @Override
+                      public Integer get() {
+                        ofy().load().key(someObject.getParent()).now();
+                        count++;
+                        if (count == 3) {
+                          return count;
+                        }
+                        throw new ConcurrentModificationException();
+                      }
+                    }))
+        .isEqualTo(3);
+    assertThat(TransactionContention.drainConflictsByKind()).containsEntry("ContactResource", 2L);
+  }
+
+  @Test
+  public void testTransact_concurrentModificationException_givesUpAfterMaxRetries() {
+    Runnable work =
+        new Runnable() {
+
+          int count = 0;
+
+          @Override
+          public void run() {
+            count++;
+            assertThat(count).isAtMost(9);
+            throw new ConcurrentModificationException();
+          }
+        };
+    assertThrows(ConcurrentModificationException.class, () -> tm().transact(work));
+  }
+
+  @Test
+  public void testGetJitteredRetryMillis_staysWithinBounds() {
+    long sleepMillis = 100;
+    for (int i = 0; i < 100; i++) {
+      long nextSleepMillis = Ofy.getJitteredRetryMillis(100, sleepMillis);
+      assertThat(nextSleepMillis).isAtLeast(100L);
+      assertThat(nextSleepMillis).isAtMost(Math.min(sleepMillis * 3, 100L << 7));
+      sleepMillis = nextSleepMillis;
+    }
+  }
+
+  @Test
+  public void testGetJitteredRetryMillis_zeroBase() {
+    assertThat(Ofy.getJitteredRetryMillis(0, 0)).isEqualTo(0L);
+  }
+
   @Test
   public void testTransact_transientFailureException_retries() {
     assertThat(
@@ -0,0 +1,52 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.ofy;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import google.registry.testing.AppEngineRule;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TransactionRetryBudget}. */
+@RunWith(JUnit4.class)
+public class TransactionRetryBudgetTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().build();
+
+  @Test
+  public void testTryConsume() {
+    TransactionRetryBudget budget = new TransactionRetryBudget(Duration.millis(100));
+    assertThat(budget.tryConsume(Duration.millis(60))).isTrue();
+    assertThat(budget.tryConsume(Duration.millis(60))).isFalse();
+    assertThat(budget.tryConsume(Duration.millis(40))).isTrue();
+    assertThat(budget.getRemaining()).isEqualTo(Duration.ZERO);
+    assertThat(budget.tryConsume(Duration.millis(1))).isFalse();
+  }
+
+  @Test
+  public void testForCurrentRequest_sharedWithinRequest() {
+    TransactionRetryBudget budget =
+        TransactionRetryBudget.forCurrentRequest(Duration.standardSeconds(1));
+    assertThat(budget.tryConsume(Duration.millis(600))).isTrue();
+    TransactionRetryBudget sameBudget =
+        TransactionRetryBudget.forCurrentRequest(Duration.standardSeconds(1));
+    assertThat(sameBudget).isSameInstanceAs(budget);
+    assertThat(sameBudget.tryConsume(Duration.millis(600))).isFalse();
+  }
+}
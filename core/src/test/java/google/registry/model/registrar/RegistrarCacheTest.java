@@ -0,0 +1,145 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registrar;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import google.registry.model.ofy.Ofy;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RegistrarCache}. */
+@RunWith(JUnit4.class)
+public class RegistrarCacheTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Rule public final InjectRule inject = new InjectRule();
+
+  private static final Duration REFRESH_INTERVAL = Duration.standardMinutes(10);
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2000-01-01TZ"));
+  private final Queue<Runnable> pendingRefreshes = new ArrayDeque<>();
+  private final RegistrarCache cache =
+      new RegistrarCache(REFRESH_INTERVAL, clock, () -> pendingRefreshes::add);
+
+  @Before
+  public void before() {
+    inject.setStaticField(Ofy.class, "clock", clock);
+  }
+
+  private String getCachedName(String clientId) {
+    return cache.get().get(clientId).getRegistrarName();
+  }
+
+  private void renameRegistrar(String clientId, String registrarName) {
+    persistResource(
+        Registrar.loadByClientId(clientId)
+            .get()
+            .asBuilder()
+            .setRegistrarName(registrarName)
+            .build());
+  }
+
+  @Test
+  public void testGet_loadsAllRegistrars() {
+    assertThat(cache.get().keySet()).containsExactly("NewRegistrar", "TheRegistrar");
+    assertThat(pendingRefreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_zeroRefreshInterval_alwaysLoadsFromDatastore() {
+    RegistrarCache uncached = new RegistrarCache(Duration.ZERO, clock, () -> pendingRefreshes::add);
+    assertThat(uncached.get().get("TheRegistrar").getRegistrarName()).isEqualTo("The Registrar");
+    persistResource(
+        Registrar.loadByClientId("TheRegistrar")
+            .get()
+            .asBuilder()
+            .setRegistrarName("Renamed Registrar")
+            .build());
+    assertThat(uncached.get().get("TheRegistrar").getRegistrarName())
+        .isEqualTo("Renamed Registrar");
+    assertThat(pendingRefreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_withinRefreshInterval_servesCachedRegistrars() {
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("The Registrar");
+    clock.advanceOneMilli();
+    renameRegistrar("TheRegistrar", "Renamed Registrar");
+    clock.advanceBy(REFRESH_INTERVAL.minus(Duration.standardSeconds(1)));
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("The Registrar");
+    assertThat(pendingRefreshes).isEmpty();
+  }
+
+  @Test
+  public void testGet_afterRefreshInterval_servesStaleRegistrarsWhileRefreshing() {
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("The Registrar");
+    clock.advanceOneMilli();
+    renameRegistrar("TheRegistrar", "Renamed Registrar");
+    clock.advanceBy(REFRESH_INTERVAL);
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("The Registrar");
+    // Only one refresh is started, however many lookups find the cache stale.
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("The Registrar");
+    assertThat(pendingRefreshes).hasSize(1);
+    pendingRefreshes.remove().run();
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("Renamed Registrar");
+    assertThat(getCachedName("NewRegistrar")).isEqualTo("New Registrar");
+    assertThat(pendingRefreshes).isEmpty();
+  }
+
+  @Test
+  public void testRefresh_picksUpNewRegistrars() {
+    assertThat(cache.get()).doesNotContainKey("ThirdRegistrar");
+    clock.advanceOneMilli();
+    persistResource(
+        AppEngineRule.makeRegistrar2()
+            .asBuilder()
+            .setClientId("ThirdRegistrar")
+            .setIanaIdentifier(3L)
+            .build());
+    clock.advanceBy(REFRESH_INTERVAL);
+    cache.get();
+    pendingRefreshes.remove().run();
+    assertThat(getCachedName("ThirdRegistrar")).isEqualTo("The Registrar");
+  }
+
+  @Test
+  public void testRefresh_startsAnotherRefreshOnlyAfterRefreshInterval() {
+    cache.get();
+    clock.advanceBy(REFRESH_INTERVAL);
+    cache.get();
+    pendingRefreshes.remove().run();
+    clock.advanceOneMilli();
+    renameRegistrar("TheRegistrar", "Renamed Registrar");
+    cache.get();
+    assertThat(pendingRefreshes).isEmpty();
+    clock.advanceBy(REFRESH_INTERVAL);
+    cache.get();
+    pendingRefreshes.remove().run();
+    assertThat(getCachedName("TheRegistrar")).isEqualTo("Renamed Registrar");
+  }
+}
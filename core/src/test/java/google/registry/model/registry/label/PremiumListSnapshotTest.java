@@ -0,0 +1,86 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry.label;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.model.registry.label.PremiumList.PremiumListEntry;
+import org.joda.money.Money;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PremiumListSnapshot}. */
+@RunWith(JUnit4.class)
+public class PremiumListSnapshotTest {
+
+  private static PremiumListEntry entry(String label, String price) {
+    return new PremiumListEntry.Builder().setLabel(label).setPrice(Money.parse(price)).build();
+  }
+
+  @Test
+  public void testEmpty() {
+    PremiumListSnapshot snapshot = PremiumListSnapshot.create(ImmutableList.of());
+    assertThat(snapshot.size()).isEqualTo(0);
+    assertThat(snapshot.getPremiumPrice("anything")).isEmpty();
+  }
+
+  @Test
+  public void testGetPremiumPrice_unsortedInput() {
+    PremiumListSnapshot snapshot =
+        PremiumListSnapshot.create(
+            ImmutableList.of(
+                entry("rich", "USD 1999"), entry("lol", "USD 999"), entry("a", "USD 20.50")));
+    assertThat(snapshot.size()).isEqualTo(3);
+    assertThat(snapshot.getPremiumPrice("a")).hasValue(Money.parse("USD 20.50"));
+    assertThat(snapshot.getPremiumPrice("lol")).hasValue(Money.parse("USD 999"));
+    assertThat(snapshot.getPremiumPrice("rich")).hasValue(Money.parse("USD 1999"));
+    assertThat(snapshot.getPremiumPrice("")).isEmpty();
+    assertThat(snapshot.getPremiumPrice("aa")).isEmpty();
+    assertThat(snapshot.getPremiumPrice("lo")).isEmpty();
+    assertThat(snapshot.getPremiumPrice("richer")).isEmpty();
+    assertThat(snapshot.getPremiumPrice("zzz")).isEmpty();
+  }
+
+  @Test
+  public void testGetPremiumPrice_multipleCurrencies() {
+    PremiumListSnapshot snapshot =
+        PremiumListSnapshot.create(
+            ImmutableList.of(
+                entry("icann", "JPY 100"), entry("lol", "USD 999"), entry("sludge", "CHF 2000")));
+    assertThat(snapshot.getPremiumPrice("icann")).hasValue(Money.parse("JPY 100"));
+    assertThat(snapshot.getPremiumPrice("lol")).hasValue(Money.parse("USD 999"));
+    assertThat(snapshot.getPremiumPrice("sludge")).hasValue(Money.parse("CHF 2000"));
+  }
+
+  @Test
+  public void testGetPremiumPrice_spanningManyBlocks() {
+    ImmutableList.Builder<PremiumListEntry> entries = new ImmutableList.Builder<>();
+    for (int i = 0; i < 1000; i++) {
+      entries.add(entry(String.format("label-%04d", i * 2), String.format("USD %d.00", i)));
+    }
+    PremiumListSnapshot snapshot = PremiumListSnapshot.create(entries.build());
+    assertThat(snapshot.size()).isEqualTo(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(snapshot.getPremiumPrice(String.format("label-%04d", i * 2)))
+          .hasValue(Money.parse(String.format("USD %d.00", i)));
+      assertThat(snapshot.getPremiumPrice(String.format("label-%04d", i * 2 + 1))).isEmpty();
+    }
+    assertThat(snapshot.getPremiumPrice("label-")).isEmpty();
+    assertThat(snapshot.getPremiumPrice("label-0000x")).isEmpty();
+  }
+}
@@ -22,6 +22,7 @@ import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.BLOOM_FILTER_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.CACHED_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.CACHED_POSITIVE;
+import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.SNAPSHOT_POSITIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.UNCACHED_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.UNCACHED_POSITIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.premiumListChecks;
@@ -29,6 +30,8 @@ import static google.registry.model.registry.label.DomainLabelMetrics.premiumLis
 import static google.registry.model.registry.label.PremiumListUtils.deletePremiumList;
 import static google.registry.model.registry.label.PremiumListUtils.doesPremiumListExist;
 import static google.registry.model.registry.label.PremiumListUtils.getPremiumPrice;
+import static google.registry.model.registry.label.PremiumListUtils.getPremiumPrices;
+import static google.registry.model.registry.label.PremiumListUtils.loadIntoCache;
 import static google.registry.model.registry.label.PremiumListUtils.savePremiumListAndEntries;
 import static google.registry.persistence.transaction.TransactionManagerFactory.tm;
 import static google.registry.testing.DatastoreHelper.createTld;
@@ -48,6 +51,7 @@ import google.registry.model.registry.Registry;
 import google.registry.model.registry.label.PremiumList.PremiumListEntry;
 import google.registry.model.registry.label.PremiumList.PremiumListRevision;
 import google.registry.testing.AppEngineRule;
+import google.registry.testing.InjectRule;
 import google.registry.testing.TestCacheRule;
 import java.util.Map;
 import org.joda.money.Money;
@@ -69,8 +73,11 @@ public class PremiumListUtilsTest {
       new TestCacheRule.Builder()
           .withPremiumListsCache(standardDays(1))
           .withPremiumListEntriesCache(standardDays(1))
+          .withPremiumListSnapshotsCache(standardDays(1))
           .build();
 
+  @Rule public final InjectRule inject = new InjectRule();
+
   @Before
   public void before() {
     // createTld() overwrites the premium list, so call it before persisting pl.
@@ -156,6 +163,65 @@ public class PremiumListUtilsTest {
     assertThat(doesPremiumListExist("nonExistentPremiumList")).isFalse();
   }
 
+  @Test
+  public void testGetPremiumPrices_onlyReturnsPremiumLabels() {
+    assertThat(
+            getPremiumPrices(
+                ImmutableList.of("rich", "poor", "icann", "lol", "rich"), Registry.get("tld")))
+        .containsExactly(
+            "rich", Money.parse("USD 1999"),
+            "icann", Money.parse("JPY 100"),
+            "lol", Money.parse("USD 999"));
+  }
+
+  @Test
+  public void testGetPremiumPrices_noPremiumList() {
+    persistResource(Registry.get("tld").asBuilder().setPremiumList(null).build());
+    assertThat(getPremiumPrices(ImmutableList.of("rich"), Registry.get("tld"))).isEmpty();
+    assertThat(premiumListChecks).hasNoOtherValues();
+  }
+
+  @Test
+  public void testGetPremiumPrice_fromSnapshot() {
+    inject.setStaticField(PremiumListUtils.class, "snapshotsEnabled", true);
+    assertThat(getPremiumPrice("rich", Registry.get("tld"))).hasValue(Money.parse("USD 1999"));
+    assertThat(getPremiumPrice("icann", Registry.get("tld"))).hasValue(Money.parse("JPY 100"));
+    assertThat(getPremiumPrice("johnny-be-goode", Registry.get("tld")))
+        .hasValue(Money.parse("USD 20.50"));
+    assertThat(getPremiumPrice("poor", Registry.get("tld"))).isEmpty();
+    assertThat(premiumListChecks).hasValueForLabels(3, "tld", "tld", SNAPSHOT_POSITIVE.toString());
+  }
+
+  @Test
+  public void testGetPremiumPrice_fromSnapshot_loadedOncePerRevision() {
+    inject.setStaticField(PremiumListUtils.class, "snapshotsEnabled", true);
+    assertThat(getPremiumPrice("lol", Registry.get("tld"))).hasValue(Money.parse("USD 999"));
+    // Once the snapshot is loaded, lookups never go back to Datastore for individual entries.
+    PremiumList pl = PremiumList.getCached("tld").get();
+    tm().transact(
+            () ->
+                ofy()
+                    .delete()
+                    .keys(
+                        ofy()
+                            .load()
+                            .type(PremiumListEntry.class)
+                            .ancestor(pl.getRevisionKey())
+                            .keys()));
+    assertThat(getPremiumPrice("rich", Registry.get("tld"))).hasValue(Money.parse("USD 1999"));
+    assertMetricOutcomeCount(2, SNAPSHOT_POSITIVE);
+  }
+
+  @Test
+  public void testGetPremiumPrice_fromSnapshot_newRevisionTakesEffect() {
+    inject.setStaticField(PremiumListUtils.class, "snapshotsEnabled", true);
+    assertThat(getPremiumPrice("lol", Registry.get("tld"))).hasValue(Money.parse("USD 999"));
+    savePremiumListAndEntries(
+        PremiumList.getUncached("tld").get(), ImmutableList.of("lol,USD 5", "rofl,USD 50"));
+    assertThat(getPremiumPrice("lol", Registry.get("tld"))).hasValue(Money.parse("USD 5"));
+    assertThat(getPremiumPrice("rofl", Registry.get("tld"))).hasValue(Money.parse("USD 50"));
+  }
+
   @Test
   public void testGetPremiumPrice_comesFromBloomFilter() throws Exception {
     PremiumList pl = PremiumList.getCached("tld").get();
@@ -177,6 +243,13 @@ public class PremiumListUtilsTest {
     assertMetricOutcomeCount(1, BLOOM_FILTER_NEGATIVE);
   }
 
+  @Test
+  public void testLoadIntoCache_doesNotRecordMetrics() {
+    loadIntoCache(Registry.get("tld"));
+    assertThat(premiumListChecks).hasNoOtherValues();
+    assertThat(premiumListProcessingTime).hasNoOtherValues();
+  }
+
   @Test
   public void testGetPremiumPrice_cachedSecondTime() {
     assertThat(getPremiumPrice("rich", Registry.get("tld"))).hasValue(Money.parse("USD 1999"));
@@ -0,0 +1,97 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.module.frontend;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.persistReservedList;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.MediaType;
+import google.registry.model.registry.Registry;
+import google.registry.module.frontend.WarmupAction.ComponentResult;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeResponse;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link WarmupAction}. */
+@RunWith(JUnit4.class)
+public class WarmupActionTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Before
+  public void before() {
+    createTld("tld");
+    persistResource(
+        Registry.get("tld")
+            .asBuilder()
+            .setReservedLists(persistReservedList("tld-reserved", "lol,FULLY_BLOCKED"))
+            .build());
+  }
+
+  @Test
+  public void testWarmUp_initializesAllComponents() {
+    ImmutableList<ComponentResult> results = WarmupAction.warmUp(null);
+    assertThat(results.stream().map(ComponentResult::name).collect(toImmutableList()))
+        .containsExactly(
+            "objectify",
+            "epp_xml",
+            "xjc_xml",
+            "idn_tables",
+            "registries",
+            "registrars",
+            "reserved_lists",
+            "premium_lists")
+        .inOrder();
+    for (ComponentResult result : results) {
+      assertThat(result.failure()).isEmpty();
+      assertThat(result.elapsedMillis()).isAtLeast(0L);
+    }
+  }
+
+  @Test
+  public void testRun_reportsComponentTimes() {
+    FakeResponse response = new FakeResponse();
+    WarmupAction action = new WarmupAction();
+    action.response = response;
+    action.run();
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentType()).isEqualTo(MediaType.PLAIN_TEXT_UTF_8);
+    assertThat(response.getPayload()).containsMatch("(?m)^objectify: \\d+ms$");
+    assertThat(response.getPayload()).containsMatch("(?m)^epp_xml: \\d+ms$");
+    assertThat(response.getPayload()).containsMatch("(?m)^premium_lists: \\d+ms$");
+    assertThat(response.getPayload()).doesNotContain("FAILED");
+  }
+
+  @Test
+  public void testComponentResult_toString() {
+    assertThat(ComponentResult.create("registrars", 12, Optional.empty()).toString())
+        .isEqualTo("registrars: 12ms");
+    assertThat(
+            ComponentResult.create(
+                    "registrars", 34, Optional.of("java.lang.IllegalStateException: oops"))
+                .toString())
+        .isEqualTo("registrars: 34ms FAILED java.lang.IllegalStateException: oops");
+  }
+}
@@ -0,0 +1,91 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.whitebox;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.config.RegistryConfig.getFlowPhaseHistogramsFlushInterval;
+import static google.registry.testing.LogsSubject.assertAboutLogs;
+import static java.util.logging.Level.INFO;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.TestLogHandler;
+import google.registry.util.LatencyHistogram.Snapshot;
+import java.util.logging.Logger;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link FlowPhaseHistograms}. */
+@RunWith(JUnit4.class)
+public class FlowPhaseHistogramsTest {
+
+  private final TestLogHandler logHandler = new TestLogHandler();
+  private final Logger loggerToIntercept =
+      Logger.getLogger(FlowPhaseHistograms.class.getCanonicalName());
+
+  @Before
+  public void before() {
+    // Make sure that nothing gets flushed behind the tests' backs.
+    FlowPhaseHistograms.setFlushIntervalForTest(Duration.standardDays(1));
+    FlowPhaseHistograms.drain();
+    loggerToIntercept.addHandler(logHandler);
+  }
+
+  @After
+  public void after() {
+    loggerToIntercept.removeHandler(logHandler);
+    FlowPhaseHistograms.setFlushIntervalForTest(getFlowPhaseHistogramsFlushInterval());
+  }
+
+  @Test
+  public void testRecord_byCommandAndPhase() {
+    FlowPhaseHistograms.record("DomainCreate", FlowPhase.RUN, 3000000);
+    FlowPhaseHistograms.record("DomainCreate", FlowPhase.RUN, 5000000);
+    FlowPhaseHistograms.record("DomainCreate", FlowPhase.COMMIT, 7000);
+    FlowPhaseHistograms.record("", FlowPhase.UNMARSHAL, 2000);
+    ImmutableMap<String, ImmutableMap<FlowPhase, Snapshot>> snapshots =
+        FlowPhaseHistograms.drain();
+    ImmutableMap<FlowPhase, Snapshot> domainCreate = snapshots.get("DomainCreate");
+    assertThat(domainCreate.get(FlowPhase.RUN).getTotalCount()).isEqualTo(2);
+    // Times are recorded in microseconds.
+    assertThat(domainCreate.get(FlowPhase.RUN).getMax()).isEqualTo(5000);
+    assertThat(domainCreate.get(FlowPhase.COMMIT).getMax()).isEqualTo(7);
+    assertThat(domainCreate.get(FlowPhase.MARSHAL).getTotalCount()).isEqualTo(0);
+    assertThat(
+            snapshots
+                .get(FlowPhaseHistograms.UNKNOWN_COMMAND)
+                .get(FlowPhase.UNMARSHAL)
+                .getTotalCount())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void testFlush_logsSummaryAndResets() {
+    FlowPhaseHistograms.record("DomainInfo", FlowPhase.MARSHAL, 1500000);
+    FlowPhaseHistograms.flush();
+    assertAboutLogs()
+        .that(logHandler)
+        .hasLogAtLevelWithMessage(
+            INFO,
+            "Flow phase latencies in ms for DomainInfo over the last PT86400S: "
+                + "MARSHAL{count=1, p50=1.5, p90=1.5, p99=1.5, max=1.5}");
+    assertThat(
+            FlowPhaseHistograms.drain().get("DomainInfo").get(FlowPhase.MARSHAL).getTotalCount())
+        .isEqualTo(0);
+  }
+}
@@ -15,8 +15,10 @@
 package google.registry.pricing;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
 import static google.registry.pricing.PricingEngineProxy.getDomainCreateCost;
 import static google.registry.pricing.PricingEngineProxy.getDomainRenewCost;
+import static google.registry.pricing.PricingEngineProxy.getPricesForDomainNames;
 import static google.registry.pricing.PricingEngineProxy.isDomainPremium;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.persistPremiumList;
@@ -25,7 +27,10 @@ import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.money.CurrencyUnit.USD;
 import static org.junit.Assert.assertThrows;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
+import google.registry.model.pricing.PremiumPricingEngine.DomainPrices;
 import google.registry.model.registry.Registry;
 import google.registry.model.registry.label.PremiumList;
 import google.registry.testing.AppEngineRule;
@@ -136,6 +141,32 @@ public class PricingEngineProxyTest {
         .isEqualTo(Money.of(USD, 200));
   }
 
+  @Test
+  public void testGetPricesForDomainNames_matchesSingleNamePrices() {
+    createTld("example");
+    ImmutableList<String> domainNames =
+        ImmutableList.of("rich.moka", "poor.moka", "fraction.moka", "rich.example", "poor.example");
+    ImmutableMap<String, DomainPrices> prices =
+        getPricesForDomainNames(domainNames, clock.nowUtc());
+    assertThat(prices.keySet()).containsExactlyElementsIn(domainNames);
+    for (String domainName : domainNames) {
+      assertThat(prices.get(domainName).isPremium())
+          .isEqualTo(isDomainPremium(domainName, clock.nowUtc()));
+      assertThat(prices.get(domainName).getCreateCost())
+          .isEqualTo(getDomainCreateCost(domainName, clock.nowUtc(), 1));
+      assertThat(prices.get(domainName).getRenewCost())
+          .isEqualTo(getDomainRenewCost(domainName, clock.nowUtc(), 1));
+    }
+    assertThat(prices.get("rich.moka").getCreateCost()).isEqualTo(Money.of(USD, 100));
+    assertThat(prices.get("rich.moka").getFeeClass()).hasValue("premium");
+    assertThat(prices.get("poor.moka").getFeeClass()).isEmpty();
+  }
+
+  @Test
+  public void testGetPricesForDomainNames_empty() {
+    assertThat(getPricesForDomainNames(ImmutableList.of(), clock.nowUtc())).isEmpty();
+  }
+
   @Test
   public void testFailure_cantLoadPricingEngine() {
     createTld("example");
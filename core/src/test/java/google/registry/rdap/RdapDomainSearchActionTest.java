@@ -15,6 +15,7 @@
 package google.registry.rdap;
 
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.EppResourceUtils.loadByForeignKey;
 import static google.registry.rdap.RdapTestHelper.assertThat;
 import static google.registry.rdap.RdapTestHelper.parseJsonObject;
 import static google.registry.request.Action.Method.POST;
@@ -53,6 +54,7 @@ import google.registry.testing.FakeResponse;
 import java.net.URLDecoder;
 import java.util.HashMap;
 import java.util.Optional;
+import org.joda.time.Duration;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -131,6 +133,11 @@ public class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDom
     return parseJsonObject(response.getPayload());
   }
 
+  private void enableSearchIndex() {
+    action.searchIndexEnabled = true;
+    action.searchIndex = new RdapDomainSearchIndex(clock, Duration.ZERO, 1000);
+  }
+
   private HostResource addHostToMap(HostResource host) {
     hostNameToHostMap.put(host.getFullyQualifiedHostName(), host);
     return host;
@@ -883,6 +890,54 @@ public class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDom
     verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(2L));
   }
 
+  @Test
+  public void testDomainMatch_catstar_lol_found_usingSearchIndex() {
+    enableSearchIndex();
+    rememberWildcardType("cat*.lol");
+    assertThat(generateActualJson(RequestType.NAME, "cat*.lol"))
+        .isEqualTo(generateExpectedJsonForTwoDomainsCatStarReply());
+    assertThat(response.getStatus()).isEqualTo(200);
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(2L));
+  }
+
+  @Test
+  public void testDomainMatch_star_lol_found_usingSearchIndex() {
+    enableSearchIndex();
+    rememberWildcardType("*.lol");
+    assertThat(generateActualJson(RequestType.NAME, "*.lol"))
+        .isEqualTo(generateExpectedJsonForTwoDomainsCatStarReply());
+    assertThat(response.getStatus()).isEqualTo(200);
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(2L));
+  }
+
+  @Test
+  public void testDomainMatch_truncatedResultsSet_domainDeletedSinceRefresh_usingSearchIndex() {
+    enableSearchIndex();
+    createManyDomainsAndHosts(6, 1, 2);
+    // Build the index, then delete a domain without a commit log, so that the index misses it.
+    assertThat(
+            action
+                .searchIndex
+                .searchByDomainName(
+                    RdapSearchPattern.createFromLdhOrUnicodeDomainName("domain*.lol"),
+                    Optional.empty(),
+                    Optional.empty(),
+                    1)
+                .isPresent())
+        .isTrue();
+    persistResource(
+        loadByForeignKey(DomainBase.class, "domain2.lol", clock.nowUtc())
+            .get()
+            .asBuilder()
+            .setDeletionTime(clock.nowUtc().minusDays(1))
+            .build());
+    rememberWildcardType("domain*.lol");
+    JsonObject obj = generateActualJson(RequestType.NAME, "domain*.lol");
+    assertThat(response.getStatus()).isEqualTo(200);
+    checkNumberOfDomainsInResult(obj, 4);
+    verifyMetrics(SearchType.BY_DOMAIN_NAME, Optional.of(6L), IncompletenessWarningType.TRUNCATED);
+  }
+
   @Test
   public void testDomainMatch_star_lol_found_sameRegistrarRequested() {
     action.registrarParam = Optional.of("evilregistrar");
@@ -1220,6 +1275,16 @@ public class RdapDomainSearchActionTest extends RdapSearchActionTestCase<RdapDom
     verifyMetrics(SearchType.BY_NAMESERVER_NAME, 2, 1);
   }
 
+  @Test
+  public void testNameserverMatch_foundMultiple_usingSearchIndex() {
+    enableSearchIndex();
+    rememberWildcardType("ns1.cat.lol");
+    assertThat(generateActualJson(RequestType.NS_LDH_NAME, "ns1.cat.lol"))
+        .isEqualTo(generateExpectedJsonForTwoDomainsNsReply());
+    assertThat(response.getStatus()).isEqualTo(200);
+    verifyMetrics(SearchType.BY_NAMESERVER_NAME, 2, 1);
+  }
+
   @Test
   public void testNameserverMatch_notFound_differentRegistrarRequested() {
     action.registrarParam = Optional.of("otherregistrar");
@@ -0,0 +1,222 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.createTlds;
+import static google.registry.testing.DatastoreHelper.newDomainBase;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistActiveHost;
+import static google.registry.testing.DatastoreHelper.persistDeletedDomain;
+import static google.registry.testing.DatastoreHelper.persistResource;
+import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Key;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.host.HostResource;
+import google.registry.model.ofy.Ofy;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import java.util.Optional;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RdapDomainSearchIndex}. */
+@RunWith(JUnit4.class)
+public class RdapDomainSearchIndexTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Rule public final InjectRule inject = new InjectRule();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2000-01-01TZ"));
+  private final RdapDomainSearchIndex index = new RdapDomainSearchIndex(clock, Duration.ZERO, 10);
+
+  private HostResource ns1;
+  private HostResource ns2;
+  private DomainBase dog;
+
+  @Before
+  public void before() {
+    inject.setStaticField(Ofy.class, "clock", clock);
+    createTlds("lol", "example");
+    ns1 = persistActiveHost("ns1.cat.lol");
+    ns2 = persistActiveHost("ns2.cat.lol");
+    persistResource(newDomainBase("cat.lol", ns1));
+    persistResource(newDomainBase("cat2.lol", ns2));
+    persistResource(
+        newDomainBase("cat.example")
+            .asBuilder()
+            .setNameservers(ImmutableSet.of(Key.create(ns1), Key.create(ns2)))
+            .build());
+    dog = persistActiveDomain("dog.lol");
+    persistDeletedDomain("cat3.lol", clock.nowUtc().minusDays(1));
+  }
+
+  private ImmutableList<String> searchByName(String pattern) {
+    return searchByName(pattern, Optional.empty(), Optional.empty(), 100);
+  }
+
+  private ImmutableList<String> searchByName(
+      String pattern, Optional<String> cursor, Optional<String> registrar, int limit) {
+    return toNames(
+        index.searchByDomainName(
+            RdapSearchPattern.createFromLdhDomainName(pattern), cursor, registrar, limit));
+  }
+
+  private ImmutableList<String> searchByNameservers(
+      ImmutableList<HostResource> hosts, Optional<String> cursor, int limit) {
+    ImmutableList.Builder<Key<HostResource>> hostKeys = new ImmutableList.Builder<>();
+    hosts.forEach(host -> hostKeys.add(Key.create(host)));
+    return toNames(index.searchByNameservers(hostKeys.build(), cursor, limit));
+  }
+
+  private static ImmutableList<String> toNames(
+      Optional<ImmutableList<Key<DomainBase>>> domainKeys) {
+    assertThat(domainKeys).isPresent();
+    ImmutableList.Builder<String> names = new ImmutableList.Builder<>();
+    for (Key<DomainBase> domainKey : domainKeys.get()) {
+      names.add(ofy().load().key(domainKey).now().getFullyQualifiedDomainName());
+    }
+    return names.build();
+  }
+
+  @Test
+  public void testSearchByDomainName_prefix() {
+    assertThat(searchByName("ca*")).containsExactly("cat.example", "cat.lol", "cat2.lol").inOrder();
+  }
+
+  @Test
+  public void testSearchByDomainName_prefixAndTld() {
+    assertThat(searchByName("ca*.lol")).containsExactly("cat.lol", "cat2.lol").inOrder();
+  }
+
+  @Test
+  public void testSearchByDomainName_tldOnly() {
+    assertThat(searchByName("*.lol")).containsExactly("cat.lol", "cat2.lol", "dog.lol").inOrder();
+  }
+
+  @Test
+  public void testSearchByDomainName_unknownTld() {
+    assertThat(searchByName("*.tld")).isEmpty();
+  }
+
+  @Test
+  public void testSearchByDomainName_cursorAndLimit() {
+    assertThat(searchByName("*.lol", Optional.of("cat.lol"), Optional.empty(), 1))
+        .containsExactly("cat2.lol");
+  }
+
+  @Test
+  public void testSearchByDomainName_registrar() {
+    persistResource(
+        newDomainBase("cat4.lol")
+            .asBuilder()
+            .setPersistedCurrentSponsorClientId("NewRegistrar")
+            .build());
+    assertThat(searchByName("ca*", Optional.empty(), Optional.of("NewRegistrar"), 100))
+        .containsExactly("cat4.lol");
+  }
+
+  @Test
+  public void testSearchByNameservers_mergesPostingsInOrder() {
+    assertThat(searchByNameservers(ImmutableList.of(ns1, ns2), Optional.empty(), 100))
+        .containsExactly("cat.example", "cat.lol", "cat2.lol")
+        .inOrder();
+  }
+
+  @Test
+  public void testSearchByNameservers_cursorAndLimit() {
+    assertThat(searchByNameservers(ImmutableList.of(ns1, ns2), Optional.of("cat.example"), 1))
+        .containsExactly("cat.lol");
+  }
+
+  @Test
+  public void testRefresh_picksUpCommitLoggedChanges() {
+    assertThat(searchByName("*.lol")).containsExactly("cat.lol", "cat2.lol", "dog.lol").inOrder();
+    clock.advanceOneMilli();
+    persistResourceWithCommitLog(newDomainBase("cat5.lol", ns1));
+    clock.advanceOneMilli();
+    persistResourceWithCommitLog(dog.asBuilder().setDeletionTime(clock.nowUtc()).build());
+    clock.advanceOneMilli();
+    assertThat(searchByName("*.lol")).containsExactly("cat.lol", "cat2.lol", "cat5.lol").inOrder();
+    assertThat(searchByNameservers(ImmutableList.of(ns1), Optional.empty(), 100))
+        .containsExactly("cat.example", "cat.lol", "cat5.lol")
+        .inOrder();
+  }
+
+  @Test
+  public void testBuild_inChunks_notUsedUntilComplete() {
+    inject.setStaticField(RdapDomainSearchIndex.class, "buildChunkSize", 2);
+    RdapSearchPattern pattern = RdapSearchPattern.createFromLdhDomainName("*.lol");
+    // There are four active domains, so it takes three searches to find out that all are loaded.
+    assertThat(index.searchByDomainName(pattern, Optional.empty(), Optional.empty(), 100))
+        .isEmpty();
+    assertThat(index.searchByDomainName(pattern, Optional.empty(), Optional.empty(), 100))
+        .isEmpty();
+    assertThat(searchByName("*.lol")).containsExactly("cat.lol", "cat2.lol", "dog.lol").inOrder();
+  }
+
+  @Test
+  public void testBuild_changesDuringBuild_arePickedUp() {
+    inject.setStaticField(RdapDomainSearchIndex.class, "buildChunkSize", 2);
+    RdapSearchPattern pattern = RdapSearchPattern.createFromLdhDomainName("*.lol");
+    assertThat(index.searchByDomainName(pattern, Optional.empty(), Optional.empty(), 100))
+        .isEmpty();
+    clock.advanceOneMilli();
+    persistResourceWithCommitLog(dog.asBuilder().setDeletionTime(clock.nowUtc()).build());
+    persistResourceWithCommitLog(newDomainBase("aardvark.lol", ns1));
+    clock.advanceOneMilli();
+    // How many more chunks there are depends on where the changed domains fall in the scan.
+    Optional<ImmutableList<Key<DomainBase>>> domainKeys = Optional.empty();
+    for (int i = 0; i < 5 && !domainKeys.isPresent(); i++) {
+      domainKeys = index.searchByDomainName(pattern, Optional.empty(), Optional.empty(), 100);
+    }
+    assertThat(toNames(domainKeys))
+        .containsExactly("aardvark.lol", "cat.lol", "cat2.lol")
+        .inOrder();
+  }
+
+  @Test
+  public void testSearch_tooManyDomains_indexNotUsed() {
+    RdapDomainSearchIndex smallIndex = new RdapDomainSearchIndex(clock, Duration.ZERO, 3);
+    RdapSearchPattern pattern = RdapSearchPattern.createFromLdhDomainName("*.lol");
+    assertThat(smallIndex.searchByDomainName(pattern, Optional.empty(), Optional.empty(), 100))
+        .isEmpty();
+    assertThat(
+            smallIndex.searchByNameservers(
+                ImmutableList.of(Key.create(ns1)), Optional.empty(), 100))
+        .isEmpty();
+  }
+
+  @Test
+  public void testPendingDelete_dropsOutAtDeletionTime() {
+    persistResource(
+        newDomainBase("cat6.lol").asBuilder().setDeletionTime(clock.nowUtc().plusDays(5)).build());
+    assertThat(searchByName("cat*.lol")).containsExactly("cat.lol", "cat2.lol", "cat6.lol");
+    clock.advanceBy(Duration.standardDays(5));
+    assertThat(searchByName("cat*.lol")).containsExactly("cat.lol", "cat2.lol");
+  }
+}
@@ -0,0 +1,135 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PipelinedOutputStream}. */
+@RunWith(JUnit4.class)
+public class PipelinedOutputStreamTest {
+
+  /** A {@link ByteArrayOutputStream} that remembers whether it was closed. */
+  private static class ClosableByteArrayOutputStream extends ByteArrayOutputStream {
+    boolean closed;
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static PipelinedOutputStream pipeline(OutputStream out, int chunkSize) {
+    return new PipelinedOutputStream(out, Executors.defaultThreadFactory(), chunkSize, 2);
+  }
+
+  @Test
+  public void testWrite_preservesDataAndOrder() throws Exception {
+    ClosableByteArrayOutputStream out = new ClosableByteArrayOutputStream();
+    StringBuilder expected = new StringBuilder();
+    try (OutputStream pipeline = pipeline(out, 7)) {
+      for (int i = 0; i < 1000; i++) {
+        String data = "fragment " + i + "\n";
+        expected.append(data);
+        if (i % 3 == 0) {
+          for (byte b : data.getBytes(UTF_8)) {
+            pipeline.write(b);
+          }
+        } else {
+          pipeline.write(data.getBytes(UTF_8));
+        }
+        if (i % 100 == 0) {
+          pipeline.flush();
+        }
+      }
+    }
+    assertThat(out.closed).isTrue();
+    assertThat(out.toString(UTF_8.name())).isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void testWrite_writesLargerThanChunk() throws Exception {
+    ClosableByteArrayOutputStream out = new ClosableByteArrayOutputStream();
+    byte[] data = new byte[10000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    try (OutputStream pipeline = pipeline(out, 64)) {
+      pipeline.write(data, 100, 9000);
+    }
+    byte[] expected = new byte[9000];
+    System.arraycopy(data, 100, expected, 0, 9000);
+    assertThat(out.toByteArray()).isEqualTo(expected);
+  }
+
+  @Test
+  public void testWrap_outsideOfRequest_returnsStreamItself() {
+    OutputStream out = new ByteArrayOutputStream();
+    assertThat(PipelinedOutputStream.wrap(out)).isSameInstanceAs(out);
+  }
+
+  @Test
+  public void testClose_isIdempotent() throws Exception {
+    ClosableByteArrayOutputStream out = new ClosableByteArrayOutputStream();
+    OutputStream pipeline = pipeline(out, 16);
+    pipeline.write("hello".getBytes(UTF_8));
+    pipeline.close();
+    pipeline.close();
+    assertThat(out.toString(UTF_8.name())).isEqualTo("hello");
+  }
+
+  @Test
+  public void testFailure_writeAfterClose() throws Exception {
+    OutputStream pipeline = pipeline(new ByteArrayOutputStream(), 16);
+    pipeline.close();
+    assertThrows(IllegalStateException.class, () -> pipeline.write(1));
+  }
+
+  @Test
+  public void testFailure_backgroundWriteFails_rethrownToProducer() throws Exception {
+    ClosableByteArrayOutputStream out =
+        new ClosableByteArrayOutputStream() {
+          @Override
+          public void write(byte[] b) throws IOException {
+            throw new IOException("disk on fire");
+          }
+        };
+    OutputStream pipeline = pipeline(out, 4);
+    IOException thrown =
+        assertThrows(
+            IOException.class,
+            () -> {
+              // The failure is reported by whichever write or close() happens after it.
+              try {
+                for (int i = 0; i < 100; i++) {
+                  pipeline.write("data".getBytes(UTF_8));
+                }
+              } finally {
+                pipeline.close();
+              }
+            });
+    assertThat(thrown).hasCauseThat().hasMessageThat().isEqualTo("disk on fire");
+    assertThat(out.closed).isTrue();
+  }
+}
@@ -81,6 +81,13 @@ public class TestCacheRule extends ExternalResource {
       return this;
     }
 
+    public Builder withPremiumListSnapshotsCache(Duration expiry) {
+      cacheHandlerMap.put(
+          "PremiumList.cachePremiumListSnapshots",
+          new TestCacheHandler(PremiumList::setPremiumListSnapshotsCacheForTest, expiry));
+      return this;
+    }
+
     public TestCacheRule build() {
       return new TestCacheRule(ImmutableList.copyOf(cacheHandlerMap.values()));
     }
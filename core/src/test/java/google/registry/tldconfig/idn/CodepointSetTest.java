@@ -0,0 +1,73 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.tldconfig.idn;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.BitSet;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CodepointSet}. */
+@RunWith(JUnit4.class)
+public class CodepointSetTest {
+
+  @Test
+  public void testEmpty() {
+    CodepointSet set = CodepointSet.create(new BitSet());
+    assertThat(set.size()).isEqualTo(0);
+    assertThat(set.contains(0)).isFalse();
+    assertThat(set.contains('a')).isFalse();
+    assertThat(set.contains(Character.MAX_CODE_POINT)).isFalse();
+  }
+
+  @Test
+  public void testContains_matchesBitSet() {
+    BitSet bits = new BitSet();
+    bits.set('-');
+    bits.set('0', '9' + 1);
+    bits.set('a', 'z' + 1);
+    bits.set(0xff);
+    bits.set(0x100);
+    bits.set(0x3041, 0x3097);
+    bits.set(0x4e00, 0x9fa6, true);
+    bits.set(0x20000);
+    bits.set(Character.MAX_CODE_POINT);
+    CodepointSet set = CodepointSet.create(bits);
+    assertThat(set.size()).isEqualTo(bits.cardinality());
+    for (int codepoint = 0; codepoint <= Character.MAX_CODE_POINT; codepoint++) {
+      assertThat(set.contains(codepoint)).isEqualTo(bits.get(codepoint));
+    }
+  }
+
+  @Test
+  public void testContains_outOfRange() {
+    BitSet bits = new BitSet();
+    bits.set(0, 0x100);
+    CodepointSet set = CodepointSet.create(bits);
+    assertThat(set.contains(-1)).isFalse();
+    assertThat(set.contains(Integer.MIN_VALUE)).isFalse();
+    assertThat(set.contains(Character.MAX_CODE_POINT + 1)).isFalse();
+  }
+
+  @Test
+  public void testFailure_beyondMaxCodepoint() {
+    BitSet bits = new BitSet();
+    bits.set(Character.MAX_CODE_POINT + 1);
+    assertThrows(IllegalArgumentException.class, () -> CodepointSet.create(bits));
+  }
+}
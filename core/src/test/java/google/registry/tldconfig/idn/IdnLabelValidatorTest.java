@@ -109,4 +109,20 @@ public class IdnLabelValidatorTest {
     assertThat(idnLabelValidator.findValidIdnTableForTld("foo", "tld")).isPresent();
     assertThat(idnLabelValidator.findValidIdnTableForTld("みんな", "tld")).isEmpty();
   }
+
+  @Test
+  public void testMatchesFirstValidTableInConfiguredOrder() {
+    // Plain ASCII labels are valid in both tables.
+    idnLabelValidator =
+        new IdnLabelValidator(
+            ImmutableMap.of(
+                "latinfirst", ImmutableList.of(IdnTableEnum.EXTENDED_LATIN, IdnTableEnum.JA),
+                "jafirst", ImmutableList.of(IdnTableEnum.JA, IdnTableEnum.EXTENDED_LATIN)));
+    assertThat(idnLabelValidator.findValidIdnTableForTld("foo", "latinfirst"))
+        .hasValue("extended_latin");
+    assertThat(idnLabelValidator.findValidIdnTableForTld("foo", "jafirst")).hasValue("ja");
+    assertThat(idnLabelValidator.findValidIdnTableForTld("みんな", "latinfirst")).hasValue("ja");
+    assertThat(idnLabelValidator.findValidIdnTableForTld("abcdefghæ", "jafirst"))
+        .hasValue("extended_latin");
+  }
 }
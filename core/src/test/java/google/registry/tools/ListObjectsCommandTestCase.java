@@ -16,8 +16,10 @@ package google.registry.tools;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static google.registry.request.JsonResponse.JSON_SAFETY_PREFIX;
+import static google.registry.tools.server.ListObjectsAction.CURSOR_PARAM;
 import static google.registry.tools.server.ListObjectsAction.FIELDS_PARAM;
 import static google.registry.tools.server.ListObjectsAction.FULL_FIELD_NAMES_PARAM;
+import static google.registry.tools.server.ListObjectsAction.PAGE_SIZE_PARAM;
 import static google.registry.tools.server.ListObjectsAction.PRINT_HEADER_ROW_PARAM;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
@@ -131,6 +133,32 @@ public abstract class ListObjectsCommandTestCase<C extends ListObjectsCommand>
     verifySent("fieldName", Optional.empty(), Optional.of(Boolean.TRUE));
   }
 
+  @Test
+  public void testRun_paged() throws Exception {
+    when(connection.sendPostRequest(
+            eq(getTaskPath()), anyMap(), eq(MediaType.PLAIN_TEXT_UTF_8), any(byte[].class)))
+        .thenReturn(JSON_SAFETY_PREFIX + "{\"status\":\"success\",\"lines\":[],\"cursor\":\"c\"}")
+        .thenReturn(JSON_SAFETY_PREFIX + "{\"status\":\"success\",\"lines\":[]}");
+    runCommand(
+        new ImmutableList.Builder<String>().addAll(otherParams).add("--page_size=2").build());
+    ImmutableMap<String, Object> params =
+        new ImmutableMap.Builder<String, Object>()
+            .putAll(getOtherParameters())
+            .put(PAGE_SIZE_PARAM, 2)
+            .build();
+    verify(connection)
+        .sendPostRequest(
+            eq(getTaskPath()), eq(params), eq(MediaType.PLAIN_TEXT_UTF_8), eq(new byte[0]));
+    ImmutableMap<String, Object> secondPageParams =
+        new ImmutableMap.Builder<String, Object>().putAll(params).put(CURSOR_PARAM, "c").build();
+    verify(connection)
+        .sendPostRequest(
+            eq(getTaskPath()),
+            eq(secondPageParams),
+            eq(MediaType.PLAIN_TEXT_UTF_8),
+            eq(new byte[0]));
+  }
+
   @Test
   public void testRun_allParameters() throws Exception {
     runCommand(
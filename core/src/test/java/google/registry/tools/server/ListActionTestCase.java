@@ -57,6 +57,27 @@ public class ListActionTestCase {
       String ... expectedLinePatterns) {
     assertThat(expectedLinePatterns).isNotNull();
     runAction(action, fields, printHeaderRow, fullFieldNames);
+    assertLines(expectedLinePatterns);
+  }
+
+  /**
+   * Runs the action for the page of the given size that starts at the given cursor, checks the
+   * lines of the page, and returns the cursor of the next page.
+   */
+  Optional<String> testRunPagedSuccess(
+      ListObjectsAction<?> action,
+      Optional<String> fields,
+      int pageSize,
+      Optional<String> cursor,
+      String... expectedLinePatterns) {
+    action.pageSize = Optional.of(pageSize);
+    action.cursor = cursor;
+    runAction(action, fields, Optional.empty(), Optional.empty());
+    assertLines(expectedLinePatterns);
+    return Optional.ofNullable((String) response.getResponseMap().get("cursor"));
+  }
+
+  private void assertLines(String... expectedLinePatterns) {
     assertThat(response.getStatus()).isEqualTo(SC_OK);
     assertThat(response.getResponseMap().get("status")).isEqualTo("success");
     Object obj = response.getResponseMap().get("lines");
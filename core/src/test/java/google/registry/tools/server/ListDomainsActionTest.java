@@ -14,6 +14,8 @@
 
 package google.registry.tools.server;
 
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.createTlds;
 import static google.registry.testing.DatastoreHelper.persistActiveDomain;
@@ -128,6 +130,55 @@ public class ListDomainsActionTest extends ListActionTestCase {
         "^domain3.bac$");
   }
 
+  @Test
+  public void testRun_paged() {
+    createTld("bar");
+    action.tlds = ImmutableSet.of("foo", "bar");
+    persistActiveDomain("example1.bar", DateTime.parse("2015-02-14T15:15:15Z"));
+    persistActiveDomain("example1.foo", DateTime.parse("2015-02-15T15:15:15Z"));
+    persistActiveDomain("example2.foo", DateTime.parse("2015-02-16T15:15:15Z"));
+    Optional<String> cursor =
+        testRunPagedSuccess(
+            action,
+            Optional.empty(),
+            2,
+            Optional.empty(),
+            "^\\{\"fullyQualifiedDomainName\":\"example1.bar\"\\}$");
+    assertThat(cursor).hasValue("foo");
+    cursor =
+        testRunPagedSuccess(
+            action,
+            Optional.of("repoId"),
+            2,
+            cursor,
+            "^\\{\"fullyQualifiedDomainName\":\"example1.foo\",\"repoId\":\"\\d+-FOO\"\\}$",
+            "^\\{\"fullyQualifiedDomainName\":\"example2.foo\",\"repoId\":\"\\d+-FOO\"\\}$");
+    assertThat(cursor.get()).startsWith("foo:");
+    assertThat(testRunPagedSuccess(action, Optional.empty(), 2, cursor)).isEmpty();
+  }
+
+  @Test
+  public void testRun_paged_invalidCursor() {
+    action.tlds = ImmutableSet.of("foo");
+    action.pageSize = Optional.of(2);
+    action.cursor = Optional.of("bar");
+    testRunError(
+        action, Optional.empty(), Optional.empty(), Optional.empty(), "^Invalid cursor: bar$");
+  }
+
+  @Test
+  public void testRun_paged_withLimit() {
+    action.tlds = ImmutableSet.of("foo");
+    action.limit = 10;
+    action.pageSize = Optional.of(2);
+    testRunError(
+        action,
+        Optional.empty(),
+        Optional.empty(),
+        Optional.empty(),
+        "^Can't limit the number of domains when paging$");
+  }
+
   @Test
   public void testRun_twoLinesWithIdOnlyNoHeader() {
     action.tlds = ImmutableSet.of("foo");
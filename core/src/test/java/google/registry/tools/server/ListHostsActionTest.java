@@ -14,6 +14,7 @@
 
 package google.registry.tools.server;
 
+import static com.google.common.truth.Truth8.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.persistActiveHost;
 
@@ -94,6 +95,30 @@ public class ListHostsActionTest extends ListActionTestCase {
         "^example2.foo\\s+.*1");
   }
 
+  @Test
+  public void testRun_paged() {
+    persistActiveHost("example1.foo");
+    persistActiveHost("example2.foo");
+    persistActiveHost("example3.foo");
+    Optional<String> cursor =
+        testRunPagedSuccess(
+            action,
+            Optional.empty(),
+            2,
+            Optional.empty(),
+            "^\\{\"fullyQualifiedHostName\":\"example1.foo\"\\}$",
+            "^\\{\"fullyQualifiedHostName\":\"example2.foo\"\\}$");
+    assertThat(cursor).isPresent();
+    cursor =
+        testRunPagedSuccess(
+            action,
+            Optional.empty(),
+            2,
+            cursor,
+            "^\\{\"fullyQualifiedHostName\":\"example3.foo\"\\}$");
+    assertThat(cursor).isEmpty();
+  }
+
   @Test
   public void testRun_withBadField_returnsError() {
     persistActiveHost("example2.foo");
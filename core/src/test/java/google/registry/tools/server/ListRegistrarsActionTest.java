@@ -14,6 +14,7 @@
 
 package google.registry.tools.server;
 
+import static com.google.common.truth.Truth8.assertThat;
 import static google.registry.testing.DatastoreHelper.createTlds;
 import static google.registry.testing.DatastoreHelper.loadRegistrar;
 import static google.registry.testing.DatastoreHelper.persistResource;
@@ -62,6 +63,18 @@ public class ListRegistrarsActionTest extends ListActionTestCase {
         "^TheRegistrar$");
   }
 
+  @Test
+  public void testRun_paged() {
+    Optional<String> cursor =
+        testRunPagedSuccess(
+            action, Optional.empty(), 1, Optional.empty(), "^\\{\"clientId\":\"NewRegistrar\"\\}$");
+    assertThat(cursor).hasValue("1");
+    cursor =
+        testRunPagedSuccess(
+            action, Optional.empty(), 1, cursor, "^\\{\"clientId\":\"TheRegistrar\"\\}$");
+    assertThat(cursor).isEmpty();
+  }
+
   @Test
   public void testRun_withParameters() {
     testRunSuccess(
@@ -0,0 +1,161 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.whois;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.config.RegistryConfig.getWhoisResponseCachingDuration;
+import static google.registry.config.RegistryConfig.getWhoisResponseMaxCachedEntries;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.loadRegistrar;
+import static google.registry.testing.DatastoreHelper.newDomainBase;
+import static google.registry.testing.DatastoreHelper.persistActiveDomain;
+import static google.registry.testing.DatastoreHelper.persistActiveHost;
+import static google.registry.testing.DatastoreHelper.persistResource;
+
+import google.registry.model.contact.ContactResource;
+import google.registry.model.domain.DomainBase;
+import google.registry.model.host.HostResource;
+import google.registry.model.ofy.Ofy;
+import google.registry.model.registrar.Registrar;
+import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.InjectRule;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link WhoisResponseCache}. */
+@RunWith(JUnit4.class)
+public class WhoisResponseCacheTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  @Rule public final InjectRule inject = new InjectRule();
+
+  private final FakeClock clock = new FakeClock(DateTime.parse("2009-05-29T20:15:00Z"));
+
+  private DomainBase domain;
+  private Registrar registrar;
+  private int numRenders;
+
+  @Before
+  public void before() {
+    inject.setStaticField(Ofy.class, "clock", clock);
+    WhoisResponseCache.setCacheForTest(Duration.standardMinutes(1), 10);
+    createTld("tld");
+    domain = persistActiveDomain("example.tld");
+    registrar = loadRegistrar("TheRegistrar");
+    clock.advanceOneMilli();
+  }
+
+  @After
+  public void after() {
+    WhoisResponseCache.setCacheForTest(
+        getWhoisResponseCachingDuration(), getWhoisResponseMaxCachedEntries());
+  }
+
+  private String getBody(DomainBase domain, Registrar registrar, boolean fullOutput) {
+    return WhoisResponseCache.getDomainResponseBody(
+        domain,
+        registrar,
+        fullOutput,
+        false,
+        () -> {
+          numRenders++;
+          return "body " + numRenders;
+        });
+  }
+
+  @Test
+  public void testHit_sameDomainAndRegistrar() {
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    assertThat(numRenders).isEqualTo(1);
+  }
+
+  @Test
+  public void testMiss_differentOutputFlavor() {
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    assertThat(getBody(domain, registrar, true)).isEqualTo("body 2");
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    assertThat(numRenders).isEqualTo(2);
+  }
+
+  @Test
+  public void testMiss_domainUpdated() {
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    DomainBase updatedDomain =
+        persistResource(domain.asBuilder().setLastEppUpdateTime(clock.nowUtc()).build());
+    assertThat(getBody(updatedDomain, registrar, false)).isEqualTo("body 2");
+    assertThat(getBody(updatedDomain, registrar, false)).isEqualTo("body 2");
+  }
+
+  @Test
+  public void testMiss_domainReregistered() {
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    persistResource(domain.asBuilder().setDeletionTime(clock.nowUtc()).build());
+    clock.advanceOneMilli();
+    DomainBase newDomain = persistActiveDomain("example.tld");
+    assertThat(getBody(newDomain, registrar, false)).isEqualTo("body 2");
+  }
+
+  @Test
+  public void testMiss_registrarUpdated() {
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    Registrar updatedRegistrar =
+        persistResource(registrar.asBuilder().setUrl("http://new.url.example").build());
+    assertThat(getBody(domain, updatedRegistrar, false)).isEqualTo("body 2");
+  }
+
+  @Test
+  public void testMiss_contactUpdated() {
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    ContactResource registrant = ofy().load().key(domain.getRegistrant()).now();
+    persistResource(registrant.asBuilder().setEmailAddress("new@example.com").build());
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 2");
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 2");
+  }
+
+  @Test
+  public void testMiss_hostRenamed() {
+    HostResource host = persistActiveHost("ns1.example.net");
+    domain = persistResource(newDomainBase("other.tld", host));
+    clock.advanceOneMilli();
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    persistResource(host.asBuilder().setFullyQualifiedHostName("ns2.example.net").build());
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 2");
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 2");
+  }
+
+  @Test
+  public void testMiss_expired() {
+    WhoisResponseCache.setCacheForTest(Duration.ZERO, 10);
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 2");
+  }
+
+  @Test
+  public void testDisabled_alwaysRenders() {
+    WhoisResponseCache.setCacheForTest(Duration.standardMinutes(1), 0);
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 1");
+    assertThat(getBody(domain, registrar, false)).isEqualTo("body 2");
+  }
+}
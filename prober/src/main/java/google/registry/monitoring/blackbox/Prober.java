@@ -14,27 +14,28 @@
 
 package google.registry.monitoring.blackbox;
 
-import com.google.common.collect.ImmutableSet;
 import google.registry.monitoring.blackbox.ProberModule.ProberComponent;
 
 /**
  * Main class of the Prober, which obtains and starts the {@link ProbingSequence}s provided by
  * Dagger.
+ *
+ * <p>Runs a number of concurrent copies of each sequence, each starting at a different target as
+ * far as the target fan-out allows, so that tail latencies are measured under a realistic load.
  */
 public class Prober {
 
-  /** Main Dagger Component */
-  private static ProberComponent proberComponent =
-      DaggerProberModule_ProberComponent.builder().build();
-
   public static void main(String[] args) {
+    ProberModule proberModule = new ProberModule().parse(args);
+    ProberComponent proberComponent =
+        DaggerProberModule_ProberComponent.builder().proberModule(proberModule).build();
 
-    // Obtains WebWhois Sequence provided by proberComponent
-    ImmutableSet<ProbingSequence> sequences = ImmutableSet.copyOf(proberComponent.sequences());
-
-    // Tells Sequences to start running
-    for (ProbingSequence sequence : sequences) {
-      sequence.start();
+    for (int copy = 0; copy < proberComponent.concurrency(); copy++) {
+      // Obtains a new copy of each sequence provided by proberComponent, and tells it to start
+      // running.
+      for (ProbingSequence sequence : proberComponent.sequences()) {
+        sequence.start(copy % proberComponent.targetFanout());
+      }
     }
   }
 }
@@ -14,6 +14,11 @@
 
 package google.registry.monitoring.blackbox;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
 import dagger.Component;
 import dagger.Module;
 import dagger.Provides;
@@ -32,6 +37,7 @@ import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslProvider;
 import java.util.Set;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import org.joda.time.Duration;
 
@@ -46,6 +52,55 @@ public class ProberModule {
   /** Default {@link Duration} chosen to be time between each {@link ProbingAction} call. */
   private static final Duration DEFAULT_PROBER_INTERVAL = Duration.standardSeconds(4);
 
+  @Parameter(
+      names = "--concurrency",
+      description = "Number of copies of each probing sequence to run concurrently")
+  private int concurrency = 1;
+
+  @Parameter(
+      names = "--target_fanout",
+      description =
+          "Number of targets, e.g. the TLDs probed by web WHOIS, that the concurrent copies of "
+              + "each probing sequence are spread over")
+  private int targetFanout = 1;
+
+  /**
+   * Parses command line arguments. Show usage if wrong arguments are given.
+   *
+   * @param args list of {@code String} arguments
+   * @return this {@code ProberModule} object
+   */
+  ProberModule parse(String[] args) {
+    JCommander jCommander = new JCommander(this);
+    jCommander.setProgramName("prober");
+    try {
+      jCommander.parse(args);
+    } catch (ParameterException e) {
+      jCommander.usage();
+      throw e;
+    }
+    checkArgument(concurrency > 0, "Concurrency must be positive");
+    checkArgument(targetFanout > 0, "Target fan-out must be positive");
+    return this;
+  }
+
+  /** {@link Provides} the number of copies of each {@link ProbingSequence} to run concurrently. */
+  @Provides
+  @Named("proberConcurrency")
+  int provideConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * {@link Provides} the number of targets that the concurrent copies of each {@link
+   * ProbingSequence} are spread over.
+   */
+  @Provides
+  @Named("proberTargetFanout")
+  int provideTargetFanout() {
+    return targetFanout;
+  }
+
   /** {@link Provides} the {@link SslProvider} used by instances of {@link SslClientInitializer} */
   @Provides
   @Singleton
@@ -108,7 +163,13 @@ public class ProberModule {
       })
   public interface ProberComponent {
 
-    // Standard WebWhois sequence
+    /** Returns a new copy of each {@link ProbingSequence}, on each call. */
     Set<ProbingSequence> sequences();
+
+    @Named("proberConcurrency")
+    int concurrency();
+
+    @Named("proberTargetFanout")
+    int targetFanout();
   }
 }
@@ -14,6 +14,10 @@
 
 package google.registry.monitoring.blackbox;
 
+import static google.registry.monitoring.blackbox.connection.ProbingAction.CONNECTION_FUTURE_KEY;
+import static google.registry.monitoring.blackbox.connection.ProbingAction.REQUEST_SENT_NANOS_KEY;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 import com.google.common.flogger.FluentLogger;
 import google.registry.monitoring.blackbox.connection.ProbingAction;
 import google.registry.monitoring.blackbox.exception.FailureException;
@@ -24,8 +28,11 @@ import google.registry.util.CircularList;
 import google.registry.util.Clock;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.AbstractChannel;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
+import io.netty.handler.ssl.SslHandler;
+import javax.annotation.Nullable;
 
 /**
  * Represents Sequence of {@link ProbingStep}s that the Prober performs in order.
@@ -43,11 +50,20 @@ import io.netty.channel.EventLoopGroup;
  * <p>{@link ProbingSequence} implicitly points each {@link ProbingStep} to the next one, so once
  * the first one is activated with the requisite {@link Token}, the {@link ProbingStep}s do the rest
  * of the work.
+ *
+ * <p>Besides the result of each {@link ProbingStep}, the latencies of establishing a new
+ * connection, of its TLS handshake, and of each request are recorded separately.
  */
 public class ProbingSequence extends CircularList<ProbingStep> {
 
   private static final FluentLogger logger = FluentLogger.forEnclosingClass();
 
+  /** Name under which the latency of establishing a new connection is recorded. */
+  private static final String CONNECT_STEP_NAME = "connect";
+
+  /** Name under which the latency of the TLS handshake of a new connection is recorded. */
+  private static final String TLS_HANDSHAKE_STEP_NAME = "tls_handshake";
+
   /** Shared {@link MetricsCollector} used to record metrics on any step performed. */
   private MetricsCollector metrics;
 
@@ -92,7 +108,19 @@ public class ProbingSequence extends CircularList<ProbingStep> {
 
   /** Starts ProbingSequence by calling first {@code runStep} with {@code startToken}. */
   public void start() {
-    runStep(startToken);
+    start(0);
+  }
+
+  /**
+   * Starts ProbingSequence with the {@link Token} that is {@code targetOffset} tokens after {@code
+   * startToken}, so that concurrent copies of a sequence can start out probing different targets.
+   */
+  public void start(int targetOffset) {
+    Token token = startToken;
+    for (int i = 0; i < targetOffset; i++) {
+      token = token.next();
+    }
+    runStep(token);
   }
 
   /**
@@ -118,7 +146,12 @@ public class ProbingSequence extends CircularList<ProbingStep> {
 
     try {
       // Attempt to generate new action. On error, move on to next step.
+      long connectStartNanos = System.nanoTime();
+      boolean newConnection = token.channel() == null;
       currentAction = get().generateAction(token);
+      if (newConnection) {
+        recordConnectionLatencies(currentAction.channel(), connectStartNanos);
+      }
 
       // Call the generated action.
       future = currentAction.call();
@@ -155,6 +188,7 @@ public class ProbingSequence extends CircularList<ProbingStep> {
 
     future.addListener(
         f -> {
+          recordRequestLatency(currentAction.channel(), f.isSuccess(), f.cause());
           if (f.isSuccess()) {
             // On a successful result, we log as a successful step, and note a success.
             logger.atInfo().log(String.format("Successfully completed Probing Step: %s", this));
@@ -205,6 +239,69 @@ public class ProbingSequence extends CircularList<ProbingStep> {
         });
   }
 
+  /**
+   * Records the latencies of connecting and of the TLS handshake (if any) of a newly created
+   * channel once they are known.
+   */
+  private void recordConnectionLatencies(@Nullable Channel channel, long connectStartNanos) {
+    ChannelFuture connectionFuture =
+        (channel == null) ? null : channel.attr(CONNECTION_FUTURE_KEY).get();
+    if (connectionFuture == null) {
+      return;
+    }
+    String protocolName = get().protocol().name();
+    connectionFuture.addListener(
+        (ChannelFuture f) -> {
+          long connectedNanos = System.nanoTime();
+          metrics.recordStepLatency(
+              protocolName,
+              CONNECT_STEP_NAME,
+              f.isSuccess()
+                  ? MetricsCollector.ResponseType.SUCCESS
+                  : MetricsCollector.ResponseType.ERROR,
+              NANOSECONDS.toMillis(connectedNanos - connectStartNanos));
+          SslHandler sslHandler = f.isSuccess() ? channel.pipeline().get(SslHandler.class) : null;
+          if (sslHandler != null) {
+            sslHandler
+                .handshakeFuture()
+                .addListener(
+                    handshake ->
+                        metrics.recordStepLatency(
+                            protocolName,
+                            TLS_HANDSHAKE_STEP_NAME,
+                            handshake.isSuccess()
+                                ? MetricsCollector.ResponseType.SUCCESS
+                                : MetricsCollector.ResponseType.ERROR,
+                            NANOSECONDS.toMillis(System.nanoTime() - connectedNanos)));
+          }
+        });
+  }
+
+  /**
+   * Records the latency of the request of this step, if it was sent, from when it was sent until
+   * its response was received or it was given up on.
+   */
+  private void recordRequestLatency(
+      @Nullable Channel channel, boolean isSuccess, @Nullable Throwable cause) {
+    Long sentNanos =
+        (channel == null) ? null : channel.attr(REQUEST_SENT_NANOS_KEY).getAndSet(null);
+    if (sentNanos != null) {
+      MetricsCollector.ResponseType responseType;
+      if (isSuccess) {
+        responseType = MetricsCollector.ResponseType.SUCCESS;
+      } else if (cause instanceof FailureException) {
+        responseType = MetricsCollector.ResponseType.FAILURE;
+      } else {
+        responseType = MetricsCollector.ResponseType.ERROR;
+      }
+      metrics.recordStepLatency(
+          get().protocol().name(),
+          get().messageTemplate().name(),
+          responseType,
+          NANOSECONDS.toMillis(System.nanoTime() - sentNanos));
+    }
+  }
+
   /**
    * Helper method to first generate the next token, then call runStep on the next {@link
    * ProbingSequence}.
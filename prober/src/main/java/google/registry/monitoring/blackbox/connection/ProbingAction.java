@@ -77,6 +77,14 @@ public abstract class ProbingAction implements Callable<ChannelFuture> {
   public static final AttributeKey<String> REMOTE_ADDRESS_KEY =
       AttributeKey.valueOf("REMOTE_ADDRESS_KEY");
 
+  /**
+   * {@link AttributeKey} in channel that gives the {@link System#nanoTime} at which the last
+   * outbound message was sent, so that the latency of its response can be told apart from the
+   * delay before sending it.
+   */
+  public static final AttributeKey<Long> REQUEST_SENT_NANOS_KEY =
+      AttributeKey.valueOf("REQUEST_SENT_NANOS_KEY");
+
   /** {@link Timer} that rate limits probing */
   private static final Timer timer = new HashedWheelTimer();
 
@@ -153,6 +161,7 @@ public abstract class ProbingAction implements Callable<ChannelFuture> {
                 timer.newTimeout(
                     timeout -> {
                       // Write appropriate outboundMessage to pipeline
+                      channel().attr(REQUEST_SENT_NANOS_KEY).set(System.nanoTime());
                       ChannelFuture unusedFutureWriteAndFlush =
                           channel().writeAndFlush(outboundMessage());
                       channelFuture
@@ -265,8 +274,10 @@ public abstract class ProbingAction implements Callable<ChannelFuture> {
           "One and only one of bootstrap and channel must be supplied.");
       // If a channel is supplied, nothing is needed to be done
 
-      // Otherwise, a Bootstrap must be supplied and be used for creating the channel
+      // Otherwise, a Bootstrap must be supplied and be used for creating the channel. It is cloned
+      // as the same Bootstrap may concurrently be used to connect with other protocols.
       if (channel == null) {
+        Bootstrap bootstrap = this.bootstrap.clone();
         bootstrap
             .handler(
                 new ChannelInitializer<Channel>() {
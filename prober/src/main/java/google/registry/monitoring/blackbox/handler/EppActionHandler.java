@@ -51,4 +51,14 @@ public class EppActionHandler extends ActionHandler {
     // Reset future as there is potential to reuse same ActionHandler for a different ProbingAction
     finished = ctx.channel().newPromise();
   }
+
+  /**
+   * Informs listeners of the error, then resets future so that the next request on a connection
+   * that is kept open after a failed response isn't also reported as failed.
+   */
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    super.exceptionCaught(ctx, cause);
+    finished = ctx.channel().newPromise();
+  }
 }
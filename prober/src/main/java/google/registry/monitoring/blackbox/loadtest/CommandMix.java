@@ -0,0 +1,90 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static com.google.common.base.Ascii.toUpperCase;
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import javax.annotation.concurrent.Immutable;
+
+/** A weighted mix of {@link LoadTestCommand}s, from which each next command is picked at random. */
+@Immutable
+final class CommandMix {
+
+  private final ImmutableMap<LoadTestCommand, Integer> weights;
+  private final int totalWeight;
+
+  private CommandMix(ImmutableMap<LoadTestCommand, Integer> weights) {
+    this.weights = weights;
+    this.totalWeight = weights.values().stream().mapToInt(Integer::intValue).sum();
+  }
+
+  /**
+   * Parses a mix given as comma separated {@code command=weight} pairs, e.g. {@code
+   * check=70,info=20,create=5,delete=5}.
+   *
+   * @throws IllegalArgumentException if the mix is malformed, names an unknown command, or has no
+   *     positive weights
+   */
+  static CommandMix parse(String mix) {
+    Map<String, String> parsed =
+        Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator('=').split(mix);
+    EnumMap<LoadTestCommand, Integer> weights = new EnumMap<>(LoadTestCommand.class);
+    for (Map.Entry<String, String> entry : parsed.entrySet()) {
+      LoadTestCommand command;
+      try {
+        command = LoadTestCommand.valueOf(toUpperCase(entry.getKey().trim()));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown command in mix: " + entry.getKey(), e);
+      }
+      int weight = Integer.parseInt(entry.getValue().trim());
+      checkArgument(weight >= 0, "Negative weight for command %s in mix", entry.getKey());
+      if (weight > 0) {
+        weights.put(command, weight);
+      }
+    }
+    checkArgument(!weights.isEmpty(), "Mix must have at least one positive weight: %s", mix);
+    return new CommandMix(ImmutableMap.copyOf(weights));
+  }
+
+  /** Returns the commands in the mix, with their weights. */
+  ImmutableMap<LoadTestCommand, Integer> weights() {
+    return weights;
+  }
+
+  /** Picks a command, with each command picked with a probability proportional to its weight. */
+  LoadTestCommand pick(Random random) {
+    int target = random.nextInt(totalWeight);
+    for (Map.Entry<LoadTestCommand, Integer> entry : weights.entrySet()) {
+      target -= entry.getValue();
+      if (target < 0) {
+        return entry.getKey();
+      }
+    }
+    // Not reachable, as the target is less than the sum of all weights.
+    return Iterables.getLast(weights.keySet());
+  }
+
+  @Override
+  public String toString() {
+    return weights.toString();
+  }
+}
@@ -0,0 +1,377 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import google.registry.monitoring.blackbox.exception.EppClientException;
+import google.registry.monitoring.blackbox.exception.FailureException;
+import google.registry.monitoring.blackbox.handler.ActionHandler;
+import google.registry.monitoring.blackbox.message.EppRequestMessage;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.net.SocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * One EPP session of an {@link EppLoadTest}, which logs in and then sends commands picked from a
+ * {@link CommandMix} one at a time over a single connection until the load test's deadline.
+ *
+ * <p>In a closed-loop load test, each command is sent as soon as the response to the previous one
+ * is received, and its latency is the time until its own response. In an open-loop load test, the
+ * session instead has a fixed schedule of when it intends to send each command, and the latency is
+ * measured from that intended time, not from when the command could actually be sent. Otherwise a
+ * slow response would delay the following commands, and their latencies would only account for
+ * the time the server took to respond after that (an effect known as coordinated omission).
+ *
+ * <p>If the connection is lost, a response isn't received in time, or logging in fails, the session
+ * reconnects and logs in again. The latency of the greeting includes establishing the connection.
+ * All state is only accessed from the event loop of the session's current channel.
+ */
+final class EppLoadSession {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** The most domains created by a session that it keeps track of to send info and delete for. */
+  private static final int MAX_CREATED_DOMAINS = 1000;
+
+  /** Time to wait before reconnecting after a connection is lost or can't be established. */
+  private static final long RECONNECT_DELAY_SECONDS = 1;
+
+  /** Name used in the {@link LoadTestStats} for waiting for the greeting after connecting. */
+  private static final String GREETING = "greeting";
+
+  /** Name used in the {@link LoadTestStats} for logging in. */
+  private static final String LOGIN = "login";
+
+  /** XPath expression for the result code of a response. */
+  private static final String RESULT_CODE_EXPRESSION = "//eppns:result/@code";
+
+  /** Suffix that makes client transaction IDs and domain names unique across sessions. */
+  private static final AtomicLong idSuffix = new AtomicLong();
+
+  private final Bootstrap bootstrap;
+  private final SocketAddress address;
+  private final String tld;
+  private final EppRequestMessage login;
+  private final ImmutableMap<LoadTestCommand, EppRequestMessage> requests;
+  private final CommandMix mix;
+  private final LoadTestStats stats;
+  private final long intervalNanos;
+  private final long timeoutNanos;
+  private final long deadlineNanos;
+  private final Runnable onFinished;
+  private final Random random = new Random();
+  private final List<String> createdDomains = new ArrayList<>();
+
+  private Channel channel;
+  private long nextIntendedNanos;
+
+  /** The number of requests sent so far, used to ignore late events about earlier requests. */
+  private long requestCount;
+
+  /** The number of requests whose outcome has been recorded. */
+  private long completedCount;
+
+  private String currentCommand;
+  private long currentStartNanos;
+  @Nullable private EppRequestMessage currentRequest;
+  private Runnable currentOnSuccess;
+  private Runnable currentOnFailure;
+
+  /**
+   * Creates a session, which has to be started with {@link #start()}.
+   *
+   * @param bootstrap bootstrap that creates channels with the EPP handlers of the prober
+   * @param login request that logs in, only used by this session
+   * @param requests requests for each command in the mix, only used by this session
+   * @param intervalNanos the time between the intended start of consecutive commands, or zero if
+   *     each command is sent as soon as the previous one completes
+   * @param onFinished called when the deadline has passed and the session has disconnected
+   */
+  EppLoadSession(
+      Bootstrap bootstrap,
+      SocketAddress address,
+      String tld,
+      EppRequestMessage login,
+      ImmutableMap<LoadTestCommand, EppRequestMessage> requests,
+      CommandMix mix,
+      LoadTestStats stats,
+      long intervalNanos,
+      long timeoutNanos,
+      long deadlineNanos,
+      Runnable onFinished) {
+    this.bootstrap = bootstrap;
+    this.address = address;
+    this.tld = tld;
+    this.login = login;
+    this.requests = requests;
+    this.mix = mix;
+    this.stats = stats;
+    this.intervalNanos = intervalNanos;
+    this.timeoutNanos = timeoutNanos;
+    this.deadlineNanos = deadlineNanos;
+    this.onFinished = onFinished;
+  }
+
+  /** Connects and starts sending commands. */
+  void start() {
+    connect();
+  }
+
+  private boolean isPastDeadline() {
+    return System.nanoTime() - deadlineNanos >= 0;
+  }
+
+  private void connect() {
+    if (isPastDeadline()) {
+      onFinished.run();
+      return;
+    }
+    long startNanos = System.nanoTime();
+    ChannelFuture connectFuture = bootstrap.connect(address);
+    connectFuture.addListener(
+        (ChannelFuture future) -> {
+          if (!future.isSuccess()) {
+            stats.recordError(GREETING, describeError(future.cause()));
+            bootstrap.config().group().schedule(this::connect, RECONNECT_DELAY_SECONDS, SECONDS);
+            return;
+          }
+          channel = future.channel();
+          channel.closeFuture().addListener(f -> onClosed(future.channel()));
+          // The message handler already expects a greeting, so there is nothing to send.
+          send(GREETING, null, null, startNanos, this::login, this::close);
+        });
+  }
+
+  private void login() {
+    send(LOGIN, login, null, System.nanoTime(), this::startCommands, this::close);
+  }
+
+  private void startCommands() {
+    // Spread out the schedules of the sessions, so that they don't all send at the same time.
+    nextIntendedNanos =
+        System.nanoTime() + (intervalNanos == 0 ? 0 : (long) (random.nextDouble() * intervalNanos));
+    sendNextCommand();
+  }
+
+  private void sendNextCommand() {
+    if (isPastDeadline()) {
+      close();
+      return;
+    }
+    LoadTestCommand command = mix.pick(random);
+    if (command.needsExistingDomain() && createdDomains.isEmpty()) {
+      command = LoadTestCommand.CREATE;
+    }
+    String domain;
+    Runnable onSuccess = this::sendNextCommand;
+    switch (command) {
+      case INFO:
+        domain = createdDomains.get(random.nextInt(createdDomains.size()));
+        break;
+      case DELETE:
+        domain = removeCreatedDomain(random.nextInt(createdDomains.size()));
+        break;
+      case CREATE:
+        domain = newDomainName();
+        String createdDomain = domain;
+        onSuccess =
+            () -> {
+              addCreatedDomain(createdDomain);
+              sendNextCommand();
+            };
+        break;
+      default:
+        domain = newDomainName();
+    }
+    String commandName = command.commandName();
+    EppRequestMessage request = requests.get(command);
+    Runnable sendNext = onSuccess;
+    long now = System.nanoTime();
+    if (intervalNanos == 0) {
+      send(commandName, request, domain, now, sendNext, this::sendNextCommand);
+      return;
+    }
+    long intendedNanos = nextIntendedNanos;
+    nextIntendedNanos += intervalNanos;
+    if (intendedNanos - now <= 0) {
+      // We're behind schedule, so the command's latency includes the time it was held up.
+      send(commandName, request, domain, intendedNanos, sendNext, this::sendNextCommand);
+      return;
+    }
+    Channel scheduledChannel = channel;
+    channel
+        .eventLoop()
+        .schedule(
+            () -> {
+              if (channel == scheduledChannel && channel.isActive()) {
+                send(commandName, request, domain, intendedNanos, sendNext, this::sendNextCommand);
+              }
+            },
+            intendedNanos - now,
+            NANOSECONDS);
+  }
+
+  /**
+   * Sends a request and waits for its response.
+   *
+   * @param request the request to send, or null to only wait for a response
+   * @param startNanos the time that the request's latency is measured from
+   * @param onSuccess called once the expected response is received
+   * @param onFailure called once a response with a failed result code is received
+   */
+  private void send(
+      String command,
+      @Nullable EppRequestMessage request,
+      @Nullable String domain,
+      long startNanos,
+      Runnable onSuccess,
+      Runnable onFailure) {
+    long requestNumber = ++requestCount;
+    currentCommand = command;
+    currentStartNanos = startNanos;
+    currentRequest = request;
+    currentOnSuccess = onSuccess;
+    currentOnFailure = onFailure;
+    // This has to be obtained before sending, as it's replaced once the response is received.
+    ChannelFuture responseFuture = channel.pipeline().get(ActionHandler.class).getFinishedFuture();
+    if (request != null) {
+      try {
+        request.modifyMessage(newClTrid(), domain);
+      } catch (EppClientException e) {
+        complete(requestNumber, e);
+        return;
+      }
+      channel
+          .writeAndFlush(request)
+          .addListener(
+              f -> {
+                if (!f.isSuccess()) {
+                  complete(requestNumber, f.cause());
+                }
+              });
+    }
+    ScheduledFuture<?> timeout =
+        channel
+            .eventLoop()
+            .schedule(
+                () -> complete(requestNumber, new TimeoutException("No response in time")),
+                timeoutNanos,
+                NANOSECONDS);
+    Channel requestChannel = channel;
+    responseFuture.addListener(
+        f -> {
+          timeout.cancel(false);
+          // The future is completed from within the pipeline, before the action handler is ready
+          // for the next request, so continue once it's done.
+          requestChannel
+              .eventLoop()
+              .execute(() -> complete(requestNumber, f.isSuccess() ? null : f.cause()));
+        });
+  }
+
+  /** Records the outcome of a request and moves on, unless it was already recorded. */
+  private void complete(long requestNumber, @Nullable Throwable cause) {
+    if (requestNumber != requestCount || completedCount == requestNumber) {
+      return;
+    }
+    completedCount = requestNumber;
+    long latencyNanos = System.nanoTime() - currentStartNanos;
+    if (cause == null) {
+      stats.recordSuccess(currentCommand, latencyNanos);
+      currentOnSuccess.run();
+    } else if (cause instanceof FailureException) {
+      stats.recordFailure(currentCommand, latencyNanos, describeFailure(cause));
+      currentOnFailure.run();
+    } else {
+      stats.recordError(currentCommand, describeError(cause));
+      logger.atFine().withCause(cause).log("Error in %s, reconnecting.", currentCommand);
+      close();
+    }
+  }
+
+  private void close() {
+    if (channel != null) {
+      ChannelFuture unusedFuture = channel.close();
+    }
+  }
+
+  private void onClosed(Channel closedChannel) {
+    if (closedChannel != channel) {
+      return;
+    }
+    // A request still in flight when the connection is lost will never get a response.
+    complete(requestCount, new ClosedChannelException());
+    if (isPastDeadline()) {
+      onFinished.run();
+    } else {
+      closedChannel.eventLoop().schedule(this::connect, RECONNECT_DELAY_SECONDS, SECONDS);
+    }
+  }
+
+  private String describeFailure(Throwable cause) {
+    String resultCode =
+        (currentRequest == null)
+            ? null
+            : currentRequest.getExpectedResponse().getElementValue(RESULT_CODE_EXPRESSION);
+    return (resultCode == null || resultCode.isEmpty())
+        ? describeError(cause)
+        : "result code " + resultCode;
+  }
+
+  private static String describeError(Throwable cause) {
+    return cause.getClass().getSimpleName();
+  }
+
+  private void addCreatedDomain(String domain) {
+    if (createdDomains.size() < MAX_CREATED_DOMAINS) {
+      createdDomains.add(domain);
+    } else {
+      // Forget a random domain; the prober's cleanup deletes it eventually.
+      createdDomains.set(random.nextInt(MAX_CREATED_DOMAINS), domain);
+    }
+  }
+
+  private String removeCreatedDomain(int index) {
+    // Swap with the last element, since the order of the list doesn't matter.
+    String domain = createdDomains.get(index);
+    createdDomains.set(index, createdDomains.get(createdDomains.size() - 1));
+    createdDomains.remove(createdDomains.size() - 1);
+    return domain;
+  }
+
+  /** Returns a client transaction ID in the same format as the prober's {@code EppToken}. */
+  private static String newClTrid() {
+    return String.format(
+        "prober-%s-%d-%d", "loadtest", System.currentTimeMillis(), idSuffix.incrementAndGet());
+  }
+
+  private String newDomainName() {
+    return String.format(
+        "loadtest-%d-%d.%s", System.currentTimeMillis(), idSuffix.incrementAndGet(), tld);
+  }
+}
@@ -0,0 +1,165 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static google.registry.monitoring.blackbox.connection.ProbingAction.REMOTE_ADDRESS_KEY;
+import static google.registry.monitoring.blackbox.connection.Protocol.PROTOCOL_KEY;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.flogger.FluentLogger;
+import com.google.common.flogger.LoggerConfig;
+import google.registry.monitoring.blackbox.connection.Protocol;
+import google.registry.monitoring.blackbox.handler.ActionHandler;
+import google.registry.monitoring.blackbox.loadtest.LoadTestModule.LoadTestComponent;
+import google.registry.monitoring.blackbox.message.EppRequestMessage;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import org.joda.time.Duration;
+
+/**
+ * Load test of an EPP server, such as the proxy, that reuses the prober's EPP channel pipeline.
+ *
+ * <p>Opens a number of concurrent EPP sessions (see {@link EppLoadSession}) that each log in and
+ * send a mix of commands for a given time, either as fast as the server responds (closed loop) or
+ * at a fixed total rate (open loop), then prints the latency percentiles and the breakdown of
+ * failures and errors of each command.
+ *
+ * <p>Unlike {@code LoadTestAction}, which enqueues tasks that run flows inside the App Engine app,
+ * this exercises the full path that registrars take, and measures what they would see.
+ */
+public class EppLoadTest {
+
+  private static final FluentLogger logger = FluentLogger.forEnclosingClass();
+
+  /** Extra time to wait for the sessions to disconnect after the last response is due. */
+  private static final Duration SHUTDOWN_GRACE_PERIOD = Duration.standardSeconds(10);
+
+  private final Bootstrap bootstrap;
+  private final EventLoopGroup eventLoopGroup;
+  private final Protocol protocol;
+  private final String host;
+  private final String tld;
+  private final int sessions;
+  private final Duration duration;
+  private final double rate;
+  private final Duration timeout;
+  private final CommandMix mix;
+  private final Provider<EppRequestMessage> loginProvider;
+  private final Provider<ImmutableMap<LoadTestCommand, EppRequestMessage>> requestsProvider;
+
+  @Inject
+  EppLoadTest(
+      Bootstrap bootstrap,
+      EventLoopGroup eventLoopGroup,
+      @Named("loadTest") Protocol protocol,
+      @Named("loadTestHost") String host,
+      @Named("loadTestTld") String tld,
+      @Named("loadTestSessions") int sessions,
+      @Named("loadTestDuration") Duration duration,
+      @Named("loadTestRate") double rate,
+      @Named("loadTestTimeout") Duration timeout,
+      CommandMix mix,
+      @Named("loginSuccess") Provider<EppRequestMessage> loginProvider,
+      Provider<ImmutableMap<LoadTestCommand, EppRequestMessage>> requestsProvider) {
+    this.bootstrap = bootstrap;
+    this.eventLoopGroup = eventLoopGroup;
+    this.protocol = protocol;
+    this.host = host;
+    this.tld = tld;
+    this.sessions = sessions;
+    this.duration = duration;
+    this.rate = rate;
+    this.timeout = timeout;
+    this.mix = mix;
+    this.loginProvider = loginProvider;
+    this.requestsProvider = requestsProvider;
+  }
+
+  /** Runs the load test, and returns the report of its results. */
+  String run() throws InterruptedException {
+    bootstrap
+        .handler(
+            new ChannelInitializer<Channel>() {
+              @Override
+              protected void initChannel(Channel outboundChannel) {
+                for (Provider<? extends ChannelHandler> handlerProvider :
+                    protocol.handlerProviders()) {
+                  outboundChannel.pipeline().addLast(handlerProvider.get());
+                }
+              }
+            })
+        .attr(PROTOCOL_KEY, protocol)
+        .attr(REMOTE_ADDRESS_KEY, host);
+    SocketAddress address = new InetSocketAddress(host, protocol.port());
+    // Each session sends its share of the total rate.
+    long intervalNanos = (rate == 0) ? 0 : Math.max(1, (long) (sessions * 1e9 / rate));
+    logger.atInfo().log(
+        "Running %s loop load test of %s with %d sessions for %s, sending %s.",
+        (rate == 0) ? "closed" : "open", address, sessions, duration, mix);
+
+    LoadTestStats stats = new LoadTestStats();
+    CountDownLatch finished = new CountDownLatch(sessions);
+    long startNanos = System.nanoTime();
+    long deadlineNanos = startNanos + MILLISECONDS.toNanos(duration.getMillis());
+    try {
+      for (int i = 0; i < sessions; i++) {
+        new EppLoadSession(
+                bootstrap,
+                address,
+                tld,
+                loginProvider.get(),
+                requestsProvider.get(),
+                mix,
+                stats,
+                intervalNanos,
+                MILLISECONDS.toNanos(timeout.getMillis()),
+                deadlineNanos,
+                finished::countDown)
+            .start();
+      }
+      Duration maxWait = duration.plus(timeout).plus(SHUTDOWN_GRACE_PERIOD);
+      if (!finished.await(maxWait.getMillis(), MILLISECONDS)) {
+        logger.atWarning().log(
+            "%d sessions didn't finish in time, reporting anyway.", finished.getCount());
+      }
+    } finally {
+      eventLoopGroup.shutdownGracefully();
+    }
+    Duration elapsed = Duration.millis(NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    return stats.report(elapsed);
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    // The handlers log every response, which would drown out everything else under load.
+    LoggerConfig.getConfig(ActionHandler.class.getPackage().getName()).setLevel(Level.SEVERE);
+
+    LoadTestModule loadTestModule = new LoadTestModule().parse(args);
+    LoadTestComponent loadTestComponent =
+        DaggerLoadTestModule_LoadTestComponent.builder().loadTestModule(loadTestModule).build();
+    System.out.print(loadTestComponent.loadTest().run());
+  }
+}
@@ -0,0 +1,48 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static com.google.common.base.Ascii.toLowerCase;
+
+/** The EPP commands that an {@link EppLoadTest} can send once a session is logged in. */
+enum LoadTestCommand {
+  /** Checks a domain that was never created. */
+  CHECK(false),
+
+  /** Creates a new domain, which later info and delete commands in the same session can use. */
+  CREATE(false),
+
+  /** Gets the info of a domain previously created by the session. */
+  INFO(true),
+
+  /** Deletes a domain previously created by the session. */
+  DELETE(true);
+
+  private final boolean needsExistingDomain;
+
+  LoadTestCommand(boolean needsExistingDomain) {
+    this.needsExistingDomain = needsExistingDomain;
+  }
+
+  /** Whether the command is about a domain that the session has to have created beforehand. */
+  boolean needsExistingDomain() {
+    return needsExistingDomain;
+  }
+
+  /** The name of the command, as used on the command line and in the report. */
+  String commandName() {
+    return toLowerCase(name());
+  }
+}
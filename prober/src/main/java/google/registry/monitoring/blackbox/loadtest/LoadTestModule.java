@@ -0,0 +1,226 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static google.registry.monitoring.blackbox.message.EppRequestMessage.CLIENT_TRID_KEY;
+import static google.registry.monitoring.blackbox.message.EppRequestMessage.DOMAIN_KEY;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import dagger.Component;
+import dagger.Module;
+import dagger.Provides;
+import google.registry.monitoring.blackbox.ProberModule;
+import google.registry.monitoring.blackbox.connection.Protocol;
+import google.registry.monitoring.blackbox.message.EppRequestMessage;
+import google.registry.monitoring.blackbox.message.EppResponseMessage;
+import google.registry.monitoring.blackbox.module.CertificateModule;
+import google.registry.monitoring.blackbox.module.EppModule;
+import google.registry.monitoring.blackbox.module.EppModule.EppProtocol;
+import io.netty.channel.ChannelHandler;
+import java.util.Optional;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import org.joda.time.Duration;
+
+/**
+ * A module that provides the command line configured parameters of an {@link EppLoadTest}, and the
+ * EPP requests that it sends.
+ */
+@Module
+public class LoadTestModule {
+
+  @Parameter(names = "--host", description = "Host name of the EPP server", required = true)
+  private String host;
+
+  @Parameter(names = "--port", description = "Port of the EPP server")
+  private int port = 700;
+
+  @Parameter(names = "--tld", description = "TLD of the domains to send commands for")
+  private String tld;
+
+  @Parameter(names = "--sessions", description = "Number of concurrent EPP sessions")
+  private int sessions = 10;
+
+  @Parameter(names = "--duration", description = "Duration of the load test in seconds")
+  private int durationSeconds = 60;
+
+  @Parameter(
+      names = "--rate",
+      description =
+          "Total number of commands per second to send across all sessions (open loop), or 0 to "
+              + "send each command as soon as the session got the response to the previous one "
+              + "(closed loop)")
+  private double rate = 0;
+
+  @Parameter(
+      names = "--mix",
+      description =
+          "Comma separated command=weight pairs, where the commands are check, create, info and "
+              + "delete")
+  private String mix = "check=70,info=20,create=5,delete=5";
+
+  @Parameter(names = "--timeout", description = "Seconds to wait for a response before giving up")
+  private int timeoutSeconds = 30;
+
+  /**
+   * Parses command line arguments. Show usage if wrong arguments are given.
+   *
+   * @param args list of {@code String} arguments
+   * @return this {@code LoadTestModule} object
+   */
+  LoadTestModule parse(String[] args) {
+    JCommander jCommander = new JCommander(this);
+    jCommander.setProgramName("epp_load_test");
+    try {
+      jCommander.parse(args);
+    } catch (ParameterException e) {
+      jCommander.usage();
+      throw e;
+    }
+    checkArgument(sessions > 0, "Number of sessions must be positive");
+    checkArgument(durationSeconds > 0, "Duration must be positive");
+    checkArgument(rate >= 0, "Rate must not be negative");
+    checkArgument(timeoutSeconds > 0, "Timeout must be positive");
+    return this;
+  }
+
+  @Provides
+  @Named("loadTestHost")
+  String provideHost() {
+    return host;
+  }
+
+  @Provides
+  @Named("loadTestTld")
+  String provideTld(@Named("eppTld") String defaultTld) {
+    return Optional.ofNullable(tld).orElse(defaultTld);
+  }
+
+  @Provides
+  @Named("loadTestSessions")
+  int provideSessions() {
+    return sessions;
+  }
+
+  @Provides
+  @Named("loadTestDuration")
+  Duration provideDuration() {
+    return Duration.standardSeconds(durationSeconds);
+  }
+
+  @Provides
+  @Named("loadTestRate")
+  double provideRate() {
+    return rate;
+  }
+
+  @Provides
+  @Named("loadTestTimeout")
+  Duration provideTimeout() {
+    return Duration.standardSeconds(timeoutSeconds);
+  }
+
+  @Provides
+  CommandMix provideCommandMix() {
+    return CommandMix.parse(mix);
+  }
+
+  /** {@link Provides} the {@link Protocol} of the EPP server under test. */
+  @Provides
+  @Named("loadTest")
+  Protocol provideProtocol(
+      @EppProtocol ImmutableList<Provider<? extends ChannelHandler>> handlerProviders) {
+    return Protocol.builder()
+        .setName("epp")
+        .setPort(port)
+        .setHandlerProviders(handlerProviders)
+        .setPersistentConnection(true)
+        .build();
+  }
+
+  /**
+   * {@link Provides} the requests for each {@link LoadTestCommand}.
+   *
+   * <p>A new set of requests has to be obtained for each session, as the requests keep the state of
+   * the response they expect.
+   */
+  @Provides
+  static ImmutableMap<LoadTestCommand, EppRequestMessage> provideRequests(
+      @Named("checkSuccess") EppRequestMessage check,
+      @Named("createSuccess") EppRequestMessage create,
+      @Named("infoSuccess") EppRequestMessage info,
+      @Named("deleteSuccess") EppRequestMessage delete) {
+    return ImmutableMap.of(
+        LoadTestCommand.CHECK, check,
+        LoadTestCommand.CREATE, create,
+        LoadTestCommand.INFO, info,
+        LoadTestCommand.DELETE, delete);
+  }
+
+  /**
+   * {@link Provides} check {@link EppRequestMessage} with expected response of success, whatever
+   * the availability of the domain.
+   */
+  @Provides
+  @Named("checkSuccess")
+  static EppRequestMessage provideCheckSuccessRequestMessage(
+      @Named("success") EppResponseMessage successResponse,
+      @Named("check") String checkTemplate) {
+    return new EppRequestMessage(
+        "check",
+        successResponse,
+        checkTemplate,
+        (clTrid, domain) ->
+            ImmutableMap.of(
+                CLIENT_TRID_KEY, clTrid,
+                DOMAIN_KEY, domain));
+  }
+
+  /** {@link Provides} info {@link EppRequestMessage} with expected response of success. */
+  @Provides
+  @Named("infoSuccess")
+  static EppRequestMessage provideInfoSuccessRequestMessage(
+      @Named("success") EppResponseMessage successResponse,
+      @Named("info") String infoTemplate) {
+    return new EppRequestMessage(
+        "info",
+        successResponse,
+        infoTemplate,
+        (clTrid, domain) ->
+            ImmutableMap.of(
+                CLIENT_TRID_KEY, clTrid,
+                DOMAIN_KEY, domain));
+  }
+
+  /** Root level {@link Component} that provides the {@link EppLoadTest}. */
+  @Singleton
+  @Component(
+      modules = {
+        ProberModule.class,
+        EppModule.class,
+        CertificateModule.class,
+        LoadTestModule.class
+      })
+  public interface LoadTestComponent {
+
+    EppLoadTest loadTest();
+  }
+}
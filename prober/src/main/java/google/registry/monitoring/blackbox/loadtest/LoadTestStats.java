@@ -0,0 +1,146 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import com.google.common.collect.ImmutableSortedMap;
+import google.registry.monitoring.blackbox.metric.MetricsCollector.ResponseType;
+import google.registry.util.LatencyHistogram;
+import google.registry.util.LatencyHistogram.Snapshot;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.Duration;
+
+/**
+ * The outcomes and latencies of the requests sent by an {@link EppLoadTest}, by command.
+ *
+ * <p>Each response is recorded as a {@link ResponseType}, with the same meaning as in the prober: a
+ * {@code SUCCESS} is the expected response, a {@code FAILURE} is a well-formed response with a
+ * failed result code, and an {@code ERROR} is no usable response at all, e.g. because of a closed
+ * connection or a timeout. Failures and errors are further broken down by their reason.
+ *
+ * <p>Latencies are only recorded for responses, i.e. successes and failures, since an error's
+ * latency says more about how it was detected than about the server.
+ */
+@ThreadSafe
+final class LoadTestStats {
+
+  private static final double[] REPORTED_PERCENTILES = {50, 90, 99, 99.9};
+
+  private final ConcurrentMap<String, CommandStats> stats = new ConcurrentHashMap<>();
+
+  /** Records a successful response to the command that took the given time. */
+  void recordSuccess(String command, long latencyNanos) {
+    CommandStats commandStats = getStats(command);
+    commandStats.latencyMicros.record(NANOSECONDS.toMicros(latencyNanos));
+    commandStats.increment(ResponseType.SUCCESS, null);
+  }
+
+  /** Records a failed response to the command that took the given time. */
+  void recordFailure(String command, long latencyNanos, String reason) {
+    CommandStats commandStats = getStats(command);
+    commandStats.latencyMicros.record(NANOSECONDS.toMicros(latencyNanos));
+    commandStats.increment(ResponseType.FAILURE, reason);
+  }
+
+  /** Records that the command got no usable response. */
+  void recordError(String command, String reason) {
+    getStats(command).increment(ResponseType.ERROR, reason);
+  }
+
+  private CommandStats getStats(String command) {
+    return stats.computeIfAbsent(command, c -> new CommandStats());
+  }
+
+  /**
+   * Returns a human readable report of everything recorded so far, with throughputs computed over
+   * the given time.
+   *
+   * <p>This drains the latency histograms, so it should only be called once all requests are done.
+   */
+  String report(Duration elapsed) {
+    StringBuilder report = new StringBuilder();
+    double seconds = Math.max(elapsed.getMillis(), 1) / 1000.0;
+    ImmutableSortedMap.copyOf(stats)
+        .forEach(
+            (command, commandStats) -> {
+              Map<ResponseType, Long> counts = commandStats.counts();
+              long total = counts.values().stream().mapToLong(Long::longValue).sum();
+              report.append(
+                  String.format("%s: %d requests (%.1f/s)", command, total, total / seconds));
+              counts.forEach(
+                  (type, count) -> report.append(String.format(", %d %s", count, type)));
+              report.append('\n');
+              Snapshot latencies = commandStats.latencyMicros.drain();
+              if (latencies.getTotalCount() > 0) {
+                report.append("  latency ms:");
+                for (double percentile : REPORTED_PERCENTILES) {
+                  report.append(
+                      String.format(
+                          " p%s=%.1f",
+                          formatPercentile(percentile),
+                          latencies.getValueAtPercentile(percentile) / 1000.0));
+                }
+                report.append(String.format(" max=%.1f\n", latencies.getMax() / 1000.0));
+              }
+              ImmutableSortedMap.copyOf(commandStats.reasons)
+                  .forEach(
+                      (reason, count) ->
+                          report.append(String.format("  %s: %d\n", reason, count.get())));
+            });
+    return report.toString();
+  }
+
+  private static String formatPercentile(double percentile) {
+    return percentile == Math.rint(percentile)
+        ? String.valueOf((long) percentile)
+        : String.valueOf(percentile);
+  }
+
+  /** The recorded outcomes of one command. */
+  private static final class CommandStats {
+
+    private final LatencyHistogram latencyMicros = new LatencyHistogram();
+    private final EnumMap<ResponseType, AtomicLong> counts = new EnumMap<>(ResponseType.class);
+
+    /** Counts of failures and errors by response type and reason. */
+    private final ConcurrentMap<String, AtomicLong> reasons = new ConcurrentHashMap<>();
+
+    CommandStats() {
+      for (ResponseType type : ResponseType.values()) {
+        counts.put(type, new AtomicLong());
+      }
+    }
+
+    void increment(ResponseType type, @Nullable String reason) {
+      counts.get(type).incrementAndGet();
+      if (reason != null) {
+        reasons.computeIfAbsent(type + " " + reason, r -> new AtomicLong()).incrementAndGet();
+      }
+    }
+
+    Map<ResponseType, Long> counts() {
+      EnumMap<ResponseType, Long> snapshot = new EnumMap<>(ResponseType.class);
+      counts.forEach((type, count) -> snapshot.put(type, count.get()));
+      return snapshot;
+    }
+  }
+}
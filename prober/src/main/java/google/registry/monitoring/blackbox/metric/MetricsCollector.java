@@ -65,6 +65,23 @@ public class MetricsCollector {
               LABELS,
               DEFAULT_LATENCY_FITTER);
 
+  private static final ImmutableSet<LabelDescriptor> STEP_LABELS =
+      ImmutableSet.of(
+          LabelDescriptor.create("protocol", "Name of the protocol."),
+          LabelDescriptor.create(
+              "step", "Connection phase (connect or tls_handshake), or name of outbound request."),
+          LabelDescriptor.create("responseType", "Status of step performed"));
+
+  static final EventMetric stepLatencyMs =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/prober/step_latency_ms",
+              "Time taken by each step of a probe, i.e. connecting, the TLS handshake, or the "
+                  + "round trip of a request, not counting the delay before sending the request.",
+              "Latency Milliseconds",
+              STEP_LABELS,
+              DEFAULT_LATENCY_FITTER);
+
   @Inject
   MetricsCollector() {}
 
@@ -77,6 +94,7 @@ public class MetricsCollector {
   void resetMetric() {
     responsesCounter.reset();
     latencyMs.reset();
+    stepLatencyMs.reset();
   }
 
   @NonFinalForTesting
@@ -89,4 +107,17 @@ public class MetricsCollector {
     latencyMs.record(latency, protocolName, requestName, responseName, status.name());
     responsesCounter.increment(protocolName, requestName, responseName, status.name());
   }
+
+  /**
+   * Records the latency of a single step of a probe.
+   *
+   * <p>Unlike the latency recorded by {@link #recordResult}, which covers a whole {@code
+   * ProbingStep} including the delay before it, this is broken down into connecting, the TLS
+   * handshake and the request itself.
+   */
+  @NonFinalForTesting
+  public void recordStepLatency(
+      String protocolName, String stepName, ResponseType status, long latency) {
+    stepLatencyMs.record(latency, protocolName, stepName, status.name());
+  }
 }
@@ -86,7 +86,6 @@ public class EppModule {
    * actions with a persistent connection.
    */
   @Provides
-  @Singleton
   @IntoSet
   static ProbingSequence provideEppLoginCreateCheckDeleteCheckProbingSequence(
       EppToken.Persistent token,
@@ -114,7 +113,6 @@ public class EppModule {
    * logout actions with a transient connection.
    */
   @Provides
-  @Singleton
   @IntoSet
   static ProbingSequence provideEppLoginCreateCheckDeleteCheckLogoutProbingSequence(
       EppToken.Transient token,
@@ -502,6 +500,13 @@ public class EppModule {
     return "check.xml";
   }
 
+  /** {@link Provides} filename of template for info EPP request. */
+  @Provides
+  @Named("info")
+  static String provideInfoTemplate() {
+    return "info.xml";
+  }
+
   /** {@link Provides} {@link Protocol} that represents an EPP connection. */
   @Singleton
   @Provides
@@ -177,7 +177,6 @@ public class WebWhoisModule {
 
   /** {@link Provides} standard WebWhois sequence. */
   @Provides
-  @Singleton
   @IntoSet
   ProbingSequence provideWebWhoisSequence(
       @WebWhoisProtocol ProbingStep probingStep,
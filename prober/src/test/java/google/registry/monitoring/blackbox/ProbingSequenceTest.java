@@ -15,10 +15,14 @@
 package google.registry.monitoring.blackbox;
 
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.monitoring.blackbox.connection.ProbingAction.REQUEST_SENT_NANOS_KEY;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doCallRealMethod;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -316,6 +320,46 @@ public class ProbingSequenceTest {
         .recordResult(PROTOCOL_NAME, MESSAGE_NAME, RESPONSE_NAME, ResponseType.ERROR, 0L);
   }
 
+  @Test
+  public void testStart_withTargetOffset() throws UndeterminedStateException {
+    // The token after mockToken terminates the sequence when used to generate an action.
+    Token secondToken = Mockito.mock(Token.class);
+    doReturn(secondToken).when(mockToken).next();
+    doThrow(new UnrecoverableStateException("")).when(mockStep).generateAction(secondToken);
+
+    ProbingSequence sequence =
+        new ProbingSequence.Builder(mockToken, metrics, clock).add(mockStep).build();
+
+    sequence.start(1);
+
+    // The sequence should have started with the token after the start token.
+    verify(mockStep).generateAction(secondToken);
+    verify(mockStep, times(0)).generateAction(mockToken);
+  }
+
+  @Test
+  public void testRunStep_recordsRequestLatency() throws UndeterminedStateException {
+    // Marks the request as sent, then terminates the sequence with a failed future.
+    doAnswer(
+            answer -> {
+              channel.attr(REQUEST_SENT_NANOS_KEY).set(System.nanoTime());
+              return channel.newFailedFuture(new UnrecoverableStateException(""));
+            })
+        .when(mockAction)
+        .call();
+    doReturn(mockAction).when(mockStep).generateAction(mockToken);
+
+    ProbingSequence sequence =
+        new ProbingSequence.Builder(mockToken, metrics, clock).add(mockStep).build();
+
+    sequence.start();
+
+    verify(metrics)
+        .recordStepLatency(eq(PROTOCOL_NAME), eq(MESSAGE_NAME), eq(ResponseType.ERROR), anyLong());
+    // The send time is consumed, so that it isn't mistaken for that of a later request.
+    assertThat(channel.attr(REQUEST_SENT_NANOS_KEY).get()).isNull();
+  }
+
   /**
    * Test for when we expect Failure within try catch block of generating and calling a {@link
    * ProbingAction}.
@@ -0,0 +1,79 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Range;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CommandMix}. */
+@RunWith(JUnit4.class)
+public class CommandMixTest {
+
+  @Test
+  public void testParse() {
+    assertThat(CommandMix.parse(" info = 20, check=70,create=5 ,delete=0").weights())
+        .containsExactly(
+            LoadTestCommand.CHECK, 70, LoadTestCommand.CREATE, 5, LoadTestCommand.INFO, 20);
+  }
+
+  @Test
+  public void testFailure_unknownCommand() {
+    IllegalArgumentException thrown =
+        assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("check=1,renew=1"));
+    assertThat(thrown).hasMessageThat().contains("renew");
+  }
+
+  @Test
+  public void testFailure_malformed() {
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("check"));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("check=a"));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("check=1,check=2"));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("check=-1,info=2"));
+  }
+
+  @Test
+  public void testFailure_noPositiveWeight() {
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse("check=0"));
+    assertThrows(IllegalArgumentException.class, () -> CommandMix.parse(""));
+  }
+
+  @Test
+  public void testPick_proportionalToWeights() {
+    CommandMix mix = CommandMix.parse("check=3,info=1");
+    Random random = new Random(1234);
+    Map<LoadTestCommand, Integer> counts = new EnumMap<>(LoadTestCommand.class);
+    for (int i = 0; i < 40000; i++) {
+      counts.merge(mix.pick(random), 1, Integer::sum);
+    }
+    assertThat(counts.keySet()).containsExactly(LoadTestCommand.CHECK, LoadTestCommand.INFO);
+    assertThat(counts.get(LoadTestCommand.CHECK)).isIn(Range.closed(29000, 31000));
+  }
+
+  @Test
+  public void testPick_singleCommand() {
+    CommandMix mix = CommandMix.parse("create=1");
+    assertThat(mix.weights()).isEqualTo(ImmutableMap.of(LoadTestCommand.CREATE, 1));
+    assertThat(mix.pick(new Random())).isEqualTo(LoadTestCommand.CREATE);
+  }
+}
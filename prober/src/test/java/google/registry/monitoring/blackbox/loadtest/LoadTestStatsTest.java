@@ -0,0 +1,53 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.blackbox.loadtest;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import org.joda.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LoadTestStats}. */
+@RunWith(JUnit4.class)
+public class LoadTestStatsTest {
+
+  private final LoadTestStats stats = new LoadTestStats();
+
+  @Test
+  public void testReport_empty() {
+    assertThat(stats.report(Duration.standardSeconds(1))).isEmpty();
+  }
+
+  @Test
+  public void testReport() {
+    for (int i = 1; i <= 100; i++) {
+      stats.recordSuccess("check", MILLISECONDS.toNanos(i));
+    }
+    stats.recordFailure("create", MILLISECONDS.toNanos(5), "result code 2302");
+    stats.recordFailure("create", MILLISECONDS.toNanos(7), "result code 2302");
+    stats.recordError("create", "TimeoutException");
+    assertThat(stats.report(Duration.standardSeconds(10)))
+        .isEqualTo(
+            "check: 100 requests (10.0/s), 100 SUCCESS, 0 FAILURE, 0 ERROR\n"
+                + "  latency ms: p50=51.2 p90=90.1 p99=100.0 p99.9=100.0 max=100.0\n"
+                + "create: 3 requests (0.3/s), 0 SUCCESS, 2 FAILURE, 1 ERROR\n"
+                + "  latency ms: p50=5.1 p90=7.0 p99=7.0 p99.9=7.0 max=7.0\n"
+                + "  ERROR TimeoutException: 1\n"
+                + "  FAILURE result code 2302: 2\n");
+  }
+}
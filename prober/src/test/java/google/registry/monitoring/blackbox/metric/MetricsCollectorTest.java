@@ -97,4 +97,20 @@ public class MetricsCollectorTest {
         .and()
         .hasNoOtherValues();
   }
+
+  @Test
+  public void testRecordStepLatency() {
+    metrics.recordStepLatency(protocol, "connect", ResponseType.SUCCESS, 10);
+    metrics.recordStepLatency(protocol, "connect", ResponseType.SUCCESS, 20);
+    metrics.recordStepLatency(protocol, requestName, ResponseType.ERROR, 300);
+
+    assertThat(MetricsCollector.stepLatencyMs)
+        .hasDataSetForLabels(
+            ImmutableSet.of(10, 20), protocol, "connect", ResponseType.SUCCESS.name())
+        .and()
+        .hasDataSetForLabels(
+            ImmutableSet.of(300), protocol, requestName, ResponseType.ERROR.name())
+        .and()
+        .hasNoOtherValues();
+  }
 }
@@ -80,6 +80,8 @@ public class ProxyConfig {
     public String relayPath;
     public int maxMessageLengthBytes;
     public int readTimeoutSeconds;
+    public int cacheTtlSeconds;
+    public int cacheMaxEntries;
     public Quota quota;
   }
 
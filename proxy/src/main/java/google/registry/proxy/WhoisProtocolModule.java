@@ -25,6 +25,8 @@ import google.registry.proxy.handler.FrontendMetricsHandler;
 import google.registry.proxy.handler.ProxyProtocolHandler;
 import google.registry.proxy.handler.QuotaHandler.WhoisQuotaHandler;
 import google.registry.proxy.handler.RelayHandler.FullHttpRequestRelayHandler;
+import google.registry.proxy.handler.WhoisCacheHandler;
+import google.registry.proxy.handler.WhoisCacheHandler.ResponseCache;
 import google.registry.proxy.handler.WhoisServiceHandler;
 import google.registry.proxy.metric.FrontendMetrics;
 import google.registry.proxy.quota.QuotaConfig;
@@ -41,6 +43,7 @@ import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Qualifier;
 import javax.inject.Singleton;
+import org.joda.time.Duration;
 
 /** A module that provides the {@link FrontendProtocol} used for whois protocol. */
 @Module
@@ -71,21 +74,28 @@ public class WhoisProtocolModule {
   @Provides
   @WhoisProtocol
   static ImmutableList<Provider<? extends ChannelHandler>> provideHandlerProviders(
+      ProxyConfig config,
       Provider<ProxyProtocolHandler> proxyProtocolHandlerProvider,
       @WhoisProtocol Provider<ReadTimeoutHandler> readTimeoutHandlerProvider,
       Provider<LineBasedFrameDecoder> lineBasedFrameDecoderProvider,
       Provider<WhoisServiceHandler> whoisServiceHandlerProvider,
       Provider<FrontendMetricsHandler> frontendMetricsHandlerProvider,
       Provider<WhoisQuotaHandler> whoisQuotaHandlerProvider,
+      Provider<WhoisCacheHandler> whoisCacheHandlerProvider,
       Provider<FullHttpRequestRelayHandler> relayHandlerProvider) {
-    return ImmutableList.of(
-        proxyProtocolHandlerProvider,
-        readTimeoutHandlerProvider,
-        lineBasedFrameDecoderProvider,
-        whoisServiceHandlerProvider,
-        frontendMetricsHandlerProvider,
-        whoisQuotaHandlerProvider,
-        relayHandlerProvider);
+    ImmutableList.Builder<Provider<? extends ChannelHandler>> handlerProviders =
+        new ImmutableList.Builder<Provider<? extends ChannelHandler>>()
+            .add(proxyProtocolHandlerProvider)
+            .add(readTimeoutHandlerProvider)
+            .add(lineBasedFrameDecoderProvider)
+            .add(whoisServiceHandlerProvider)
+            .add(frontendMetricsHandlerProvider)
+            .add(whoisQuotaHandlerProvider);
+    // The cache handler is left out altogether when caching is disabled.
+    if (config.whois.cacheTtlSeconds > 0) {
+      handlerProviders.add(whoisCacheHandlerProvider);
+    }
+    return handlerProviders.add(relayHandlerProvider).build();
   }
 
   @Provides
@@ -97,6 +107,21 @@ public class WhoisProtocolModule {
         config.whois.relayHost, config.whois.relayPath, accessTokenSupplier, metrics);
   }
 
+  @Provides
+  static WhoisCacheHandler provideWhoisCacheHandler(
+      ResponseCache responseCache, FrontendMetrics metrics) {
+    return new WhoisCacheHandler(responseCache, metrics);
+  }
+
+  @Provides
+  @Singleton
+  static ResponseCache provideResponseCache(ProxyConfig config, Clock clock) {
+    return new ResponseCache(
+        config.whois.cacheMaxEntries,
+        Duration.standardSeconds(config.whois.cacheTtlSeconds),
+        clock);
+  }
+
   @Provides
   static LineBasedFrameDecoder provideLineBasedFrameDecoder(ProxyConfig config) {
     return new LineBasedFrameDecoder(config.whois.maxMessageLengthBytes);
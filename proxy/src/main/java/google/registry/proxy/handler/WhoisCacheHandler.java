@@ -0,0 +1,148 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy.handler;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import google.registry.proxy.metric.FrontendMetrics;
+import google.registry.util.Clock;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.joda.time.Duration;
+
+/**
+ * Handler that answers repeated WHOIS queries from a cache of recent responses.
+ *
+ * <p>This handler is added after the {@link QuotaHandler.WhoisQuotaHandler}, so that cached
+ * responses count against the quota of the client just like relayed ones, and before the {@link
+ * RelayHandler}. A query whose response is cached is answered right away, without relaying it to
+ * the backend. Otherwise the query is relayed, and a successful response to it is cached on its
+ * way back to the client.
+ *
+ * <p>Queries are cached by their normalized text, i.e. with runs of whitespace collapsed and in
+ * lower case, as the WHOIS server treats all of those the same.
+ */
+public class WhoisCacheHandler extends ChannelDuplexHandler {
+
+  private static final String PROTOCOL_NAME = "whois";
+
+  private final ResponseCache cache;
+  private final FrontendMetrics metrics;
+
+  /** The normalized query relayed to the backend, whose response should be cached. */
+  @Nullable private String relayedQuery;
+
+  public WhoisCacheHandler(ResponseCache cache, FrontendMetrics metrics) {
+    this.cache = cache;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof FullHttpRequest) {
+      String query = normalizeQuery(((FullHttpRequest) msg).content().toString(UTF_8));
+      if (!query.isEmpty()) {
+        byte[] response = cache.get(query);
+        metrics.registerCacheLookup(PROTOCOL_NAME, response != null);
+        if (response != null) {
+          ReferenceCountUtil.release(msg);
+          ChannelFuture unusedFuture =
+              ctx.writeAndFlush(
+                  new DefaultFullHttpResponse(
+                      HttpVersion.HTTP_1_1,
+                      HttpResponseStatus.OK,
+                      Unpooled.wrappedBuffer(response)));
+          return;
+        }
+        relayedQuery = query;
+      }
+    }
+    super.channelRead(ctx, msg);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (relayedQuery != null && msg instanceof FullHttpResponse) {
+      FullHttpResponse response = (FullHttpResponse) msg;
+      // Error responses are relayed as is, but not cached.
+      if (response.status().equals(HttpResponseStatus.OK)) {
+        cache.put(relayedQuery, ByteBufUtil.getBytes(response.content()));
+      }
+      relayedQuery = null;
+    }
+    super.write(ctx, msg, promise);
+  }
+
+  @VisibleForTesting
+  static String normalizeQuery(String query) {
+    return Ascii.toLowerCase(CharMatcher.whitespace().trimAndCollapseFrom(query, ' '));
+  }
+
+  /**
+   * A bounded cache of WHOIS responses by normalized query, shared by all WHOIS connections.
+   *
+   * <p>Responses expire a fixed time after they were received from the backend, regardless of how
+   * often they are served, so that an answer is never more than that time out of date.
+   */
+  @ThreadSafe
+  public static final class ResponseCache {
+
+    private final Cache<String, byte[]> responses;
+
+    public ResponseCache(int maxEntries, Duration timeToLive, Clock clock) {
+      this.responses =
+          CacheBuilder.newBuilder()
+              .maximumSize(maxEntries)
+              .expireAfterWrite(timeToLive.getMillis(), MILLISECONDS)
+              .ticker(
+                  new Ticker() {
+                    @Override
+                    public long read() {
+                      return MILLISECONDS.toNanos(clock.nowUtc().getMillis());
+                    }
+                  })
+              .build();
+    }
+
+    @Nullable
+    byte[] get(String query) {
+      return responses.getIfPresent(query);
+    }
+
+    void put(String query, byte[] response) {
+      responses.put(query, response);
+    }
+  }
+}
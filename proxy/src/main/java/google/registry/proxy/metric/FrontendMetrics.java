@@ -16,8 +16,10 @@ package google.registry.proxy.metric;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.monitoring.metrics.EventMetric;
 import com.google.monitoring.metrics.IncrementableMetric;
+import com.google.monitoring.metrics.LabelDescriptor;
 import com.google.monitoring.metrics.Metric;
 import com.google.monitoring.metrics.MetricRegistryImpl;
 import google.registry.util.NonFinalForTesting;
@@ -36,6 +38,11 @@ import org.joda.time.Duration;
 @Singleton
 public class FrontendMetrics extends BaseMetrics {
 
+  private static final ImmutableSet<LabelDescriptor> CACHE_LABELS =
+      ImmutableSet.of(
+          LabelDescriptor.create("protocol", "Name of the protocol."),
+          LabelDescriptor.create("result", "Whether the lookup was a hit or a miss."));
+
   private static final ConcurrentMap<ImmutableList<String>, ChannelGroup> activeConnections =
       new ConcurrentHashMap<>();
 
@@ -78,6 +85,14 @@ public class FrontendMetrics extends BaseMetrics {
               LABELS,
               DEFAULT_LATENCY_FITTER);
 
+  static final IncrementableMetric cacheLookupsCounter =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/proxy/frontend/cache_lookups",
+              "Total number of requests looked up in the response cache of the proxy.",
+              "Cache Lookups",
+              CACHE_LABELS);
+
   @Inject
   public FrontendMetrics() {}
 
@@ -86,6 +101,7 @@ public class FrontendMetrics extends BaseMetrics {
     totalConnectionsCounter.reset();
     activeConnections.clear();
     latencyMs.reset();
+    cacheLookupsCounter.reset();
   }
 
   @NonFinalForTesting
@@ -107,6 +123,11 @@ public class FrontendMetrics extends BaseMetrics {
     quotaRejectionsCounter.increment(protocol, certHash);
   }
 
+  @NonFinalForTesting
+  public void registerCacheLookup(String protocol, boolean hit) {
+    cacheLookupsCounter.increment(protocol, hit ? "hit" : "miss");
+  }
+
   @NonFinalForTesting
   public void responseSent(String protocol, String certHash, Duration latency) {
     latencyMs.record(latency.getMillis(), protocol, certHash);
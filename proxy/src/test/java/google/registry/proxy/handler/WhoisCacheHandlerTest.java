@@ -0,0 +1,130 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.proxy.handler;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.proxy.TestUtils.makeWhoisHttpRequest;
+import static google.registry.proxy.TestUtils.makeWhoisHttpResponse;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import google.registry.proxy.handler.WhoisCacheHandler.ResponseCache;
+import google.registry.proxy.metric.FrontendMetrics;
+import google.registry.testing.FakeClock;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.joda.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link WhoisCacheHandler}. */
+@RunWith(JUnit4.class)
+public class WhoisCacheHandlerTest {
+
+  private static final String RELAY_HOST = "www.example.tld";
+  private static final String RELAY_PATH = "/test";
+  private static final String ACCESS_TOKEN = "this.access.token";
+  private static final Duration TIME_TO_LIVE = Duration.standardSeconds(60);
+
+  private final FakeClock clock = new FakeClock();
+  private final FrontendMetrics metrics = mock(FrontendMetrics.class);
+  private final ResponseCache cache = new ResponseCache(100, TIME_TO_LIVE, clock);
+
+  private EmbeddedChannel newChannel() {
+    return new EmbeddedChannel(new WhoisCacheHandler(cache, metrics));
+  }
+
+  private static FullHttpRequest makeRequest(String query) {
+    return makeWhoisHttpRequest(query, RELAY_HOST, RELAY_PATH, ACCESS_TOKEN);
+  }
+
+  /** Sends a query that isn't cached, and relays the given response to it back to the client. */
+  private void relayQuery(String query, String response, HttpResponseStatus status) {
+    EmbeddedChannel channel = newChannel();
+    FullHttpRequest request = makeRequest(query);
+    assertThat(channel.writeInbound(request)).isTrue();
+    assertThat((Object) channel.readInbound()).isEqualTo(request);
+    FullHttpResponse relayedResponse = makeWhoisHttpResponse(response, status);
+    assertThat(channel.writeOutbound(relayedResponse)).isTrue();
+    assertThat((Object) channel.readOutbound()).isEqualTo(relayedResponse);
+  }
+
+  /** Sends a query that is cached, and returns the content of the response served from cache. */
+  private String queryCached(String query) {
+    EmbeddedChannel channel = newChannel();
+    assertThat(channel.writeInbound(makeRequest(query))).isFalse();
+    FullHttpResponse response = channel.readOutbound();
+    assertThat(response.status()).isEqualTo(HttpResponseStatus.OK);
+    return response.content().toString(UTF_8);
+  }
+
+  @Test
+  public void testSuccess_repeatedQuery_servedFromCache() {
+    relayQuery("domain example.tld", "Domain Name: example.tld", HttpResponseStatus.OK);
+    assertThat(queryCached("domain example.tld")).isEqualTo("Domain Name: example.tld");
+    verify(metrics).registerCacheLookup("whois", false);
+    verify(metrics).registerCacheLookup("whois", true);
+    verifyNoMoreInteractions(metrics);
+  }
+
+  @Test
+  public void testSuccess_equivalentQuery_servedFromCache() {
+    relayQuery("domain example.tld", "Domain Name: example.tld", HttpResponseStatus.OK);
+    assertThat(queryCached("  DOMAIN \t Example.TLD ")).isEqualTo("Domain Name: example.tld");
+  }
+
+  @Test
+  public void testSuccess_differentQuery_relayed() {
+    relayQuery("domain example.tld", "Domain Name: example.tld", HttpResponseStatus.OK);
+    relayQuery("domain other.tld", "Domain Name: other.tld", HttpResponseStatus.OK);
+    verify(metrics, times(2)).registerCacheLookup("whois", false);
+    verifyNoMoreInteractions(metrics);
+  }
+
+  @Test
+  public void testSuccess_expiredResponse_relayed() {
+    relayQuery("domain example.tld", "Domain Name: example.tld", HttpResponseStatus.OK);
+    clock.advanceBy(TIME_TO_LIVE.minus(Duration.millis(1)));
+    assertThat(queryCached("domain example.tld")).isEqualTo("Domain Name: example.tld");
+    clock.advanceOneMilli();
+    relayQuery("domain example.tld", "Domain Name: example.tld, again", HttpResponseStatus.OK);
+    assertThat(queryCached("domain example.tld")).isEqualTo("Domain Name: example.tld, again");
+  }
+
+  @Test
+  public void testSuccess_errorResponse_notCached() {
+    relayQuery("domain example.tld", "Internal error", HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    relayQuery("domain example.tld", "Domain Name: example.tld", HttpResponseStatus.OK);
+  }
+
+  @Test
+  public void testSuccess_emptyQuery_notLookedUp() {
+    relayQuery("  ", "No WHOIS command specified.", HttpResponseStatus.OK);
+    relayQuery("", "No WHOIS command specified.", HttpResponseStatus.OK);
+    verifyNoMoreInteractions(metrics);
+  }
+
+  @Test
+  public void testNormalizeQuery() {
+    assertThat(WhoisCacheHandler.normalizeQuery(" Registrar  Example\tRegistrar,  Inc.\r"))
+        .isEqualTo("registrar example registrar, inc.");
+  }
+}
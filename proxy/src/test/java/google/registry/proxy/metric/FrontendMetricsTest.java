@@ -184,4 +184,17 @@ public class FrontendMetricsTest {
         .and()
         .hasNoOtherValues();
   }
+
+  @Test
+  public void testSuccess_registerCacheLookups() {
+    metrics.registerCacheLookup(PROTOCOL, true);
+    metrics.registerCacheLookup(PROTOCOL, true);
+    metrics.registerCacheLookup(PROTOCOL, false);
+    assertThat(FrontendMetrics.cacheLookupsCounter)
+        .hasValueForLabels(2, PROTOCOL, "hit")
+        .and()
+        .hasValueForLabels(1, PROTOCOL, "miss")
+        .and()
+        .hasNoOtherValues();
+  }
 }
@@ -0,0 +1,139 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A lock-free histogram of non-negative values with a bounded relative error, in the style of an
+ * HDR histogram.
+ *
+ * <p>Values below 32 each get their own bucket. Above that, each power of two is split into 16
+ * equally sized buckets, so the width of the bucket a value falls into is at most 1/16 of the
+ * value. Recording is an array index computation plus an atomic increment, so it can be done from
+ * any number of request threads without contention beyond that of the counter itself.
+ *
+ * <p>The histogram is meant to be drained periodically with {@link #drain()}, which returns the
+ * values recorded since the last drain and resets the histogram. Each recorded value ends up in
+ * exactly one snapshot, though values recorded concurrently with a drain may go in either one.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+
+  /** The number of buckets each power of two above {@link #LINEAR_BUCKETS} is split into. */
+  private static final int SUB_BUCKETS = 16;
+
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+  /** The number of values at the bottom of the range that get a bucket each. */
+  private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+
+  /** The largest value that can be recorded; larger values are recorded as this. */
+  public static final long MAX_VALUE = (1L << 36) - 1;
+
+  private static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong max = new AtomicLong();
+
+  /** Records a value, clamping it to the range {@code [0, MAX_VALUE]}. */
+  public void record(long value) {
+    long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+    counts.incrementAndGet(bucketIndex(clamped));
+    if (clamped > max.get()) {
+      max.accumulateAndGet(clamped, Math::max);
+    }
+  }
+
+  /** Returns the values recorded since the last drain, and resets the histogram. */
+  public Snapshot drain() {
+    long[] drained = new long[NUM_BUCKETS];
+    long total = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      if (counts.get(i) != 0) {
+        drained[i] = counts.getAndSet(i, 0);
+        total += drained[i];
+      }
+    }
+    return new Snapshot(drained, total, max.getAndSet(0));
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < LINEAR_BUCKETS) {
+      return (int) value;
+    }
+    // Shift the value so that only its top SUB_BUCKET_BITS + 1 bits remain, i.e. a number in
+    // [SUB_BUCKETS, 2 * SUB_BUCKETS), and use the shift to pick the range of buckets it's in.
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /** Returns the largest value that is recorded in the given bucket. */
+  private static long bucketUpperBound(int index) {
+    if (index < LINEAR_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long top = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((top + 1) << shift) - 1;
+  }
+
+  /** The values recorded in a {@link LatencyHistogram} between two drains. */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long totalCount;
+    private final long max;
+
+    private Snapshot(long[] counts, long totalCount, long max) {
+      this.counts = counts;
+      this.totalCount = totalCount;
+      this.max = max;
+    }
+
+    public long getTotalCount() {
+      return totalCount;
+    }
+
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Returns a value that at least the given percentage of recorded values are less than or equal
+     * to, which is within 1/16 of the exact answer. Returns 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+      checkArgument(
+          percentile >= 0 && percentile <= 100, "Percentile must be in [0, 100]: %s", percentile);
+      if (totalCount == 0) {
+        return 0;
+      }
+      long target = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return Math.min(bucketUpperBound(i), max);
+        }
+      }
+      return max;
+    }
+  }
+}
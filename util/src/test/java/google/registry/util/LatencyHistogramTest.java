@@ -0,0 +1,119 @@
+// Copyright 2020 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import google.registry.util.LatencyHistogram.Snapshot;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LatencyHistogram}. */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+
+  private final LatencyHistogram histogram = new LatencyHistogram();
+
+  @Test
+  public void testDrain_empty() {
+    Snapshot snapshot = histogram.drain();
+    assertThat(snapshot.getTotalCount()).isEqualTo(0);
+    assertThat(snapshot.getMax()).isEqualTo(0);
+    assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(0);
+  }
+
+  @Test
+  public void testPercentiles_smallValuesAreExact() {
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+    Snapshot snapshot = histogram.drain();
+    assertThat(snapshot.getTotalCount()).isEqualTo(20);
+    assertThat(snapshot.getValueAtPercentile(0)).isEqualTo(1);
+    assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(10);
+    assertThat(snapshot.getValueAtPercentile(90)).isEqualTo(18);
+    assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(20);
+    assertThat(snapshot.getMax()).isEqualTo(20);
+  }
+
+  @Test
+  public void testPercentiles_largeValuesWithinPrecision() {
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 37);
+    }
+    Snapshot snapshot = histogram.drain();
+    for (double percentile : new double[] {1, 25, 50, 75, 90, 99, 99.9}) {
+      long exact = (long) Math.ceil(percentile * 1000) * 37;
+      assertThat(snapshot.getValueAtPercentile(percentile)).isAtLeast(exact);
+      assertThat(snapshot.getValueAtPercentile(percentile)).isAtMost(exact + exact / 16);
+    }
+    assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(3700000);
+  }
+
+  @Test
+  public void testRecord_clampsOutOfRangeValues() {
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    Snapshot snapshot = histogram.drain();
+    assertThat(snapshot.getTotalCount()).isEqualTo(2);
+    assertThat(snapshot.getValueAtPercentile(50)).isEqualTo(0);
+    assertThat(snapshot.getMax()).isEqualTo(LatencyHistogram.MAX_VALUE);
+    assertThat(snapshot.getValueAtPercentile(100)).isEqualTo(LatencyHistogram.MAX_VALUE);
+  }
+
+  @Test
+  public void testDrain_resetsHistogram() {
+    histogram.record(100);
+    assertThat(histogram.drain().getTotalCount()).isEqualTo(1);
+    histogram.record(5);
+    Snapshot snapshot = histogram.drain();
+    assertThat(snapshot.getTotalCount()).isEqualTo(1);
+    assertThat(snapshot.getMax()).isEqualTo(5);
+  }
+
+  @Test
+  public void testRecord_concurrently_noValuesLost() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    long drainedCount = 0;
+    for (int thread = 0; thread < 8; thread++) {
+      executor.execute(
+          () -> {
+            for (int i = 0; i < 10000; i++) {
+              histogram.record(i);
+            }
+          });
+    }
+    // Drain while recording is going on, to check that every value ends up in exactly one drain.
+    for (int i = 0; i < 10; i++) {
+      drainedCount += histogram.drain().getTotalCount();
+    }
+    executor.shutdown();
+    assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+    drainedCount += histogram.drain().getTotalCount();
+    assertThat(drainedCount).isEqualTo(80000);
+  }
+
+  @Test
+  public void testFailure_invalidPercentile() {
+    histogram.record(1);
+    Snapshot snapshot = histogram.drain();
+    assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+  }
+}